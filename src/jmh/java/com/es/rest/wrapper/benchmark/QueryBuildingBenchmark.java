@@ -0,0 +1,84 @@
+package com.es.rest.wrapper.benchmark;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of turning a document class and a query into an endpoint: the original per call 
+ * annotation lookup and String concatenation versus the endpoints precomputed by the 
+ * {@link ElasticDocumentRegistry}.
+ * 
+ * @author Jack Phillips
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryBuildingBenchmark {
+	private static final String QUERY = "_search?q=barVal:test";
+
+	private ElasticDocumentRegistry registry;
+
+	@Setup
+	public void setUp() {
+		registry = new ElasticDocumentRegistry(new ObjectMapper());
+		registry.get(Foo.class);
+	}
+
+	@Benchmark
+	public String annotationLookupPerCall() {
+		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(Foo.class, ElasticDocument.class);
+		String result = getIndexAndTypeString(elasticDocument);
+		return result + StringUtils.replace(QUERY, result, "");
+	}
+
+	@Benchmark
+	public String registryMetadata() {
+		ElasticDocumentMetadata metadata = registry.get(Foo.class);
+		String basePath = metadata.getBasePath();
+		return QUERY.startsWith(basePath) ? QUERY : basePath + QUERY;
+	}
+
+	@Benchmark
+	public String registrySearchEndpoint() {
+		return registry.get(Foo.class).getSearchEndpoint();
+	}
+
+	/**
+	 * Original implementation of the index and type path, kept as the baseline.
+	 */
+	private static String getIndexAndTypeString(ElasticDocument elasticDocument) {
+		StringBuilder stringBuilder = new StringBuilder();
+		if (!Objects.isNull(elasticDocument)) {
+			stringBuilder.append(
+					UrlComponentEnum.FWD_SLASH.getValue() 
+					+ elasticDocument.indexName());
+			if (StringUtils.isEmpty(elasticDocument.type())) {
+				stringBuilder.append(
+						UrlComponentEnum.FWD_SLASH.getValue());
+			} else {
+				stringBuilder.append(
+						UrlComponentEnum.FWD_SLASH.getValue() 
+						+ elasticDocument.type() 
+						+ UrlComponentEnum.FWD_SLASH.getValue());
+			}
+		}
+		return stringBuilder.toString();
+	}
+}
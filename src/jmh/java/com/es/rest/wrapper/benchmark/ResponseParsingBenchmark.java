@@ -0,0 +1,73 @@
+package com.es.rest.wrapper.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.es.rest.wrapper.service.SearchPage;
+import com.es.rest.wrapper.service.StreamingSearchParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of reading a search response into documents with 10, 1k and 100k hits: a new 
+ * ObjectMapper per call versus a shared reader, reading through an intermediate String versus 
+ * straight from the stream, and binding a whole {@link QueryResponse} versus the token stream 
+ * parse of {@link StreamingSearchParser}.
+ * 
+ * @author Jack Phillips
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseParsingBenchmark {
+	private static final TypeReference<QueryResponse<Foo>> QUERY_RESPONSE_TYPE = new TypeReference<QueryResponse<Foo>>() {};
+
+	@Param({ "10", "1000", "100000" })
+	private int hits;
+
+	private HttpEntity entity;
+	private ElasticDocumentMetadata metadata;
+
+	@Setup
+	public void setUp() throws IOException {
+		entity = new NByteArrayEntity(SearchPayloads.searchResponse(hits), ContentType.APPLICATION_JSON);
+		metadata = new ElasticDocumentRegistry(new ObjectMapper()).get(Foo.class);
+	}
+
+	@Benchmark
+	public QueryResponse<Foo> mapperPerCallFromString() throws IOException {
+		return new ObjectMapper().readValue(EntityUtils.toString(entity), QUERY_RESPONSE_TYPE);
+	}
+
+	@Benchmark
+	public QueryResponse<Foo> sharedReaderFromString() throws IOException {
+		return metadata.getQueryResponseReader().readValue(EntityUtils.toString(entity));
+	}
+
+	@Benchmark
+	public QueryResponse<Foo> sharedReaderFromStream() throws IOException {
+		return metadata.getQueryResponseReader().readValue(entity.getContent());
+	}
+
+	@Benchmark
+	public SearchPage<Foo> streamingParse() throws IOException {
+		return StreamingSearchParser.parse(entity.getContent(), metadata.getDocumentReader());
+	}
+}
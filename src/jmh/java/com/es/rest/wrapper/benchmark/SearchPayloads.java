@@ -0,0 +1,56 @@
+package com.es.rest.wrapper.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Builds search response bodies shaped like those of Elasticsearch 5.x for the Foo example document.
+ * 
+ * @author Jack Phillips
+ */
+final class SearchPayloads {
+
+	private SearchPayloads() {
+	}
+
+	/**
+	 * @param hits - number of hits in hits.hits
+	 * @return UTF-8 JSON search response
+	 * @throws IOException
+	 */
+	static byte[] searchResponse(int hits) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(128 * hits + 256);
+		try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+			generator.writeStartObject();
+			generator.writeNumberField("took", 3);
+			generator.writeBooleanField("timed_out", false);
+			generator.writeObjectFieldStart("_shards");
+			generator.writeNumberField("total", 5);
+			generator.writeNumberField("successful", 5);
+			generator.writeNumberField("failed", 0);
+			generator.writeEndObject();
+			generator.writeObjectFieldStart("hits");
+			generator.writeNumberField("total", hits);
+			generator.writeNumberField("max_score", 1.0);
+			generator.writeArrayFieldStart("hits");
+			for (int i = 0; i < hits; i++) {
+				generator.writeStartObject();
+				generator.writeStringField("_index", "foo");
+				generator.writeStringField("_type", "bar");
+				generator.writeStringField("_id", String.valueOf(i));
+				generator.writeNumberField("_score", 1.0);
+				generator.writeObjectFieldStart("_source");
+				generator.writeStringField("barVal", "value-" + i);
+				generator.writeEndObject();
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+			generator.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+}
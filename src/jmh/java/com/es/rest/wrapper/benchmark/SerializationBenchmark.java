@@ -0,0 +1,70 @@
+package com.es.rest.wrapper.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Cost of building the request body of postSync: a new ObjectMapper per call versus the shared 
+ * writer, a String wrapped in an {@link NStringEntity} versus bytes in an {@link NByteArrayEntity}, 
+ * and the cost of gzip compressing the body.
+ * 
+ * @author Jack Phillips
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+	private Foo foo;
+	private ObjectWriter documentWriter;
+	private GzipCompression compression;
+
+	@Setup
+	public void setUp() {
+		foo = new Foo("a moderately sized value for the barVal field of the example document");
+		documentWriter = new ElasticDocumentRegistry(new ObjectMapper()).get(Foo.class).getDocumentWriter();
+		compression = new GzipCompression(true, 0, new SimpleMeterRegistry());
+	}
+
+	@Benchmark
+	public HttpEntity mapperPerCallStringEntity() throws IOException {
+		String jsonString = new ObjectMapper().writeValueAsString(foo);
+		return new NStringEntity(jsonString, ContentType.APPLICATION_JSON);
+	}
+
+	@Benchmark
+	public HttpEntity sharedWriterStringEntity() throws IOException {
+		String jsonString = documentWriter.writeValueAsString(foo);
+		return new NStringEntity(jsonString, ContentType.APPLICATION_JSON);
+	}
+
+	@Benchmark
+	public HttpEntity sharedWriterByteArrayEntity() throws IOException {
+		return new NByteArrayEntity(documentWriter.writeValueAsBytes(foo), ContentType.APPLICATION_JSON);
+	}
+
+	@Benchmark
+	public HttpEntity sharedWriterGzipEntity() throws IOException {
+		return compression.createEntity(documentWriter.writeValueAsBytes(foo), ContentType.APPLICATION_JSON);
+	}
+}
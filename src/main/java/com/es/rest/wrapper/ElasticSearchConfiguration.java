@@ -2,16 +2,23 @@ package com.es.rest.wrapper;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
 import org.elasticsearch.client.sniff.Sniffer;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
@@ -21,6 +28,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.es.rest.wrapper.client.AdaptiveRoutePlanner;
+import com.es.rest.wrapper.client.InstrumentedConnectionManager;
+
 @Configuration
 public class ElasticSearchConfiguration {	
 	@Value("${es.auth.basic}")
@@ -41,18 +51,58 @@ public class ElasticSearchConfiguration {
 	@Value("${es.rest.port}")
 	private int restPort;
 	
+	/* Seed nodes of the RestClient (ex. http://es1:9200,http://es2:9200), defaults to elasticsearch.host and es.rest.port */
+	@Value("${elasticsearch.hosts:}")
+	private String[] hosts;
+	
+	/* Route each request to the fastest healthy node instead of round-robin */
+	@Value("${elasticsearch.node-selection.adaptive:true}")
+	private boolean adaptiveNodeSelection;
+	
+	@Value("${elasticsearch.sniff.interval-millis:300000}")
+	private int sniffIntervalMillis;
+	
+	@Value("${elasticsearch.sniff.after-failure-delay-millis:60000}")
+	private int sniffAfterFailureDelayMillis;
+	
 	@Value("${es.auth.user}")
 	private String authUser;
 	
 	@Value("${es.auth.passwd}")
 	private String authPass;
 	
+	/* Connection pool, Apache async client defaults are 30 total and 10 per route */
+	@Value("${elasticsearch.connection.max-total:100}")
+	private int maxConnTotal;
+	
+	@Value("${elasticsearch.connection.max-per-route:100}")
+	private int maxConnPerRoute;
+	
+	/* IO reactor threads, 0 uses one per available processor */
+	@Value("${elasticsearch.connection.io-threads:0}")
+	private int ioThreadCount;
+	
+	/* Upper bound of how long an idle connection is kept alive */
+	@Value("${elasticsearch.connection.keep-alive-millis:60000}")
+	private long keepAliveMillis;
+	
+	/* Timeouts, defaults are those of RestClientBuilder */
+	@Value("${elasticsearch.timeout.connect-millis:1000}")
+	private int connectTimeoutMillis;
+	
+	@Value("${elasticsearch.timeout.socket-millis:30000}")
+	private int socketTimeoutMillis;
+	
+	@Value("${elasticsearch.timeout.connection-request-millis:500}")
+	private int connectionRequestTimeoutMillis;
+	
+	@Value("${elasticsearch.timeout.max-retry-millis:30000}")
+	private int maxRetryTimeoutMillis;
+	
 	private final String CLUSTER_KEY = "cluster.name";
 	private final String XPACK_USER_KEY = "xpack.security.user";
 	private final String HTTP_SCHEME = "http";
 	
-	private Sniffer sniffer;
-	
 //	@Bean(destroyMethod = "close")
 	public Client client() throws UnknownHostException {
 		
@@ -63,27 +113,97 @@ public class ElasticSearchConfiguration {
 		return client;
 	}
 	
+	/**
+	 * Connection pool of the RestClient, a bean of its own so its metrics can be published.
+	 * It is shut down when the RestClient is closed.
+	 * 
+	 * @return InstrumentedConnectionManager
+	 * @throws IOReactorException if the IO reactor cannot be started
+	 */
+	@Bean(destroyMethod = "")
+	public InstrumentedConnectionManager connectionManager() throws IOReactorException {
+		IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+				.setIoThreadCount(ioThreadCount > 0 ? ioThreadCount : Runtime.getRuntime().availableProcessors())
+				.setConnectTimeout(connectTimeoutMillis)
+				.setSoTimeout(socketTimeoutMillis)
+				.setSoKeepAlive(true)
+				.build();
+		
+		InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(
+				new DefaultConnectingIOReactor(ioReactorConfig));
+		connectionManager.setMaxTotal(maxConnTotal);
+		connectionManager.setDefaultMaxPerRoute(maxConnPerRoute);
+		return connectionManager;
+	}
+	
 	@Bean(destroyMethod = "close")
-	public RestClient restClient() {
-		RestClient restClient = useBasicAuth ? buildBasicAuthRestClient() : buildAdvancedAuthRestClient();
-		this.sniffer = Sniffer.builder(restClient).build();
+	public AdaptiveRoutePlanner routePlanner() {
+		return new AdaptiveRoutePlanner(socketTimeoutMillis);
+	}
+	
+	/**
+	 * Triggers a sniff round as soon as a node fails, so that dead nodes leave the host 
+	 * list before the next scheduled sniff.
+	 * 
+	 * @return SniffOnFailureListener, bound to the Sniffer once it is built
+	 */
+	@Bean
+	public SniffOnFailureListener sniffOnFailureListener() {
+		return new SniffOnFailureListener();
+	}
+	
+	@Bean(destroyMethod = "close")
+	public RestClient restClient(InstrumentedConnectionManager connectionManager, AdaptiveRoutePlanner routePlanner, 
+			SniffOnFailureListener sniffOnFailureListener) {
+		if (adaptiveNodeSelection) {
+			connectionManager.setLeaseListener(routePlanner);
+		}
 		
-		return restClient;
+		return useBasicAuth 
+				? buildBasicAuthRestClient(connectionManager, routePlanner, sniffOnFailureListener) 
+				: buildAdvancedAuthRestClient();
 	}
 	
-	private RestClient buildBasicAuthRestClient() {
+	@Bean(destroyMethod = "close")
+	public Sniffer sniffer(RestClient restClient, SniffOnFailureListener sniffOnFailureListener) {
+		Sniffer sniffer = Sniffer.builder(restClient)
+				.setSniffIntervalMillis(sniffIntervalMillis)
+				.setSniffAfterFailureDelayMillis(sniffAfterFailureDelayMillis)
+				.build();
+		sniffOnFailureListener.setSniffer(sniffer);
+		
+		return sniffer;
+	}
+	
+	private RestClient buildBasicAuthRestClient(InstrumentedConnectionManager connectionManager, 
+			AdaptiveRoutePlanner routePlanner, SniffOnFailureListener sniffOnFailureListener) {
 		final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
 		credentialsProvider.setCredentials(
 				AuthScope.ANY, 
 				new UsernamePasswordCredentials(authUser, authPass));
 		
-		RestClient restClient = RestClient.builder(createHttpHost())
+		RestClient restClient = RestClient.builder(createHttpHosts())
 				.setHttpClientConfigCallback(new RestClientBuilder.HttpClientConfigCallback() {
 					@Override
 					public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+						configureConnections(httpClientBuilder, connectionManager);
+						if (adaptiveNodeSelection) {
+							httpClientBuilder.setRoutePlanner(routePlanner).addInterceptorLast(routePlanner);
+						}
 						return httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
 					}
 				})
+				.setFailureListener(sniffOnFailureListener)
+				.setRequestConfigCallback(new RestClientBuilder.RequestConfigCallback() {
+					@Override
+					public RequestConfig.Builder customizeRequestConfig(RequestConfig.Builder requestConfigBuilder) {
+						return requestConfigBuilder
+								.setConnectTimeout(connectTimeoutMillis)
+								.setSocketTimeout(socketTimeoutMillis)
+								.setConnectionRequestTimeout(connectionRequestTimeoutMillis);
+					}
+				})
+				.setMaxRetryTimeoutMillis(maxRetryTimeoutMillis)
 				.build();
 		
 		return restClient;
@@ -94,8 +214,29 @@ public class ElasticSearchConfiguration {
 		return null;
 	}
 	
-	private HttpHost createHttpHost() {
-		return new HttpHost(host, restPort, HTTP_SCHEME);
+	/**
+	 * Applies the connection pool and keep alive settings. The pool size is set on the 
+	 * connection manager because the builder ignores its own limits once a manager is given.
+	 */
+	private HttpAsyncClientBuilder configureConnections(HttpAsyncClientBuilder httpClientBuilder, 
+			InstrumentedConnectionManager connectionManager) {
+		return httpClientBuilder
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy((response, context) -> {
+					// Honor a shorter Keep-Alive header, never keep connections longer than configured
+					long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+				});
+	}
+	
+	private HttpHost[] createHttpHosts() {
+		HttpHost[] httpHosts = Arrays.stream(hosts)
+				.map(String::trim)
+				.filter(seed -> !seed.isEmpty())
+				.map(HttpHost::create)
+				.toArray(HttpHost[]::new);
+		
+		return httpHosts.length > 0 ? httpHosts : new HttpHost[] { new HttpHost(host, restPort, HTTP_SCHEME) };
 	}
 	
 	private Settings buildBasicAuthSettings() {
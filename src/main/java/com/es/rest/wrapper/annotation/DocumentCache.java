@@ -0,0 +1,32 @@
+package com.es.rest.wrapper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the read-through document cache for an {@link ElasticDocument} class. Documents
+ * read by ID are kept in memory as their raw _source bytes, bounded by weight and expired
+ * after a fixed time. Documents are cached by ID without their routing value, a class with a
+ * {@link RoutingKey} must not reuse an ID across routing values.
+ *
+ * @author Jack Phillips
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Documented
+public @interface DocumentCache {
+	/**
+	 * Maximum total size in bytes of the cached _source documents
+	 * @return long maximumWeightBytes
+	 */
+	long maximumWeightBytes() default 64L * 1024 * 1024;
+
+	/**
+	 * Seconds a document stays cached after it was read or written, 0 to never expire
+	 * @return long expireAfterWriteSeconds
+	 */
+	long expireAfterWriteSeconds() default 300;
+}
@@ -6,6 +6,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+
 /**
  * Annotation for Elasticsearch documents
  * 
@@ -26,4 +28,24 @@ public @interface ElasticDocument {
 	 * @return String type
 	 */
 	String type() default "";
+	
+	/**
+	 * _source fields returned by searches and scrolls that do not ask for their own, 
+	 * empty to return the whole document. Documents read by ID are always complete.
+	 * @return String[] sourceIncludes
+	 */
+	String[] sourceIncludes() default {};
+	
+	/**
+	 * _source fields left out of searches and scrolls that do not ask for their own
+	 * @return String[] sourceExcludes
+	 */
+	String[] sourceExcludes() default {};
+	
+	/**
+	 * Refresh policy of writes that do not ask for their own. Prefer WAIT over TRUE, 
+	 * every TRUE write forces a refresh of the index.
+	 * @return RefreshEnum refresh
+	 */
+	RefreshEnum refresh() default RefreshEnum.FALSE;
 }
@@ -0,0 +1,23 @@
+package com.es.rest.wrapper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the field or no-argument getter of an {@link ElasticDocument} class holding the 
+ * routing value of each document (ex. a tenant ID). Writes send its value as the routing 
+ * parameter, so every document of a tenant lands on the same shard, and reads and searches 
+ * given the same routing value are served by that single shard instead of all of them.
+ * 
+ * <p>At most one member per class may be annotated. A null or empty value sends no routing.</p>
+ * 
+ * @author Jack Phillips
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Documented
+public @interface RoutingKey {
+}
@@ -0,0 +1,50 @@
+package com.es.rest.wrapper.bulk;
+
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
+import com.es.rest.wrapper.model.generic.BulkResponse;
+
+/**
+ * Callbacks fired by a {@link BulkProcessor} as it executes _bulk requests. All methods have
+ * empty defaults so implementations only override what they need. Callbacks run on the
+ * HTTP client threads and should return quickly.
+ * 
+ * @author Jack Phillips
+ */
+public interface BulkListener {
+	/**
+	 * Called before a _bulk request is sent.
+	 * 
+	 * @param executionId - unique ID of this bulk execution
+	 * @param numberOfActions - number of actions contained in the request
+	 */
+	default void beforeBulk(long executionId, int numberOfActions) {
+	}
+
+	/**
+	 * Called after a _bulk request returned a response, even if some of its items failed.
+	 * 
+	 * @param executionId - unique ID of this bulk execution
+	 * @param response - parsed _bulk response
+	 */
+	default void afterBulk(long executionId, BulkResponse response) {
+	}
+
+	/**
+	 * Called when a _bulk request failed as a whole and will not be retried.
+	 * 
+	 * @param executionId - unique ID of this bulk execution
+	 * @param numberOfActions - number of actions that were lost
+	 * @param failure - cause of the failure
+	 */
+	default void afterBulk(long executionId, int numberOfActions, Exception failure) {
+	}
+
+	/**
+	 * Called for every item that failed permanently, either because the error is not retryable
+	 * or because its retries are exhausted.
+	 * 
+	 * @param item - item response containing the error reported by Elasticsearch
+	 */
+	default void onItemFailure(BulkItemResponse item) {
+	}
+}
@@ -0,0 +1,615 @@
+package com.es.rest.wrapper.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.annotation.RoutingKey;
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
+import com.es.rest.wrapper.model.generic.BulkResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * <p>Gathers index, update and delete actions for {@link ElasticDocument} objects and sends them
+ * to Elasticsearch as NDJSON _bulk requests over the {@link RestClient}.</p>
+ *
+ * <p>Buffered actions are flushed as soon as any of the configured limits is reached: a number
+ * of actions, a number of bytes or, optionally, a time interval. At most
+ * <i>concurrentRequests</i> bulks are in flight at once, callers adding actions block while all
+ * slots are taken. Retries and interval flushes run on the processor's scheduler thread and never
+ * block on a slot, they are rescheduled until one is free. Items rejected with HTTP 429 (and whole bulks rejected with 429) are retried
+ * with exponential backoff, every other failure is reported to the {@link BulkListener}.</p>
+ *
+ * <p>Instances are thread-safe. Always {@link #close()} a processor to send the remaining actions
+ * and wait for the outstanding requests.</p>
+ *
+ * @author Jack Phillips
+ */
+public class BulkProcessor implements Closeable {
+	private static final Log logger = LogFactory.getLog(BulkProcessor.class);
+
+	private static final String POST = "POST";
+	private static final String BULK_ENDPOINT = UrlComponentEnum.FWD_SLASH.getValue() + UrlComponentEnum.BULK.getValue();
+	private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final long PERMIT_WAIT_MILLIS = 10;
+
+	private final RestClient restClient;
+	private final GzipCompression compression;
+	private final ElasticDocumentRegistry registry;
+	private final ObjectMapper mapper;
+	private final ObjectReader bulkResponseReader;
+	private final String bulkEndpoint;
+	private final BulkListener listener;
+	private final int bulkActions;
+	private final long bulkSizeBytes;
+	private final long initialBackoffMillis;
+	private final int maxRetries;
+	private final Semaphore inFlightPermits;
+	private final ScheduledExecutorService scheduler;
+
+	private final AtomicLong executionIds = new AtomicLong();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+
+	/* Buffered actions, guarded by this */
+	private List<byte[]> actions = new ArrayList<>();
+	private long actionBytes;
+	private boolean closed;
+
+	/* Bulks that are in flight or waiting for a retry, guarded by outstandingLock */
+	private final Object outstandingLock = new Object();
+	private int outstanding;
+
+	private BulkProcessor(Builder builder) {
+		this.restClient = builder.restClient;
+		this.compression = builder.compression;
+		this.registry = builder.registry;
+		this.mapper = builder.registry.getMapper();
+		this.bulkResponseReader = builder.registry.getResponseReader(BulkResponse.class);
+		this.bulkEndpoint = builder.refresh == RefreshEnum.FALSE 
+				? BULK_ENDPOINT 
+				: BULK_ENDPOINT + "?" + UrlComponentEnum.REFRESH.getValue() + "=" + builder.refresh.getValue();
+		this.listener = builder.listener;
+		this.bulkActions = builder.bulkActions;
+		this.bulkSizeBytes = builder.bulkSizeBytes;
+		this.initialBackoffMillis = builder.initialBackoffMillis;
+		this.maxRetries = builder.maxRetries;
+		this.inFlightPermits = new Semaphore(builder.concurrentRequests);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-bulk-processor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (builder.flushIntervalMillis > 0) {
+			scheduler.scheduleWithFixedDelay(this::flushOnInterval,
+					builder.flushIntervalMillis, builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Creates a new {@link Builder} for a BulkProcessor that sends its requests with restClient
+	 * and resolves documents through registry.
+	 *
+	 * @param restClient - client used to send _bulk requests
+	 * @param registry - registry of {@link ElasticDocument} classes and their shared mapper
+	 * @return Builder
+	 */
+	public static Builder builder(RestClient restClient, ElasticDocumentRegistry registry) {
+		return new Builder(restClient, registry);
+	}
+
+	/**
+	 * Adds an index action for the passed in document, routed by its {@link RoutingKey} if it has one.
+	 *
+	 * @param document - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL to let Elasticsearch generate one
+	 * @throws IOException if the document cannot be serialized
+	 */
+	public void index(Object document, String id) throws IOException {
+		ElasticDocumentMetadata metadata = registry.get(document.getClass());
+		add(buildAction("index", metadata, id, metadata.getRouting(document), document, false));
+	}
+
+	/**
+	 * Adds a partial update action, the fields of partialDocument are merged into the
+	 * existing document.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param partialDocument - object or Map holding the fields to update
+	 * @throws IOException if the document cannot be serialized
+	 */
+	public void update(Class<?> clazz, String id, Object partialDocument) throws IOException {
+		update(clazz, id, null, partialDocument);
+	}
+
+	/**
+	 * Adds a partial update action for a routed document.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value the document was indexed with
+	 * @param partialDocument - object or Map holding the fields to update
+	 * @throws IOException if the document cannot be serialized
+	 */
+	public void update(Class<?> clazz, String id, String routing, Object partialDocument) throws IOException {
+		add(buildAction("update", registry.get(clazz), id, routing, partialDocument, true));
+	}
+
+	/**
+	 * Adds a delete action.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @throws IOException if the action cannot be serialized
+	 */
+	public void delete(Class<?> clazz, String id) throws IOException {
+		delete(clazz, id, null);
+	}
+
+	/**
+	 * Adds a delete action for a routed document.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value the document was indexed with
+	 * @throws IOException if the action cannot be serialized
+	 */
+	public void delete(Class<?> clazz, String id, String routing) throws IOException {
+		add(buildAction("delete", registry.get(clazz), id, routing, null, false));
+	}
+
+	/**
+	 * Sends all buffered actions now, regardless of the configured limits.
+	 */
+	public void flush() {
+		List<byte[]> batch;
+		synchronized (this) {
+			if (actions.isEmpty())
+				return;
+			batch = drain();
+		}
+		execute(batch, 0);
+	}
+
+	/**
+	 * Flushes the remaining actions and waits for every outstanding bulk, including scheduled
+	 * retries, to finish.
+	 *
+	 * @param timeout - maximum time to wait
+	 * @param unit - TimeUnit of the timeout parameter
+	 * @return true if all bulks finished, false if the timeout elapsed first
+	 * @throws InterruptedException
+	 */
+	public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+		synchronized (this) {
+			if (closed)
+				return true;
+			closed = true;
+		}
+		flushBuffered();
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		try {
+			synchronized (outstandingLock) {
+				while (outstanding > 0) {
+					long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remainingMillis <= 0)
+						return false;
+					outstandingLock.wait(remainingMillis);
+				}
+			}
+			return true;
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (!awaitClose(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+				logger.error("ERROR: Bulk processor closed before all bulk requests completed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return number of actions Elasticsearch reported as successful
+	 */
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+
+	/**
+	 * @return number of actions that failed permanently
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return number of action retries caused by 429 rejections
+	 */
+	public long getRetried() {
+		return retried.get();
+	}
+
+	private void add(byte[] action) {
+		List<byte[]> batch = null;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("Bulk processor is closed");
+
+			actions.add(action);
+			actionBytes += action.length;
+			if (actions.size() >= bulkActions || actionBytes >= bulkSizeBytes) {
+				batch = drain();
+			}
+		}
+		// Send outside the lock, other threads can keep buffering while we wait for a permit
+		if (!Objects.isNull(batch)) {
+			execute(batch, 0);
+		}
+	}
+
+	private void flushBuffered() {
+		List<byte[]> batch;
+		synchronized (this) {
+			batch = actions.isEmpty() ? null : drain();
+		}
+		if (!Objects.isNull(batch)) {
+			execute(batch, 0);
+		}
+	}
+
+	/* Runs on the scheduler thread, skips the tick rather than block while every slot is taken */
+	private void flushOnInterval() {
+		if (!inFlightPermits.tryAcquire())
+			return;
+
+		// Counted before draining so awaitClose cannot miss a batch taken from the buffer
+		incrementOutstanding();
+		List<byte[]> batch;
+		synchronized (this) {
+			batch = actions.isEmpty() ? null : drain();
+		}
+		if (Objects.isNull(batch)) {
+			inFlightPermits.release();
+			decrementOutstanding();
+			return;
+		}
+		send(batch, 0);
+	}
+
+	/* Must be called while holding the lock on this */
+	private List<byte[]> drain() {
+		List<byte[]> batch = actions;
+		actions = new ArrayList<>(Math.min(bulkActions, 1024));
+		actionBytes = 0;
+		return batch;
+	}
+
+	private void execute(List<byte[]> batch, int attempt) {
+		incrementOutstanding();
+		try {
+			inFlightPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failBulk(executionIds.incrementAndGet(), batch, e);
+			decrementOutstanding();
+			return;
+		}
+		send(batch, attempt);
+	}
+
+	/* The caller holds an in-flight permit and has counted the bulk as outstanding, both are released once it completes */
+	private void send(List<byte[]> batch, int attempt) {
+		final long executionId = executionIds.incrementAndGet();
+		listener.beforeBulk(executionId, batch.size());
+		restClient.performRequestAsync(
+				POST,
+				bulkEndpoint,
+				Collections.<String, String>emptyMap(),
+				compression.createEntity(concat(batch), NDJSON),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						inFlightPermits.release();
+						try {
+							handleResponse(executionId, batch, attempt, bulkResponseReader.readValue(compression.getContent(response)));
+						} catch (Exception e) {
+							failBulk(executionId, batch, e);
+						} finally {
+							decrementOutstanding();
+						}
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						inFlightPermits.release();
+						try {
+							if (isRejected(exception) && attempt < maxRetries) {
+								scheduleRetry(batch, attempt + 1);
+							} else {
+								failBulk(executionId, batch, exception);
+							}
+						} finally {
+							decrementOutstanding();
+						}
+					}
+				},
+				compression.getRequestHeaders());
+	}
+
+	private void handleResponse(long executionId, List<byte[]> batch, int attempt, BulkResponse response) {
+		listener.afterBulk(executionId, response);
+
+		List<byte[]> retries = new ArrayList<>();
+		List<Map<String, BulkItemResponse>> items = response.getItems();
+		for (int i = 0; i < items.size(); i++) {
+			// Each item holds a single entry keyed by the operation name
+			BulkItemResponse item = items.get(i).values().iterator().next();
+			if (!item.isFailed()) {
+				succeeded.incrementAndGet();
+			} else if (item.getStatus() == TOO_MANY_REQUESTS && attempt < maxRetries) {
+				retries.add(batch.get(i));
+			} else {
+				failed.incrementAndGet();
+				listener.onItemFailure(item);
+			}
+		}
+
+		if (!retries.isEmpty()) {
+			scheduleRetry(retries, attempt + 1);
+		}
+	}
+
+	private void scheduleRetry(List<byte[]> batch, int attempt) {
+		retried.addAndGet(batch.size());
+		long delayMillis = initialBackoffMillis << (attempt - 1);
+
+		incrementOutstanding();
+		scheduleSend(batch, attempt, delayMillis);
+	}
+
+	private void scheduleSend(List<byte[]> batch, int attempt, long delayMillis) {
+		try {
+			scheduler.schedule(() -> sendWhenPermitted(batch, attempt), delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// awaitClose gave up and shut the scheduler down before the retry could run
+			failBulk(executionIds.incrementAndGet(), batch, e);
+			decrementOutstanding();
+		}
+	}
+
+	/*
+	 * Runs on the scheduler thread, which interval flushes and other retries share, so it must not
+	 * block on a permit. Without a free slot the retry is tried again shortly after.
+	 */
+	private void sendWhenPermitted(List<byte[]> batch, int attempt) {
+		if (inFlightPermits.tryAcquire()) {
+			send(batch, attempt);
+		} else {
+			scheduleSend(batch, attempt, PERMIT_WAIT_MILLIS);
+		}
+	}
+
+	private void failBulk(long executionId, List<byte[]> batch, Exception failure) {
+		logger.error("ERROR: Could not execute bulk request " + executionId + ": " + failure.getMessage());
+		failed.addAndGet(batch.size());
+		listener.afterBulk(executionId, batch.size(), failure);
+	}
+
+	private boolean isRejected(Exception exception) {
+		return exception instanceof ResponseException
+				&& ((ResponseException) exception).getResponse().getStatusLine().getStatusCode() == TOO_MANY_REQUESTS;
+	}
+
+	private void incrementOutstanding() {
+		synchronized (outstandingLock) {
+			outstanding++;
+		}
+	}
+
+	private void decrementOutstanding() {
+		synchronized (outstandingLock) {
+			if (--outstanding == 0) {
+				outstandingLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Serializes a single bulk action, the metadata line followed by the optional source line.
+	 */
+	private byte[] buildAction(String operation, ElasticDocumentMetadata metadata, String id, String routing, 
+			Object source, boolean partial) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			// Lines are separated by newlines we write ourselves
+			generator.setRootValueSeparator(null);
+
+			generator.writeStartObject();
+			generator.writeObjectFieldStart(operation);
+			generator.writeStringField("_index", metadata.getIndexName());
+			if (!StringUtils.isEmpty(metadata.getType())) {
+				generator.writeStringField("_type", metadata.getType());
+			}
+			if (!StringUtils.isEmpty(id)) {
+				generator.writeStringField("_id", id);
+			}
+			if (!StringUtils.isEmpty(routing)) {
+				generator.writeStringField("_routing", routing);
+			}
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeRaw('\n');
+
+			if (!Objects.isNull(source)) {
+				if (partial) {
+					generator.writeStartObject();
+					generator.writeFieldName("doc");
+					generator.writeObject(source);
+					generator.writeEndObject();
+				} else {
+					generator.writeObject(source);
+				}
+				generator.writeRaw('\n');
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] concat(List<byte[]> batch) {
+		int length = 0;
+		for (byte[] action : batch) {
+			length += action.length;
+		}
+		byte[] body = new byte[length];
+		int offset = 0;
+		for (byte[] action : batch) {
+			System.arraycopy(action, 0, body, offset, action.length);
+			offset += action.length;
+		}
+		return body;
+	}
+
+	/**
+	 * Builder for {@link BulkProcessor}, defaults are 1000 actions, 5 MB, no flush interval,
+	 * one concurrent request, 8 retries starting at 50 ms, no compression and no refresh.
+	 */
+	public static class Builder {
+		private final RestClient restClient;
+		private final ElasticDocumentRegistry registry;
+		private GzipCompression compression = GzipCompression.none();
+		private BulkListener listener = new BulkListener() {};
+		private int bulkActions = 1000;
+		private long bulkSizeBytes = 5 * 1024 * 1024;
+		private long flushIntervalMillis = 0;
+		private int concurrentRequests = 1;
+		private long initialBackoffMillis = 50;
+		private int maxRetries = 8;
+		private RefreshEnum refresh = RefreshEnum.FALSE;
+
+		private Builder(RestClient restClient, ElasticDocumentRegistry registry) {
+			this.restClient = restClient;
+			this.registry = registry;
+		}
+
+		public Builder setListener(BulkListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * @param compression - compresses bulk bodies and their responses when enabled
+		 * @return Builder
+		 */
+		public Builder setCompression(GzipCompression compression) {
+			this.compression = compression;
+			return this;
+		}
+
+		/**
+		 * @param bulkActions - flush once this many actions are buffered
+		 * @return Builder
+		 */
+		public Builder setBulkActions(int bulkActions) {
+			this.bulkActions = bulkActions;
+			return this;
+		}
+
+		/**
+		 * @param bulkSizeBytes - flush once the buffered actions reach this many bytes
+		 * @return Builder
+		 */
+		public Builder setBulkSize(long bulkSizeBytes) {
+			this.bulkSizeBytes = bulkSizeBytes;
+			return this;
+		}
+
+		/**
+		 * @param interval - flush whatever is buffered at this interval, 0 disables it
+		 * @param unit - TimeUnit of the interval parameter
+		 * @return Builder
+		 */
+		public Builder setFlushInterval(long interval, TimeUnit unit) {
+			this.flushIntervalMillis = unit.toMillis(interval);
+			return this;
+		}
+
+		/**
+		 * @param concurrentRequests - maximum number of bulks in flight at the same time
+		 * @return Builder
+		 */
+		public Builder setConcurrentRequests(int concurrentRequests) {
+			this.concurrentRequests = concurrentRequests;
+			return this;
+		}
+
+		/**
+		 * @param initialDelay - delay before the first retry, doubled for every further retry
+		 * @param unit - TimeUnit of the initialDelay parameter
+		 * @param maxRetries - maximum number of retries of a rejected item
+		 * @return Builder
+		 */
+		public Builder setBackoff(long initialDelay, TimeUnit unit, int maxRetries) {
+			this.initialBackoffMillis = unit.toMillis(initialDelay);
+			this.maxRetries = maxRetries;
+			return this;
+		}
+
+		/**
+		 * @param refresh - refresh policy sent with every _bulk request
+		 * @return Builder
+		 */
+		public Builder setRefresh(RefreshEnum refresh) {
+			this.refresh = refresh;
+			return this;
+		}
+
+		public BulkProcessor build() {
+			Objects.requireNonNull(restClient, "No connection to Elasticsearch, RestClient is null");
+			Objects.requireNonNull(registry, "ElasticDocumentRegistry is required");
+			Objects.requireNonNull(compression, "GzipCompression is required, use GzipCompression.none() to disable it");
+			Objects.requireNonNull(refresh, "RefreshEnum is required, use RefreshEnum.FALSE to send no refresh");
+			if (bulkActions < 1 || bulkSizeBytes < 1 || concurrentRequests < 1 || maxRetries < 0)
+				throw new IllegalArgumentException("Bulk limits must be positive");
+			return new BulkProcessor(this);
+		}
+	}
+}
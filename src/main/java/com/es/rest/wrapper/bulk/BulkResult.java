@@ -0,0 +1,69 @@
+package com.es.rest.wrapper.bulk;
+
+import java.util.List;
+
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
+
+/**
+ * Summary of a completed bulk load, counts every action submitted to a {@link BulkProcessor}
+ * and holds the item responses of the actions that failed.
+ * 
+ * @author Jack Phillips
+ */
+public class BulkResult {
+	private long submitted;
+	private long succeeded;
+	private long failed;
+	private long retried;
+	private List<BulkItemResponse> failures;
+
+	public BulkResult() {}
+
+	public BulkResult(long submitted, long succeeded, long failed, long retried, List<BulkItemResponse> failures) {
+		this.submitted = submitted;
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.retried = retried;
+		this.failures = failures;
+	}
+
+	public long getSubmitted() {
+		return submitted;
+	}
+
+	public void setSubmitted(long submitted) {
+		this.submitted = submitted;
+	}
+
+	public long getSucceeded() {
+		return succeeded;
+	}
+
+	public void setSucceeded(long succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+
+	public long getRetried() {
+		return retried;
+	}
+
+	public void setRetried(long retried) {
+		this.retried = retried;
+	}
+
+	public List<BulkItemResponse> getFailures() {
+		return failures;
+	}
+
+	public void setFailures(List<BulkItemResponse> failures) {
+		this.failures = failures;
+	}
+}
@@ -0,0 +1,120 @@
+package com.es.rest.wrapper.bulk;
+
+/**
+ * Summary of an NDJSON import, see {@link NdjsonImporter}. Offsets are byte positions in the
+ * file, an import resumed from a checkpoint only counts what it sent itself.
+ *
+ * @author Jack Phillips
+ */
+public class ImportResult {
+	private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+	private final String file;
+	private final String indexName;
+	private final long fileBytes;
+	private final long startOffset;
+	private final long endOffset;
+	private final int chunks;
+	private final long documents;
+	private final long succeeded;
+	private final long failed;
+	private final long retried;
+	private final long elapsedMillis;
+
+	public ImportResult(String file, String indexName, long fileBytes, long startOffset, long endOffset, int chunks,
+			long documents, long succeeded, long failed, long retried, long elapsedMillis) {
+		this.file = file;
+		this.indexName = indexName;
+		this.fileBytes = fileBytes;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.chunks = chunks;
+		this.documents = documents;
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.retried = retried;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public long getFileBytes() {
+		return fileBytes;
+	}
+
+	/**
+	 * @return offset the import started from, greater than 0 when resumed from a checkpoint
+	 */
+	public long getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * @return offset up to which every chunk was imported, the file size once complete
+	 */
+	public long getEndOffset() {
+		return endOffset;
+	}
+
+	public boolean isComplete() {
+		return endOffset == fileBytes;
+	}
+
+	/**
+	 * @return number of _bulk requests sent, not counting retries
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return number of bulk actions sent
+	 */
+	public long getDocuments() {
+		return documents;
+	}
+
+	public long getSucceeded() {
+		return succeeded;
+	}
+
+	/**
+	 * @return number of actions Elasticsearch reported an error for, including actions still
+	 * rejected with HTTP 429 after the last retry
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return number of actions resent after Elasticsearch rejected them, or their chunk, with HTTP 429
+	 */
+	public long getRetried() {
+		return retried;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double getDocsPerSecond() {
+		return perSecond(documents, elapsedMillis);
+	}
+
+	/**
+	 * @return MB of the file imported per second
+	 */
+	public double getMegabytesPerSecond() {
+		return perSecond(endOffset - startOffset, elapsedMillis) / BYTES_PER_MB;
+	}
+
+	private static double perSecond(long count, long elapsedMillis) {
+		return elapsedMillis <= 0 ? count : count * 1000.0 / elapsedMillis;
+	}
+}
@@ -0,0 +1,128 @@
+package com.es.rest.wrapper.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * Request entity made of a sequence of buffers, usually slices of a memory-mapped file. The
+ * async client writes the buffers to the connection as they are, without copying them into
+ * a byte array first.
+ *
+ * @author Jack Phillips
+ */
+class MappedChunkEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+	private final ByteBuffer[] parts;
+	private final long length;
+
+	/* Position of the async producer, reset by close() so the entity can be sent again */
+	private int part;
+	private ByteBuffer current;
+
+	MappedChunkEntity(List<ByteBuffer> parts, ContentType contentType) {
+		this.parts = parts.toArray(new ByteBuffer[parts.size()]);
+		this.length = parts.stream().mapToLong(ByteBuffer::remaining).sum();
+		setContentType(contentType.toString());
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return length;
+	}
+
+	@Override
+	public InputStream getContent() {
+		return new BuffersInputStream(parts);
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		WritableByteChannel channel = Channels.newChannel(out);
+		for (ByteBuffer buffer : parts) {
+			ByteBuffer remaining = buffer.duplicate();
+			while (remaining.hasRemaining()) {
+				channel.write(remaining);
+			}
+		}
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+		while (part < parts.length) {
+			if (Objects.isNull(current))
+				current = parts[part].duplicate();
+			encoder.write(current);
+			// The connection cannot take more for now, carry on when it is writable again
+			if (current.hasRemaining())
+				return;
+			current = null;
+			part++;
+		}
+		encoder.complete();
+	}
+
+	@Override
+	public void close() {
+		part = 0;
+		current = null;
+	}
+
+	private static class BuffersInputStream extends InputStream {
+		private final ByteBuffer[] parts;
+		private int part;
+		private ByteBuffer current;
+
+		private BuffersInputStream(ByteBuffer[] parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public int read() {
+			ByteBuffer buffer = next();
+			return Objects.isNull(buffer) ? -1 : buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0)
+				return 0;
+			ByteBuffer buffer = next();
+			if (Objects.isNull(buffer))
+				return -1;
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		/* Buffer to read from, null once every part was read */
+		private ByteBuffer next() {
+			while (Objects.isNull(current) || !current.hasRemaining()) {
+				if (part == parts.length)
+					return null;
+				current = parts[part++].duplicate();
+			}
+			return current;
+		}
+	}
+}
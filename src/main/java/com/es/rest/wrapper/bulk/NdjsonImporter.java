@@ -0,0 +1,552 @@
+package com.es.rest.wrapper.bulk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
+import com.es.rest.wrapper.model.generic.BulkResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * <p>Loads an uncompressed NDJSON file into Elasticsearch with _bulk requests sent straight
+ * from a memory-mapped view of the file.</p>
+ *
+ * <p>The file is mapped in windows of up to 1 GB and cut on newline boundaries into chunks of
+ * about <i>elasticsearch.import.bulk-size-bytes</i>. Documents are never decoded, a chunk is
+ * sent as slices of the mapped window: in {@link Format#SOURCE} files (one _source per line,
+ * as written by the exporter once decompressed) an index action line is put in front of every
+ * document, {@link Format#BULK} files already hold action and source lines and are sent as
+ * they are. Up to <i>elasticsearch.import.concurrent-requests</i> chunks are in flight at
+ * once. Chunks rejected with HTTP 429 are resent with exponential backoff, so are the actions
+ * Elasticsearch rejected one by one with a 429 item status, without the rest of their chunk.
+ * After <i>elasticsearch.import.max-retries</i> retries rejected actions count as failed.
+ * Chunks in flight together may be applied in any order, a file that writes the same document
+ * more than once needs elasticsearch.import.concurrent-requests=1.</p>
+ *
+ * <p>Progress is checkpointed to {file}.checkpoint, the offset up to which every chunk was
+ * imported. An import of the same, unchanged file resumes from there, chunks that were in
+ * flight when it stopped are sent again. The checkpoint is removed once the file is complete.
+ * Actions Elasticsearch reports an error for are counted as failed and do not stop the
+ * import, a chunk that fails as a whole does.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class NdjsonImporter {
+	private static final Log logger = LogFactory.getLog(NdjsonImporter.class);
+
+	/**
+	 * Layout of the lines of an NDJSON file
+	 */
+	public enum Format {
+		/** One document _source per line */
+		SOURCE,
+		/** _bulk action lines, each followed by its source line unless it is a delete */
+		BULK
+	}
+
+	private static final String POST = "POST";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+	private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final int MAX_WINDOW_BYTES = 1 << 30;
+	private static final byte NEWLINE = '\n';
+	private static final byte[] INDEX_ACTION = "{\"index\":{}}\n".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] DELETE_OPERATION = "\"delete\"".getBytes(StandardCharsets.UTF_8);
+	private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+	/* Only failed items are of interest, leave the rest out of the responses */
+	private static final Map<String, String> BULK_PARAMS = Collections.singletonMap("filter_path", "items.*.error,items.*.status");
+
+	private final RestClient restClient;
+	private final ObjectMapper mapper;
+	private final ObjectReader bulkResponseReader;
+	private final GzipCompression compression;
+	private final int bulkSizeBytes;
+	private final int concurrentRequests;
+	private final long initialBackoffMillis;
+	private final int maxRetries;
+	private final ScheduledExecutorService scheduler;
+
+	@Autowired
+	public NdjsonImporter(RestClient restClient, ElasticDocumentRegistry registry, GzipCompression compression,
+			@Value("${elasticsearch.import.bulk-size-bytes:5242880}") int bulkSizeBytes,
+			@Value("${elasticsearch.import.concurrent-requests:4}") int concurrentRequests,
+			@Value("${elasticsearch.import.backoff-millis:50}") long initialBackoffMillis,
+			@Value("${elasticsearch.import.max-retries:8}") int maxRetries) {
+		this.restClient = restClient;
+		this.mapper = registry.getMapper();
+		this.bulkResponseReader = registry.getResponseReader(BulkResponse.class);
+		this.compression = compression;
+		this.bulkSizeBytes = Math.max(1024, bulkSizeBytes);
+		this.concurrentRequests = Math.max(1, concurrentRequests);
+		this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+		this.maxRetries = Math.max(0, maxRetries);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-import-retry");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Imports an NDJSON file, resuming from its checkpoint if an earlier import of it stopped.
+	 * Waits until every chunk was sent.
+	 *
+	 * @param file - uncompressed NDJSON file
+	 * @param indexName - index the documents go to unless an action line names another
+	 * @param type - type of the documents, may be empty for {@link Format#BULK} files
+	 * @param format - layout of the lines of the file
+	 * @return ImportResult with the offsets and throughput of the import
+	 * @throws IOException if the file cannot be read or a chunk failed, the checkpoint is kept
+	 */
+	public ImportResult importFile(Path file, String indexName, String type, Format format) throws IOException {
+		String endpoint = SLASH + UrlComponentEnum.encode(indexName) + SLASH
+				+ (StringUtils.isEmpty(type) ? "" : UrlComponentEnum.encode(type) + SLASH) + UrlComponentEnum.BULK.getValue();
+		Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_EXTENSION);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long lastModified = Files.getLastModifiedTime(file).toMillis();
+			long startOffset = readCheckpoint(checkpointFile, indexName, size, lastModified);
+			if (startOffset > 0)
+				logger.info("Resuming import of " + file + " at byte " + startOffset + " of " + size);
+
+			ImportRun run = new ImportRun(endpoint, checkpointFile, indexName, size, lastModified, startOffset);
+			long start = System.nanoTime();
+			try {
+				sendChunks(channel, run, format);
+			} finally {
+				// Wait for every chunk in flight, so the checkpoint covers all that was imported
+				run.permits.acquireUninterruptibly(concurrentRequests);
+			}
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			ImportResult result = new ImportResult(file.toString(), indexName, size, startOffset, run.committed,
+					run.chunks, run.documents.get(), run.succeeded.get(), run.failed.get(), run.retried.get(), elapsedMillis);
+			Throwable failure = run.failure.get();
+			if (!Objects.isNull(failure))
+				throw new IOException("Import of " + file + " stopped at byte " + run.committed + ": " + failure.getMessage(), failure);
+
+			Files.deleteIfExists(checkpointFile);
+			logger.info(String.format("Imported %d documents of %s into %s in %d ms (%.0f docs/s, %.1f MB/s)",
+					result.getDocuments(), file, indexName, elapsedMillis,
+					result.getDocsPerSecond(), result.getMegabytesPerSecond()));
+			return result;
+		}
+	}
+
+	/**
+	 * Stops retrying. Retries already scheduled are still sent, chunks rejected from now on fail.
+	 */
+	@PreDestroy
+	public void close() {
+		scheduler.shutdown();
+	}
+
+	private void sendChunks(FileChannel channel, ImportRun run, Format format) throws IOException {
+		long size = run.size;
+		long position = run.startOffset;
+		ByteBuffer window = null;
+		long windowStart = 0;
+
+		while (position < size) {
+			if (Objects.isNull(window) || position >= windowStart + window.limit()) {
+				windowStart = position;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_BYTES, size - position));
+			}
+
+			boolean windowAtEof = windowStart + window.limit() == size;
+			Chunk chunk = nextChunk(window, (int) (position - windowStart), windowAtEof, format);
+			if (Objects.isNull(chunk)) {
+				if (windowStart == position)
+					throw new IOException("Line at byte " + position + " is longer than " + MAX_WINDOW_BYTES + " bytes");
+				// The chunk crosses the end of the window, map the next one from its first line
+				window = null;
+				continue;
+			}
+			chunk.start = position;
+			chunk.end = position + chunk.length;
+			position = chunk.end;
+			if (chunk.actions == 0) {
+				run.complete(chunk);
+				continue;
+			}
+
+			if (!Objects.isNull(run.failure.get()))
+				return;
+			try {
+				run.permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Import interrupted at byte " + chunk.start);
+			}
+			run.chunks++;
+			run.documents.addAndGet(chunk.actions);
+			send(run, chunk, 0);
+		}
+	}
+
+	/**
+	 * Cuts the next chunk of whole lines from a mapped window.
+	 *
+	 * @return Chunk, null when the window ends before a first line could be read
+	 */
+	private Chunk nextChunk(ByteBuffer window, int offset, boolean windowAtEof, Format format) {
+		int limit = window.limit();
+		List<ByteBuffer> parts = new ArrayList<>();
+		long bodyBytes = 0;
+		int actions = 0;
+		int[] ranges = new int[64];
+		int cursor = offset;
+
+		while (cursor < limit && bodyBytes < bulkSizeBytes) {
+			int end = lineEnd(window, cursor, limit, windowAtEof);
+			// A delete action is the only one without a source line
+			if (end > 0 && format == Format.BULK && !isDeleteAction(window, cursor, end))
+				end = end < limit ? lineEnd(window, end, limit, windowAtEof) : (windowAtEof ? end : -1);
+			if (end < 0)
+				break;
+
+			if (format == Format.SOURCE) {
+				if (!isBlank(window, cursor, end)) {
+					addAction(parts, window, cursor, end, format);
+					bodyBytes += INDEX_ACTION.length + end - cursor;
+					ranges = addRange(ranges, actions++, cursor, end);
+				}
+			} else {
+				bodyBytes += end - cursor;
+				ranges = addRange(ranges, actions++, cursor, end);
+			}
+			cursor = end;
+		}
+		if (cursor == offset)
+			return null;
+
+		if (format == Format.BULK) {
+			parts.add(slice(window, offset, cursor));
+			// Elasticsearch requires the last line of a bulk body to end with a newline
+			if (window.get(cursor - 1) != NEWLINE)
+				parts.add(ByteBuffer.wrap(new byte[] { NEWLINE }));
+		}
+		return new Chunk(parts, cursor - offset, actions, window, ranges, format);
+	}
+
+	/**
+	 * Builds a chunk of the given actions of chunk. It covers the same bytes of the file, so
+	 * once done it completes the same part of the checkpoint.
+	 *
+	 * @param chunk - chunk that was sent
+	 * @param actions - positions of the actions to resend in the chunk
+	 * @return Chunk with only those actions
+	 */
+	private static Chunk resend(Chunk chunk, List<Integer> actions) {
+		List<ByteBuffer> parts = new ArrayList<>();
+		int[] ranges = new int[2 * actions.size()];
+		for (int i = 0; i < actions.size(); i++) {
+			int from = chunk.ranges[2 * actions.get(i)];
+			int to = chunk.ranges[2 * actions.get(i) + 1];
+			addAction(parts, chunk.window, from, to, chunk.format);
+			ranges = addRange(ranges, i, from, to);
+		}
+		Chunk resent = new Chunk(parts, chunk.length, actions.size(), chunk.window, ranges, chunk.format);
+		resent.start = chunk.start;
+		resent.end = chunk.end;
+		return resent;
+	}
+
+	/* Adds the lines of one action, with an index action line in front of a SOURCE document */
+	private static void addAction(List<ByteBuffer> parts, ByteBuffer window, int from, int to, Format format) {
+		if (format == Format.SOURCE)
+			parts.add(ByteBuffer.wrap(INDEX_ACTION));
+		parts.add(slice(window, from, to));
+		if (window.get(to - 1) != NEWLINE)
+			parts.add(ByteBuffer.wrap(new byte[] { NEWLINE }));
+	}
+
+	/* Stores the line range of an action at ranges[2 * action], growing ranges when it is full */
+	private static int[] addRange(int[] ranges, int action, int from, int to) {
+		int[] stored = 2 * action + 1 < ranges.length ? ranges : Arrays.copyOf(ranges, 2 * ranges.length);
+		stored[2 * action] = from;
+		stored[2 * action + 1] = to;
+		return stored;
+	}
+
+	/**
+	 * @return index after the newline ending the line starting at from, the limit for the last
+	 * line of the file, -1 if the line continues past the window
+	 */
+	private static int lineEnd(ByteBuffer window, int from, int limit, boolean windowAtEof) {
+		for (int i = from; i < limit; i++) {
+			if (window.get(i) == NEWLINE)
+				return i + 1;
+		}
+		return windowAtEof ? limit : -1;
+	}
+
+	/* Only the first bytes of an action line are looked at (ex. {"delete":{"_id":"1"}}) */
+	private static boolean isDeleteAction(ByteBuffer window, int from, int end) {
+		int i = skipWhitespace(window, from, end);
+		if (i == end || window.get(i) != '{')
+			return false;
+		i = skipWhitespace(window, i + 1, end);
+		if (end - i < DELETE_OPERATION.length)
+			return false;
+		for (int j = 0; j < DELETE_OPERATION.length; j++) {
+			if (window.get(i + j) != DELETE_OPERATION[j])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isBlank(ByteBuffer window, int from, int end) {
+		return skipWhitespace(window, from, end) == end;
+	}
+
+	private static int skipWhitespace(ByteBuffer window, int from, int end) {
+		int i = from;
+		while (i < end && Character.isWhitespace(window.get(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static ByteBuffer slice(ByteBuffer window, int from, int to) {
+		ByteBuffer slice = window.duplicate();
+		slice.limit(to);
+		slice.position(from);
+		return slice.slice();
+	}
+
+	private void send(ImportRun run, Chunk chunk, int attempt) {
+		restClient.performRequestAsync(
+				POST,
+				run.endpoint,
+				BULK_PARAMS,
+				new MappedChunkEntity(chunk.parts, NDJSON),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						boolean resent = false;
+						try {
+							BulkResponse bulkResponse = bulkResponseReader.readValue(compression.getContent(response));
+							List<Integer> rejected = new ArrayList<>();
+							long failed = 0;
+							List<Map<String, BulkItemResponse>> items = bulkResponse.getItems();
+							if (!Objects.isNull(items)) {
+								for (int i = 0; i < items.size(); i++) {
+									// Each item holds a single entry keyed by the operation name
+									BulkItemResponse item = items.get(i).values().iterator().next();
+									if (!item.isFailed())
+										continue;
+									if (item.getStatus() == TOO_MANY_REQUESTS && attempt < maxRetries && Objects.isNull(run.failure.get()))
+										rejected.add(i);
+									else
+										failed++;
+								}
+							}
+							run.succeeded.addAndGet(chunk.actions - failed - rejected.size());
+							// Only the rejected actions are sent again, the others are done
+							if (!rejected.isEmpty() && scheduleRetry(run, resend(chunk, rejected), attempt)) {
+								resent = true;
+							} else {
+								failed += rejected.size();
+								run.complete(chunk);
+							}
+							run.failed.addAndGet(failed);
+						} catch (Exception e) {
+							run.fail(chunk, e);
+						} finally {
+							if (!resent)
+								run.permits.release();
+						}
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						if (isRejected(exception) && attempt < maxRetries && Objects.isNull(run.failure.get())
+								&& scheduleRetry(run, chunk, attempt))
+							return;
+						run.fail(chunk, exception);
+						run.permits.release();
+					}
+				},
+				compression.getRequestHeaders());
+	}
+
+	/**
+	 * Sends chunk again after a backoff, it keeps its permit until it is done.
+	 *
+	 * @return false if the importer was closed and nothing was scheduled
+	 */
+	private boolean scheduleRetry(ImportRun run, Chunk chunk, int attempt) {
+		try {
+			scheduler.schedule(() -> send(run, chunk, attempt + 1), initialBackoffMillis << attempt, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+		run.retried.addAndGet(chunk.actions);
+		return true;
+	}
+
+	private boolean isRejected(Exception exception) {
+		return exception instanceof ResponseException
+				&& ((ResponseException) exception).getResponse().getStatusLine().getStatusCode() == TOO_MANY_REQUESTS;
+	}
+
+	/**
+	 * @return offset to resume from, 0 when there is no checkpoint or it belongs to another
+	 * import or version of the file
+	 */
+	private long readCheckpoint(Path checkpointFile, String indexName, long size, long lastModified) {
+		if (!Files.exists(checkpointFile))
+			return 0;
+		try {
+			JsonNode checkpoint = mapper.readTree(checkpointFile.toFile());
+			if (indexName.equals(checkpoint.path("index").asText())
+					&& checkpoint.path("size").asLong() == size
+					&& checkpoint.path("lastModified").asLong() == lastModified)
+				return Math.min(size, Math.max(0, checkpoint.path("offset").asLong()));
+			logger.info("Ignoring checkpoint " + checkpointFile + ", it belongs to another import or version of the file");
+		} catch (IOException e) {
+			logger.error("ERROR: Could not read checkpoint " + checkpointFile + ": " + e.getMessage());
+		}
+		return 0;
+	}
+
+	/* Replaces the checkpoint atomically, a crash leaves either the old or the new one */
+	private void writeCheckpoint(ImportRun run, long offset) {
+		ObjectNode checkpoint = mapper.createObjectNode()
+				.put("index", run.indexName)
+				.put("size", run.size)
+				.put("lastModified", run.lastModified)
+				.put("offset", offset);
+		Path temporary = run.checkpointFile.resolveSibling(run.checkpointFile.getFileName() + ".tmp");
+		try {
+			Files.write(temporary, mapper.writeValueAsBytes(checkpoint));
+			Files.move(temporary, run.checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.error("ERROR: Could not write checkpoint " + run.checkpointFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Lines of the file sent in one _bulk request
+	 */
+	private static class Chunk {
+		private final List<ByteBuffer> parts;
+		private final int length;
+		private final int actions;
+		/* Window the lines were cut from, the lines of action i are ranges[2 * i] to ranges[2 * i + 1] */
+		private final ByteBuffer window;
+		private final int[] ranges;
+		private final Format format;
+		private long start;
+		private long end;
+
+		private Chunk(List<ByteBuffer> parts, int length, int actions, ByteBuffer window, int[] ranges, Format format) {
+			this.parts = parts;
+			this.length = length;
+			this.actions = actions;
+			this.window = window;
+			this.ranges = ranges;
+			this.format = format;
+		}
+	}
+
+	/**
+	 * State of one import of a file
+	 */
+	private class ImportRun {
+		private final String endpoint;
+		private final Path checkpointFile;
+		private final String indexName;
+		private final long size;
+		private final long lastModified;
+		private final long startOffset;
+		private final Semaphore permits = new Semaphore(concurrentRequests);
+		private final AtomicLong documents = new AtomicLong();
+		private final AtomicLong succeeded = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong retried = new AtomicLong();
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private int chunks;
+
+		/* Chunks completed out of order, start offset to end offset, guarded by this */
+		private final TreeMap<Long, Long> completed = new TreeMap<>();
+		private volatile long committed;
+
+		private ImportRun(String endpoint, Path checkpointFile, String indexName, long size, long lastModified, long startOffset) {
+			this.endpoint = endpoint;
+			this.checkpointFile = checkpointFile;
+			this.indexName = indexName;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.startOffset = startOffset;
+			this.committed = startOffset;
+		}
+
+		/* Moves the checkpoint past every chunk that completed without a gap before it */
+		private synchronized void complete(Chunk chunk) {
+			completed.put(chunk.start, chunk.end);
+			long offset = committed;
+			Long end;
+			while (!Objects.isNull(end = completed.remove(offset))) {
+				offset = end;
+			}
+			if (offset != committed) {
+				committed = offset;
+				writeCheckpoint(this, offset);
+			}
+		}
+
+		private void fail(Chunk chunk, Throwable exception) {
+			logger.error("ERROR: Could not import bytes " + chunk.start + " to " + chunk.end + " into " + indexName + ": "
+					+ exception.getMessage());
+			failed.addAndGet(chunk.actions);
+			failure.compareAndSet(null, exception);
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package com.es.rest.wrapper.cache;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+import com.es.rest.wrapper.annotation.DocumentCache;
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * <p>Owns the document caches of every {@link ElasticDocument} class annotated with
+ * {@link DocumentCache}. Classes without the annotation have no cache and every lookup
+ * goes to Elasticsearch.</p>
+ *
+ * <p>Each cache maps a document ID to the raw _source bytes returned by Elasticsearch, weighed
+ * by their length. Storing bytes rather than objects keeps the weight exact and hands every
+ * caller its own freshly deserialized instance, so cached documents can never be mutated by
+ * a caller. Eviction is Caffeine's size based W-TinyLFU policy.</p>
+ *
+ * <p>Every write and invalidation of a class bumps its generation. A read that completes
+ * asynchronously captures the generation before its request and stores the document with
+ * {@link #putIfUnchanged(Class, String, byte[], long)}, so a response that was already stale
+ * when it arrived is never put back into the cache.</p>
+ *
+ * <p>Lookups that miss share one load per ID through a map of in-flight futures, the load runs
+ * outside of any cache lock so writes and lookups of other IDs never wait for it. Documents
+ * are cached by ID alone: a cached class must not reuse an ID across routing values, a
+ * lookup with another routing value is answered with the cached document.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class DocumentCacheManager {
+
+	/* Rough per entry overhead of the key and the cache node, added to the weight */
+	private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+	private final ConcurrentMap<Class<?>, Optional<Cache<String, byte[]>>> caches = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+	/* Loads of documents missing from the caches, removed once stored or failed */
+	private final ConcurrentMap<Class<?>, ConcurrentMap<String, CompletableFuture<byte[]>>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the document cache of the passed in Class, creating it on first use.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return Cache of _source bytes by ID, null if clazz is not annotated with {@link DocumentCache}
+	 */
+	public Cache<String, byte[]> getCache(Class<?> clazz) {
+		return caches.computeIfAbsent(clazz, this::createCache).orElse(null);
+	}
+
+	/**
+	 * Returns the _source bytes of a document from the cache of the passed in Class, or loads 
+	 * them once for every concurrent lookup of the same ID. The result is stored with 
+	 * {@link #putIfUnchanged(Class, String, byte[], long)}, a write while the load is in flight 
+	 * keeps it out of the cache and later lookups do not join it.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param loader - fetches the _source bytes, completing with null if the document does not exist
+	 * @return CompletableFuture completed with the _source bytes, or null if the document does not exist
+	 */
+	public CompletableFuture<byte[]> get(Class<?> clazz, String id, Function<String, CompletableFuture<byte[]>> loader) {
+		Cache<String, byte[]> cache = getCache(clazz);
+		if (Objects.isNull(cache))
+			return loader.apply(id);
+		byte[] cached = cache.getIfPresent(id);
+		if (!Objects.isNull(cached))
+			return CompletableFuture.completedFuture(cached);
+
+		ConcurrentMap<String, CompletableFuture<byte[]>> loads = loads(clazz);
+		CompletableFuture<byte[]> load = new CompletableFuture<>();
+		CompletableFuture<byte[]> existing = loads.putIfAbsent(id, load);
+		if (!Objects.isNull(existing))
+			return existing;
+
+		long generation = getGeneration(clazz);
+		try {
+			loader.apply(id).whenComplete((source, error) -> {
+				// Stored before the load is removed, a lookup in between finds it in the cache
+				if (Objects.isNull(error) && !Objects.isNull(source))
+					putIfUnchanged(clazz, id, source, generation);
+				loads.remove(id, load);
+				if (Objects.isNull(error))
+					load.complete(source);
+				else
+					load.completeExceptionally(error);
+			});
+		} catch (Throwable e) {
+			loads.remove(id, load);
+			load.completeExceptionally(e);
+		}
+		return load;
+	}
+
+	/**
+	 * Stores the _source bytes of a document that was just written.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param source - serialized document
+	 */
+	public void put(Class<?> clazz, String id, byte[] source) {
+		Cache<String, byte[]> cache = getCache(clazz);
+		if (!Objects.isNull(cache) && !Objects.isNull(id)) {
+			nextGeneration(clazz);
+			loads(clazz).remove(id);
+			cache.put(id, source);
+		}
+	}
+
+	/**
+	 * Returns the current generation of a class, to be passed to 
+	 * {@link #putIfUnchanged(Class, String, byte[], long)} once a read completes.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return generation, changed by every write and invalidation of clazz
+	 */
+	public long getGeneration(Class<?> clazz) {
+		return generation(clazz).get();
+	}
+
+	/**
+	 * Stores the _source bytes of a document that was read, unless a document of the class was 
+	 * written or invalidated since generation was taken.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param source - serialized document
+	 * @param generation - value of {@link #getGeneration(Class)} before the read was sent
+	 */
+	public void putIfUnchanged(Class<?> clazz, String id, byte[] source, long generation) {
+		Cache<String, byte[]> cache = getCache(clazz);
+		if (Objects.isNull(cache) || Objects.isNull(id))
+			return;
+		// Checked under the lock of the entry, an invalidation racing with the check removes it right after
+		cache.asMap().compute(id, (key, cached) -> getGeneration(clazz) == generation ? source : cached);
+	}
+
+	/**
+	 * Removes a document, the next read goes to Elasticsearch.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 */
+	public void invalidate(Class<?> clazz, String id) {
+		Cache<String, byte[]> cache = getCache(clazz);
+		if (!Objects.isNull(cache) && !Objects.isNull(id)) {
+			nextGeneration(clazz);
+			loads(clazz).remove(id);
+			cache.invalidate(id);
+		}
+	}
+
+	/**
+	 * Removes every cached document of the passed in Class.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 */
+	public void invalidateAll(Class<?> clazz) {
+		Cache<String, byte[]> cache = getCache(clazz);
+		if (!Objects.isNull(cache)) {
+			nextGeneration(clazz);
+			loads(clazz).clear();
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * @return statistics of every document cache created so far, keyed by class name
+	 */
+	public Map<String, DocumentCacheStats> getStats() {
+		Map<String, DocumentCacheStats> stats = new TreeMap<>();
+		caches.forEach((clazz, cache) -> cache.ifPresent(documentCache -> {
+			ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(clazz, ElasticDocument.class);
+			String indexName = Objects.isNull(elasticDocument) ? null : elasticDocument.indexName();
+			stats.put(clazz.getName(), new DocumentCacheStats(indexName, documentCache));
+		}));
+		return stats;
+	}
+
+	private AtomicLong generation(Class<?> clazz) {
+		return generations.computeIfAbsent(clazz, key -> new AtomicLong());
+	}
+
+	private ConcurrentMap<String, CompletableFuture<byte[]>> loads(Class<?> clazz) {
+		return inFlight.computeIfAbsent(clazz, key -> new ConcurrentHashMap<>());
+	}
+
+	private void nextGeneration(Class<?> clazz) {
+		generation(clazz).incrementAndGet();
+	}
+
+	private Optional<Cache<String, byte[]>> createCache(Class<?> clazz) {
+		DocumentCache documentCache = AnnotationUtils.findAnnotation(clazz, DocumentCache.class);
+		if (Objects.isNull(documentCache))
+			return Optional.empty();
+
+		Caffeine<String, byte[]> builder = Caffeine.newBuilder()
+				.maximumWeight(documentCache.maximumWeightBytes())
+				.weigher((String id, byte[] source) -> ENTRY_OVERHEAD_BYTES + id.length() + source.length)
+				.recordStats();
+		if (documentCache.expireAfterWriteSeconds() > 0)
+			builder.expireAfterWrite(documentCache.expireAfterWriteSeconds(), TimeUnit.SECONDS);
+		return Optional.of(builder.build());
+	}
+}
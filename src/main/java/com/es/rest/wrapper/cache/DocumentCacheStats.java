@@ -0,0 +1,72 @@
+package com.es.rest.wrapper.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Snapshot of the statistics of one document cache.
+ *
+ * @author Jack Phillips
+ */
+public class DocumentCacheStats {
+	private final String indexName;
+	private final long hitCount;
+	private final long missCount;
+	private final double hitRate;
+	private final long evictionCount;
+	private final long evictionWeight;
+	private final long estimatedSize;
+	private final long weightedSize;
+
+	DocumentCacheStats(String indexName, Cache<String, byte[]> cache) {
+		CacheStats stats = cache.stats();
+		this.indexName = indexName;
+		this.hitCount = stats.hitCount();
+		this.missCount = stats.missCount();
+		this.hitRate = stats.hitRate();
+		this.evictionCount = stats.evictionCount();
+		this.evictionWeight = stats.evictionWeight();
+		this.estimatedSize = cache.estimatedSize();
+		this.weightedSize = cache.policy().eviction()
+				.map(eviction -> eviction.weightedSize().orElse(0L))
+				.orElse(0L);
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public double getHitRate() {
+		return hitRate;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getEvictionWeight() {
+		return evictionWeight;
+	}
+
+	/**
+	 * @return approximate number of cached documents
+	 */
+	public long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	/**
+	 * @return total size in bytes of the cached documents
+	 */
+	public long getWeightedSize() {
+		return weightedSize;
+	}
+}
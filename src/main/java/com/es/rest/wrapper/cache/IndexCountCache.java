@@ -0,0 +1,272 @@
+package com.es.rest.wrapper.cache;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.CountResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * <p>Document counts of indices, at most <i>elasticsearch.count-cache.staleness-millis</i> old.</p>
+ *
+ * <p>Concurrent requests for the count of an index share one request to Elasticsearch. A count
+ * read after <i>elasticsearch.count-cache.refresh-after-millis</i> is answered from the cache
+ * while a new count is fetched in the background, so an index read steadily never waits for
+ * Elasticsearch. Counts that are not read again expire. A failed background refresh keeps
+ * the previous count until it expires.</p>
+ *
+ * <p>With <i>elasticsearch.count-cache.enabled=false</i> nothing is cached, every read fetches a
+ * new count, but identical reads that arrive while a count is in flight still share it.</p>
+ *
+ * <p>Where the counts come from is set by <i>elasticsearch.count-cache.source</i>:</p>
+ * <ul>
+ * <li>count - GET /{index}/_count, one request per index</li>
+ * <li>cat - GET /_cat/count/{index}, one request per index</li>
+ * <li>stats - GET /_stats/docs, one request for the primary document counts of every index.
+ * Names that are not a concrete index (aliases, wildcards) fall back to _count. Nested
+ * documents are counted separately by _stats.</li>
+ * </ul>
+ *
+ * <p>Writes through the service invalidate the count of the index they went to, the next read
+ * fetches it again. Counts read through an alias or wildcard are not invalidated, their
+ * staleness is only bounded by time. A count fetched before the index refreshed does not
+ * include the latest writes either. At most <i>elasticsearch.count-cache.maximum-size</i>
+ * names are cached. Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class IndexCountCache {
+	private static final Log logger = LogFactory.getLog(IndexCountCache.class);
+
+	/**
+	 * Elasticsearch API the counts are read from
+	 */
+	public enum Source {
+		COUNT, CAT, STATS
+	}
+
+	private static final String GET = "GET";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+	private static final String CAT_COUNT_ENDPOINT = "/_cat/count/";
+	private static final Map<String, String> CAT_PARAMS = Collections.singletonMap("format", "json");
+	private static final String STATS_ENDPOINT = "/_stats/docs";
+	/* Only the primary document counts are read, leave everything else out of the response */
+	private static final Map<String, String> STATS_PARAMS = Collections.singletonMap("filter_path", "indices.*.primaries.docs.count");
+
+	private final RestClient restClient;
+	private final ObjectMapper mapper;
+	private final ObjectReader countResponseReader;
+	private final GzipCompression compression;
+	private final boolean enabled;
+	private final Source source;
+	private final long refreshAfterMillis;
+	private final AsyncLoadingCache<String, Long> cache;
+
+	/* Last _stats snapshot and the one in flight, guarded by this */
+	private CompletableFuture<Map<String, Long>> snapshot;
+	private long snapshotNanos;
+
+	/* Counts being fetched while the cache is disabled, removed once answered */
+	private final ConcurrentMap<String, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+
+	@Autowired
+	public IndexCountCache(RestClient restClient, ElasticDocumentRegistry registry, GzipCompression compression,
+			@Value("${elasticsearch.count-cache.enabled:true}") boolean enabled,
+			@Value("${elasticsearch.count-cache.source:count}") String source,
+			@Value("${elasticsearch.count-cache.staleness-millis:2000}") long stalenessMillis,
+			@Value("${elasticsearch.count-cache.refresh-after-millis:1500}") long refreshAfterMillis,
+			@Value("${elasticsearch.count-cache.maximum-size:1000}") long maximumSize) {
+		this.restClient = restClient;
+		this.mapper = registry.getMapper();
+		this.countResponseReader = registry.getResponseReader(CountResponse.class);
+		this.compression = compression;
+		this.enabled = enabled;
+		this.source = Source.valueOf(source.trim().toUpperCase(Locale.ROOT));
+		long staleness = Math.max(1, stalenessMillis);
+		// A refresh must start before the entry expires to ever be served
+		this.refreshAfterMillis = Math.max(1, Math.min(refreshAfterMillis, staleness - 1));
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(Math.max(1, maximumSize))
+				.expireAfterWrite(staleness, TimeUnit.MILLISECONDS)
+				.refreshAfterWrite(this.refreshAfterMillis, TimeUnit.MILLISECONDS)
+				.buildAsync((indexName, executor) -> load(indexName));
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the document count of an index, from the cache unless it has none.
+	 *
+	 * @param indexName - index, alias or wildcard expression
+	 * @return number of documents
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public long get(String indexName) throws IOException {
+		try {
+			return getAsync(indexName).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Asynchronous version of {@link #get(String)}.
+	 *
+	 * @param indexName - index, alias or wildcard expression
+	 * @return CompletableFuture completed with the number of documents
+	 */
+	public CompletableFuture<Long> getAsync(String indexName) {
+		return enabled ? cache.get(indexName) : loadShared(indexName);
+	}
+
+	/**
+	 * Drops the cached count of an index, the next read fetches it again.
+	 *
+	 * @param indexName - index, alias or wildcard expression as it was read
+	 */
+	public void invalidate(String indexName) {
+		cache.synchronous().invalidate(indexName);
+		// Reads from now on must not join a count started before the write
+		inFlight.remove(indexName);
+		synchronized (this) {
+			// The next read must not be answered from a _stats snapshot taken before the write
+			if (!Objects.isNull(snapshot) && snapshot.isDone())
+				snapshot = null;
+		}
+	}
+
+	/**
+	 * Fetches a count without caching it, joining the request of an identical read in flight.
+	 */
+	private CompletableFuture<Long> loadShared(String indexName) {
+		CompletableFuture<Long> count = new CompletableFuture<>();
+		CompletableFuture<Long> existing = inFlight.putIfAbsent(indexName, count);
+		if (!Objects.isNull(existing))
+			return existing;
+
+		try {
+			load(indexName).whenComplete((value, error) -> {
+				inFlight.remove(indexName, count);
+				if (Objects.isNull(error))
+					count.complete(value);
+				else
+					count.completeExceptionally(error);
+			});
+		} catch (Throwable e) {
+			inFlight.remove(indexName, count);
+			count.completeExceptionally(e);
+		}
+		return count;
+	}
+
+	private CompletableFuture<Long> load(String indexName) {
+		switch (source) {
+		case CAT:
+			return request(CAT_COUNT_ENDPOINT + UrlComponentEnum.encode(indexName), CAT_PARAMS)
+					.thenApply(body -> body.path(0).path("count").asLong());
+		case STATS:
+			return snapshot().thenCompose(counts -> {
+				Long count = counts.get(indexName);
+				return Objects.isNull(count) ? count(indexName) : CompletableFuture.completedFuture(count);
+			});
+		default:
+			return count(indexName);
+		}
+	}
+
+	private CompletableFuture<Long> count(String indexName) {
+		CompletableFuture<Long> count = new CompletableFuture<>();
+		perform(SLASH + UrlComponentEnum.encode(indexName) + SLASH + UrlComponentEnum.COUNT.getValue(), Collections.<String, String>emptyMap(), count,
+				response -> countResponseReader.<CountResponse>readValue(compression.getContent(response)).getCount());
+		return count;
+	}
+
+	/**
+	 * Returns the current _stats snapshot, one that is younger than the refresh interval or in
+	 * flight is shared, otherwise a new one is requested.
+	 */
+	private synchronized CompletableFuture<Map<String, Long>> snapshot() {
+		boolean fresh = !Objects.isNull(snapshot)
+				&& (!snapshot.isDone() || System.nanoTime() - snapshotNanos < TimeUnit.MILLISECONDS.toNanos(refreshAfterMillis));
+		if (fresh && !snapshot.isCompletedExceptionally())
+			return snapshot;
+
+		snapshotNanos = System.nanoTime();
+		snapshot = request(STATS_ENDPOINT, STATS_PARAMS).thenApply(body -> {
+			Map<String, Long> counts = new HashMap<>();
+			Iterator<Map.Entry<String, JsonNode>> indices = body.path("indices").fields();
+			while (indices.hasNext()) {
+				Map.Entry<String, JsonNode> index = indices.next();
+				counts.put(index.getKey(), index.getValue().path("primaries").path("docs").path("count").asLong());
+			}
+			return counts;
+		});
+		return snapshot;
+	}
+
+	private CompletableFuture<JsonNode> request(String endpoint, Map<String, String> params) {
+		CompletableFuture<JsonNode> body = new CompletableFuture<>();
+		perform(endpoint, params, body, response -> mapper.readTree(compression.getContent(response)));
+		return body;
+	}
+
+	private <T> void perform(String endpoint, Map<String, String> params, CompletableFuture<T> future, ResponseParser<T> parser) {
+		restClient.performRequestAsync(GET, endpoint, params,
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						try {
+							future.complete(parser.parse(response));
+						} catch (IOException | RuntimeException e) {
+							future.completeExceptionally(e);
+						}
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						logger.error("ERROR: Could not count documents with " + endpoint + ": " + exception.getMessage());
+						future.completeExceptionally(exception);
+					}
+				},
+				compression.getRequestHeaders());
+	}
+
+	@FunctionalInterface
+	private interface ResponseParser<T> {
+		T parse(Response response) throws IOException;
+	}
+}
@@ -0,0 +1,234 @@
+package com.es.rest.wrapper.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * <p>Short lived cache of raw search response bodies keyed by index and normalized endpoint,
+ * with single-flight coalescing: while a query is in flight, identical queries wait for its
+ * result instead of sending their own request.</p>
+ *
+ * <p>Every index has a generation counter that is part of the key. A write through the service
+ * bumps the generation of its index, which makes all cached and in-flight results of that index
+ * unreachable at once. Results of writes made outside this application, and of writes that are
+ * not yet visible because the index has not refreshed, are bounded by the TTL.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class QueryCache {
+
+	private final boolean enabled;
+	private final Cache<QueryKey, byte[]> cache;
+	private final ConcurrentMap<QueryKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+	@Autowired
+	public QueryCache(@Value("${elasticsearch.query-cache.enabled:false}") boolean enabled,
+			@Value("${elasticsearch.query-cache.ttl-seconds:5}") long ttlSeconds,
+			@Value("${elasticsearch.query-cache.maximum-weight-bytes:16777216}") long maximumWeightBytes) {
+		this.enabled = enabled;
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maximumWeightBytes)
+				.weigher((QueryKey key, byte[] body) -> key.endpoint.length() + body.length)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.build();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the cached response body of endpoint, or loads it with loader on the calling
+	 * thread. Concurrent callers of the same query share one load.
+	 *
+	 * @param indexName - index the query runs against
+	 * @param endpoint - search endpoint including its parameters
+	 * @param loader - sends the request and returns the response body
+	 * @return response body
+	 * @throws IOException if the shared request fails
+	 */
+	public byte[] get(String indexName, String endpoint, Loader loader) throws IOException {
+		if (!enabled)
+			return loader.load();
+
+		QueryKey key = new QueryKey(indexName, generation(indexName), normalize(endpoint));
+		byte[] body = cache.getIfPresent(key);
+		if (!Objects.isNull(body))
+			return body;
+
+		CompletableFuture<byte[]> load = new CompletableFuture<>();
+		CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, load);
+		if (!Objects.isNull(existing))
+			return await(existing);
+
+		try {
+			body = loader.load();
+			store(key, body);
+			load.complete(body);
+			return body;
+		} catch (Throwable e) {
+			// Errors too (ex. OutOfMemoryError), callers waiting for the load would block forever
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, load);
+		}
+	}
+
+	/**
+	 * Asynchronous version of {@link #get(String, String, Loader)}, loader is only invoked when
+	 * there is neither a cached result nor an identical query in flight.
+	 *
+	 * @param indexName - index the query runs against
+	 * @param endpoint - search endpoint including its parameters
+	 * @param loader - sends the request, its future completes with the response body
+	 * @return CompletableFuture completed with the response body
+	 */
+	public CompletableFuture<byte[]> getAsync(String indexName, String endpoint, Supplier<CompletableFuture<byte[]>> loader) {
+		if (!enabled)
+			return loader.get();
+
+		QueryKey key = new QueryKey(indexName, generation(indexName), normalize(endpoint));
+		byte[] body = cache.getIfPresent(key);
+		if (!Objects.isNull(body))
+			return CompletableFuture.completedFuture(body);
+
+		CompletableFuture<byte[]> load = new CompletableFuture<>();
+		CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, load);
+		if (!Objects.isNull(existing))
+			return existing;
+
+		try {
+			loader.get().whenComplete((result, error) -> {
+				if (Objects.isNull(error)) {
+					store(key, result);
+					load.complete(result);
+				} else {
+					load.completeExceptionally(error);
+				}
+				inFlight.remove(key, load);
+			});
+		} catch (Throwable e) {
+			load.completeExceptionally(e);
+			inFlight.remove(key, load);
+		}
+		return load;
+	}
+
+	/**
+	 * Drops every cached and in-flight result of an index, called after each write to it.
+	 *
+	 * @param indexName - index that was written to
+	 */
+	public void invalidate(String indexName) {
+		if (enabled)
+			generations.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+	}
+
+	/**
+	 * Normalizes an endpoint so that equivalent queries share a key: surrounding whitespace is
+	 * removed and the query parameters are sorted.
+	 *
+	 * @param endpoint - search endpoint (ex. /foo/bar/_search?size=10&q=barVal:test)
+	 * @return normalized endpoint (ex. /foo/bar/_search?q=barVal:test&size=10)
+	 */
+	static String normalize(String endpoint) {
+		String trimmed = endpoint.trim();
+		int queryStart = trimmed.indexOf('?');
+		if (queryStart < 0)
+			return trimmed;
+
+		String[] params = StringUtils.delimitedListToStringArray(trimmed.substring(queryStart + 1), "&");
+		Arrays.sort(params);
+		StringBuilder normalized = new StringBuilder(trimmed.length()).append(trimmed, 0, queryStart);
+		char separator = '?';
+		for (String param : params) {
+			if (param.isEmpty())
+				continue;
+			normalized.append(separator).append(param);
+			separator = '&';
+		}
+		return normalized.toString();
+	}
+
+	private void store(QueryKey key, byte[] body) {
+		// Skip results that a write made stale while they were in flight
+		if (key.generation == generation(key.indexName))
+			cache.put(key, body);
+	}
+
+	private long generation(String indexName) {
+		AtomicLong generation = generations.get(indexName);
+		return Objects.isNull(generation) ? 0L : generation.get();
+	}
+
+	private byte[] await(CompletableFuture<byte[]> load) throws IOException {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends a search request and returns its response body.
+	 */
+	@FunctionalInterface
+	public interface Loader {
+		byte[] load() throws IOException;
+	}
+
+	private static final class QueryKey {
+		private final String indexName;
+		private final long generation;
+		private final String endpoint;
+
+		private QueryKey(String indexName, long generation, String endpoint) {
+			this.indexName = indexName;
+			this.generation = generation;
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof QueryKey))
+				return false;
+			QueryKey key = (QueryKey) other;
+			return generation == key.generation
+					&& indexName.equals(key.indexName)
+					&& endpoint.equals(key.endpoint);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(indexName, generation, endpoint);
+		}
+	}
+}
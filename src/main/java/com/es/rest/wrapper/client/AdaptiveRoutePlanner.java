@@ -0,0 +1,270 @@
+package com.es.rest.wrapper.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.protocol.HttpContext;
+
+import com.es.rest.wrapper.client.InstrumentedConnectionManager.LeaseListener;
+
+/**
+ * <p>Latency aware node selection for the RestClient.</p>
+ *
+ * <p>The 5.x RestClient picks hosts round-robin and offers no hook to choose one, so the
+ * choice is made one level down: as route planner of the Apache async client this class receives
+ * the host the RestClient picked and may route the request to another node. The RestClient host
+ * list (seeded hosts, updated by the Sniffer, minus blacklisted hosts) stays authoritative:
+ * only nodes the RestClient offered recently are candidates.</p>
+ *
+ * <p>For every node an exponentially weighted moving average of the time to the response head
+ * and the number of requests in flight are kept. Each request goes to the healthy node with
+ * the lowest <i>ewma * (inFlight + 1)</i>. Nodes that fail to connect, answer 502/503/504 or
+ * do not answer within the socket timeout are skipped for an exponentially growing period.
+ * Nodes not chosen for a while are probed once, so a node that was slow gets a chance to
+ * recover.</p>
+ *
+ * <p>A request leaves the in-flight count of its node as soon as its response head arrives,
+ * its connection cannot be leased, or its connection is released without a response. The
+ * last two only count as a failure of the node when the node could not be connected to or
+ * the request ran into the timeout. For this the planner must also be the
+ * {@link LeaseListener} of the {@link InstrumentedConnectionManager}. Requests that slip
+ * through, ex. when the lease happens on another thread, are dropped after the timeout.</p>
+ *
+ * <p>The RestClient does not know a request was routed elsewhere. Its blacklist and the
+ * SniffOnFailureListener are told about the host the RestClient picked, not the node that
+ * failed, so a failing node can get a healthy one blacklisted in its place for the blacklist
+ * timeout (1 minute at first) and trigger a sniff round. The planner keeps skipping the node
+ * that actually failed, and a blacklisted healthy node is offered again once its timeout is
+ * over.</p>
+ *
+ * @author Jack Phillips
+ */
+public class AdaptiveRoutePlanner extends DefaultRoutePlanner implements HttpResponseInterceptor, LeaseListener, Closeable {
+	private static final Log logger = LogFactory.getLog(AdaptiveRoutePlanner.class);
+
+	private static final String IN_FLIGHT_ATTRIBUTE = AdaptiveRoutePlanner.class.getName() + ".inFlight";
+
+	/* Weight of the newest sample in the latency average */
+	private static final double EWMA_ALPHA = 0.3;
+	private static final long CANDIDATE_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+	private static final long PROBE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+	private static final long MIN_SKIP_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final long MAX_SKIP_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	/* Request routed on this thread whose connection has not been requested yet */
+	private static final ThreadLocal<InFlightRequest> ROUTED = new ThreadLocal<>();
+
+	private final ConcurrentMap<HttpHost, NodeStats> nodes = new ConcurrentHashMap<>();
+	private final long requestTimeoutNanos;
+	private final ScheduledExecutorService sweeper;
+
+	/**
+	 * @param requestTimeoutMillis - time after which a request without response counts as failed,
+	 * usually the socket timeout
+	 */
+	public AdaptiveRoutePlanner(long requestTimeoutMillis) {
+		super(DefaultSchemePortResolver.INSTANCE);
+		this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-node-selector");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(this::expireRequests, 1, 1, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context) throws HttpException {
+		long now = System.nanoTime();
+		NodeStats offered = nodes.computeIfAbsent(target, NodeStats::new);
+		offered.lastOffered = now;
+
+		NodeStats chosen = select(offered, now);
+		InFlightRequest inFlight = chosen.start(now);
+		context.setAttribute(IN_FLIGHT_ATTRIBUTE, inFlight);
+		// The async client leases the connection right after planning the route, on this thread
+		ROUTED.set(inFlight);
+		return super.determineRoute(chosen.host, request, context);
+	}
+
+	@Override
+	public void process(HttpResponse response, HttpContext context) {
+		Object attribute = context.getAttribute(IN_FLIGHT_ATTRIBUTE);
+		if (!(attribute instanceof InFlightRequest))
+			return;
+		context.removeAttribute(IN_FLIGHT_ATTRIBUTE);
+
+		InFlightRequest inFlight = (InFlightRequest) attribute;
+		int status = response.getStatusLine().getStatusCode();
+		boolean unavailable = status == 502 || status == 503 || status == 504;
+		inFlight.node.complete(inFlight, System.nanoTime(), !unavailable);
+	}
+
+	@Override
+	public Object requested(HttpRoute route) {
+		InFlightRequest inFlight = ROUTED.get();
+		ROUTED.remove();
+		return inFlight;
+	}
+
+	@Override
+	public void failed(HttpRoute route, Object tag, Exception exception) {
+		long now = System.nanoTime();
+		// Lease timeouts mean the pool is exhausted, only I/O errors are the node's fault
+		boolean nodeFailure = exception instanceof IOException;
+		if (tag instanceof InFlightRequest) {
+			InFlightRequest inFlight = (InFlightRequest) tag;
+			inFlight.node.abandon(inFlight, now, nodeFailure);
+		} else if (nodeFailure) {
+			NodeStats node = nodes.get(route.getTargetHost());
+			if (!Objects.isNull(node))
+				node.fail(now);
+		}
+	}
+
+	@Override
+	public void leased(NHttpClientConnection connection, Object tag) {
+		if (tag instanceof InFlightRequest) {
+			connection.getContext().setAttribute(IN_FLIGHT_ATTRIBUTE, tag);
+		} else {
+			connection.getContext().removeAttribute(IN_FLIGHT_ATTRIBUTE);
+		}
+	}
+
+	@Override
+	public void releasing(NHttpClientConnection connection) {
+		Object attribute = connection.getContext().removeAttribute(IN_FLIGHT_ATTRIBUTE);
+		if (!(attribute instanceof InFlightRequest))
+			return;
+
+		// Still in flight means the connection is released without a response, ex. closed by the node
+		InFlightRequest inFlight = (InFlightRequest) attribute;
+		long now = System.nanoTime();
+		inFlight.node.abandon(inFlight, now, now - inFlight.startNanos >= requestTimeoutNanos);
+	}
+
+	/**
+	 * @param host - Elasticsearch node
+	 * @return number of requests routed to host that are still waiting for a response
+	 */
+	int getInFlightCount(HttpHost host) {
+		NodeStats node = nodes.get(host);
+		return Objects.isNull(node) ? 0 : node.inFlight.size();
+	}
+
+	@Override
+	public void close() {
+		sweeper.shutdownNow();
+	}
+
+	private NodeStats select(NodeStats offered, long now) {
+		NodeStats best = null;
+		double bestScore = Double.MAX_VALUE;
+		for (NodeStats node : nodes.values()) {
+			if (now - node.lastOffered > CANDIDATE_EXPIRY_NANOS || node.skipUntil - now > 0)
+				continue;
+
+			// Unmeasured nodes and nodes not chosen for a while are probed first
+			double score = node.ewmaNanos == 0 || now - node.lastSelected > PROBE_INTERVAL_NANOS
+					? 0
+					: node.ewmaNanos * (node.inFlight.size() + 1);
+			if (score < bestScore) {
+				best = node;
+				bestScore = score;
+			}
+		}
+		return Objects.isNull(best) ? offered : best;
+	}
+
+	private void expireRequests() {
+		long now = System.nanoTime();
+		for (NodeStats node : nodes.values()) {
+			if (node.inFlight.removeIf(request -> now - request.startNanos > requestTimeoutNanos)) {
+				node.fail(now);
+			}
+		}
+		// Forget nodes the RestClient no longer offers, ex. removed by the Sniffer
+		nodes.values().removeIf(node -> now - node.lastOffered > 2 * CANDIDATE_EXPIRY_NANOS);
+	}
+
+	private static final class InFlightRequest {
+		private final NodeStats node;
+		private final long startNanos;
+
+		private InFlightRequest(NodeStats node, long startNanos) {
+			this.node = node;
+			this.startNanos = startNanos;
+		}
+	}
+
+	private static final class NodeStats {
+		private final HttpHost host;
+		private final Set<InFlightRequest> inFlight = ConcurrentHashMap.newKeySet();
+
+		private volatile long lastOffered;
+		private volatile long lastSelected;
+		private volatile double ewmaNanos;
+
+		/* Guarded by this */
+		private int consecutiveFailures;
+		private volatile long skipUntil;
+
+		private NodeStats(HttpHost host) {
+			this.host = host;
+			this.lastSelected = System.nanoTime();
+			this.skipUntil = lastSelected;
+		}
+
+		private InFlightRequest start(long now) {
+			lastSelected = now;
+			InFlightRequest request = new InFlightRequest(this, now);
+			inFlight.add(request);
+			return request;
+		}
+
+		private synchronized void complete(InFlightRequest request, long now, boolean success) {
+			if (!inFlight.remove(request))
+				return;
+
+			long latency = now - request.startNanos;
+			ewmaNanos = ewmaNanos == 0 ? latency : EWMA_ALPHA * latency + (1 - EWMA_ALPHA) * ewmaNanos;
+			if (success) {
+				consecutiveFailures = 0;
+			} else {
+				fail(now);
+			}
+		}
+
+		/* Request ended without a response, failed tells whether it is the node's fault */
+		private synchronized void abandon(InFlightRequest request, long now, boolean failed) {
+			if (inFlight.remove(request) && failed)
+				fail(now);
+		}
+
+		private synchronized void fail(long now) {
+			consecutiveFailures++;
+			long skip = Math.min(MIN_SKIP_NANOS << Math.min(consecutiveFailures - 1, 16), MAX_SKIP_NANOS);
+			skipUntil = now + skip;
+			logger.error("ERROR: Elasticsearch node " + host + " failed " + consecutiveFailures
+					+ " time(s) in a row, skipping it for " + TimeUnit.NANOSECONDS.toMillis(skip) + "ms");
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.es.rest.wrapper.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the state of the RestClient connection pool: lease wait time, leased, available, 
+ * pending and maximum connections, and the fraction of the pool in use.
+ * 
+ * @author Jack Phillips
+ */
+@Component
+public class ConnectionPoolMetrics implements MeterBinder {
+
+	private final InstrumentedConnectionManager connectionManager;
+
+	@Autowired
+	public ConnectionPoolMetrics(InstrumentedConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionTimer.builder("elasticsearch.pool.lease.wait", connectionManager,
+				InstrumentedConnectionManager::getLeaseCount,
+				InstrumentedConnectionManager::getLeaseWaitNanos,
+				TimeUnit.NANOSECONDS)
+				.description("Time requests waited to lease a connection")
+				.register(registry);
+		FunctionCounter.builder("elasticsearch.pool.lease.failures", connectionManager,
+				InstrumentedConnectionManager::getLeaseFailures)
+				.description("Connection leases that failed or timed out")
+				.register(registry);
+
+		Gauge.builder("elasticsearch.pool.connections.leased", connectionManager,
+				manager -> manager.getTotalStats().getLeased())
+				.description("Connections currently executing a request")
+				.register(registry);
+		Gauge.builder("elasticsearch.pool.connections.available", connectionManager,
+				manager -> manager.getTotalStats().getAvailable())
+				.description("Idle connections kept alive in the pool")
+				.register(registry);
+		Gauge.builder("elasticsearch.pool.connections.pending", connectionManager,
+				manager -> manager.getTotalStats().getPending())
+				.description("Requests waiting for a connection")
+				.register(registry);
+		Gauge.builder("elasticsearch.pool.connections.max", connectionManager,
+				manager -> manager.getTotalStats().getMax())
+				.description("Maximum number of connections")
+				.register(registry);
+		Gauge.builder("elasticsearch.pool.utilization", connectionManager, this::utilization)
+				.description("Fraction of the maximum connections that are leased")
+				.register(registry);
+	}
+
+	private double utilization(InstrumentedConnectionManager manager) {
+		int max = manager.getTotalStats().getMax();
+		return max == 0 ? 0 : (double) manager.getTotalStats().getLeased() / max;
+	}
+}
@@ -0,0 +1,183 @@
+package com.es.rest.wrapper.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <p>Opt-in gzip compression of the bodies exchanged with Elasticsearch, enabled with
+ * <i>elasticsearch.compression.enabled</i>.</p>
+ *
+ * <p>Request bodies of at least <i>elasticsearch.compression.request-threshold-bytes</i> are sent
+ * gzip compressed with a Content-Encoding header, smaller ones are not worth the CPU time.
+ * Requests that carry {@link #getRequestHeaders()} ask Elasticsearch for a gzip compressed
+ * response, whose body {@link #getContent(Response)} decompresses while it is read, so the
+ * streaming parsers never see the compressed bytes.</p>
+ *
+ * <p>The RestClient buffers responses after its interceptors ran, so decompression cannot be
+ * done by the HTTP client. Only requests whose responses are read through this class may
+ * therefore ask for compression; the Sniffer, for one, must not.</p>
+ *
+ * <p>Two meters, tagged by direction (request or response), show whether compression pays off:
+ * <i>elasticsearch.compression.ratio</i>, the uncompressed size divided by the compressed size,
+ * and <i>elasticsearch.compression.time</i>, the time spent compressing or decompressing.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class GzipCompression {
+	private static final String GZIP = "gzip";
+	private static final String TAG_DIRECTION = "direction";
+	private static final Header[] NO_HEADERS = new Header[0];
+	private static final Header[] ACCEPT_GZIP = { new BasicHeader(HttpHeaders.ACCEPT_ENCODING, GZIP) };
+
+	private final boolean enabled;
+	private final int requestThresholdBytes;
+	private final MeterRegistry registry;
+
+	@Autowired
+	public GzipCompression(@Value("${elasticsearch.compression.enabled:false}") boolean enabled,
+			@Value("${elasticsearch.compression.request-threshold-bytes:1024}") int requestThresholdBytes,
+			MeterRegistry registry) {
+		this.enabled = enabled;
+		this.requestThresholdBytes = requestThresholdBytes;
+		this.registry = registry;
+	}
+
+	/**
+	 * @return GzipCompression that never compresses, for components created outside of Spring
+	 */
+	public static GzipCompression none() {
+		return new GzipCompression(false, Integer.MAX_VALUE, null);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return headers asking for a compressed response, empty when compression is disabled
+	 */
+	public Header[] getRequestHeaders() {
+		return enabled ? ACCEPT_GZIP : NO_HEADERS;
+	}
+
+	/**
+	 * Creates a request entity, gzip compressed when compression is enabled and body reaches
+	 * the threshold.
+	 *
+	 * @param body - serialized request body
+	 * @param contentType - ContentType of body
+	 * @return HttpEntity
+	 */
+	public HttpEntity createEntity(byte[] body, ContentType contentType) {
+		if (!enabled || body.length < requestThresholdBytes)
+			return new NByteArrayEntity(body, contentType);
+
+		long start = System.nanoTime();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		} catch (IOException e) {
+			// Writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+		byte[] compressed = out.toByteArray();
+		record("request", body.length, compressed.length, System.nanoTime() - start);
+
+		NByteArrayEntity entity = new NByteArrayEntity(compressed, contentType);
+		entity.setContentEncoding(GZIP);
+		return entity;
+	}
+
+	/**
+	 * Opens the body of a response for reading, decompressing it if Elasticsearch compressed it.
+	 *
+	 * @param response - Response object from Elasticsearch
+	 * @return InputStream over the uncompressed response body
+	 * @throws IOException
+	 */
+	public InputStream getContent(Response response) throws IOException {
+		HttpEntity entity = response.getEntity();
+		String contentEncoding = response.getHeader(HttpHeaders.CONTENT_ENCODING);
+		if (Objects.isNull(contentEncoding) || !GZIP.equalsIgnoreCase(contentEncoding.trim()))
+			return entity.getContent();
+		return new MeteredGzipInputStream(entity.getContent(), entity.getContentLength());
+	}
+
+	private void record(String direction, long uncompressedBytes, long compressedBytes, long nanos) {
+		if (compressedBytes > 0) {
+			DistributionSummary.builder("elasticsearch.compression.ratio")
+					.description("Uncompressed size divided by compressed size of gzip bodies")
+					.tags(TAG_DIRECTION, direction)
+					.register(registry)
+					.record((double) uncompressedBytes / compressedBytes);
+		}
+		Timer.builder("elasticsearch.compression.time")
+				.description("Time spent compressing and decompressing bodies")
+				.tags(TAG_DIRECTION, direction)
+				.register(registry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Decompresses a response body, adding up the time spent inflating and the number of bytes
+	 * produced, recorded once the body has been read or closed.
+	 */
+	private final class MeteredGzipInputStream extends GZIPInputStream {
+		private final long compressedBytes;
+		private long uncompressedBytes;
+		private long nanos;
+		private boolean recorded;
+
+		private MeteredGzipInputStream(InputStream in, long compressedBytes) throws IOException {
+			super(in, 8192);
+			this.compressedBytes = compressedBytes;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			long start = System.nanoTime();
+			int read = super.read(buffer, offset, length);
+			nanos += System.nanoTime() - start;
+			if (read < 0) {
+				recordOnce();
+			} else {
+				uncompressedBytes += read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			recordOnce();
+			super.close();
+		}
+
+		private void recordOnce() {
+			if (recorded)
+				return;
+			recorded = true;
+			record("response", uncompressedBytes, compressedBytes, nanos);
+		}
+	}
+}
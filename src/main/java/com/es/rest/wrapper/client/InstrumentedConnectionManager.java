@@ -0,0 +1,160 @@
+package com.es.rest.wrapper.client;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.conn.ConnectionShutdownException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+
+/**
+ * {@link PoolingNHttpClientConnectionManager} that records how long requests wait to lease a 
+ * connection from the pool. A long lease wait with idle Elasticsearch nodes means the pool is 
+ * too small, see {@link ConnectionPoolMetrics}.
+ * 
+ * <p>The wait covers the time spent in the pool queue plus, for a new connection, the time 
+ * to connect to the node.</p>
+ * 
+ * <p>A {@link LeaseListener} can follow each lease from the request for a connection to its
+ * release, see {@link AdaptiveRoutePlanner}.</p>
+ * 
+ * @author Jack Phillips
+ */
+public class InstrumentedConnectionManager extends PoolingNHttpClientConnectionManager {
+
+	private final LongAdder leaseCount = new LongAdder();
+	private final LongAdder leaseWaitNanos = new LongAdder();
+	private final LongAdder leaseFailures = new LongAdder();
+	
+	/* Notified of every lease, its failure and its release */
+	private volatile LeaseListener leaseListener;
+
+	public InstrumentedConnectionManager(ConnectingIOReactor ioReactor) {
+		super(ioReactor);
+	}
+
+	@Override
+	public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout,
+			long leaseTimeout, TimeUnit tunit, FutureCallback<NHttpClientConnection> callback) {
+		final long start = System.nanoTime();
+		final LeaseListener listener = leaseListener;
+		final Object request = Objects.isNull(listener) ? null : listener.requested(route);
+		return super.requestConnection(route, state, connectTimeout, leaseTimeout, tunit, 
+				new FutureCallback<NHttpClientConnection>() {
+					@Override
+					public void completed(NHttpClientConnection connection) {
+						leaseCount.increment();
+						leaseWaitNanos.add(System.nanoTime() - start);
+						if (!Objects.isNull(listener))
+							listener.leased(connection, request);
+						if (!Objects.isNull(callback))
+							callback.completed(connection);
+					}
+
+					@Override
+					public void failed(Exception exception) {
+						leaseFailures.increment();
+						if (!Objects.isNull(listener))
+							listener.failed(route, request, exception);
+						if (!Objects.isNull(callback))
+							callback.failed(exception);
+					}
+
+					@Override
+					public void cancelled() {
+						if (!Objects.isNull(listener))
+							listener.failed(route, request, null);
+						if (!Objects.isNull(callback))
+							callback.cancelled();
+					}
+				});
+	}
+
+	@Override
+	public void releaseConnection(NHttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit) {
+		LeaseListener listener = leaseListener;
+		if (!Objects.isNull(listener)) {
+			try {
+				listener.releasing(managedConn);
+			} catch (ConnectionShutdownException e) {
+				// Already detached from the pool, there is nothing left to follow
+			}
+		}
+		super.releaseConnection(managedConn, state, keepalive, tunit);
+	}
+
+	/**
+	 * Registers a listener that follows every lease of a connection.
+	 * 
+	 * @param leaseListener - listener, null to remove it
+	 */
+	public void setLeaseListener(LeaseListener leaseListener) {
+		this.leaseListener = leaseListener;
+	}
+
+	/**
+	 * @return number of connections leased so far
+	 */
+	public long getLeaseCount() {
+		return leaseCount.sum();
+	}
+
+	/**
+	 * @return total time in nanoseconds requests waited for their connection
+	 */
+	public long getLeaseWaitNanos() {
+		return leaseWaitNanos.sum();
+	}
+
+	/**
+	 * @return number of leases that failed, usually because the connection request timeout elapsed
+	 */
+	public long getLeaseFailures() {
+		return leaseFailures.sum();
+	}
+
+	/**
+	 * Follows connections from the request of a lease to their release.
+	 */
+	public interface LeaseListener {
+		/**
+		 * Called on the thread that asks for a connection, before the lease is attempted.
+		 * 
+		 * @param route - route a connection is leased for
+		 * @return tag handed to the other callbacks of this lease, may be null
+		 */
+		Object requested(HttpRoute route);
+
+		/**
+		 * Called when no connection could be leased.
+		 * 
+		 * @param route - route the connection was requested for
+		 * @param tag - value returned by {@link #requested(HttpRoute)}
+		 * @param exception - IOException if the node could not be connected to, another exception 
+		 * if the pool had no connection in time, null if the lease was cancelled
+		 */
+		void failed(HttpRoute route, Object tag, Exception exception);
+
+		/**
+		 * Called when a connection was leased, before the request is sent on it.
+		 * 
+		 * @param connection - leased connection
+		 * @param tag - value returned by {@link #requested(HttpRoute)}
+		 */
+		void leased(NHttpClientConnection connection, Object tag);
+
+		/**
+		 * Called before a leased connection goes back to the pool or is closed, whether its 
+		 * request completed or failed.
+		 * 
+		 * @param connection - connection being released
+		 */
+		void releasing(NHttpClientConnection connection);
+	}
+}
@@ -1,5 +1,11 @@
 package com.es.rest.wrapper.enumeration;
 
+/**
+ * Values of the refresh parameter of write requests, deciding when the written documents 
+ * become visible to searches
+ * 
+ * @author Jack Phillips
+ */
 public enum RefreshEnum {
 	TRUE("true"),
     WAIT("wait_for"),
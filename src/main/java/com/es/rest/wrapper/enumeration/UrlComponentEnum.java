@@ -1,31 +1,45 @@
 package com.es.rest.wrapper.enumeration;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
 /**
  * Enum constants to provide typical REST operations performed in Elasticsearch 
  * 
  * @author Jack Phillips
  */
 public enum UrlComponentEnum {
+	BULK("_bulk"),
 	CANCEL("_cancel"),
 	CONFLICTS("conflicts="),
 	COUNT("_count"),
 	DELETE_BY_QUERY("_delete_by_query"),
 	FILTER_PATH("filter_path="),
 	FWD_SLASH("/"),
+	MGET("_mget"),
 	PRETTY("pretty="),
 	Q("q="),
 	QUERY("query"),
 	REFRESH("refresh"),
+	REFRESH_ENDPOINT("_refresh"),
 	RETHROTTLE("_rethrottle"),
+	RETRY_ON_CONFLICT("retry_on_conflict="),
 	ROUTING("routing="),
 	RQST_PER_SEC("requests_per_second="),
+	SCROLL("scroll="),
+	SCROLL_ENDPOINT("_search/scroll"),
 	SCROLL_SIZE("scroll_size="),
 	SEARCH("_search"),
+	SETTINGS("_settings"),
 	SIZE("size="),
 	SLICES("slices="),
 	SOURCE("_source"),
 	SRC_EXCLUDE("_source_exclude="),
-	SRC_INCLUDE("_source_include=");
+	SRC_INCLUDE("_source_include="),
+	TASKS("_tasks"),
+	UPDATE("_update"),
+	UPDATE_BY_QUERY("_update_by_query"),
+	WAIT_FOR_COMPLETION("wait_for_completion=");
 	
 	private String value;
 	
@@ -36,4 +50,20 @@ public enum UrlComponentEnum {
 	public String getValue() {
 		return value;
 	}
+	
+	/**
+	 * Percent-encodes a value put in a path segment or query parameter (ex. a document ID or 
+	 * routing value), so characters such as / ? # & + and spaces reach Elasticsearch as they are.
+	 * 
+	 * @param value - raw value
+	 * @return UTF-8 percent-encoded value
+	 */
+	public static String encode(String value) {
+		try {
+			// URLEncoder encodes for forms, a space must be %20 in a path
+			return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
 }
@@ -0,0 +1,100 @@
+package com.es.rest.wrapper.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.es.rest.wrapper.bulk.ImportResult;
+import com.es.rest.wrapper.bulk.NdjsonImporter;
+import com.es.rest.wrapper.export.ExportResult;
+import com.es.rest.wrapper.export.IndexExporter;
+
+/**
+ * Example REST controller for index maintenance operations
+ *
+ * @author Jack Phillips
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+	@Autowired
+	private IndexExporter indexExporter;
+
+	@Autowired
+	private FooService fooService;
+
+	/* Files of each export go to a sub directory named after the index */
+	@Value("${elasticsearch.export.directory:export}")
+	private String exportDirectory;
+
+	/* Files that can be imported, checkpoints of stopped imports are written next to them */
+	@Value("${elasticsearch.import.directory:import}")
+	private String importDirectory;
+
+	/**
+	 * Exports an index to gzip compressed NDJSON files with a sliced scroll, waits for the
+	 * export to complete.
+	 *
+	 * @param indexName - index or alias to export
+	 * @param query - optional JSON search body (ex. {"query":{"term":{"barVal":"test"}}})
+	 * @param slices - number of slices read in parallel, elasticsearch.export.slices when missing
+	 * @return ResponseEntity with ExportResult wrapped in body
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/export/{indexName}")
+	public ResponseEntity<?> exportIndex(@PathVariable("indexName") String indexName,
+			@RequestBody(required = false) String query,
+			@RequestParam(value = "slices", defaultValue = "0") int slices) throws IOException {
+		// The index name becomes a directory name, keep it inside the export directory
+		if (!isPlainName(indexName))
+			return new ResponseEntity<String>("Invalid index name", HttpStatus.BAD_REQUEST);
+
+		Path directory = Paths.get(exportDirectory, indexName);
+		ExportResult result = slices > 0
+				? indexExporter.export(indexName, query, directory, slices)
+				: indexExporter.export(indexName, query, directory);
+
+		return new ResponseEntity<ExportResult>(result, HttpStatus.OK);
+	}
+
+	/**
+	 * Imports an uncompressed NDJSON file of the import directory into an index, waits for the
+	 * import to complete. A stopped import of the same file resumes where it was.
+	 *
+	 * @param indexName - index the documents go to
+	 * @param file - name of the file in the import directory (ex. foo.ndjson)
+	 * @param type - type of the documents, may be left out for BULK files
+	 * @param format - SOURCE for one _source per line, BULK for action and source lines
+	 * @return ResponseEntity with ImportResult wrapped in body
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/import/{indexName}")
+	public ResponseEntity<?> importFile(@PathVariable("indexName") String indexName,
+			@RequestParam("file") String file,
+			@RequestParam(value = "type", required = false) String type,
+			@RequestParam(value = "format", defaultValue = "SOURCE") NdjsonImporter.Format format) throws IOException {
+		// Only files directly inside the import directory can be read
+		if (!isPlainName(indexName) || !isPlainName(file))
+			return new ResponseEntity<String>("Invalid index or file name", HttpStatus.BAD_REQUEST);
+
+		ImportResult result = fooService.importNdjson(indexName, type, Paths.get(importDirectory, file), format);
+		return new ResponseEntity<ImportResult>(result, HttpStatus.OK);
+	}
+
+	/* A single path segment, used as a file or directory name */
+	private static boolean isPlainName(String name) {
+		return !(name.contains("..") || name.contains("/") || name.contains("\\"));
+	}
+}
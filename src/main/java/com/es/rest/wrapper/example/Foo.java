@@ -1,5 +1,6 @@
 package com.es.rest.wrapper.example;
 
+import com.es.rest.wrapper.annotation.DocumentCache;
 import com.es.rest.wrapper.annotation.ElasticDocument;
 
 /**
@@ -8,6 +9,7 @@ import com.es.rest.wrapper.annotation.ElasticDocument;
  * @author Jack Phillips
  */
 @ElasticDocument(indexName = "foo", type = "bar")
+@DocumentCache(maximumWeightBytes = 32L * 1024 * 1024, expireAfterWriteSeconds = 600)
 public class Foo {
 	
 	private String barVal;
@@ -1,24 +1,32 @@
 package com.es.rest.wrapper.example;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import org.elasticsearch.client.ResponseException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.es.rest.wrapper.bulk.BulkResult;
+import com.es.rest.wrapper.cache.DocumentCacheStats;
 import com.es.rest.wrapper.enumeration.UrlComponentEnum;
 import com.es.rest.wrapper.model.generic.DeleteResponse;
 import com.es.rest.wrapper.model.generic.IndexResponse;
 import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.es.rest.wrapper.task.ByQueryTask;
 
 /**
  * Example REST controller for Foo Elasticsearch documents
@@ -85,6 +93,19 @@ public class FooController {
 				: new ResponseEntity<Foo>(result, HttpStatus.FOUND);
 	}
 	
+	/**
+	 * Retrieves several Foo objects at once, the lookups are sent to Elasticsearch concurrently.
+	 * 
+	 * @param ids - Document IDs
+	 * @return ResponseEntity with a body containing a list of the Foo objects found
+	 */
+	@GetMapping(value = "/findMany")
+	public ResponseEntity<?> findManyFoo(@RequestParam("ids") List<String> ids) {
+		List<Foo> result = fooService.findManyFoo(ids);
+		
+		return new ResponseEntity<List<Foo>>(result, HttpStatus.OK);
+	}
+	
 	/**
 	 * Pulls path variable query params and executes Elasticsearch query
 	 * 
@@ -101,25 +122,35 @@ public class FooController {
 	/**
 	 * Get the number of Foo documents in Elasticsearch without using the indexName parameter
 	 * 
-	 * @return Long count of Foo documents
+	 * @return count of Foo documents
 	 * @throws IOException
 	 */
 	@GetMapping(value = "/count")
-	public Long getFooCount() throws IOException {
+	public long getFooCount() throws IOException {
 		return fooService.getIndexCount(Foo.class);
 	}
 	
 	/**
 	 * Get the number of Foo documents in Elasticsearch using the indexName parameter
 	 * 
-	 * @return Long count of Foo documents
+	 * @return count of Foo documents
 	 * @throws IOException
 	 */
 	@GetMapping(value = "/count/{indexName}")
-	public Long getFooCount(@PathVariable("indexName") String indexName) throws IOException {
+	public long getFooCount(@PathVariable("indexName") String indexName) throws IOException {
 		return fooService.getIndexCount(indexName);
 	}
 	
+	/**
+	 * Get the hit, miss and eviction statistics of the document caches
+	 * 
+	 * @return Map of class name to DocumentCacheStats
+	 */
+	@GetMapping(value = "/cacheStats")
+	public Map<String, DocumentCacheStats> getCacheStats() {
+		return fooService.getDocumentCacheStats();
+	}
+	
 	/**
 	 * Creates new Foo object in Elasticsearch, synonymous with postFooWithIndexResponse method
 	 * 
@@ -146,6 +177,21 @@ public class FooController {
 		return new ResponseEntity<IndexResponse<?>>(indexResponse, HttpStatus.OK);
 	}
 	
+	/**
+	 * Creates many Foo objects in Elasticsearch using _bulk requests
+	 * 
+	 * @param foos - list of Foo objects to create
+	 * @return ResponseEntity with BulkResult wrapped in body
+	 */
+	@PostMapping(value = "/createBatch", consumes = "application/json")
+	public ResponseEntity<?> postFooBatch(@RequestBody List<Foo> foos) {
+		BulkResult bulkResult = fooService.bulkCreateFoo(foos);
+		
+		return Objects.isNull(bulkResult) ?
+				new ResponseEntity<String>("Failed to create objects", HttpStatus.BAD_REQUEST)
+				: new ResponseEntity<BulkResult>(bulkResult, HttpStatus.OK);
+	}
+	
 	/**
 	 * Updates document in ElasticSearch
 	 * 
@@ -159,6 +205,33 @@ public class FooController {
 		return fooService.postSyncResponseEntity(foo, id);
 	}
 
+	/**
+	 * Changes some fields of a Foo document with an _update request, only the passed in
+	 * fields are sent to Elasticsearch
+	 * 
+	 * @param changes - fields to change (ex. {"barVal":"test"})
+	 * @param id - Document ID
+	 * @param upsert - create the document from the changes when it does not exist
+	 * @return ResponseEntity with IndexResponse wrapped in body, its result is "noop" when 
+	 * nothing changed
+	 * @throws IOException
+	 */
+	@PatchMapping(value = "/update/{id}", consumes = "application/json")
+	public ResponseEntity<?> patchFoo(@RequestBody Map<String, Object> changes, @PathVariable("id") String id,
+			@RequestParam(value = "upsert", defaultValue = "false") boolean upsert) throws IOException {
+		try {
+			IndexResponse<Foo> indexResponse = upsert 
+					? fooService.upsert(Foo.class, id, changes)
+					: fooService.update(Foo.class, id, changes);
+			
+			return new ResponseEntity<IndexResponse<?>>(indexResponse, HttpStatus.OK);
+		} catch (ResponseException e) {
+			if (e.getResponse().getStatusLine().getStatusCode() != HttpStatus.NOT_FOUND.value())
+				throw e;
+			return new ResponseEntity<String>("Failed to find object", HttpStatus.NOT_FOUND);
+		}
+	}
+
 	/**
 	 * Deletes document from Elastisearch with DeleteResponse in response body
 	 * synonymous with deleteFooByIdWithDeleteResponse method
@@ -187,5 +260,93 @@ public class FooController {
 		return new ResponseEntity<DeleteResponse<?>>(deleteResponse, HttpStatus.ACCEPTED);
 	}
 	
+	/**
+	 * Starts deleting every Foo document matched by a JSON query in the background
+	 * 
+	 * @param query - JSON query body (ex. {"query":{"term":{"barVal":"test"}}})
+	 * @param requestsPerSecond - throttle of the task, unthrottled when missing
+	 * @return ResponseEntity with the started ByQueryTask wrapped in body
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/deleteByQuery", consumes = "application/json")
+	public ResponseEntity<?> deleteFooByQuery(@RequestBody String query, 
+			@RequestParam(value = "requestsPerSecond", defaultValue = "-1") float requestsPerSecond) throws IOException {
+		ByQueryTask task = fooService.deleteByQuery(Foo.class, query, requestsPerSecond);
+		
+		return new ResponseEntity<ByQueryTask>(task, HttpStatus.ACCEPTED);
+	}
+	
+	/**
+	 * Starts updating every Foo document matched by a JSON query in the background
+	 * 
+	 * @param query - JSON body with an optional query and script 
+	 * (ex. {"script":{"inline":"ctx._source.barVal = 'done'"}})
+	 * @param requestsPerSecond - throttle of the task, unthrottled when missing
+	 * @return ResponseEntity with the started ByQueryTask wrapped in body
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/updateByQuery", consumes = "application/json")
+	public ResponseEntity<?> updateFooByQuery(@RequestBody String query, 
+			@RequestParam(value = "requestsPerSecond", defaultValue = "-1") float requestsPerSecond) throws IOException {
+		ByQueryTask task = fooService.updateByQuery(Foo.class, query, requestsPerSecond);
+		
+		return new ResponseEntity<ByQueryTask>(task, HttpStatus.ACCEPTED);
+	}
+	
+	/**
+	 * Get the running and recently completed delete and update by query tasks
+	 * 
+	 * @return Collection of ByQueryTask
+	 */
+	@GetMapping(value = "/tasks")
+	public Collection<ByQueryTask> getByQueryTasks() {
+		return fooService.getByQueryTasks();
+	}
+	
+	/**
+	 * Get the progress of a delete or update by query task
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @return ResponseEntity with ByQueryTask wrapped in body
+	 */
+	@GetMapping(value = "/tasks/{taskId}")
+	public ResponseEntity<?> getByQueryTask(@PathVariable("taskId") String taskId) {
+		ByQueryTask task = fooService.getByQueryTask(taskId);
+		
+		return Objects.isNull(task) ?
+				new ResponseEntity<String>("Failed to find task", HttpStatus.NOT_FOUND)
+				: new ResponseEntity<ByQueryTask>(task, HttpStatus.OK);
+	}
+	
+	/**
+	 * Changes the throttle of a running delete or update by query task
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @param requestsPerSecond - new throttle, -1 to remove it
+	 * @return ResponseEntity
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/tasks/{taskId}/rethrottle")
+	public ResponseEntity<?> rethrottleByQueryTask(@PathVariable("taskId") String taskId, 
+			@RequestParam("requestsPerSecond") float requestsPerSecond) throws IOException {
+		fooService.rethrottleByQuery(taskId, requestsPerSecond);
+		
+		return new ResponseEntity<Void>(HttpStatus.ACCEPTED);
+	}
+	
+	/**
+	 * Cancels a running delete or update by query task
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @return ResponseEntity
+	 * @throws IOException
+	 */
+	@PostMapping(value = "/tasks/{taskId}/cancel")
+	public ResponseEntity<?> cancelByQueryTask(@PathVariable("taskId") String taskId) throws IOException {
+		fooService.cancelByQuery(taskId);
+		
+		return new ResponseEntity<Void>(HttpStatus.ACCEPTED);
+	}
+	
 	
 }
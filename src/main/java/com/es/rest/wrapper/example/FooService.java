@@ -1,24 +1,28 @@
 package com.es.rest.wrapper.example;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.http.ParseException;
 import org.springframework.stereotype.Service;
 
+import com.es.rest.wrapper.bulk.BulkResult;
 import com.es.rest.wrapper.model.generic.DeleteResponse;
 import com.es.rest.wrapper.model.generic.IndexResponse;
 import com.es.rest.wrapper.model.generic.QueryResponse;
-import com.es.rest.wrapper.service.ElasticsearchService;
+import com.es.rest.wrapper.service.ReactiveElasticsearchService;
 
 @Service
-public class FooService extends ElasticsearchService {
+public class FooService extends ReactiveElasticsearchService {
 
-	public QueryResponse<?> performAsyncQuery(String query) {
-		return performAsyncRequest(Foo.class, query);
+	public CompletableFuture<QueryResponse<Foo>> performAsyncQuery(String query) {
+		return searchAsync(Foo.class, query);
 	}
 	
-	public QueryResponse<?> performSyncQuery(String query) {
+	public QueryResponse<Foo> performSyncQuery(String query) {
 		try {
 			return getSync(Foo.class, query);
 		} catch (IOException e) {
@@ -27,7 +31,7 @@ public class FooService extends ElasticsearchService {
 		return null;
 	}
 
-	public QueryResponse<?> getAll() throws ParseException, IOException {
+	public QueryResponse<Foo> getAll() throws ParseException, IOException {
 		return getAllSync(Foo.class);
 	}
 	
@@ -40,18 +44,27 @@ public class FooService extends ElasticsearchService {
 		return null;
 	}
 	
-	public IndexResponse<?> peformFooPost(Foo fooObj) {
+	public IndexResponse<Foo> peformFooPost(Foo fooObj) {
 		try {
-			return (IndexResponse<?>) postSync(fooObj);
+			return postSync(fooObj);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 	
-	public IndexResponse<?> peformFooUpdate(Foo fooObj, String id) {
+	public BulkResult bulkCreateFoo(List<Foo> fooObjs) {
 		try {
-			return (IndexResponse<?>) postSync(fooObj, id);
+			return bulkIndex(fooObjs);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+	
+	public IndexResponse<Foo> peformFooUpdate(Foo fooObj, String id) {
+		try {
+			return postSync(fooObj, id);
 
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -59,7 +72,7 @@ public class FooService extends ElasticsearchService {
 		return null;
 	}
 	
-	public DeleteResponse<?> deleteFoo(String id) {
+	public DeleteResponse<Foo> deleteFoo(String id) {
 		try {
 			return deleteSyncById(id, Foo.class);
 		} catch (IOException e) {
@@ -68,9 +81,34 @@ public class FooService extends ElasticsearchService {
 		return null;
 	}
 	
+	/**
+	 * Fans out one asynchronous GET per ID and waits for all of them together, so the
+	 * total latency is that of the slowest lookup rather than the sum of all of them.
+	 * IDs that cannot be found are left out of the result.
+	 * 
+	 * @param ids - Document IDs
+	 * @return List of Foo objects that were found
+	 */
+	public List<Foo> findManyFoo(List<String> ids) {
+		List<CompletableFuture<Foo>> futures = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			futures.add(findOneAsync(Foo.class, id).exceptionally(e -> null));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+		
+		List<Foo> result = new ArrayList<>(futures.size());
+		for (CompletableFuture<Foo> future : futures) {
+			Foo foo = future.join();
+			if (!Objects.isNull(foo)) {
+				result.add(foo);
+			}
+		}
+		return result;
+	}
+	
 	public Foo findOneFoo(String id) {
 		try {
-			return (Foo) findOne(Foo.class, id);
+			return findOne(Foo.class, id);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,110 @@
+package com.es.rest.wrapper.example;
+
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.es.rest.wrapper.model.generic.DeleteResponse;
+import com.es.rest.wrapper.model.generic.IndexResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Example non-blocking REST controller for Foo Elasticsearch documents.
+ *
+ * <p>Handlers return {@link Mono} and {@link Flux}, the request thread goes back to the pool
+ * as soon as the handler returns and the response is written once Elasticsearch answered.
+ * Document lists stream out one JSON document per line when requested as application/stream+json,
+ * and are collected into a JSON array otherwise.</p>
+ *
+ * @author Jack Phillips
+ */
+@RestController
+@RequestMapping("/reactive/foo")
+public class ReactiveFooController {
+
+	@Autowired
+	private FooService fooService;
+
+	/**
+	 * Streams every Foo object, read page by page through the scroll API.
+	 *
+	 * @return Flux of Foo objects
+	 */
+	@GetMapping(value = "/getAll", produces = { MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+	public Flux<Foo> getAllFoo() {
+		return fooService.scrollFlux(Foo.class, null);
+	}
+
+	/**
+	 * Streams the Foo objects matched by a URI search.
+	 *
+	 * @param searchParams (ex. _search?q=barVal:test)
+	 * @return Flux of Foo objects
+	 */
+	@GetMapping(value = "/search/{searchParams}", produces = { MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+	public Flux<Foo> getFooSearch(@PathVariable("searchParams") String searchParams) {
+		return fooService.searchFlux(Foo.class, searchParams);
+	}
+
+	/**
+	 * Streams every Foo object matched by a JSON query, read page by page through the scroll API.
+	 *
+	 * @param query - JSON search body (ex. {"query":{"match":{"barVal":"test"}}})
+	 * @param pageSize - number of documents fetched per scroll page, defaults to elasticsearch.scroll.size
+	 * @return Flux of Foo objects
+	 */
+	@PostMapping(value = "/search", consumes = "application/json",
+			produces = { MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+	public Flux<Foo> postFooSearch(@RequestBody String query, @RequestParam(value = "pageSize", required = false) Integer pageSize) {
+		return Objects.isNull(pageSize) ? fooService.scrollFlux(Foo.class, query) : fooService.scrollFlux(Foo.class, query, pageSize);
+	}
+
+	/**
+	 * Retrieves and passes back Foo object in ResponseEntity body.
+	 *
+	 * @param id - Document ID
+	 * @return Mono of ResponseEntity, 404 if the document does not exist
+	 */
+	@GetMapping(value = "/findOne/{id}")
+	public Mono<ResponseEntity<Foo>> findOneFoo(@PathVariable("id") String id) {
+		return fooService.findOneMono(Foo.class, id)
+				.map(foo -> new ResponseEntity<Foo>(foo, HttpStatus.OK))
+				.defaultIfEmpty(new ResponseEntity<Foo>(HttpStatus.NOT_FOUND));
+	}
+
+	/**
+	 * Creates or replaces a Foo object in Elasticsearch.
+	 *
+	 * @param foo
+	 * @param id - Document ID, generated by Elasticsearch when missing
+	 * @return Mono of the IndexResponse
+	 */
+	@PostMapping(value = "/create", consumes = "application/json")
+	public Mono<IndexResponse<Foo>> postFoo(@RequestBody Foo foo, @RequestParam(value = "id", required = false) String id) {
+		return fooService.indexMono(foo, id);
+	}
+
+	/**
+	 * Deletes document from Elasticsearch.
+	 *
+	 * @param id - Document ID
+	 * @return Mono of the DeleteResponse
+	 */
+	@DeleteMapping(value = "/remove/{id}")
+	public Mono<DeleteResponse<Foo>> deleteFooById(@PathVariable("id") String id) {
+		return fooService.deleteMono(Foo.class, id);
+	}
+}
@@ -0,0 +1,73 @@
+package com.es.rest.wrapper.export;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of an index export, the totals of all slices and the result of each of them.
+ * Overall throughput is measured over the wall-clock time of the export, the slices
+ * running in parallel.
+ *
+ * @author Jack Phillips
+ */
+public class ExportResult {
+	private final String indexName;
+	private final String directory;
+	private final long elapsedMillis;
+	private final List<SliceExportResult> slices;
+
+	public ExportResult(String indexName, String directory, long elapsedMillis, List<SliceExportResult> slices) {
+		this.indexName = indexName;
+		this.directory = directory;
+		this.elapsedMillis = elapsedMillis;
+		this.slices = Collections.unmodifiableList(slices);
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	/**
+	 * @return directory holding one file per slice
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public List<SliceExportResult> getSlices() {
+		return slices;
+	}
+
+	public long getDocuments() {
+		return slices.stream().mapToLong(SliceExportResult::getDocuments).sum();
+	}
+
+	/**
+	 * @return uncompressed NDJSON bytes written by all slices
+	 */
+	public long getBytes() {
+		return slices.stream().mapToLong(SliceExportResult::getBytes).sum();
+	}
+
+	/**
+	 * @return size of all compressed files
+	 */
+	public long getFileBytes() {
+		return slices.stream().mapToLong(SliceExportResult::getFileBytes).sum();
+	}
+
+	public double getDocsPerSecond() {
+		return SliceExportResult.perSecond(getDocuments(), elapsedMillis);
+	}
+
+	/**
+	 * @return uncompressed MB written per second by all slices together
+	 */
+	public double getMegabytesPerSecond() {
+		return SliceExportResult.perSecond(getBytes(), elapsedMillis) / (1024.0 * 1024.0);
+	}
+}
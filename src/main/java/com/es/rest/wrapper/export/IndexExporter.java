@@ -0,0 +1,328 @@
+package com.es.rest.wrapper.export;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * <p>Dumps an index to gzip compressed NDJSON files, one _source per line, with a sliced scroll.</p>
+ *
+ * <p>The scroll is split into <i>elasticsearch.export.slices</i> slices, 0 (the default) uses
+ * one slice per available core, each read by its own worker thread into its own file
+ * (ex. foo-2-of-8.ndjson.gz). Every _source is copied token by token from the response stream
+ * to the file, through a gzip stream and a buffered FileChannel, so memory use is bounded by
+ * one scroll page per slice however large the index is.</p>
+ *
+ * <p>Instances are thread-safe, each export uses worker threads of its own.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class IndexExporter {
+	private static final Log logger = LogFactory.getLog(IndexExporter.class);
+
+	private static final String POST = "POST";
+	private static final String DELETE = "DELETE";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+	private static final String FILE_EXTENSION = ".ndjson.gz";
+	/* Only the scroll ID and the documents are read, leave everything else out of the responses. 
+	 * hits.hits._id keeps hits without a _source, so a page of them does not look empty. */
+	private static final String FILTER_PATH = UrlComponentEnum.FILTER_PATH.getValue() + "_scroll_id,hits.hits._id,hits.hits._source";
+	private static final String SCROLL_PAGE_ENDPOINT = SLASH + UrlComponentEnum.SCROLL_ENDPOINT.getValue() + "?" + FILTER_PATH;
+	private static final String CLEAR_SCROLL_ENDPOINT = SLASH + UrlComponentEnum.SCROLL_ENDPOINT.getValue();
+
+	private final RestClient restClient;
+	private final ObjectMapper mapper;
+	private final GzipCompression compression;
+	private final int slices;
+	private final int pageSize;
+	private final String keepAlive;
+	private final int bufferBytes;
+
+	@Autowired
+	public IndexExporter(RestClient restClient, ElasticDocumentRegistry registry, GzipCompression compression,
+			@Value("${elasticsearch.export.slices:0}") int slices,
+			@Value("${elasticsearch.scroll.size:1000}") int pageSize,
+			@Value("${elasticsearch.scroll.keep-alive:1m}") String keepAlive,
+			@Value("${elasticsearch.export.buffer-bytes:262144}") int bufferBytes) {
+		this.restClient = restClient;
+		this.mapper = registry.getMapper();
+		this.compression = compression;
+		this.slices = Math.max(0, slices);
+		this.pageSize = Math.max(1, pageSize);
+		this.keepAlive = keepAlive;
+		this.bufferBytes = Math.max(8192, bufferBytes);
+	}
+
+	/**
+	 * Exports the documents of an index matched by query with the configured number of slices.
+	 *
+	 * @param indexName - index or alias to export
+	 * @param query - JSON search body (ex. {"query":{"term":{"barVal":"test"}}}), empty for all documents
+	 * @param directory - directory the files are written to, created if missing
+	 * @return ExportResult with the files and throughput of every slice
+	 * @throws IOException if a slice fails, the files of the other slices are left incomplete
+	 */
+	public ExportResult export(String indexName, String query, Path directory) throws IOException {
+		return export(indexName, query, directory, slices);
+	}
+
+	/**
+	 * Exports the documents of an index matched by query.
+	 *
+	 * @param indexName - index or alias to export
+	 * @param query - JSON search body, empty for all documents
+	 * @param directory - directory the files are written to, created if missing
+	 * @param slices - number of slices read in parallel, 0 for one per available core
+	 * @return ExportResult with the files and throughput of every slice
+	 * @throws IOException if a slice fails, the files of the other slices are left incomplete
+	 */
+	public ExportResult export(String indexName, String query, Path directory, int slices) throws IOException {
+		int sliceCount = slices > 0 ? slices : Runtime.getRuntime().availableProcessors();
+		ObjectNode body = searchBody(query);
+		Files.createDirectories(directory);
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(sliceCount, runnable -> {
+			Thread thread = new Thread(runnable, "es-export-" + indexName + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		long start = System.nanoTime();
+		List<Future<SliceExportResult>> futures = new ArrayList<>(sliceCount);
+		try {
+			for (int slice = 0; slice < sliceCount; slice++) {
+				final int id = slice;
+				Path file = directory.resolve(indexName + "-" + (id + 1) + "-of-" + sliceCount + FILE_EXTENSION);
+				futures.add(workers.submit(() -> exportSlice(indexName, body, id, sliceCount, file)));
+			}
+
+			List<SliceExportResult> results = new ArrayList<>(sliceCount);
+			for (Future<SliceExportResult> future : futures) {
+				results.add(future.get());
+			}
+			ExportResult result = new ExportResult(indexName, directory.toString(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), results);
+			logger.info(String.format("Exported %d documents of %s in %d ms (%.0f docs/s, %.1f MB/s)",
+					result.getDocuments(), indexName, result.getElapsedMillis(), result.getDocsPerSecond(), result.getMegabytesPerSecond()));
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Export of " + indexName + " was interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException("Export of " + indexName + " failed", cause);
+		} finally {
+			// Stops the other slices after a failure, they check for it between scroll pages
+			workers.shutdownNow();
+		}
+	}
+
+	private SliceExportResult exportSlice(String indexName, ObjectNode searchBody, int slice, int sliceCount, Path file) throws IOException {
+		ObjectNode body = searchBody.deepCopy();
+		// Elasticsearch rejects a slice max of 1, a single slice is a plain scroll
+		if (sliceCount > 1)
+			body.putObject("slice").put("id", slice).put("max", sliceCount);
+		String openEndpoint = SLASH + UrlComponentEnum.encode(indexName) + SLASH + UrlComponentEnum.SEARCH.getValue()
+				+ "?" + UrlComponentEnum.SCROLL.getValue() + keepAlive
+				+ "&" + UrlComponentEnum.SIZE.getValue() + pageSize
+				+ "&" + FILTER_PATH;
+
+		long start = System.nanoTime();
+		long documents = 0;
+		long bytes;
+		String scrollId = null;
+		try (CountingOutputStream out = new CountingOutputStream(new GZIPOutputStream(
+						new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(file, StandardOpenOption.CREATE,
+								StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), bufferBytes), bufferBytes));
+				JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			// Lines are separated by newlines we write ourselves
+			generator.setRootValueSeparator(null);
+
+			Response response = post(openEndpoint, mapper.writeValueAsBytes(body));
+			while (true) {
+				CopiedPage page = copyPage(compression.getContent(response), generator);
+				if (!Objects.isNull(page.scrollId))
+					scrollId = page.scrollId;
+				documents += page.documents;
+				if (page.hits == 0 || Objects.isNull(scrollId))
+					break;
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException("Export of slice " + (slice + 1) + " of " + indexName + " was stopped");
+
+				ObjectNode scrollBody = mapper.createObjectNode()
+						.put("scroll", keepAlive)
+						.put("scroll_id", scrollId);
+				response = post(SCROLL_PAGE_ENDPOINT, mapper.writeValueAsBytes(scrollBody));
+			}
+			generator.flush();
+			bytes = out.getCount();
+		} finally {
+			clearScroll(scrollId);
+		}
+
+		SliceExportResult result = new SliceExportResult(slice + 1, file.toString(), documents, bytes, Files.size(file),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		logger.info(String.format("Exported slice %d of %d of %s: %d documents in %d ms (%.0f docs/s, %.1f MB/s)",
+				slice + 1, sliceCount, indexName, documents, result.getElapsedMillis(), result.getDocsPerSecond(), result.getMegabytesPerSecond()));
+		return result;
+	}
+
+	private Response post(String endpoint, byte[] body) throws IOException {
+		return restClient.performRequest(POST, endpoint, Collections.<String, String>emptyMap(),
+				compression.createEntity(body, ContentType.APPLICATION_JSON), compression.getRequestHeaders());
+	}
+
+	private void clearScroll(String scrollId) {
+		if (StringUtils.isEmpty(scrollId))
+			return;
+		try {
+			ObjectNode body = mapper.createObjectNode();
+			body.putArray("scroll_id").add(scrollId);
+			restClient.performRequest(DELETE, CLEAR_SCROLL_ENDPOINT, Collections.<String, String>emptyMap(),
+					compression.createEntity(mapper.writeValueAsBytes(body), ContentType.APPLICATION_JSON), compression.getRequestHeaders());
+		} catch (IOException e) {
+			// The scroll context expires by itself after the keep-alive
+			logger.error("ERROR: Could not clear export scroll: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Parses the JSON search body, sorting by _doc unless it sorts itself, the cheapest order to scroll in.
+	 */
+	private ObjectNode searchBody(String query) throws IOException {
+		JsonNode parsed = StringUtils.isEmpty(query) ? null : mapper.readTree(query);
+		if (!Objects.isNull(parsed) && !parsed.isObject())
+			throw new IllegalArgumentException("Export query must be a JSON object");
+		ObjectNode body = Objects.isNull(parsed) ? mapper.createObjectNode() : (ObjectNode) parsed;
+		if (!body.has("sort"))
+			body.putArray("sort").add("_doc");
+		return body;
+	}
+
+	/**
+	 * Copies hits.hits[*]._source of a search or scroll response to target, one per line,
+	 * without binding them. The stream is closed once read.
+	 */
+	private CopiedPage copyPage(InputStream content, JsonGenerator target) throws IOException {
+		CopiedPage page = new CopiedPage();
+		try (JsonParser parser = mapper.getFactory().createParser(content)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new JsonParseException(parser, "Expected search response to be a JSON object");
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("_scroll_id".equals(field)) {
+					page.scrollId = parser.getValueAsString();
+				} else if ("hits".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+					copyHits(parser, target, page);
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return page;
+	}
+
+	private static void copyHits(JsonParser parser, JsonGenerator target, CopiedPage page) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (!"hits".equals(field) || parser.currentToken() != JsonToken.START_ARRAY) {
+				parser.skipChildren();
+				continue;
+			}
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				page.hits++;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String hitField = parser.getCurrentName();
+					parser.nextToken();
+					if ("_source".equals(hitField) && parser.currentToken() == JsonToken.START_OBJECT) {
+						target.copyCurrentStructure(parser);
+						target.writeRaw('\n');
+						page.documents++;
+					} else {
+						parser.skipChildren();
+					}
+				}
+			}
+		}
+	}
+
+	private static final class CopiedPage {
+		private String scrollId;
+		/* Hits in the response and the _source documents copied from them */
+		private int hits;
+		private int documents;
+	}
+
+	/**
+	 * Counts the uncompressed bytes written to the gzip stream.
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+			count += length;
+		}
+
+		private long getCount() {
+			return count;
+		}
+	}
+}
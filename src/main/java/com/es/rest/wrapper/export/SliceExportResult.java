@@ -0,0 +1,74 @@
+package com.es.rest.wrapper.export;
+
+/**
+ * Outcome of exporting one slice of a sliced scroll, with its throughput.
+ *
+ * @author Jack Phillips
+ */
+public class SliceExportResult {
+	private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+	private final int slice;
+	private final String file;
+	private final long documents;
+	private final long bytes;
+	private final long fileBytes;
+	private final long elapsedMillis;
+
+	public SliceExportResult(int slice, String file, long documents, long bytes, long fileBytes, long elapsedMillis) {
+		this.slice = slice;
+		this.file = file;
+		this.documents = documents;
+		this.bytes = bytes;
+		this.fileBytes = fileBytes;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public int getSlice() {
+		return slice;
+	}
+
+	/**
+	 * @return path of the gzip compressed NDJSON file
+	 */
+	public String getFile() {
+		return file;
+	}
+
+	public long getDocuments() {
+		return documents;
+	}
+
+	/**
+	 * @return uncompressed NDJSON bytes written
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return size of the compressed file
+	 */
+	public long getFileBytes() {
+		return fileBytes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double getDocsPerSecond() {
+		return perSecond(documents, elapsedMillis);
+	}
+
+	/**
+	 * @return uncompressed MB written per second
+	 */
+	public double getMegabytesPerSecond() {
+		return perSecond(bytes, elapsedMillis) / BYTES_PER_MB;
+	}
+
+	static double perSecond(long count, long elapsedMillis) {
+		return elapsedMillis <= 0 ? count : count * 1000.0 / elapsedMillis;
+	}
+}
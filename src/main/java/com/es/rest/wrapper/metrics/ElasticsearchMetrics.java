@@ -0,0 +1,124 @@
+package com.es.rest.wrapper.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <p>Micrometer meters of the operations performed by the ElasticsearchService, all tagged by 
+ * operation and index:</p>
+ * 
+ * <ul>
+ * <li><i>elasticsearch.operation</i> - total time of an operation, also tagged by status</li>
+ * <li><i>elasticsearch.round.trip</i> - time from sending the request to receiving the whole response</li>
+ * <li><i>elasticsearch.took</i> - time Elasticsearch reports it spent on a search</li>
+ * <li><i>elasticsearch.deserialization</i> - time spent binding the response body</li>
+ * <li><i>elasticsearch.request.size</i> / <i>elasticsearch.response.size</i> - body sizes in bytes</li>
+ * </ul>
+ * 
+ * <p>Round trip minus took is the network, queueing and HTTP overhead of a search. The timers 
+ * publish percentile histograms so latency percentiles can be aggregated across instances.</p>
+ * 
+ * <p>Only indices of registered {@link ElasticDocumentRegistry} classes are tagged by name, 
+ * every other index name, ex. one passed in by a caller, is tagged <i>other</i> so that the 
+ * number of meters stays bounded.</p>
+ * 
+ * @author Jack Phillips
+ */
+@Component
+public class ElasticsearchMetrics {
+	static final String TAG_OPERATION = "operation";
+	static final String TAG_INDEX = "index";
+	static final String TAG_STATUS = "status";
+	static final String OTHER_INDEX = "other";
+
+	private final MeterRegistry registry;
+	private final ElasticDocumentRegistry documentRegistry;
+
+	@Autowired
+	public ElasticsearchMetrics(MeterRegistry registry, ElasticDocumentRegistry documentRegistry) {
+		this.registry = registry;
+		this.documentRegistry = documentRegistry;
+	}
+
+	/**
+	 * Starts timing an operation.
+	 * 
+	 * @param operation - name of the operation (ex. search)
+	 * @param indexName - index the operation runs against
+	 * @return OperationSample to record the phases of the operation into
+	 */
+	public OperationSample start(String operation, String indexName) {
+		return new OperationSample(this, operation, indexTag(indexName));
+	}
+
+	/**
+	 * @return indexName if a registered class is stored in it, otherwise {@link #OTHER_INDEX}
+	 */
+	String indexTag(String indexName) {
+		if (!Objects.isNull(indexName)) {
+			for (ElasticDocumentMetadata metadata : documentRegistry.getAll()) {
+				if (metadata.getIndexName().equals(indexName))
+					return indexName;
+			}
+		}
+		return OTHER_INDEX;
+	}
+
+	void recordOperation(String operation, String indexName, String status, long nanos) {
+		Timer.builder("elasticsearch.operation")
+				.description("Total time of Elasticsearch operations")
+				.tags(TAG_OPERATION, operation, TAG_INDEX, indexName, TAG_STATUS, status)
+				.publishPercentileHistogram()
+				.register(registry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	void recordRoundTrip(String operation, String indexName, long nanos) {
+		timer("elasticsearch.round.trip", "Time from sending a request to receiving its response", operation, indexName)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	void recordTook(String operation, String indexName, long millis) {
+		timer("elasticsearch.took", "Time Elasticsearch reported for a search", operation, indexName)
+				.record(millis, TimeUnit.MILLISECONDS);
+	}
+
+	void recordDeserialization(String operation, String indexName, long nanos) {
+		timer("elasticsearch.deserialization", "Time spent binding response bodies", operation, indexName)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	void recordRequestSize(String operation, String indexName, long bytes) {
+		size("elasticsearch.request.size", "Size of request bodies", operation, indexName).record(bytes);
+	}
+
+	void recordResponseSize(String operation, String indexName, long bytes) {
+		size("elasticsearch.response.size", "Size of response bodies", operation, indexName).record(bytes);
+	}
+
+	private Timer timer(String name, String description, String operation, String indexName) {
+		return Timer.builder(name)
+				.description(description)
+				.tags(TAG_OPERATION, operation, TAG_INDEX, indexName)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	private DistributionSummary size(String name, String description, String operation, String indexName) {
+		return DistributionSummary.builder(name)
+				.description(description)
+				.baseUnit("bytes")
+				.tags(TAG_OPERATION, operation, TAG_INDEX, indexName)
+				.register(registry);
+	}
+}
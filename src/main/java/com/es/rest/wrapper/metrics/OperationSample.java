@@ -0,0 +1,142 @@
+package com.es.rest.wrapper.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.http.HttpEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.http.ResponseEntity;
+
+import com.es.rest.wrapper.model.generic.QueryResponse;
+
+/**
+ * Timing of a single operation, created by {@link ElasticsearchMetrics#start(String, String)}.
+ * The phases are recorded as they happen, the operation timer once it {@link #stop(Object) stops} 
+ * or {@link #fail(Exception) fails}. Only the first stop or failure is recorded.
+ * 
+ * @author Jack Phillips
+ */
+public class OperationSample {
+	private static final String STATUS_OK = "200";
+	private static final String STATUS_CACHED = "cached";
+	private static final String STATUS_BATCHED = "batched";
+
+	private final ElasticsearchMetrics metrics;
+	private final String operation;
+	private final String indexName;
+	private final long startNanos;
+
+	private volatile long sentNanos;
+	private volatile long receivedNanos;
+	private volatile String status;
+	private volatile boolean stopped;
+
+	OperationSample(ElasticsearchMetrics metrics, String operation, String indexName) {
+		this.metrics = metrics;
+		this.operation = operation;
+		this.indexName = Objects.isNull(indexName) ? "" : indexName;
+		this.startNanos = System.nanoTime();
+		this.sentNanos = startNanos;
+	}
+
+	/**
+	 * Marks the request as sent and records the size of its body.
+	 * 
+	 * @param entity - request body, can be null
+	 */
+	public void requestSent(HttpEntity entity) {
+		sentNanos = System.nanoTime();
+		if (!Objects.isNull(entity) && entity.getContentLength() >= 0)
+			metrics.recordRequestSize(operation, indexName, entity.getContentLength());
+	}
+
+	/**
+	 * Records the round trip and the size of the response body.
+	 * 
+	 * @param response - response received from Elasticsearch
+	 * @return the same response
+	 */
+	public Response responseReceived(Response response) {
+		receivedNanos = System.nanoTime();
+		metrics.recordRoundTrip(operation, indexName, receivedNanos - sentNanos);
+		status = String.valueOf(response.getStatusLine().getStatusCode());
+
+		HttpEntity entity = response.getEntity();
+		if (!Objects.isNull(entity) && entity.getContentLength() >= 0)
+			metrics.recordResponseSize(operation, indexName, entity.getContentLength());
+		return response;
+	}
+
+	/**
+	 * Marks the operation as answered by a shared _mget request instead of its own request.
+	 */
+	public void batched() {
+		status = STATUS_BATCHED;
+	}
+
+	/**
+	 * Stops the operation, records the deserialization time since the response was received 
+	 * and the took value of a {@link QueryResponse} result.
+	 * 
+	 * @param result - result of the operation
+	 * @return the same result
+	 */
+	public <T> T stop(T result) {
+		if (stopped)
+			return result;
+		stopped = true;
+
+		long now = System.nanoTime();
+		if (receivedNanos != 0)
+			metrics.recordDeserialization(operation, indexName, now - receivedNanos);
+		Object body = result instanceof ResponseEntity ? ((ResponseEntity<?>) result).getBody() : result;
+		if (body instanceof QueryResponse && !Objects.isNull(((QueryResponse<?>) body).getTook()))
+			metrics.recordTook(operation, indexName, ((QueryResponse<?>) body).getTook());
+
+		// No response means the result came from a cache
+		String finalStatus = Objects.isNull(status) ? (receivedNanos == 0 ? STATUS_CACHED : STATUS_OK) : status;
+		metrics.recordOperation(operation, indexName, finalStatus, now - startNanos);
+		return result;
+	}
+
+	/**
+	 * Stops the operation as failed, tagged with the HTTP status of a ResponseException or 
+	 * the name of the exception.
+	 * 
+	 * @param exception - cause of the failure
+	 * @return the same exception, so callers can rethrow it
+	 */
+	public <E extends Throwable> E fail(E exception) {
+		if (stopped)
+			return exception;
+		stopped = true;
+
+		Throwable cause = exception instanceof CompletionException && !Objects.isNull(exception.getCause()) 
+				? exception.getCause() 
+				: exception;
+		String failureStatus = cause instanceof ResponseException
+				? String.valueOf(((ResponseException) cause).getResponse().getStatusLine().getStatusCode())
+				: cause.getClass().getSimpleName();
+		metrics.recordOperation(operation, indexName, failureStatus, System.nanoTime() - startNanos);
+		return exception;
+	}
+
+	/**
+	 * Stops the operation once future completes.
+	 * 
+	 * @param future - future of the operation result
+	 * @return the same future
+	 */
+	public <F extends CompletableFuture<?>> F track(F future) {
+		future.whenComplete((result, error) -> {
+			if (Objects.isNull(error)) {
+				stop(result);
+			} else {
+				fail(error);
+			}
+		});
+		return future;
+	}
+}
@@ -0,0 +1,111 @@
+package com.es.rest.wrapper.model.generic;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+/**
+ * Class represents the outcome of a single action within a _bulk request, JSON representation:
+ * 
+ * <pre>
+ *  {
+ *      "_index": {@link String},
+ *      "_type": {@link String},
+ *      "_id": {@link String},
+ *      "_version": {@link Long},
+ *      "result": {@link String},
+ *      "status": {@link Integer},
+ *      "error": {{@link Map}}
+ *  }
+ * </pre>
+ * 
+ * @author Jack Phillips
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BulkItemResponse {
+	@JsonProperty(value = "_index")
+	private String index;
+
+	@JsonProperty(value = "_type")
+	private String type;
+
+	@JsonProperty(value = "_id")
+	private String id;
+
+	@JsonProperty(value = "_version")
+	private Long version;
+
+	@JsonProperty(value = "result")
+	private String result;
+
+	@JsonProperty(value = "status")
+	private int status;
+
+	@JsonProperty(value = "error")
+	private Map<String, Object> error;
+
+	/**
+	 * @return true if Elasticsearch reported an error for this action
+	 */
+	@JsonIgnore
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public void setIndex(String index) {
+		this.index = index;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	public String getResult() {
+		return result;
+	}
+
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public Map<String, Object> getError() {
+		return error;
+	}
+
+	public void setError(Map<String, Object> error) {
+		this.error = error;
+	}
+}
@@ -0,0 +1,59 @@
+package com.es.rest.wrapper.model.generic;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+/**
+ * Class represents the response of a _bulk request to Elasticsearch. Each entry of items
+ * is keyed by the operation that was performed (index, create, update or delete) and appears
+ * in the same order as the actions in the request. Typical JSON formatting of response:
+ * 
+ * <pre>
+ * {
+ *     "took": <i>{@link Long}</i>,
+ *     "errors": <i>{@link Boolean}</i>,
+ *     "items": [
+ *         { "index": {@link BulkItemResponse} }
+ *     ]
+ * }
+ * </pre>
+ * 
+ * @author Jack Phillips
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BulkResponse {
+	@JsonProperty(value = "took")
+	private Long took;
+
+	@JsonProperty(value = "errors")
+	private Boolean errors;
+
+	@JsonProperty(value = "items")
+	private List<Map<String, BulkItemResponse>> items;
+
+	public Long getTook() {
+		return took;
+	}
+
+	public void setTook(Long took) {
+		this.took = took;
+	}
+
+	public Boolean getErrors() {
+		return errors;
+	}
+
+	public void setErrors(Boolean errors) {
+		this.errors = errors;
+	}
+
+	public List<Map<String, BulkItemResponse>> getItems() {
+		return items;
+	}
+
+	public void setItems(List<Map<String, BulkItemResponse>> items) {
+		this.items = items;
+	}
+}
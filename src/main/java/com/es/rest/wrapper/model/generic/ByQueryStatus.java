@@ -0,0 +1,189 @@
+package com.es.rest.wrapper.model.generic;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+/**
+ * Class represents the progress of a _delete_by_query or _update_by_query task, reported as the
+ * status of a running task and as the response of a completed one. JSON representation:
+ * 
+ * <pre>
+ *  {
+ *      "took": {@link Long},
+ *      "timed_out": {@link Boolean},
+ *      "total": {@link Long},
+ *      "updated": {@link Long},
+ *      "created": {@link Long},
+ *      "deleted": {@link Long},
+ *      "batches": {@link Integer},
+ *      "version_conflicts": {@link Long},
+ *      "noops": {@link Long},
+ *      "throttled_millis": {@link Long},
+ *      "requests_per_second": {@link Float},
+ *      "throttled_until_millis": {@link Long},
+ *      "failures": [{{@link Map}}]
+ *  }
+ * </pre>
+ * 
+ * took, timed_out and failures are only present once the task completed.
+ * 
+ * @author Jack Phillips
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ByQueryStatus {
+	@JsonProperty(value = "took")
+	private Long took;
+
+	@JsonProperty(value = "timed_out")
+	private Boolean timedOut;
+
+	@JsonProperty(value = "total")
+	private long total;
+
+	@JsonProperty(value = "updated")
+	private long updated;
+
+	@JsonProperty(value = "created")
+	private long created;
+
+	@JsonProperty(value = "deleted")
+	private long deleted;
+
+	@JsonProperty(value = "batches")
+	private int batches;
+
+	@JsonProperty(value = "version_conflicts")
+	private long versionConflicts;
+
+	@JsonProperty(value = "noops")
+	private long noops;
+
+	@JsonProperty(value = "throttled_millis")
+	private long throttledMillis;
+
+	@JsonProperty(value = "requests_per_second")
+	private Float requestsPerSecond;
+
+	@JsonProperty(value = "throttled_until_millis")
+	private long throttledUntilMillis;
+
+	@JsonProperty(value = "failures")
+	private List<Map<String, Object>> failures;
+
+	/**
+	 * @return share of the matched documents processed so far, between 0 and 1
+	 */
+	@JsonIgnore
+	public double getProgress() {
+		if (total <= 0)
+			return 0;
+		return Math.min(1, (double) (updated + created + deleted + noops + versionConflicts) / total);
+	}
+
+	public Long getTook() {
+		return took;
+	}
+
+	public void setTook(Long took) {
+		this.took = took;
+	}
+
+	public Boolean getTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimedOut(Boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public long getUpdated() {
+		return updated;
+	}
+
+	public void setUpdated(long updated) {
+		this.updated = updated;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
+	public long getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(long deleted) {
+		this.deleted = deleted;
+	}
+
+	public int getBatches() {
+		return batches;
+	}
+
+	public void setBatches(int batches) {
+		this.batches = batches;
+	}
+
+	public long getVersionConflicts() {
+		return versionConflicts;
+	}
+
+	public void setVersionConflicts(long versionConflicts) {
+		this.versionConflicts = versionConflicts;
+	}
+
+	public long getNoops() {
+		return noops;
+	}
+
+	public void setNoops(long noops) {
+		this.noops = noops;
+	}
+
+	public long getThrottledMillis() {
+		return throttledMillis;
+	}
+
+	public void setThrottledMillis(long throttledMillis) {
+		this.throttledMillis = throttledMillis;
+	}
+
+	public Float getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	public void setRequestsPerSecond(Float requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	public long getThrottledUntilMillis() {
+		return throttledUntilMillis;
+	}
+
+	public void setThrottledUntilMillis(long throttledUntilMillis) {
+		this.throttledUntilMillis = throttledUntilMillis;
+	}
+
+	public List<Map<String, Object>> getFailures() {
+		return failures;
+	}
+
+	public void setFailures(List<Map<String, Object>> failures) {
+		this.failures = failures;
+	}
+}
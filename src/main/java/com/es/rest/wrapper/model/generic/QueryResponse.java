@@ -21,6 +21,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class QueryResponse<T> {
+	/**
+	 * filter_path keeping only the parts of a search response this class binds
+	 */
+	public static final String FILTER_PATH = "took,timed_out,_shards,hits.total,hits.max_score,"
+			+ "hits.hits._index,hits.hits._type,hits.hits._id,hits.hits._score,hits.hits._source";
+	
 	@JsonProperty(value = "took")
 	private Long took;
 	
@@ -0,0 +1,124 @@
+package com.es.rest.wrapper.model.generic;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+/**
+ * Class represents a task as reported by the _tasks API, JSON representation:
+ * 
+ * <pre>
+ *  {
+ *      "node": {@link String},
+ *      "id": {@link Long},
+ *      "type": {@link String},
+ *      "action": {@link String},
+ *      "status": {{@link ByQueryStatus}},
+ *      "description": {@link String},
+ *      "start_time_in_millis": {@link Long},
+ *      "running_time_in_nanos": {@link Long},
+ *      "cancellable": {@link Boolean}
+ *  }
+ * </pre>
+ * 
+ * @author Jack Phillips
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TaskInfo {
+	@JsonProperty(value = "node")
+	private String node;
+
+	@JsonProperty(value = "id")
+	private Long id;
+
+	@JsonProperty(value = "type")
+	private String type;
+
+	@JsonProperty(value = "action")
+	private String action;
+
+	@JsonProperty(value = "status")
+	private ByQueryStatus status;
+
+	@JsonProperty(value = "description")
+	private String description;
+
+	@JsonProperty(value = "start_time_in_millis")
+	private Long startTimeInMillis;
+
+	@JsonProperty(value = "running_time_in_nanos")
+	private Long runningTimeInNanos;
+
+	@JsonProperty(value = "cancellable")
+	private Boolean cancellable;
+
+	public String getNode() {
+		return node;
+	}
+
+	public void setNode(String node) {
+		this.node = node;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public void setAction(String action) {
+		this.action = action;
+	}
+
+	public ByQueryStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(ByQueryStatus status) {
+		this.status = status;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public Long getStartTimeInMillis() {
+		return startTimeInMillis;
+	}
+
+	public void setStartTimeInMillis(Long startTimeInMillis) {
+		this.startTimeInMillis = startTimeInMillis;
+	}
+
+	public Long getRunningTimeInNanos() {
+		return runningTimeInNanos;
+	}
+
+	public void setRunningTimeInNanos(Long runningTimeInNanos) {
+		this.runningTimeInNanos = runningTimeInNanos;
+	}
+
+	public Boolean getCancellable() {
+		return cancellable;
+	}
+
+	public void setCancellable(Boolean cancellable) {
+		this.cancellable = cancellable;
+	}
+}
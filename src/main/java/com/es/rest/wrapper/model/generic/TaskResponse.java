@@ -0,0 +1,68 @@
+package com.es.rest.wrapper.model.generic;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+/**
+ * Class represents the response of GET _tasks/{task_id} for a by-query task, JSON representation:
+ * 
+ * <pre>
+ *  {
+ *      "completed": {@link Boolean},
+ *      "task": {{@link TaskInfo}},
+ *      "response": {{@link ByQueryStatus}},
+ *      "error": {{@link Map}}
+ *  }
+ * </pre>
+ * 
+ * response or error is only present once the task completed.
+ * 
+ * @author Jack Phillips
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TaskResponse {
+	@JsonProperty(value = "completed")
+	private boolean completed;
+
+	@JsonProperty(value = "task")
+	private TaskInfo task;
+
+	@JsonProperty(value = "response")
+	private ByQueryStatus response;
+
+	@JsonProperty(value = "error")
+	private Map<String, Object> error;
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	public void setCompleted(boolean completed) {
+		this.completed = completed;
+	}
+
+	public TaskInfo getTask() {
+		return task;
+	}
+
+	public void setTask(TaskInfo task) {
+		this.task = task;
+	}
+
+	public ByQueryStatus getResponse() {
+		return response;
+	}
+
+	public void setResponse(ByQueryStatus response) {
+		this.response = response;
+	}
+
+	public Map<String, Object> getError() {
+		return error;
+	}
+
+	public void setError(Map<String, Object> error) {
+		this.error = error;
+	}
+}
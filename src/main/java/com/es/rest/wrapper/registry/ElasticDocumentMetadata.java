@@ -0,0 +1,267 @@
+package com.es.rest.wrapper.registry;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.annotation.RoutingKey;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.DeleteResponse;
+import com.es.rest.wrapper.model.generic.IndexResponse;
+import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+/**
+ * Everything needed to talk to Elasticsearch about one {@link ElasticDocument} class, computed 
+ * once when the class is registered: the endpoint paths of its index and type, and the Jackson 
+ * readers and writers bound to it. The parameterized {@link JavaType}s of the generic response 
+ * classes are resolved here as well, so every _source in a response is deserialized exactly 
+ * once, directly into the document class.
+ * 
+ * <p>Instances are immutable and safe to share between threads.</p>
+ * 
+ * @author Jack Phillips
+ */
+public class ElasticDocumentMetadata {
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+
+	private final Class<?> documentClass;
+	private final String indexName;
+	private final String type;
+
+	/* Precomputed endpoints */
+	private final String basePath;
+	private final String searchEndpoint;
+	private final String countEndpoint;
+	private final String bulkEndpoint;
+
+	/* _source fields returned by searches unless the caller asks for others */
+	private final Projection defaultProjection;
+
+	/* Refresh policy of writes unless the caller asks for another */
+	private final RefreshEnum refreshPolicy;
+
+	/* Reads the @RoutingKey member of a document as an Object, null if the class has none */
+	private final MethodHandle routingKey;
+
+	/* Jackson readers and writers bound to documentClass */
+	private final ObjectReader documentReader;
+	private final ObjectWriter documentWriter;
+	private final ObjectReader queryResponseReader;
+	private final ObjectReader indexResponseReader;
+	private final ObjectReader deleteResponseReader;
+
+	ElasticDocumentMetadata(Class<?> documentClass, ElasticDocument elasticDocument, ObjectMapper mapper) {
+		this.documentClass = documentClass;
+		this.indexName = elasticDocument.indexName();
+		this.type = elasticDocument.type();
+
+		// Type is not required in ES, if none given do not set it
+		String encodedIndex = UrlComponentEnum.encode(indexName);
+		this.basePath = StringUtils.isEmpty(type) 
+				? SLASH + encodedIndex + SLASH 
+				: SLASH + encodedIndex + SLASH + UrlComponentEnum.encode(type) + SLASH;
+		this.searchEndpoint = basePath + UrlComponentEnum.SEARCH.getValue();
+		this.countEndpoint = SLASH + encodedIndex + SLASH + UrlComponentEnum.COUNT.getValue();
+		this.bulkEndpoint = basePath + UrlComponentEnum.BULK.getValue();
+		this.defaultProjection = Projection.of(elasticDocument.sourceIncludes(), elasticDocument.sourceExcludes());
+		this.refreshPolicy = elasticDocument.refresh();
+		this.routingKey = resolveRoutingKey(documentClass);
+
+		TypeFactory typeFactory = mapper.getTypeFactory();
+		JavaType queryResponseType = typeFactory.constructParametricType(QueryResponse.class, documentClass);
+		JavaType indexResponseType = typeFactory.constructParametricType(IndexResponse.class, documentClass);
+		JavaType deleteResponseType = typeFactory.constructParametricType(DeleteResponse.class, documentClass);
+
+		this.documentReader = mapper.readerFor(documentClass);
+		this.documentWriter = mapper.writerFor(documentClass);
+		this.queryResponseReader = mapper.readerFor(queryResponseType);
+		this.indexResponseReader = mapper.readerFor(indexResponseType);
+		this.deleteResponseReader = mapper.readerFor(deleteResponseType);
+	}
+
+	public Class<?> getDocumentClass() {
+		return documentClass;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return index and type path (ex. /foo/bar/)
+	 */
+	public String getBasePath() {
+		return basePath;
+	}
+
+	/**
+	 * @return search endpoint (ex. /foo/bar/_search)
+	 */
+	public String getSearchEndpoint() {
+		return searchEndpoint;
+	}
+
+	/**
+	 * @return count endpoint of the index (ex. /foo/_count)
+	 */
+	public String getCountEndpoint() {
+		return countEndpoint;
+	}
+
+	/**
+	 * @return bulk endpoint (ex. /foo/bar/_bulk)
+	 */
+	public String getBulkEndpoint() {
+		return bulkEndpoint;
+	}
+
+	/**
+	 * @param id - Elasticsearch document ID, encoded here
+	 * @return document endpoint (ex. /foo/bar/1)
+	 */
+	public String getDocumentEndpoint(String id) {
+		return basePath + UrlComponentEnum.encode(id);
+	}
+
+	/**
+	 * @param id - Elasticsearch document ID, encoded here
+	 * @return source endpoint of the document (ex. /foo/bar/1/_source)
+	 */
+	public String getSourceEndpoint(String id) {
+		return basePath + UrlComponentEnum.encode(id) + SLASH + UrlComponentEnum.SOURCE.getValue();
+	}
+
+	/**
+	 * @return _source fields declared on {@link ElasticDocument}, applied to searches that do not 
+	 * ask for their own
+	 */
+	public Projection getDefaultProjection() {
+		return defaultProjection;
+	}
+
+	/**
+	 * @return refresh policy of writes that do not ask for their own, see {@link ElasticDocument#refresh()}
+	 */
+	public RefreshEnum getRefreshPolicy() {
+		return refreshPolicy;
+	}
+
+	/**
+	 * @return true if the class declares a {@link RoutingKey}
+	 */
+	public boolean hasRoutingKey() {
+		return !Objects.isNull(routingKey);
+	}
+
+	/**
+	 * Reads the {@link RoutingKey} of a document.
+	 *
+	 * @param document - instance of the document class
+	 * @return routing value, null if the class has no routing key or the value is empty
+	 */
+	public String getRouting(Object document) {
+		if (Objects.isNull(routingKey) || Objects.isNull(document))
+			return null;
+		Object value;
+		try {
+			value = routingKey.invoke(document);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Could not read the @RoutingKey of " + documentClass.getName(), e);
+		}
+		String routing = Objects.isNull(value) ? null : value.toString();
+		return StringUtils.isEmpty(routing) ? null : routing;
+	}
+
+	public ObjectReader getDocumentReader() {
+		return documentReader;
+	}
+
+	public ObjectWriter getDocumentWriter() {
+		return documentWriter;
+	}
+
+	/**
+	 * @return reader for QueryResponse&lt;T&gt; where T is the document class
+	 */
+	public ObjectReader getQueryResponseReader() {
+		return queryResponseReader;
+	}
+
+	/**
+	 * @return reader for IndexResponse&lt;T&gt; where T is the document class
+	 */
+	public ObjectReader getIndexResponseReader() {
+		return indexResponseReader;
+	}
+
+	/**
+	 * @return reader for DeleteResponse&lt;T&gt; where T is the document class
+	 */
+	public ObjectReader getDeleteResponseReader() {
+		return deleteResponseReader;
+	}
+
+	/**
+	 * Finds the single {@link RoutingKey} field or getter of documentClass and its superclasses 
+	 * and turns it into a MethodHandle, so reading it costs no reflective lookup per call.
+	 */
+	private static MethodHandle resolveRoutingKey(Class<?> documentClass) {
+		AccessibleObject member = null;
+		for (Class<?> clazz = documentClass; !Objects.isNull(clazz) && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.isAnnotationPresent(RoutingKey.class))
+					member = checkSingleRoutingKey(documentClass, member, field);
+			}
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (method.isAnnotationPresent(RoutingKey.class))
+					member = checkSingleRoutingKey(documentClass, member, method);
+			}
+		}
+		if (Objects.isNull(member))
+			return null;
+
+		try {
+			member.setAccessible(true);
+			MethodHandle handle;
+			if (member instanceof Field) {
+				if (Modifier.isStatic(((Field) member).getModifiers()))
+					throw new IllegalArgumentException("@RoutingKey field of " + documentClass.getName() + " must not be static");
+				handle = MethodHandles.lookup().unreflectGetter((Field) member);
+			} else {
+				Method method = (Method) member;
+				if (method.getParameterCount() != 0 || method.getReturnType() == void.class || Modifier.isStatic(method.getModifiers()))
+					throw new IllegalArgumentException("@RoutingKey method of " + documentClass.getName() + " must be a getter");
+				handle = MethodHandles.lookup().unreflect(method);
+			}
+			return handle.asType(MethodType.methodType(Object.class, Object.class));
+		} catch (IllegalAccessException | SecurityException e) {
+			throw new IllegalArgumentException("@RoutingKey of " + documentClass.getName() + " is not accessible", e);
+		}
+	}
+
+	private static AccessibleObject checkSingleRoutingKey(Class<?> documentClass, AccessibleObject found, AccessibleObject member) {
+		if (!Objects.isNull(found))
+			throw new IllegalArgumentException(documentClass.getName() + " declares more than one @RoutingKey");
+		return member;
+	}
+}
@@ -0,0 +1,237 @@
+package com.es.rest.wrapper.registry;
+
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+/**
+ * <p>Registry of every {@link ElasticDocument} class and its {@link ElasticDocumentMetadata}.</p>
+ *
+ * <p>At startup the packages listed in <i>elasticsearch.document.base-packages</i> are scanned
+ * for annotated classes and each one is validated and registered, so that a bad index name or
+ * a document Jackson cannot instantiate fails the application at boot rather than on the first
+ * request. Annotated classes outside those packages are registered on first use. Request paths
+ * then only need a single map lookup.</p>
+ *
+ * <p>The registry also owns the {@link ObjectMapper} shared by every request, all readers and
+ * writers are derived from it.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class ElasticDocumentRegistry {
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/* Characters Elasticsearch does not allow in index names */
+	private static final String INVALID_INDEX_CHARS = "\\/*?\"<>| ,#:";
+	private static final int MAX_INDEX_NAME_BYTES = 255;
+
+	private final ObjectMapper mapper;
+	private final ConcurrentMap<Class<?>, ElasticDocumentMetadata> documents = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, ObjectReader> responseReaders = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, Projection> projections = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, ObjectReader> projectionQueryResponseReaders = new ConcurrentHashMap<>();
+
+	@Autowired
+	public ElasticDocumentRegistry(@Value("${elasticsearch.document.base-packages:com.es.rest.wrapper}") String[] basePackages) {
+		this(createObjectMapper(), basePackages);
+	}
+
+	/**
+	 * Creates a registry and registers every {@link ElasticDocument} class found in basePackages.
+	 *
+	 * @param mapper - Jackson mapper all readers and writers are derived from
+	 * @param basePackages - packages scanned for annotated classes
+	 * @throws IllegalStateException if an annotated class is invalid
+	 */
+	public ElasticDocumentRegistry(ObjectMapper mapper, String... basePackages) {
+		this.mapper = mapper;
+
+		ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+		scanner.addIncludeFilter(new AnnotationTypeFilter(ElasticDocument.class));
+		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+		for (String basePackage : basePackages) {
+			for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage.trim())) {
+				Class<?> clazz = ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader);
+				try {
+					register(clazz);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalStateException("Invalid @ElasticDocument class: " + e.getMessage(), e);
+				}
+			}
+		}
+		logger.info("Registered " + documents.size() + " @ElasticDocument classes");
+	}
+
+	/**
+	 * Returns the metadata of the passed in Class, registering it if it was not found at startup.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return ElasticDocumentMetadata
+	 * @throws IllegalArgumentException if clazz is not a valid {@link ElasticDocument}
+	 */
+	public ElasticDocumentMetadata get(Class<?> clazz) {
+		ElasticDocumentMetadata metadata = documents.get(clazz);
+		return Objects.isNull(metadata) ? register(clazz) : metadata;
+	}
+
+	/**
+	 * Same as {@link #get(Class)} but returns null instead of failing when the passed in Class
+	 * is not annotated with {@link ElasticDocument}.
+	 *
+	 * @param clazz - Java class that may be annotated with {@link ElasticDocument}
+	 * @return ElasticDocumentMetadata or null
+	 */
+	public ElasticDocumentMetadata find(Class<?> clazz) {
+		ElasticDocumentMetadata metadata = documents.get(clazz);
+		if (Objects.isNull(metadata) && !Objects.isNull(AnnotationUtils.findAnnotation(clazz, ElasticDocument.class))) {
+			metadata = register(clazz);
+		}
+		return metadata;
+	}
+
+	/**
+	 * @return metadata of every registered class
+	 */
+	public Collection<ElasticDocumentMetadata> getAll() {
+		return Collections.unmodifiableCollection(documents.values());
+	}
+
+	/**
+	 * @return ObjectMapper shared by every request
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Returns a cached reader for a response class that is not bound to a document
+	 * (ex. CountResponse).
+	 *
+	 * @param responseClass - class the response body is read into
+	 * @return ObjectReader
+	 */
+	public ObjectReader getResponseReader(Class<?> responseClass) {
+		return responseReaders.computeIfAbsent(responseClass, mapper::readerFor);
+	}
+
+	/**
+	 * Returns the cached {@link Projection} of a DTO class, including exactly the properties
+	 * Jackson binds on it. Searches projected onto the DTO only bring back those fields.
+	 *
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return Projection
+	 * @throws IllegalArgumentException if projectionClass has no bindable property
+	 */
+	public Projection getProjection(Class<?> projectionClass) {
+		return projections.computeIfAbsent(projectionClass, dtoClass -> {
+			BeanDescription description = mapper.getDeserializationConfig().introspect(mapper.constructType(dtoClass));
+			String[] fields = description.findProperties().stream()
+					.filter(BeanPropertyDefinition::couldDeserialize)
+					.map(BeanPropertyDefinition::getName)
+					.toArray(String[]::new);
+			if (fields.length == 0)
+				throw new IllegalArgumentException(dtoClass.getName() + " has no property to project _source onto");
+			return Projection.include(fields);
+		});
+	}
+
+	/**
+	 * Returns a cached reader binding the _source of each hit to a DTO class.
+	 *
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return ObjectReader for projectionClass
+	 */
+	public ObjectReader getProjectionReader(Class<?> projectionClass) {
+		return getResponseReader(projectionClass);
+	}
+
+	/**
+	 * Returns a cached reader for QueryResponse&lt;D&gt; where D is a DTO class.
+	 *
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return ObjectReader
+	 */
+	public ObjectReader getQueryResponseReader(Class<?> projectionClass) {
+		return projectionQueryResponseReaders.computeIfAbsent(projectionClass, dtoClass -> 
+				mapper.readerFor(mapper.getTypeFactory().constructParametricType(QueryResponse.class, dtoClass)));
+	}
+
+	private ElasticDocumentMetadata register(Class<?> clazz) {
+		return documents.computeIfAbsent(clazz, documentClass -> {
+			ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(documentClass, ElasticDocument.class);
+			validate(documentClass, elasticDocument);
+			return new ElasticDocumentMetadata(documentClass, elasticDocument, mapper);
+		});
+	}
+
+	private void validate(Class<?> clazz, ElasticDocument elasticDocument) {
+		if (Objects.isNull(elasticDocument))
+			throw new IllegalArgumentException(clazz.getName() + " is not annotated with @ElasticDocument");
+
+		String indexName = elasticDocument.indexName();
+		if (!isValidIndexName(indexName))
+			throw new IllegalArgumentException(clazz.getName() + " has invalid index name [" + indexName + "]");
+
+		String type = elasticDocument.type();
+		if (!StringUtils.isEmpty(type) && (type.startsWith("_") || type.contains("/") || type.contains("#")))
+			throw new IllegalArgumentException(clazz.getName() + " has invalid type [" + type + "]");
+
+		// Jackson needs a no arg constructor to bind _source to the class
+		if (!clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())
+				&& Objects.isNull(ClassUtils.getConstructorIfAvailable(clazz))) {
+			throw new IllegalArgumentException(clazz.getName() + " has no public no arg constructor");
+		}
+	}
+
+	private boolean isValidIndexName(String indexName) {
+		if (StringUtils.isEmpty(indexName) || ".".equals(indexName) || "..".equals(indexName))
+			return false;
+		if (indexName.startsWith("-") || indexName.startsWith("_") || indexName.startsWith("+"))
+			return false;
+		if (!indexName.equals(indexName.toLowerCase(Locale.ROOT)))
+			return false;
+		if (indexName.getBytes(StandardCharsets.UTF_8).length > MAX_INDEX_NAME_BYTES)
+			return false;
+		for (int i = 0; i < indexName.length(); i++) {
+			if (INVALID_INDEX_CHARS.indexOf(indexName.charAt(i)) >= 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the {@link ObjectMapper} shared by all requests. Configuration must happen here,
+	 * before any reader or writer is derived from it.
+	 *
+	 * @return ObjectMapper
+	 */
+	private static ObjectMapper createObjectMapper() {
+		return new ObjectMapper();
+	}
+}
@@ -0,0 +1,121 @@
+package com.es.rest.wrapper.registry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+
+/**
+ * <p>The _source fields a search returns, sent as the <i>_source_include</i> and
+ * <i>_source_exclude</i> parameters. Fields may use dots and * wildcards (ex. address.*).</p>
+ *
+ * <p>Each {@link ElasticDocument} class may declare a default projection, see
+ * {@link ElasticDocument#sourceIncludes()}, which callers can replace per call. A projection
+ * can also be derived from a lightweight DTO class with
+ * {@link ElasticDocumentRegistry#getProjection(Class)}, it then includes exactly the properties
+ * the DTO binds.</p>
+ *
+ * <p>Instances are immutable and safe to share between threads.</p>
+ *
+ * @author Jack Phillips
+ */
+public final class Projection {
+	private static final Projection NONE = new Projection(new String[0], new String[0]);
+
+	private final List<String> includes;
+	private final List<String> excludes;
+
+	/* Precomputed request parameters, empty when the whole _source is returned */
+	private final String parameters;
+
+	private Projection(String[] includes, String[] excludes) {
+		this.includes = Collections.unmodifiableList(Arrays.asList(includes));
+		this.excludes = Collections.unmodifiableList(Arrays.asList(excludes));
+
+		StringBuilder builder = new StringBuilder();
+		if (includes.length > 0)
+			builder.append(UrlComponentEnum.SRC_INCLUDE.getValue()).append(StringUtils.arrayToCommaDelimitedString(includes));
+		if (excludes.length > 0) {
+			if (builder.length() > 0)
+				builder.append('&');
+			builder.append(UrlComponentEnum.SRC_EXCLUDE.getValue()).append(StringUtils.arrayToCommaDelimitedString(excludes));
+		}
+		this.parameters = builder.toString();
+	}
+
+	/**
+	 * @return Projection returning the whole _source
+	 */
+	public static Projection none() {
+		return NONE;
+	}
+
+	/**
+	 * @param fields - _source fields to return
+	 * @return Projection returning only fields
+	 */
+	public static Projection include(String... fields) {
+		return of(fields, new String[0]);
+	}
+
+	/**
+	 * @param fields - _source fields to leave out
+	 * @return Projection returning every field but fields
+	 */
+	public static Projection exclude(String... fields) {
+		return of(new String[0], fields);
+	}
+
+	/**
+	 * @param includes - _source fields to return, empty for all of them
+	 * @param excludes - _source fields to leave out of includes
+	 * @return Projection
+	 */
+	public static Projection of(String[] includes, String[] excludes) {
+		String[] trimmedIncludes = StringUtils.trimArrayElements(StringUtils.removeDuplicateStrings(includes));
+		String[] trimmedExcludes = StringUtils.trimArrayElements(StringUtils.removeDuplicateStrings(excludes));
+		if (trimmedIncludes.length == 0 && trimmedExcludes.length == 0)
+			return NONE;
+		return new Projection(trimmedIncludes, trimmedExcludes);
+	}
+
+	public List<String> getIncludes() {
+		return includes;
+	}
+
+	public List<String> getExcludes() {
+		return excludes;
+	}
+
+	/**
+	 * @return true if the whole _source is returned
+	 */
+	public boolean isEmpty() {
+		return parameters.isEmpty();
+	}
+
+	/**
+	 * Adds the _source parameters of this projection to endpoint. An endpoint that already
+	 * filters _source itself is returned as is, the caller's own parameters win.
+	 *
+	 * @param endpoint - request endpoint (ex. /foo/bar/_search?q=barVal:test)
+	 * @return endpoint with the _source parameters
+	 */
+	public String applyTo(String endpoint) {
+		if (isEmpty() || endpoint.contains(UrlComponentEnum.SOURCE.getValue() + "=")
+				|| endpoint.contains(UrlComponentEnum.SRC_INCLUDE.getValue())
+				|| endpoint.contains(UrlComponentEnum.SRC_EXCLUDE.getValue())) {
+			return endpoint;
+		}
+		return endpoint + (endpoint.indexOf('?') < 0 ? '?' : '&') + parameters;
+	}
+
+	@Override
+	public String toString() {
+		return isEmpty() ? "_source" : parameters;
+	}
+}
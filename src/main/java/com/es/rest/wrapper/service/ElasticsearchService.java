@@ -1,40 +1,83 @@
 package com.es.rest.wrapper.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpEntity;
 import org.apache.http.ParseException;
 import org.apache.http.entity.ContentType;
-import org.apache.http.nio.entity.NStringEntity;
-import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
+import com.es.rest.wrapper.annotation.DocumentCache;
 import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.annotation.RoutingKey;
+import com.es.rest.wrapper.bulk.BulkListener;
+import com.es.rest.wrapper.bulk.BulkProcessor;
+import com.es.rest.wrapper.bulk.BulkResult;
+import com.es.rest.wrapper.bulk.ImportResult;
+import com.es.rest.wrapper.bulk.NdjsonImporter;
+import com.es.rest.wrapper.cache.DocumentCacheManager;
+import com.es.rest.wrapper.cache.DocumentCacheStats;
+import com.es.rest.wrapper.cache.IndexCountCache;
+import com.es.rest.wrapper.cache.QueryCache;
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.export.ExportResult;
+import com.es.rest.wrapper.export.IndexExporter;
 import com.es.rest.wrapper.enumeration.UrlComponentEnum;
-import com.es.rest.wrapper.model.generic.CountResponse;
+import com.es.rest.wrapper.metrics.ElasticsearchMetrics;
+import com.es.rest.wrapper.metrics.OperationSample;
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
 import com.es.rest.wrapper.model.generic.DeleteResponse;
 import com.es.rest.wrapper.model.generic.IndexResponse;
 import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.es.rest.wrapper.registry.Projection;
+import com.es.rest.wrapper.task.ByQueryTask;
+import com.es.rest.wrapper.task.ByQueryTaskManager;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
 
 /**
- * Abstract class that includes typical CRUD operations with Elasticsearch
+ * Abstract class that includes typical CRUD operations with Elasticsearch.
+ * 
+ * <p>Implementations are Spring singletons shared by every request thread, so this class keeps
+ * no per-call state in fields. Endpoint paths and the {@link ObjectReader}/{@link ObjectWriter} 
+ * instances of each {@link ElasticDocument} class come from the {@link ElasticDocumentRegistry}, 
+ * they are computed once and are safe for concurrent use.</p>
  *  
  * @author Jack Phillips
  */
@@ -45,408 +88,1854 @@ public abstract class ElasticsearchService {
 	public static final String GET = "GET";
 	public static final String POST = "POST";
 	public static final String DELETE = "DELETE";
+	
+	/* Operation tags of the metrics */
+	private static final String OPERATION_SEARCH = "search";
+	private static final String OPERATION_FIND_ONE = "findOne";
+	private static final String OPERATION_FIND_ALL = "findAll";
+	private static final String OPERATION_SCROLL = "scroll";
+	private static final String OPERATION_INDEX = "index";
+	private static final String OPERATION_UPDATE = "update";
+	private static final String OPERATION_DELETE = "delete";
+	private static final String OPERATION_BULK = "bulk";
+	private static final String OPERATION_COUNT = "count";
+	private static final String OPERATION_DELETE_BY_QUERY = "deleteByQuery";
+	private static final String OPERATION_UPDATE_BY_QUERY = "updateByQuery";
+	private static final String OPERATION_EXPORT = "export";
+	private static final String OPERATION_IMPORT = "import";
 
 	@Autowired
 	private RestClient restClient;
-	private ObjectMapper mapper;
-	private Response response;
-	private QueryResponse<?> asyncQueryResponse;
+	
+	/* Precomputed endpoints and Jackson readers/writers of every @ElasticDocument class */
+	@Autowired
+	private ElasticDocumentRegistry registry;
+	
+	/* Read-through caches of the @DocumentCache classes, keyed by document ID */
+	@Autowired
+	private DocumentCacheManager documentCacheManager;
+	
+	/* Short lived search result cache, coalesces identical concurrent queries */
+	@Autowired
+	private QueryCache queryCache;
+	
+	/* Index counts with bounded staleness, refreshed ahead of expiry */
+	@Autowired
+	private IndexCountCache indexCountCache;
+	
+	/* Groups concurrent findOne calls into _mget requests when enabled */
+	@Autowired
+	private MultiGetBatcher multiGetBatcher;
+	
+	/* Latency, size and deserialization meters of every operation */
+	@Autowired
+	private ElasticsearchMetrics metrics;
+	
+	/* Opt-in gzip of request and response bodies */
+	@Autowired
+	private GzipCompression compression;
+	
+	/* Shares one refresh between concurrent wait_for writes to an index when enabled */
+	@Autowired
+	private RefreshCoalescer refreshCoalescer;
+	
+	/* Sliced scroll dumps of whole indices to NDJSON files */
+	@Autowired
+	private IndexExporter indexExporter;
+	
+	/* Bulk loads of NDJSON files sent from memory-mapped chunks */
+	@Autowired
+	private NdjsonImporter ndjsonImporter;
+	
+	/* Background _delete_by_query and _update_by_query tasks */
+	@Autowired
+	private ByQueryTaskManager byQueryTaskManager;
+	
+	/* Number of documents fetched per scroll page and how long each scroll context is kept alive */
+	@Value("${elasticsearch.scroll.size:1000}")
+	private int scrollSize;
+	
+	@Value("${elasticsearch.scroll.keep-alive:1m}")
+	private String scrollKeepAlive;
+	
+	/* Times Elasticsearch retries an _update that lost a race with a concurrent write */
+	@Value("${elasticsearch.update.retry-on-conflict:3}")
+	private int retryOnConflict;
 	
 	/**
 	 * Returns {@link QueryResponse} object retrieved from the specified query.
-	 * Uses synchronous communication.
+	 * Uses synchronous communication. When the {@link QueryCache} is enabled identical queries 
+	 * share cached and in-flight results. The default projection of the class is applied, and 
+	 * only the parts of the response QueryResponse binds are sent back.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
 	 * @param query - String that contains the query to send to Elasticsearch
 	 * @return QueryResponse 
 	 * @throws IOException
 	 */
-	public QueryResponse<?> getSync(Class<?> clazz, String query) throws IOException {
-		// Cannot create GET if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return null;
-
-		mapper = new ObjectMapper();
-		response = null;
-		QueryResponse<?> queryResponse = null;
-
-		query = buildQueryHelper(clazz, query);
-		response = restClient.performRequest(GET, query);
-		queryResponse = mapper.readValue(EntityUtils.toString(response.getEntity()), QueryResponse.class);
-
-		return queryResponse;
+	public <T> QueryResponse<T> getSync(Class<T> clazz, String query) throws IOException {
+		return getSync(clazz, query, getMetadata(clazz).getDefaultProjection());
 	}
-
+	
 	/**
-	 * Returns {@link QueryResponse} object retrieved from the specified query.
-	 * Uses asynchronous communication.
+	 * Same as {@link #getSync(Class, String)}, only the _source fields of projection are returned.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
 	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param projection - _source fields to return, {@link Projection#none()} for whole documents
 	 * @return QueryResponse 
+	 * @throws IOException
 	 */
-	public QueryResponse<?> performAsyncRequest(Class<?> clazz, String query) {
-		if (!restClientExists()) 
-			return null;
-
-		mapper = new ObjectMapper();
-		response = null;
-		asyncQueryResponse = null;
-
-		query = buildQueryHelper(clazz, query);
-
-		restClient.performRequestAsync(
-				GET,
-				query,
-				new ResponseListener() {
-
-					@Override
-					public void onSuccess(Response response) {
-						try {
-							asyncQueryResponse = mapper.readValue(EntityUtils.toString(response.getEntity()), QueryResponse.class);
-						} catch (IOException e) {
-							logger.error("ERROR: Could not execute Asynchronous GET request: " + e.getMessage());
-							e.printStackTrace();
-						}
-					}
-
-					@Override
-					public void onFailure(Exception exception) {
-						logger.error("FAILURE: Could not execute Asynchronous GET request: " + exception.getMessage());
-						exception.printStackTrace();
-					}
-				});
-
-		return asyncQueryResponse;
+	public <T> QueryResponse<T> getSync(Class<T> clazz, String query, Projection projection) throws IOException {
+		return getSync(clazz, query, null, projection);
 	}
-
+	
 	/**
-	 * Returns an instance of the passed in Class if there is a Elasticsearch document with the 
-	 * specified ID.
+	 * Same as {@link #getSync(Class, String, Projection)}, searching only the shard routing 
+	 * points to instead of every shard of the index.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @param id - Document ID
-	 * @return Object - new instance of Class parameter
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param routing - routing value of the searched documents, see {@link RoutingKey}, null for all shards
+	 * @param projection - _source fields to return, {@link Projection#none()} for whole documents
+	 * @return QueryResponse 
 	 * @throws IOException
 	 */
-	public Object findOne(Class<?> clazz, String id) throws IOException {
-		// Cannot create GET if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return null;
-		
-		mapper = new ObjectMapper();
-		response = null;
-
-		id += "/" + UrlComponentEnum.SOURCE.getValue();
-		String query = buildQueryHelper(clazz, id);
-		response = restClient.performRequest(GET, query);
-
-		return mapper.readValue(EntityUtils.toString(response.getEntity()), clazz);
+	public <T> QueryResponse<T> getSync(Class<T> clazz, String query, String routing, Projection projection) throws IOException {
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		return query(metadata, query, routing, projection, metadata.getQueryResponseReader());
 	}
-
+	
 	/**
-	 * Returns a list of objects retrieved from Elasticsearch associated 
-	 * with the corresponding Class<?> clazz.
+	 * Same as {@link #getSync(Class, String)}, the _source of each hit is projected onto 
+	 * projectionClass: only the fields it binds are returned by Elasticsearch.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @return Potentially empty List of Objects retrieved from Elasticsearch 
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return QueryResponse of projectionClass
 	 * @throws IOException
 	 */
-	public List<Object> findAll(Class<?> clazz) throws IOException {
-		List<Object> objList = new ArrayList<Object>();
-
-		// Cannot create GET if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return objList;
-
-		mapper = new ObjectMapper();
-		response = null;
+	public <D> QueryResponse<D> getSync(Class<?> clazz, String query, Class<D> projectionClass) throws IOException {
+		return query(getMetadata(clazz), query, null, registry.getProjection(projectionClass), 
+				registry.getQueryResponseReader(projectionClass));
+	}
 
-		// Get all values associated with object
-		String query = buildQueryHelper(clazz, UrlComponentEnum.SEARCH.getValue());
-		response = restClient.performRequest(GET, query);
-		
-		// Retrieve JSON Node from the response
-		JsonNode treeNode = mapper.readTree(EntityUtils.toString(response.getEntity()));
-
-		// If the Json Node is not null try to find the _source values and add to map
-		if (!Objects.isNull(treeNode)) {
-			List<JsonNode> sourceNodes = treeNode.findValues(UrlComponentEnum.SOURCE.getValue());
-			for (JsonNode curNode : sourceNodes) {
-				objList.add(mapper.treeToValue(curNode, clazz));
-			}
-		}		
-		return objList;
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link QueryResponse} retrieved from 
+	 * the specified query. Uses asynchronous communication, the calling thread is never blocked. 
+	 * Cached and in-flight results are shared and projections applied the same way as 
+	 * {@link #getSync(Class, String)}.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @return ResponseFuture completed with the QueryResponse
+	 */
+	public <T> ResponseFuture<QueryResponse<T>> searchAsync(Class<T> clazz, String query) {
+		return searchAsync(clazz, query, getMetadata(clazz).getDefaultProjection());
 	}
 	
 	/**
-	 * Returns all Documents in {@link QueryResponse} object thats associated with clazz parameter.
-	 * Uses synchronous communication.
+	 * Same as {@link #searchAsync(Class, String)}, only the _source fields of projection are returned.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @return QueryResponse 
-	 * @throws IOException
-	 * @throws ParseException
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param projection - _source fields to return, {@link Projection#none()} for whole documents
+	 * @return ResponseFuture completed with the QueryResponse
 	 */
-	public QueryResponse<?> getAllSync(Class<?> clazz) throws IOException, ParseException {
-		return getSync(clazz, UrlComponentEnum.SEARCH.getValue()); 
+	public <T> ResponseFuture<QueryResponse<T>> searchAsync(Class<T> clazz, String query, Projection projection) {
+		return searchAsync(clazz, query, null, projection);
+	}
+	
+	/**
+	 * Same as {@link #searchAsync(Class, String, Projection)}, searching only the shard routing 
+	 * points to instead of every shard of the index.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param routing - routing value of the searched documents, see {@link RoutingKey}, null for all shards
+	 * @param projection - _source fields to return, {@link Projection#none()} for whole documents
+	 * @return ResponseFuture completed with the QueryResponse
+	 */
+	public <T> ResponseFuture<QueryResponse<T>> searchAsync(Class<T> clazz, String query, String routing, Projection projection) {
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		return queryAsync(metadata, query, routing, projection, metadata.getQueryResponseReader());
+	}
+	
+	/**
+	 * Same as {@link #searchAsync(Class, String)}, the _source of each hit is projected onto 
+	 * projectionClass: only the fields it binds are returned by Elasticsearch.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return ResponseFuture completed with the QueryResponse of projectionClass
+	 */
+	public <D> ResponseFuture<QueryResponse<D>> searchAsync(Class<?> clazz, String query, Class<D> projectionClass) {
+		return queryAsync(getMetadata(clazz), query, null, registry.getProjection(projectionClass), 
+				registry.getQueryResponseReader(projectionClass));
 	}
 
 	/**
-	 * Returns all Documents in {@link QueryResponse} object thats associated with clazz parameter.
-	 * Uses Asynchronous communication.
+	 * Returns an instance of the passed in Class if there is a Elasticsearch document with the 
+	 * specified ID. Classes annotated with {@link DocumentCache} are served from the document 
+	 * cache when possible, concurrent misses on the same ID share a single request. When 
+	 * <i>elasticsearch.mget.enabled</i> is set the lookup is batched with other concurrent 
+	 * lookups into one _mget request, see {@link MultiGetBatcher}.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @return QueryResponse 
+	 * @param id - Document ID
+	 * @return Object - new instance of Class parameter
 	 * @throws IOException
-	 * @throws ParseException
 	 */
-	public QueryResponse<?> getAllAsync(Class<?> clazz) throws IOException, ParseException {
-		return performAsyncRequest(clazz, UrlComponentEnum.SEARCH.getValue());
+	public <T> T findOne(Class<T> clazz, String id) throws IOException {
+		return findOne(clazz, id, true);
 	}
-
+	
 	/**
-	 * Returns {@link IndexResponse} for POST requests without a specified ID.
+	 * Same as {@link #findOne(Class, String)}, latency critical callers pass false for allowBatching 
+	 * to send their GET right away instead of waiting for the _mget batch window. A batched lookup 
+	 * of a missing document returns null, an unbatched one throws a ResponseException (404).
 	 * 
-	 * @param obj - Java object that is annotated with {@link ElasticDocument}
-	 * @return IndexResponse<?> 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @param allowBatching - false to bypass the _mget batcher
+	 * @return Object - new instance of Class parameter
 	 * @throws IOException
 	 */
-	public IndexResponse<?> postSync(Object obj) throws IOException {
-		return postSync(obj, null);
+	public <T> T findOne(Class<T> clazz, String id, boolean allowBatching) throws IOException {
+		return findOne(clazz, id, null, allowBatching);
 	}
-
+	
 	/**
-	 * Returns {@link IndexResponse} for POST requests.
+	 * Same as {@link #findOne(Class, String)} for a document indexed with a routing value, 
+	 * see {@link RoutingKey}. A routed document is only found with its routing value.
 	 * 
-	 * @param obj - Java object that is annotated with {@link ElasticDocument}
-	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
-	 * @return IndexResponse<?> 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @param routing - routing value the document was indexed with
+	 * @return Object - new instance of Class parameter
 	 * @throws IOException
 	 */
-	public IndexResponse<?> postSync(Object obj, String id) throws IOException {
-		// Cannot create POST if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return null;
-
-		mapper = new ObjectMapper();
-		response = null;
-		IndexResponse<?> indexResponse = null;
-
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(obj.getClass(), ElasticDocument.class);
-		String indexAndTypeStr = StringUtils.isEmpty(id) ? getIndexAndTypeString(elasticDocument) : getIndexAndTypeString(elasticDocument) + id;
-
-		// Convert object to JSON String and create HTTPEntity from it
-		String jsonString = mapper.writeValueAsString(obj);
-		HttpEntity entity = new NStringEntity(jsonString, ContentType.APPLICATION_JSON);
-		response = restClient.performRequest(
-				POST,
-				indexAndTypeStr,
-				Collections.<String, String>emptyMap(),
-				entity);
-		indexResponse = mapper.readValue(EntityUtils.toString(response.getEntity()), IndexResponse.class);
-
-		return indexResponse;
+	public <T> T findOne(Class<T> clazz, String id, String routing) throws IOException {
+		return findOne(clazz, id, routing, true);
 	}
-
+	
 	/**
-	 * Returns {@link DeleteResponse} for DELETE requests.
+	 * Same as {@link #findOne(Class, String, boolean)} for a document indexed with a routing value.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @param id - Elasticsearch document ID
-	 * @return DeleteResponse<?> 
+	 * @param id - Document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param allowBatching - false to bypass the _mget batcher
+	 * @return Object - new instance of Class parameter
 	 * @throws IOException
 	 */
-	public DeleteResponse<?> deleteSyncById(String id, Class<?> clazz) throws IOException {
-		// Cannot create DELETE if no connection to Elasticsearch
+	public <T> T findOne(Class<T> clazz, String id, String routing, boolean allowBatching) throws IOException {
+		// Cannot create GET if no connection to Elasticsearch
 		if (!restClientExists()) 
 			return null;
-
-		mapper = new ObjectMapper();
-		response = null;
-		DeleteResponse<?> deleteResponse = null;
-
-		// Pull annotation and generate DELETE request
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(clazz, ElasticDocument.class);
-		String indexAndTypeStr = getIndexAndTypeString(elasticDocument);
-		if (!StringUtils.isEmpty(indexAndTypeStr) && !StringUtils.isEmpty(id)) {
-			response = restClient.performRequest(DELETE, indexAndTypeStr + id); 
-			deleteResponse = mapper.readValue(EntityUtils.toString(response.getEntity()), DeleteResponse.class);
+		
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		boolean batched = allowBatching && multiGetBatcher.isEnabled();
+		Cache<String, byte[]> cache = documentCacheManager.getCache(clazz);
+		OperationSample sample = metrics.start(OPERATION_FIND_ONE, metadata.getIndexName());
+		try {
+			byte[] source;
+			if (Objects.isNull(cache)) {
+				if (!batched) {
+					Response response = performRequest(sample, GET, withRouting(metadata.getSourceEndpoint(id), routing), null);
+					return sample.stop(metadata.getDocumentReader().readValue(getContent(response)));
+				}
+				sample.batched();
+				source = awaitSource(multiGetBatcher.load(metadata, id, routing));
+			} else {
+				source = awaitSource(documentCacheManager.get(clazz, id, key -> fetchSource(metadata, key, routing, batched, sample)));
+			}
+			return sample.stop(Objects.isNull(source) ? null : metadata.getDocumentReader().readValue(source));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
 		}
-		return deleteResponse;
 	}
 	
-	public Long getIndexCount(Class<?> clazz) throws IOException {
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(clazz, ElasticDocument.class);
-		if (!Objects.isNull(elasticDocument)) {
-			return getIndexCount(elasticDocument.indexName());
-		}
-		return -1L;
+	/**
+	 * Returns a {@link ResponseFuture} that completes with an instance of the passed in Class 
+	 * if there is a Elasticsearch document with the specified ID. Uses asynchronous communication, 
+	 * the document cache and the _mget batcher are used the same way as {@link #findOne(Class, String)}.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @return ResponseFuture completed with the new instance of Class parameter
+	 */
+	public <T> ResponseFuture<T> findOneAsync(Class<T> clazz, String id) {
+		return findOneAsync(clazz, id, true);
 	}
 	
-	public Long getIndexCount(String indexName) throws IOException {
-		if (!restClientExists()) 
-			return null;
-		mapper = new ObjectMapper();
-		response = null;
-		
-		response = restClient.performRequest(
-				GET,
-				indexName 
-				+ UrlComponentEnum.FWD_SLASH.getValue() 
-				+ UrlComponentEnum.COUNT.getValue());
-		
-		return mapper.readValue(response.getEntity().getContent(), CountResponse.class).getCount();
+	/**
+	 * Same as {@link #findOneAsync(Class, String)}, pass false for allowBatching to bypass the 
+	 * _mget batcher.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @param allowBatching - false to bypass the _mget batcher
+	 * @return ResponseFuture completed with the new instance of Class parameter
+	 */
+	public <T> ResponseFuture<T> findOneAsync(Class<T> clazz, String id, boolean allowBatching) {
+		return findOneAsync(clazz, id, null, allowBatching);
 	}
 	
 	/**
-	 * Returns ResponseEntity<?> object wrapped around a {@link QueryResponse}
-	 * for GET requests. 
+	 * Same as {@link #findOneAsync(Class, String)} for a document indexed with a routing value, 
+	 * see {@link RoutingKey}.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @param id - Elasticsearch document ID
-	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
-	 * @throws IOException
+	 * @param id - Document ID
+	 * @param routing - routing value the document was indexed with
+	 * @return ResponseFuture completed with the new instance of Class parameter
 	 */
-	public ResponseEntity<?> getSyncResponseEntity(Class<?> clazz, String query) throws IOException {
-		// Cannot create GET if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return null;
-
-		mapper = new ObjectMapper();
-		response = null;
-		
-		query = buildQueryHelper(clazz, query);
-		response = restClient.performRequest(GET, query);
-		
-		return getResponseEntity(response);
+	public <T> ResponseFuture<T> findOneAsync(Class<T> clazz, String id, String routing) {
+		return findOneAsync(clazz, id, routing, true);
 	}
 	
 	/**
-	 * Returns ResponseEntity<?> object wrapped around a {@link IndexResponse}  
-	 * for POST requests.
+	 * Same as {@link #findOneAsync(Class, String, boolean)} for a document indexed with a routing value.
 	 * 
-	 * @param obj - Java object that is annotated with {@link ElasticDocument}
-	 * @param id - Optional Elasticsearch document ID
-	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
-	 * @throws IOException
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param allowBatching - false to bypass the _mget batcher
+	 * @return ResponseFuture completed with the new instance of Class parameter
 	 */
-	public ResponseEntity<?> postSyncResponseEntity(Object obj, String id) throws IOException {
-		// Cannot create POST if no connection to Elasticsearch
+	public <T> ResponseFuture<T> findOneAsync(Class<T> clazz, String id, String routing, boolean allowBatching) {
+		ObjectReader documentReader = getDocumentReader(clazz);
+		Cache<String, byte[]> cache = documentCacheManager.getCache(clazz);
+		// A write or invalidation while the read is in flight keeps its response out of the cache
+		long generation = documentCacheManager.getGeneration(clazz);
+		ResponseFuture<T> future = new ResponseFuture<>(response -> {
+			if (Objects.isNull(cache))
+				return documentReader.readValue(getContent(response));
+
+			byte[] source = StreamUtils.copyToByteArray(getContent(response));
+			documentCacheManager.putIfUnchanged(clazz, id, source, generation);
+			return documentReader.readValue(source);
+		});
+		// Cannot create GET if no connection to Elasticsearch
 		if (!restClientExists()) 
-			return null;
+			return noConnection(future);
+
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		OperationSample sample = metrics.start(OPERATION_FIND_ONE, metadata.getIndexName());
+		sample.track(future);
 
-		mapper = new ObjectMapper();
-		response = null;
+		byte[] cachedSource = Objects.isNull(cache) ? null : cache.getIfPresent(id);
+		if (!Objects.isNull(cachedSource)) {
+			try {
+				future.complete(documentReader.readValue(cachedSource));
+			} catch (IOException e) {
+				future.completeExceptionally(e);
+			}
+			return future;
+		}
 
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(obj.getClass(), ElasticDocument.class);
-		String indexAndTypeStr = StringUtils.isEmpty(id) ? getIndexAndTypeString(elasticDocument) : getIndexAndTypeString(elasticDocument) + id;
+		if (allowBatching && multiGetBatcher.isEnabled()) {
+			sample.batched();
+			multiGetBatcher.load(metadata, id, routing).whenComplete((source, error) -> {
+				if (!Objects.isNull(error)) {
+					future.completeExceptionally(error);
+					return;
+				}
+				try {
+					if (!Objects.isNull(source))
+						documentCacheManager.putIfUnchanged(clazz, id, source, generation);
+					future.complete(Objects.isNull(source) ? null : documentReader.readValue(source));
+				} catch (IOException e) {
+					future.completeExceptionally(e);
+				}
+			});
+			return future;
+		}
 
-		// Convert object to JSON String and create HTTPEntity from it
-		String jsonString = mapper.writeValueAsString(obj);
-		HttpEntity entity = new NStringEntity(jsonString, ContentType.APPLICATION_JSON);
-		response = restClient.performRequest(
-				POST,
-				indexAndTypeStr,
-				Collections.<String, String>emptyMap(),
-				entity);
-		
-		return getResponseEntity(response);
+		performRequestAsync(sample, GET, withRouting(metadata.getSourceEndpoint(id), routing), null, future);
+		return future;
 	}
-	
+
 	/**
-	 * Returns ResponseEntity<?> object wrapped around a {@link DeleteResponse}
-	 * for DELETE requests.
+	 * Returns a list of objects retrieved from Elasticsearch associated 
+	 * with the corresponding Class<?> clazz. Only the first page of hits is returned,
+	 * use {@link #stream(Class, String)} to read an entire index.
 	 * 
 	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
-	 * @param id - Elasticsearch document ID
-	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
+	 * @return Potentially empty List of Objects retrieved from Elasticsearch 
 	 * @throws IOException
 	 */
-	public ResponseEntity<?> deleteSyncResponseEntity(Class<?> clazz, String id) throws IOException {
-		// Cannot create DELETE if no connection to Elasticsearch
-		if (!restClientExists()) 
-			return null;
+	public List<Object> findAll(Class<?> clazz) throws IOException {
+		List<Object> objList = new ArrayList<Object>();
 
-		mapper = new ObjectMapper();
-		response = null;
+		// Cannot create GET if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return objList;
 
-		// Pull annotation and generate DELETE request
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(clazz, ElasticDocument.class);
-		String indexAndTypeStr = getIndexAndTypeString(elasticDocument);
-		if (!StringUtils.isEmpty(indexAndTypeStr) && !StringUtils.isEmpty(id)) {
-			response = restClient.performRequest(DELETE, indexAndTypeStr + id); 
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		OperationSample sample = metrics.start(OPERATION_FIND_ALL, metadata.getIndexName());
+		try {
+			// Get all values associated with object, only what the parser reads is sent back
+			String endpoint = withFilterPath(metadata.getDefaultProjection().applyTo(metadata.getSearchEndpoint()), 
+					SearchPage.FILTER_PATH);
+			Response response = performRequest(sample, GET, endpoint, null);
+			
+			// Bind each hits.hits[*]._source straight from the response stream
+			SearchPage<Object> searchPage = StreamingSearchParser.parse(getContent(response), metadata.getDocumentReader());
+			objList.addAll(searchPage.getDocuments());
+			return sample.stop(objList);
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
 		}
-		return getResponseEntity(response);
 	}
-
+	
 	/**
-	 * Checks the Autowired RestClient is not null.
+	 * Returns a lazy Stream over every document matched by query, read page by page with the 
+	 * scroll API using the configured <i>elasticsearch.scroll.size</i>. Unlike {@link #findAll(Class)} 
+	 * the result is not limited to the first page of hits and at most two pages are held in memory. 
+	 * The Stream should be closed, ideally with try-with-resources, to release the scroll context 
+	 * early when it is not consumed to the end.
 	 * 
-	 * @return true if the object client is not null, false otherwise
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body (ex. {"query":{"match_all":{}}}), empty to match all documents
+	 * @return Stream of documents
+	 * @throws IOException if the initial search fails
 	 */
-	private boolean restClientExists() {
-		return !Objects.isNull(restClient);
+	public <T> Stream<T> stream(Class<T> clazz, String query) throws IOException {
+		return stream(clazz, query, scrollSize);
 	}
-
+	
 	/**
-	 * Pulls index name and type from annotated {@link ElasticDocument} classes
+	 * Same as {@link #stream(Class, String)} with an explicit number of documents per scroll page.
 	 * 
-	 * @param elasticDocument
-	 * @return String representing index and type (ex. /foo/bar)
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per scroll page
+	 * @return Stream of documents
+	 * @throws IOException if the initial search fails
 	 */
-	private String getIndexAndTypeString(ElasticDocument elasticDocument) {
-		StringBuilder stringBuilder = new StringBuilder();
-		if (!Objects.isNull(elasticDocument)) {
-			stringBuilder.append(
-					UrlComponentEnum.FWD_SLASH.getValue() 
-					+ elasticDocument.indexName());
-			// Type is not required in ES, if none given do not set it
-			if (StringUtils.isEmpty(elasticDocument.type())) {
-				stringBuilder.append(
-						UrlComponentEnum.FWD_SLASH.getValue());
-			} else {
-				stringBuilder.append(
-						UrlComponentEnum.FWD_SLASH.getValue() 
-						+ elasticDocument.type() 
-						+ UrlComponentEnum.FWD_SLASH.getValue());
-			}
-		}
-		return stringBuilder.toString();
+	public <T> Stream<T> stream(Class<T> clazz, String query, int pageSize) throws IOException {
+		return toStream(iterator(clazz, query, pageSize));
 	}
-
-	private String buildQueryHelper(Class<?> clazz, String query) {
-		// Pull in annotation from class if it exists to determine index and type
-		ElasticDocument elasticDocument = AnnotationUtils.findAnnotation(clazz, ElasticDocument.class);
-		String result = getIndexAndTypeString(elasticDocument);
-
-		// No query provided, pass back index/type
-		if (StringUtils.isEmpty(query)) {
-			return result;
-		}
-		
-		// If index/type are in the query string remove it
-		query = StringUtils.replace(query, result, "");
-		result += query;
-
-		return result;
+	
+	/**
+	 * Same as {@link #stream(Class, String)}, the _source of each hit is projected onto 
+	 * projectionClass: only the fields it binds are returned by Elasticsearch.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty to match all documents
+	 * @param projectionClass - DTO class the _source of each hit is bound to
+	 * @return Stream of projectionClass instances
+	 * @throws IOException if the initial search fails
+	 */
+	public <D> Stream<D> stream(Class<?> clazz, String query, Class<D> projectionClass) throws IOException {
+		return toStream(this.<D>scroll(getMetadata(clazz), query, scrollSize, registry.getProjection(projectionClass), 
+				registry.getProjectionReader(projectionClass)));
 	}
 	
 	/**
-	 * Helper method parse response from Elasticsearch and returns corresponding ResponseEntity.
+	 * Returns a lazy {@link ScrollIterator} over every document matched by query, see 
+	 * {@link #stream(Class, String)}.
 	 * 
-	 * @param elasticResponse - Response object from Elasticsearch
-	 * @param shouldReturnSourceObj - boolean to determine whether to return all data 
-	 * associated with the response or return the underlying _source object
-	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
-	 * @throws JsonParseException
-	 * @throws JsonMappingException
-	 * @throws ParseException
-	 * @throws IOException
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per scroll page
+	 * @return ScrollIterator of documents, must be closed if not consumed to the end
+	 * @throws IOException if the initial search fails
+	 * @throws IllegalArgumentException if pageSize is not positive
 	 */
-	private ResponseEntity<?> getResponseEntity(Response elasticResponse) throws JsonParseException, JsonMappingException, ParseException, IOException {
-		ObjectMapper mapper = new ObjectMapper();
+	public <T> ScrollIterator<T> iterator(Class<T> clazz, String query, int pageSize) throws IOException {
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		return scroll(metadata, query, pageSize, metadata.getDefaultProjection(), metadata.getDocumentReader());
+	}
 
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the first {@link SearchPage} of a scroll
+	 * over every document matched by query. Uses asynchronous communication, the following pages
+	 * are read with {@link #scrollAsync(Class, String)} and the scroll must be released with
+	 * {@link #clearScrollAsync(String)} unless a page shorter than pageSize was received.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per scroll page
+	 * @return ResponseFuture completed with the first page
+	 * @throws IllegalArgumentException if pageSize is not positive
+	 */
+	public <T> ResponseFuture<SearchPage<T>> openScrollAsync(Class<T> clazz, String query, int pageSize) {
+		checkPageSize(pageSize);
+		ObjectReader documentReader = getDocumentReader(clazz);
+		ResponseFuture<SearchPage<T>> future = new ResponseFuture<>(
+				response -> StreamingSearchParser.parse(getContent(response), documentReader));
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists())
+			return noConnection(future);
+
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		OperationSample sample = metrics.start(OPERATION_SCROLL, metadata.getIndexName());
+		String endpoint = ScrollIterator.openEndpoint(metadata.getSearchEndpoint(), metadata.getDefaultProjection(), 
+				pageSize, scrollKeepAlive);
+		performRequestAsync(sample, POST, endpoint, ScrollIterator.openBody(query), sample.track(future));
+		return future;
+	}
+
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link SearchPage} following scrollId.
+	 * Uses asynchronous communication.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param scrollId - _scroll_id of the previous page
+	 * @return ResponseFuture completed with the next page, empty once every document was read
+	 */
+	public <T> ResponseFuture<SearchPage<T>> scrollAsync(Class<T> clazz, String scrollId) {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists())
+			return noConnection(new ResponseFuture<>(response -> null));
+
+		return ScrollIterator.fetchPage(restClient, compression, registry.getMapper(), getDocumentReader(clazz),
+				scrollKeepAlive, scrollId);
+	}
+
+	/**
+	 * Releases a scroll context without waiting for Elasticsearch to confirm it, failures are
+	 * only logged since the context expires on its own after <i>elasticsearch.scroll.keep-alive</i>.
+	 *
+	 * @param scrollId - _scroll_id to clear, ignored when null
+	 */
+	public void clearScrollAsync(String scrollId) {
+		// Cannot create DELETE if no connection to Elasticsearch
+		if (!restClientExists())
+			return;
+
+		ScrollIterator.clearScroll(restClient, registry.getMapper(), scrollId);
+	}
+
+	/**
+	 * Returns the number of documents fetched per scroll page, <i>elasticsearch.scroll.size</i>.
+	 *
+	 * @return scroll page size
+	 */
+	protected int getScrollSize() {
+		return scrollSize;
+	}
+
+	/**
+	 * Returns all Documents in {@link QueryResponse} object thats associated with clazz parameter.
+	 * Uses synchronous communication.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return QueryResponse 
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public <T> QueryResponse<T> getAllSync(Class<T> clazz) throws IOException, ParseException {
+		return getSync(clazz, UrlComponentEnum.SEARCH.getValue()); 
+	}
+
+	/**
+	 * Returns a {@link ResponseFuture} that completes with all Documents in {@link QueryResponse} 
+	 * object thats associated with clazz parameter. Uses Asynchronous communication.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return ResponseFuture completed with the QueryResponse
+	 */
+	public <T> ResponseFuture<QueryResponse<T>> getAllAsync(Class<T> clazz) {
+		return searchAsync(clazz, UrlComponentEnum.SEARCH.getValue());
+	}
+
+	/**
+	 * Returns {@link IndexResponse} for POST requests without a specified ID.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @return IndexResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> IndexResponse<T> postSync(T obj) throws IOException {
+		return postSync(obj, null);
+	}
+
+	/**
+	 * Returns {@link IndexResponse} for POST requests.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
+	 * @return IndexResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> IndexResponse<T> postSync(T obj, String id) throws IOException {
+		return postSync(obj, id, getMetadata(obj.getClass()).getRefreshPolicy());
+	}
+
+	/**
+	 * Returns {@link IndexResponse} for POST requests, with the given refresh policy instead 
+	 * of the default of the class.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
+	 * @param refresh - when the document becomes visible to searches, pass it here rather 
+	 * than appending ?refresh= to the ID
+	 * @return IndexResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> IndexResponse<T> postSync(T obj, String id, RefreshEnum refresh) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		ElasticDocumentMetadata metadata = getMetadata(obj.getClass());
+		String indexAndTypeStr = withRefresh(withRouting(
+				StringUtils.isEmpty(id) ? metadata.getBasePath() : metadata.getDocumentEndpoint(id), metadata.getRouting(obj)), refresh);
+
+		// Convert object to JSON and create HTTPEntity from it, compressed if enabled
+		byte[] source = metadata.getDocumentWriter().writeValueAsBytes(obj);
+		HttpEntity entity = compression.createEntity(source, ContentType.APPLICATION_JSON);
+		OperationSample sample = metrics.start(OPERATION_INDEX, metadata.getIndexName());
+		try {
+			Response response = performRequest(sample, POST, indexAndTypeStr, entity);
+			documentCacheManager.put(obj.getClass(), id, source);
+			invalidateSearches(metadata.getIndexName());
+
+			// The wait for a coalesced refresh is not part of the operation time
+			IndexResponse<T> indexResponse = sample.stop(metadata.getIndexResponseReader().readValue(getContent(response)));
+			awaitRefresh(metadata.getIndexName(), refresh);
+			return indexResponse;
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link IndexResponse} of a POST request.
+	 * Uses asynchronous communication.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
+	 * @return ResponseFuture completed with the IndexResponse
+	 * @throws IOException if the object cannot be serialized
+	 */
+	public <T> ResponseFuture<IndexResponse<T>> indexAsync(T obj, String id) throws IOException {
+		return indexAsync(obj, id, getMetadata(obj.getClass()).getRefreshPolicy());
+	}
+	
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link IndexResponse} of a POST request, 
+	 * with the given refresh policy instead of the default of the class. Uses asynchronous communication.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
+	 * @param refresh - when the document becomes visible to searches
+	 * @return ResponseFuture completed with the IndexResponse
+	 * @throws IOException if the object cannot be serialized
+	 */
+	public <T> ResponseFuture<IndexResponse<T>> indexAsync(T obj, String id, RefreshEnum refresh) throws IOException {
+		ObjectReader indexResponseReader = getMetadata(obj.getClass()).getIndexResponseReader();
+		ResponseFuture<IndexResponse<T>> future = new ResponseFuture<>(
+				response -> indexResponseReader.readValue(getContent(response)));
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return noConnection(future);
+
+		ElasticDocumentMetadata metadata = getMetadata(obj.getClass());
+		String indexAndTypeStr = withRefresh(withRouting(
+				StringUtils.isEmpty(id) ? metadata.getBasePath() : metadata.getDocumentEndpoint(id), metadata.getRouting(obj)), refresh);
+
+		// Convert object to JSON and create HTTPEntity from it, compressed if enabled
+		byte[] source = metadata.getDocumentWriter().writeValueAsBytes(obj);
+		HttpEntity entity = compression.createEntity(source, ContentType.APPLICATION_JSON);
+		OperationSample sample = metrics.start(OPERATION_INDEX, metadata.getIndexName());
+		performRequestAsync(sample, POST, indexAndTypeStr, entity, sample.track(future));
+		future.thenRun(() -> documentCacheManager.put(obj.getClass(), id, source))
+				.whenComplete((result, error) -> invalidateSearches(metadata.getIndexName()));
+		return afterRefresh(future, metadata.getIndexName(), refresh);
+	}
+
+	/**
+	 * Changes some fields of an existing document with an _update request, only the changed 
+	 * fields are sent and Elasticsearch skips the write when they hold the same values already 
+	 * (detect_noop, the result is then "noop"). Null properties of a Java object are left out 
+	 * of the changes, use a Map to set a field to null.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param partialDoc - Map or Java object holding the fields to change (ex. {"barVal":"test"})
+	 * @return IndexResponse<?> 
+	 * @throws IOException if the document does not exist or Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> update(Class<T> clazz, String id, Object partialDoc) throws IOException {
+		return update(clazz, id, null, partialDoc, getMetadata(clazz).getRefreshPolicy());
+	}
+	
+	/**
+	 * Same as {@link #update(Class, String, Object)} for a document indexed with a routing value, 
+	 * with the given refresh policy instead of the default of the class.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param partialDoc - Map or Java object holding the fields to change
+	 * @param refresh - when the change becomes visible to searches
+	 * @return IndexResponse<?> 
+	 * @throws IOException if the document does not exist or Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> update(Class<T> clazz, String id, String routing, Object partialDoc, 
+			RefreshEnum refresh) throws IOException {
+		ObjectNode body = registry.getMapper().createObjectNode();
+		body.set("doc", partialSource(partialDoc));
+		body.put("detect_noop", true);
+		return performUpdate(clazz, id, resolveRouting(clazz, routing, partialDoc), body, refresh);
+	}
+	
+	/**
+	 * Changes some fields of a document like {@link #update(Class, String, Object)}, or creates 
+	 * the document from them when it does not exist (doc_as_upsert).
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param doc - Map or Java object holding the fields to change, the whole document when it is created
+	 * @return IndexResponse<?> with result "created", "updated" or "noop"
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> upsert(Class<T> clazz, String id, Object doc) throws IOException {
+		return upsert(clazz, id, null, doc, getMetadata(clazz).getRefreshPolicy());
+	}
+	
+	/**
+	 * Same as {@link #upsert(Class, String, Object)} for a document indexed with a routing value, 
+	 * with the given refresh policy instead of the default of the class.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value of the document, null to take it from its {@link RoutingKey}
+	 * @param doc - Map or Java object holding the fields to change, the whole document when it is created
+	 * @param refresh - when the change becomes visible to searches
+	 * @return IndexResponse<?> with result "created", "updated" or "noop"
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> upsert(Class<T> clazz, String id, String routing, Object doc, 
+			RefreshEnum refresh) throws IOException {
+		ObjectNode body = registry.getMapper().createObjectNode();
+		body.set("doc", partialSource(doc));
+		body.put("doc_as_upsert", true);
+		body.put("detect_noop", true);
+		return performUpdate(clazz, id, resolveRouting(clazz, routing, doc), body, refresh);
+	}
+	
+	/**
+	 * Changes a document with a painless script run by Elasticsearch, the document is neither 
+	 * fetched nor sent (ex. "ctx._source.counter += params.count").
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param script - inline painless script, ctx._source holds the document
+	 * @param params - values the script reads as params, can be null
+	 * @return IndexResponse<?> 
+	 * @throws IOException if the document does not exist or Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> updateByScript(Class<T> clazz, String id, String script, 
+			Map<String, Object> params) throws IOException {
+		return updateByScript(clazz, id, script, params, null, getMetadata(clazz).getRefreshPolicy());
+	}
+	
+	/**
+	 * Same as {@link #updateByScript(Class, String, String, Map)}, indexing upsert instead of 
+	 * running the script when the document does not exist.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param script - inline painless script, ctx._source holds the document
+	 * @param params - values the script reads as params, can be null
+	 * @param upsert - document created when there is none, null to fail instead
+	 * @param refresh - when the change becomes visible to searches
+	 * @return IndexResponse<?> 
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public <T> IndexResponse<T> updateByScript(Class<T> clazz, String id, String script, 
+			Map<String, Object> params, T upsert, RefreshEnum refresh) throws IOException {
+		ObjectNode body = registry.getMapper().createObjectNode();
+		ObjectNode scriptNode = body.putObject("script");
+		scriptNode.put("inline", script);
+		scriptNode.put("lang", "painless");
+		if (!Objects.isNull(params))
+			scriptNode.set("params", registry.getMapper().valueToTree(params));
+		if (!Objects.isNull(upsert))
+			body.set("upsert", registry.getMapper().readTree(getMetadata(clazz).getDocumentWriter().writeValueAsBytes(upsert)));
+		return performUpdate(clazz, id, resolveRouting(clazz, null, upsert), body, refresh);
+	}
+	
+	/**
+	 * Returns {@link DeleteResponse} for DELETE requests.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @return DeleteResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> DeleteResponse<T> deleteSyncById(String id, Class<T> clazz) throws IOException {
+		return deleteSyncById(id, clazz, getMetadata(clazz).getRefreshPolicy());
+	}
+	
+	/**
+	 * Returns {@link DeleteResponse} for DELETE requests, with the given refresh policy instead 
+	 * of the default of the class.
+	 * 
+	 * @param id - Elasticsearch document ID
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param refresh - when the deletion becomes visible to searches
+	 * @return DeleteResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> DeleteResponse<T> deleteSyncById(String id, Class<T> clazz, RefreshEnum refresh) throws IOException {
+		return deleteSyncById(id, clazz, null, refresh);
+	}
+	
+	/**
+	 * Returns {@link DeleteResponse} for DELETE requests of a document indexed with a routing 
+	 * value, see {@link RoutingKey}.
+	 * 
+	 * @param id - Elasticsearch document ID
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param refresh - when the deletion becomes visible to searches
+	 * @return DeleteResponse<?> 
+	 * @throws IOException
+	 */
+	public <T> DeleteResponse<T> deleteSyncById(String id, Class<T> clazz, String routing, RefreshEnum refresh) throws IOException {
+		// Cannot create DELETE if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		DeleteResponse<T> deleteResponse = null;
+
+		if (!StringUtils.isEmpty(id)) {
+			ElasticDocumentMetadata metadata = getMetadata(clazz);
+			OperationSample sample = metrics.start(OPERATION_DELETE, metadata.getIndexName());
+			try {
+				// Invalidate even if the DELETE fails, the document is gone or in an unknown state
+				Response response;
+				try {
+					response = performRequest(sample, DELETE, withRefresh(withRouting(metadata.getDocumentEndpoint(id), routing), refresh), null); 
+				} finally {
+					documentCacheManager.invalidate(clazz, id);
+					invalidateSearches(metadata.getIndexName());
+				}
+				deleteResponse = sample.stop(metadata.getDeleteResponseReader().readValue(getContent(response)));
+				awaitRefresh(metadata.getIndexName(), refresh);
+			} catch (IOException | RuntimeException e) {
+				sample.fail(e);
+				throw e;
+			}
+		}
+		return deleteResponse;
+	}
+	
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link DeleteResponse} of a DELETE request.
+	 * Uses asynchronous communication. The future completes with null when no ID is given.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @return ResponseFuture completed with the DeleteResponse
+	 */
+	public <T> ResponseFuture<DeleteResponse<T>> deleteAsync(Class<T> clazz, String id) {
+		return deleteAsync(clazz, id, getMetadata(clazz).getRefreshPolicy());
+	}
+	
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link DeleteResponse} of a DELETE request, 
+	 * with the given refresh policy instead of the default of the class. Uses asynchronous communication.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param refresh - when the deletion becomes visible to searches
+	 * @return ResponseFuture completed with the DeleteResponse
+	 */
+	public <T> ResponseFuture<DeleteResponse<T>> deleteAsync(Class<T> clazz, String id, RefreshEnum refresh) {
+		return deleteAsync(clazz, id, null, refresh);
+	}
+	
+	/**
+	 * Returns a {@link ResponseFuture} that completes with the {@link DeleteResponse} of a DELETE request 
+	 * of a document indexed with a routing value, see {@link RoutingKey}. Uses asynchronous communication.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param refresh - when the deletion becomes visible to searches
+	 * @return ResponseFuture completed with the DeleteResponse
+	 */
+	public <T> ResponseFuture<DeleteResponse<T>> deleteAsync(Class<T> clazz, String id, String routing, RefreshEnum refresh) {
+		ObjectReader deleteResponseReader = getMetadata(clazz).getDeleteResponseReader();
+		ResponseFuture<DeleteResponse<T>> future = new ResponseFuture<>(
+				response -> deleteResponseReader.readValue(getContent(response)));
+		// Cannot create DELETE if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return noConnection(future);
+
+		if (!StringUtils.isEmpty(id)) {
+			ElasticDocumentMetadata metadata = getMetadata(clazz);
+			OperationSample sample = metrics.start(OPERATION_DELETE, metadata.getIndexName());
+			performRequestAsync(sample, DELETE, withRefresh(withRouting(metadata.getDocumentEndpoint(id), routing), refresh), 
+					null, sample.track(future));
+			future.whenComplete((deleteResponse, error) -> {
+				documentCacheManager.invalidate(clazz, id);
+				invalidateSearches(getMetadata(clazz).getIndexName());
+			});
+			return afterRefresh(future, metadata.getIndexName(), refresh);
+		} else {
+			future.complete(null);
+		}
+		return future;
+	}
+	
+	/**
+	 * Returns a {@link BulkProcessor.Builder} bound to this service's connection and 
+	 * {@link ElasticDocumentRegistry}. Callers configure the flush limits, build the processor, add actions 
+	 * and close it once done.
+	 * 
+	 * @return BulkProcessor.Builder
+	 */
+	public BulkProcessor.Builder bulkProcessorBuilder() {
+		return BulkProcessor.builder(restClient, registry)
+				.setCompression(compression);
+	}
+	
+	/**
+	 * Indexes all passed in documents through _bulk requests and waits for them to complete.
+	 * Elasticsearch generates the document IDs.
+	 * 
+	 * @param documents - Java objects that are annotated with {@link ElasticDocument}
+	 * @return BulkResult summarizing the load, including any failed items
+	 * @throws IOException if a document cannot be serialized
+	 */
+	public BulkResult bulkIndex(Collection<?> documents) throws IOException {
+		// The strictest default of the classes wins, TRUE then WAIT then FALSE
+		RefreshEnum refresh = documents.stream()
+				.map(document -> getMetadata(document.getClass()).getRefreshPolicy())
+				.min(Comparator.naturalOrder())
+				.orElse(RefreshEnum.FALSE);
+		return bulkIndex(documents, refresh);
+	}
+	
+	/**
+	 * Indexes all passed in documents through _bulk requests with the given refresh policy, 
+	 * and waits for them to complete. Elasticsearch generates the document IDs.
+	 * 
+	 * @param documents - Java objects that are annotated with {@link ElasticDocument}
+	 * @param refresh - refresh policy of every _bulk request
+	 * @return BulkResult summarizing the load, including any failed items
+	 * @throws IOException if a document cannot be serialized
+	 */
+	public BulkResult bulkIndex(Collection<?> documents, RefreshEnum refresh) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+		
+		List<String> indexNames = documents.stream()
+				.map(document -> getMetadata(document.getClass()).getIndexName())
+				.distinct()
+				.collect(Collectors.toList());
+		OperationSample sample = metrics.start(OPERATION_BULK, String.join(",", indexNames));
+		
+		final List<BulkItemResponse> failures = Collections.synchronizedList(new ArrayList<>());
+		BulkProcessor processor = bulkProcessorBuilder()
+				.setRefresh(isCoalesced(refresh) ? RefreshEnum.FALSE : refresh)
+				.setListener(new BulkListener() {
+					@Override
+					public void onItemFailure(BulkItemResponse item) {
+						failures.add(item);
+					}
+				})
+				.build();
+		try {
+			for (Object document : documents) {
+				processor.index(document, null);
+			}
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		} finally {
+			processor.close();
+			indexNames.forEach(this::invalidateSearches);
+		}
+		BulkResult result = sample.stop(new BulkResult(documents.size(), processor.getSucceeded(), processor.getFailed(), 
+				processor.getRetried(), failures));
+		for (String indexName : indexNames) {
+			awaitRefresh(indexName, refresh);
+		}
+		return result;
+	}
+	
+	/**
+	 * Exports every document of a class matched by query to gzip compressed NDJSON files, one 
+	 * per slice of a sliced scroll read in parallel, see {@link IndexExporter}. Documents are 
+	 * streamed to the files as raw _source, never held in memory all at once.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body (ex. {"query":{"term":{"barVal":"test"}}}), empty for all documents
+	 * @param directory - directory the files are written to
+	 * @return ExportResult with the files and the docs/sec and MB/sec of every slice
+	 * @throws IOException if a slice fails
+	 */
+	public ExportResult exportToNdjson(Class<?> clazz, String query, Path directory) throws IOException {
+		return exportToNdjson(clazz, query, directory, 0);
+	}
+	
+	/**
+	 * Same as {@link #exportToNdjson(Class, String, Path)} with a given number of slices.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty for all documents
+	 * @param directory - directory the files are written to
+	 * @param slices - number of slices read in parallel, 0 for elasticsearch.export.slices
+	 * @return ExportResult with the files and the docs/sec and MB/sec of every slice
+	 * @throws IOException if a slice fails
+	 */
+	public ExportResult exportToNdjson(Class<?> clazz, String query, Path directory, int slices) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+		
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		OperationSample sample = metrics.start(OPERATION_EXPORT, metadata.getIndexName());
+		try {
+			return sample.stop(slices > 0 
+					? indexExporter.export(metadata.getIndexName(), query, directory, slices)
+					: indexExporter.export(metadata.getIndexName(), query, directory));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Imports an NDJSON file holding one _source per line into the index of a class, see 
+	 * {@link NdjsonImporter}. The file is sent in _bulk chunks straight from memory, several 
+	 * at once, and an import that stopped resumes from its checkpoint.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param file - uncompressed NDJSON file (ex. an exported file once decompressed)
+	 * @return ImportResult with the offsets and the docs/sec and MB/sec of the import
+	 * @throws IOException if the file cannot be read or a chunk failed
+	 */
+	public ImportResult importNdjson(Class<?> clazz, Path file) throws IOException {
+		return importNdjson(clazz, file, NdjsonImporter.Format.SOURCE);
+	}
+	
+	/**
+	 * Same as {@link #importNdjson(Class, Path)} for a file of a given format.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param file - uncompressed NDJSON file
+	 * @param format - SOURCE for one _source per line, BULK for action and source lines
+	 * @return ImportResult with the offsets and the docs/sec and MB/sec of the import
+	 * @throws IOException if the file cannot be read or a chunk failed
+	 */
+	public ImportResult importNdjson(Class<?> clazz, Path file, NdjsonImporter.Format format) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+		
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		return importNdjson(metadata.getIndexName(), metadata.getType(), file, format);
+	}
+	
+	/**
+	 * Same as {@link #importNdjson(Class, Path, NdjsonImporter.Format)} for an index given by name. 
+	 * The cached documents and searches of every registered class stored in the index are 
+	 * invalidated, documents a BULK file sends to other indices are not.
+	 * 
+	 * @param indexName - index the documents go to unless an action line names another
+	 * @param type - type of the documents, may be empty for BULK files
+	 * @param file - uncompressed NDJSON file
+	 * @param format - SOURCE for one _source per line, BULK for action and source lines
+	 * @return ImportResult with the offsets and the docs/sec and MB/sec of the import
+	 * @throws IOException if the file cannot be read or a chunk failed
+	 */
+	public ImportResult importNdjson(String indexName, String type, Path file, NdjsonImporter.Format format) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+		
+		OperationSample sample = metrics.start(OPERATION_IMPORT, indexName);
+		try {
+			return sample.stop(ndjsonImporter.importFile(file, indexName, type, format));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		} finally {
+			// Any document of the index may have been replaced
+			invalidateIndex(indexName);
+		}
+	}
+	
+	/**
+	 * Starts a _delete_by_query task removing every document of a class matched by query, 
+	 * and returns without waiting for it. The task runs sliced and unthrottled, see 
+	 * {@link ByQueryTaskManager}.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON query body (ex. {"query":{"term":{"barVal":"test"}}}), empty for all documents
+	 * @return ByQueryTask tracking the progress of the task
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public ByQueryTask deleteByQuery(Class<?> clazz, String query) throws IOException {
+		return deleteByQuery(clazz, query, -1);
+	}
+	
+	/**
+	 * Starts a throttled _delete_by_query task removing every document of a class matched by query, 
+	 * and returns without waiting for it.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON query body (ex. {"query":{"term":{"barVal":"test"}}}), empty for all documents
+	 * @param requestsPerSecond - documents deleted per second across all slices, negative for no throttle
+	 * @return ByQueryTask tracking the progress of the task
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public ByQueryTask deleteByQuery(Class<?> clazz, String query, float requestsPerSecond) throws IOException {
+		return submitByQuery(OPERATION_DELETE_BY_QUERY, UrlComponentEnum.DELETE_BY_QUERY, clazz, query, requestsPerSecond);
+	}
+	
+	/**
+	 * Starts an _update_by_query task over every document of a class matched by query, and 
+	 * returns without waiting for it. The task runs sliced and unthrottled, see 
+	 * {@link ByQueryTaskManager}.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON body with an optional query and script 
+	 * (ex. {"query":{"term":{"barVal":"test"}},"script":{"inline":"ctx._source.barVal = 'done'"}})
+	 * @return ByQueryTask tracking the progress of the task
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public ByQueryTask updateByQuery(Class<?> clazz, String query) throws IOException {
+		return updateByQuery(clazz, query, -1);
+	}
+	
+	/**
+	 * Starts a throttled _update_by_query task over every document of a class matched by query, 
+	 * and returns without waiting for it.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON body with an optional query and script
+	 * @param requestsPerSecond - documents updated per second across all slices, negative for no throttle
+	 * @return ByQueryTask tracking the progress of the task
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public ByQueryTask updateByQuery(Class<?> clazz, String query, float requestsPerSecond) throws IOException {
+		return submitByQuery(OPERATION_UPDATE_BY_QUERY, UrlComponentEnum.UPDATE_BY_QUERY, clazz, query, requestsPerSecond);
+	}
+	
+	/**
+	 * Returns a task started by {@link #deleteByQuery} or {@link #updateByQuery}, with the 
+	 * status of its latest poll.
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @return ByQueryTask, null if the task is unknown or completed too long ago
+	 */
+	public ByQueryTask getByQueryTask(String taskId) {
+		return byQueryTaskManager.get(taskId);
+	}
+	
+	/**
+	 * @return every running and recently completed by-query task
+	 */
+	public Collection<ByQueryTask> getByQueryTasks() {
+		return byQueryTaskManager.getAll();
+	}
+	
+	/**
+	 * Changes the throttle of a running by-query task.
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @param requestsPerSecond - new throttle, negative for no throttle
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public void rethrottleByQuery(String taskId, float requestsPerSecond) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return;
+		byQueryTaskManager.rethrottle(taskId, requestsPerSecond);
+	}
+	
+	/**
+	 * Cancels a running by-query task. Documents it already processed stay deleted or updated.
+	 * 
+	 * @param taskId - Elasticsearch task ID
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public void cancelByQuery(String taskId) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return;
+		byQueryTaskManager.cancel(taskId);
+	}
+	
+	/**
+	 * Returns the number of documents in the index of a class, see {@link #getIndexCount(String)}.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return number of documents
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public long getIndexCount(Class<?> clazz) throws IOException {
+		return getIndexCount(getMetadata(clazz).getIndexName());
+	}
+	
+	/**
+	 * Returns the number of documents in an index. Counts are cached and shared by concurrent 
+	 * callers. Writes through this service drop the count of their index, other changes show 
+	 * within elasticsearch.count-cache.staleness-millis, see {@link IndexCountCache}.
+	 * 
+	 * @param indexName - index, alias or wildcard expression
+	 * @return number of documents
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public long getIndexCount(String indexName) throws IOException {
+		if (!restClientExists()) 
+			throw new IllegalStateException("No connection to Elasticsearch, RestClient is null");
+		OperationSample sample = metrics.start(OPERATION_COUNT, indexName);
+		try {
+			return sample.stop(indexCountCache.get(indexName));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the hit, miss and eviction statistics of every document cache, keyed by 
+	 * class name. Only classes annotated with {@link DocumentCache} that were read at least 
+	 * once have a cache.
+	 * 
+	 * @return Map of class name to DocumentCacheStats
+	 */
+	public Map<String, DocumentCacheStats> getDocumentCacheStats() {
+		return documentCacheManager.getStats();
+	}
+	
+	/**
+	 * Returns ResponseEntity<?> object wrapped around a {@link QueryResponse}
+	 * for GET requests. 
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
+	 * @throws IOException
+	 */
+	public ResponseEntity<?> getSyncResponseEntity(Class<?> clazz, String query) throws IOException {
+		// Cannot create GET if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		String endpoint = searchEndpoint(metadata, query, metadata.getDefaultProjection());
+		OperationSample sample = metrics.start(OPERATION_SEARCH, metadata.getIndexName());
+		try {
+			if (!queryCache.isEnabled()) {
+				Response response = performRequest(sample, GET, endpoint, null);
+				return sample.stop(getResponseEntity(response, clazz));
+			}
+
+			// Errors are thrown as ResponseException, a returned body is always a successful search
+			byte[] body = queryCache.get(metadata.getIndexName(), endpoint, 
+					() -> StreamUtils.copyToByteArray(getContent(performRequest(sample, GET, endpoint, null))));
+			QueryResponse<?> queryResponse = metadata.getQueryResponseReader().readValue(body);
+			return sample.stop(new ResponseEntity<QueryResponse<?>>(queryResponse, HttpStatus.OK));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns ResponseEntity<?> object wrapped around a {@link IndexResponse}  
+	 * for POST requests.
+	 * 
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Optional Elasticsearch document ID
+	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
+	 * @throws IOException
+	 */
+	public ResponseEntity<?> postSyncResponseEntity(Object obj, String id) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		ElasticDocumentMetadata metadata = getMetadata(obj.getClass());
+		String indexAndTypeStr = withRefresh(withRouting(
+				StringUtils.isEmpty(id) ? metadata.getBasePath() : metadata.getDocumentEndpoint(id), metadata.getRouting(obj)), 
+				metadata.getRefreshPolicy());
+
+		// Convert object to JSON and create HTTPEntity from it, compressed if enabled
+		byte[] source = metadata.getDocumentWriter().writeValueAsBytes(obj);
+		HttpEntity entity = compression.createEntity(source, ContentType.APPLICATION_JSON);
+		OperationSample sample = metrics.start(OPERATION_INDEX, metadata.getIndexName());
+		try {
+			Response response = performRequest(sample, POST, indexAndTypeStr, entity);
+			documentCacheManager.put(obj.getClass(), id, source);
+			invalidateSearches(metadata.getIndexName());
+			
+			ResponseEntity<?> responseEntity = sample.stop(getResponseEntity(response, obj.getClass()));
+			awaitRefresh(metadata.getIndexName(), metadata.getRefreshPolicy());
+			return responseEntity;
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns ResponseEntity<?> object wrapped around a {@link DeleteResponse}
+	 * for DELETE requests.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
+	 * @throws IOException
+	 */
+	public ResponseEntity<?> deleteSyncResponseEntity(Class<?> clazz, String id) throws IOException {
+		// Cannot create DELETE if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		Response response = null;
+
+		if (!StringUtils.isEmpty(id)) {
+			ElasticDocumentMetadata metadata = getMetadata(clazz);
+			OperationSample sample = metrics.start(OPERATION_DELETE, metadata.getIndexName());
+			try {
+				try {
+					response = performRequest(sample, DELETE, withRefresh(metadata.getDocumentEndpoint(id), metadata.getRefreshPolicy()), null); 
+				} finally {
+					documentCacheManager.invalidate(clazz, id);
+					invalidateSearches(metadata.getIndexName());
+				}
+				ResponseEntity<?> responseEntity = sample.stop(getResponseEntity(response, clazz));
+				awaitRefresh(metadata.getIndexName(), metadata.getRefreshPolicy());
+				return responseEntity;
+			} catch (IOException | RuntimeException e) {
+				sample.fail(e);
+				throw e;
+			}
+		}
+		return getResponseEntity(response, clazz);
+	}
+
+	/**
+	 * Sends an _update request and drops the cached copies of the document, whose new source 
+	 * only Elasticsearch knows.
+	 */
+	private <T> IndexResponse<T> performUpdate(Class<T> clazz, String id, String routing, ObjectNode body, 
+			RefreshEnum refresh) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			throw new IllegalStateException("No connection to Elasticsearch, RestClient is null");
+		if (StringUtils.isEmpty(id))
+			throw new IllegalArgumentException("An _update needs the ID of the document");
+
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		String endpoint = withRefresh(withRouting(metadata.getDocumentEndpoint(id) 
+				+ UrlComponentEnum.FWD_SLASH.getValue() + UrlComponentEnum.UPDATE.getValue()
+				+ "?" + UrlComponentEnum.RETRY_ON_CONFLICT.getValue() + retryOnConflict, routing), refresh);
+		HttpEntity entity = compression.createEntity(registry.getMapper().writeValueAsBytes(body), ContentType.APPLICATION_JSON);
+		OperationSample sample = metrics.start(OPERATION_UPDATE, metadata.getIndexName());
+		try {
+			Response response;
+			try {
+				response = performRequest(sample, POST, endpoint, entity);
+			} finally {
+				// A failed update may still have been applied
+				documentCacheManager.invalidate(clazz, id);
+				invalidateSearches(metadata.getIndexName());
+			}
+
+			IndexResponse<T> indexResponse = sample.stop(metadata.getIndexResponseReader().readValue(getContent(response)));
+			awaitRefresh(metadata.getIndexName(), refresh);
+			return indexResponse;
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Serializes the changes of an _update, dropping the null properties of Java objects so that 
+	 * unset fields do not overwrite stored values.
+	 */
+	private ObjectNode partialSource(Object partialDoc) {
+		JsonNode doc = registry.getMapper().valueToTree(partialDoc);
+		if (Objects.isNull(doc) || !doc.isObject())
+			throw new IllegalArgumentException("The changes of an _update must be a JSON object");
+		if (!(partialDoc instanceof Map || partialDoc instanceof JsonNode)) {
+			for (Iterator<JsonNode> values = doc.elements(); values.hasNext();) {
+				if (values.next().isNull())
+					values.remove();
+			}
+		}
+		return (ObjectNode) doc;
+	}
+	
+	/**
+	 * Returns routing, or the {@link RoutingKey} of doc when none is given and doc is a document of clazz.
+	 */
+	private String resolveRouting(Class<?> clazz, String routing, Object doc) {
+		if (!StringUtils.isEmpty(routing) || !clazz.isInstance(doc))
+			return routing;
+		return getMetadata(clazz).getRouting(doc);
+	}
+	
+	/**
+	 * Adds the refresh parameter to a write endpoint. Nothing is added for FALSE, Elasticsearch's 
+	 * default, nor for WAIT writes left to the {@link RefreshCoalescer}.
+	 */
+	private String withRefresh(String endpoint, RefreshEnum refresh) {
+		if (refresh == RefreshEnum.FALSE || isCoalesced(refresh))
+			return endpoint;
+		return endpoint + (endpoint.indexOf('?') < 0 ? '?' : '&') 
+				+ UrlComponentEnum.REFRESH.getValue() + "=" + refresh.getValue();
+	}
+	
+	private boolean isCoalesced(RefreshEnum refresh) {
+		return refresh == RefreshEnum.WAIT && refreshCoalescer.isEnabled();
+	}
+	
+	/**
+	 * Blocks until the shared refresh of indexName for a coalesced WAIT write, returns at once otherwise.
+	 */
+	private void awaitRefresh(String indexName, RefreshEnum refresh) throws IOException {
+		if (!isCoalesced(refresh))
+			return;
+		try {
+			refreshCoalescer.refresh(indexName).join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not refresh " + indexName, e.getCause());
+		}
+	}
+	
+	/**
+	 * Delays the result of a coalesced WAIT write until the shared refresh of indexName, 
+	 * returns future itself otherwise.
+	 */
+	private <T> ResponseFuture<T> afterRefresh(ResponseFuture<T> future, String indexName, RefreshEnum refresh) {
+		if (!isCoalesced(refresh))
+			return future;
+		return ResponseFuture.of(future.thenCompose(
+				result -> refreshCoalescer.refresh(indexName).thenApply(refreshed -> result)));
+	}
+	
+	/**
+	 * Submits a by-query task and drops the cached documents and queries of its index, both 
+	 * right away and once the task completes, since any of them may change while it runs.
+	 */
+	private ByQueryTask submitByQuery(String operation, UrlComponentEnum endpoint, Class<?> clazz, 
+			String query, float requestsPerSecond) throws IOException {
+		// Cannot create POST if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+		
+		ElasticDocumentMetadata metadata = getMetadata(clazz);
+		OperationSample sample = metrics.start(operation, metadata.getIndexName());
+		try {
+			ByQueryTask task = byQueryTaskManager.submit(endpoint, metadata, query, requestsPerSecond);
+			documentCacheManager.invalidateAll(clazz);
+			invalidateSearches(metadata.getIndexName());
+			task.getCompletion().whenComplete((completed, error) -> {
+				documentCacheManager.invalidateAll(clazz);
+				invalidateSearches(metadata.getIndexName());
+			});
+			return sample.stop(task);
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the cached {@link ObjectReader} bound to the passed in Class.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return ObjectReader for clazz
+	 */
+	protected ObjectReader getDocumentReader(Class<?> clazz) {
+		return getMetadata(clazz).getDocumentReader();
+	}
+	
+	/**
+	 * Returns the cached {@link ObjectWriter} bound to the passed in Class.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return ObjectWriter for clazz
+	 */
+	protected ObjectWriter getDocumentWriter(Class<?> clazz) {
+		return getMetadata(clazz).getDocumentWriter();
+	}
+	
+	/**
+	 * Returns the registered metadata of the passed in Class.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return ElasticDocumentMetadata for clazz
+	 * @throws IllegalArgumentException if clazz is not annotated with {@link ElasticDocument}
+	 */
+	protected ElasticDocumentMetadata getMetadata(Class<?> clazz) {
+		return registry.get(clazz);
+	}
+
+	/**
+	 * Opens the body of an Elasticsearch response for reading. Responses are always consumed 
+	 * as streams, never copied into an intermediate String, and gzip compressed bodies are 
+	 * decompressed while they are read.
+	 * 
+	 * @param response - Response object from Elasticsearch
+	 * @return InputStream over the response body
+	 * @throws IOException
+	 */
+	protected InputStream getContent(Response response) throws IOException {
+		return compression.getContent(response);
+	}
+	
+	/**
+	 * Runs a search synchronously, see {@link #getSync(Class, String)}.
+	 * 
+	 * @param metadata - metadata of the searched document class
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param routing - routing value limiting the search to one shard, null for all shards
+	 * @param projection - _source fields to return
+	 * @param queryResponseReader - reader for the QueryResponse of the document or projection class
+	 * @return QueryResponse 
+	 * @throws IOException
+	 */
+	private <R> QueryResponse<R> query(ElasticDocumentMetadata metadata, String query, String routing, 
+			Projection projection, ObjectReader queryResponseReader) throws IOException {
+		// Cannot create GET if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return null;
+
+		String endpoint = withRouting(searchEndpoint(metadata, query, projection), routing);
+		OperationSample sample = metrics.start(OPERATION_SEARCH, metadata.getIndexName());
+		try {
+			if (!queryCache.isEnabled()) {
+				Response response = performRequest(sample, GET, endpoint, null);
+				return sample.stop(queryResponseReader.readValue(getContent(response)));
+			}
+
+			byte[] body = queryCache.get(metadata.getIndexName(), endpoint, 
+					() -> StreamUtils.copyToByteArray(getContent(performRequest(sample, GET, endpoint, null))));
+			return sample.stop(queryResponseReader.readValue(body));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Runs a search asynchronously, see {@link #searchAsync(Class, String)}.
+	 * 
+	 * @param metadata - metadata of the searched document class
+	 * @param query - String that contains the query to send to Elasticsearch
+	 * @param routing - routing value limiting the search to one shard, null for all shards
+	 * @param projection - _source fields to return
+	 * @param queryResponseReader - reader for the QueryResponse of the document or projection class
+	 * @return ResponseFuture completed with the QueryResponse
+	 */
+	private <R> ResponseFuture<QueryResponse<R>> queryAsync(ElasticDocumentMetadata metadata, String query, 
+			String routing, Projection projection, ObjectReader queryResponseReader) {
+		ResponseFuture<QueryResponse<R>> future = new ResponseFuture<>(
+				response -> queryResponseReader.readValue(getContent(response)));
+		// Cannot create GET if no connection to Elasticsearch
+		if (!restClientExists()) 
+			return noConnection(future);
+
+		String endpoint = withRouting(searchEndpoint(metadata, query, projection), routing);
+		OperationSample sample = metrics.start(OPERATION_SEARCH, metadata.getIndexName());
+		if (!queryCache.isEnabled()) {
+			performRequestAsync(sample, GET, endpoint, null, sample.track(future));
+			return future;
+		}
+
+		sample.track(future);
+		queryCache.getAsync(metadata.getIndexName(), endpoint, () -> {
+			ResponseFuture<byte[]> load = new ResponseFuture<>(
+					response -> StreamUtils.copyToByteArray(getContent(response)));
+			performRequestAsync(sample, GET, endpoint, null, load);
+			return load;
+		}).whenComplete((body, error) -> {
+			if (!Objects.isNull(error)) {
+				future.completeExceptionally(error);
+				return;
+			}
+			try {
+				future.complete(queryResponseReader.readValue(body));
+			} catch (IOException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Opens a scroll synchronously, see {@link #iterator(Class, String, int)}.
+	 * 
+	 * @param metadata - metadata of the searched document class
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per scroll page
+	 * @param projection - _source fields to return
+	 * @param documentReader - reader bound to the document or projection class
+	 * @return ScrollIterator, must be closed if not consumed to the end
+	 * @throws IOException if the initial search fails
+	 */
+	private <R> ScrollIterator<R> scroll(ElasticDocumentMetadata metadata, String query, int pageSize, 
+			Projection projection, ObjectReader documentReader) throws IOException {
+		checkPageSize(pageSize);
+		if (!restClientExists()) 
+			throw new IllegalStateException("No connection to Elasticsearch, RestClient is null");
+
+		// Only opening the scroll is timed, pages are fetched while the caller consumes them
+		OperationSample sample = metrics.start(OPERATION_SCROLL, metadata.getIndexName());
+		try {
+			return sample.stop(ScrollIterator.<R>open(restClient, compression, registry.getMapper(), 
+					documentReader, metadata.getSearchEndpoint(), projection, query, pageSize, scrollKeepAlive));
+		} catch (IOException | RuntimeException e) {
+			sample.fail(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Wraps a {@link ScrollIterator} in a Stream that clears the scroll when closed.
+	 * 
+	 * @param iterator - ScrollIterator of documents
+	 * @return Stream of documents
+	 */
+	private <R> Stream<R> toStream(ScrollIterator<R> iterator) {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(iterator::close);
+	}
+	
+	/**
+	 * Reads the _source of a document into a byte array for the document cache.
+	 * 
+	 * @param metadata - metadata of the document class
+	 * @param id - Document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @param batched - true to fetch it through the _mget batcher
+	 * @param sample - metrics of the calling operation
+	 * @return CompletableFuture completed with the _source bytes, null if a batched lookup found 
+	 * no document, completed exceptionally if the request fails
+	 */
+	private CompletableFuture<byte[]> fetchSource(ElasticDocumentMetadata metadata, String id, String routing, boolean batched, 
+			OperationSample sample) {
+		if (batched) {
+			sample.batched();
+			return multiGetBatcher.load(metadata, id, routing);
+		}
+		CompletableFuture<byte[]> source = new CompletableFuture<>();
+		try {
+			Response response = performRequest(sample, GET, withRouting(metadata.getSourceEndpoint(id), routing), null);
+			source.complete(StreamUtils.copyToByteArray(getContent(response)));
+		} catch (IOException e) {
+			source.completeExceptionally(e);
+		}
+		return source;
+	}
+	
+	/**
+	 * Sends a request and records its size and round trip into sample.
+	 * 
+	 * @param sample - metrics of the calling operation
+	 * @param method - HTTP method
+	 * @param endpoint - request endpoint
+	 * @param entity - request body, can be null
+	 * @return Response
+	 * @throws IOException
+	 */
+	private Response performRequest(OperationSample sample, String method, String endpoint, HttpEntity entity) throws IOException {
+		sample.requestSent(entity);
+		Response response = restClient.performRequest(method, endpoint, Collections.<String, String>emptyMap(), entity, 
+				compression.getRequestHeaders());
+		return sample.responseReceived(response);
+	}
+	
+	/**
+	 * Sends a request asynchronously and records its size and round trip into sample before 
+	 * the response is handed to listener.
+	 * 
+	 * @param sample - metrics of the calling operation
+	 * @param method - HTTP method
+	 * @param endpoint - request endpoint
+	 * @param entity - request body, can be null
+	 * @param listener - ResponseListener notified of the response
+	 */
+	private void performRequestAsync(OperationSample sample, String method, String endpoint, HttpEntity entity, 
+			ResponseListener listener) {
+		sample.requestSent(entity);
+		restClient.performRequestAsync(method, endpoint, Collections.<String, String>emptyMap(), entity, 
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						listener.onSuccess(sample.responseReceived(response));
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						listener.onFailure(exception);
+					}
+				}, 
+				compression.getRequestHeaders());
+	}
+	
+	/**
+	 * Waits for a document requested from the _mget batcher.
+	 * 
+	 * @param load - future of the _source bytes
+	 * @return _source bytes, null if the document does not exist
+	 * @throws IOException if the _mget request failed
+	 */
+	private byte[] awaitSource(CompletableFuture<byte[]> load) throws IOException {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Fails the passed in future because there is no connection to Elasticsearch.
+	 * 
+	 * @param future - ResponseFuture that will never receive a response
+	 * @return the same ResponseFuture, completed exceptionally
+	 */
+	private <T> ResponseFuture<T> noConnection(ResponseFuture<T> future) {
+		future.completeExceptionally(new IllegalStateException("No connection to Elasticsearch, RestClient is null"));
+		return future;
+	}
+
+	/**
+	 * Checks the Autowired RestClient is not null.
+	 * 
+	 * @return true if the object client is not null, false otherwise
+	 */
+	private boolean restClientExists() {
+		return !Objects.isNull(restClient);
+	}
+
+	/**
+	 * Prefixes query with the index and type path of the passed in Class, unless the query 
+	 * already starts with it.
+	 * 
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - query String (ex. _search?q=barVal:test)
+	 * @return String representing the endpoint (ex. /foo/bar/_search?q=barVal:test)
+	 */
+	private String buildQueryHelper(Class<?> clazz, String query) {
+		String basePath = getMetadata(clazz).getBasePath();
+
+		// No query provided, pass back index/type
+		if (StringUtils.isEmpty(query)) {
+			return basePath;
+		}
+		
+		// If index/type are already in the query string keep it as is
+		return query.startsWith(basePath) ? query : basePath + query;
+	}
+	
+	/**
+	 * Builds the endpoint of a search bound to {@link QueryResponse}: the query prefixed with the 
+	 * index and type path, the _source parameters of projection and a filter_path keeping only 
+	 * what QueryResponse binds. Parameters already present in query are left untouched.
+	 * 
+	 * @param metadata - metadata of the searched document class
+	 * @param query - query String (ex. _search?q=barVal:test)
+	 * @param projection - _source fields to return
+	 * @return String representing the endpoint
+	 */
+	private String searchEndpoint(ElasticDocumentMetadata metadata, String query, Projection projection) {
+		String endpoint = buildQueryHelper(metadata.getDocumentClass(), query);
+		return withFilterPath(projection.applyTo(endpoint), QueryResponse.FILTER_PATH);
+	}
+	
+	/**
+	 * Rejects scroll pages of no documents, they would never read as the short last page.
+	 * 
+	 * @param pageSize - number of documents fetched per scroll page
+	 */
+	private static void checkPageSize(int pageSize) {
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("The scroll page size must be positive, was " + pageSize);
+	}
+	
+	/**
+	 * Drops the cached documents of every registered class stored in indexName and the cached 
+	 * searches and count of the index.
+	 * 
+	 * @param indexName - index written to
+	 */
+	private void invalidateIndex(String indexName) {
+		for (ElasticDocumentMetadata metadata : registry.getAll()) {
+			if (metadata.getIndexName().equals(indexName))
+				documentCacheManager.invalidateAll(metadata.getDocumentClass());
+		}
+		invalidateSearches(indexName);
+	}
+	
+	/**
+	 * Drops the cached searches and document count of indexName after a write to it.
+	 * 
+	 * @param indexName - index written to
+	 */
+	private void invalidateSearches(String indexName) {
+		queryCache.invalidate(indexName);
+		indexCountCache.invalidate(indexName);
+	}
+	
+	/**
+	 * Adds the routing parameter to endpoint, nothing is added for an empty routing value.
+	 * 
+	 * @param endpoint - request endpoint
+	 * @param routing - routing value, encoded here, can be null
+	 * @return endpoint with the routing parameter
+	 */
+	private static String withRouting(String endpoint, String routing) {
+		if (StringUtils.isEmpty(routing))
+			return endpoint;
+		return endpoint + (endpoint.indexOf('?') < 0 ? '?' : '&') + UrlComponentEnum.ROUTING.getValue() + UrlComponentEnum.encode(routing);
+	}
+	
+	/**
+	 * Adds a filter_path parameter to endpoint, unless it already has one.
+	 * 
+	 * @param endpoint - request endpoint
+	 * @param filterPath - comma separated response paths to keep
+	 * @return endpoint with the filter_path parameter
+	 */
+	private static String withFilterPath(String endpoint, String filterPath) {
+		if (endpoint.contains(UrlComponentEnum.FILTER_PATH.getValue()))
+			return endpoint;
+		return endpoint + (endpoint.indexOf('?') < 0 ? '?' : '&') + UrlComponentEnum.FILTER_PATH.getValue() + filterPath;
+	}
+	
+	/**
+	 * Helper method parse response from Elasticsearch and returns corresponding ResponseEntity.
+	 * 
+	 * @param elasticResponse - Response object from Elasticsearch
+	 * @param clazz - Java class the _source of the response is bound to
+	 * @return ResponseEntity<?> containing proper HTTP Status code and response body
+	 * @throws JsonParseException
+	 * @throws JsonMappingException
+	 * @throws ParseException
+	 * @throws IOException
+	 */
+	private ResponseEntity<?> getResponseEntity(Response elasticResponse, Class<?> clazz) throws JsonParseException, JsonMappingException, ParseException, IOException {
 		if (Objects.isNull(elasticResponse)) {
 			return new ResponseEntity<String>("Elasticsearch response is empty", HttpStatus.NOT_FOUND);
 		} 
@@ -456,20 +1945,17 @@ public abstract class ElasticsearchService {
 		
 		if (requestMethod.equalsIgnoreCase(GET)) {
 			// GET Request routes to QueryResponse unless if we're returning the source obj
-			QueryResponse<?> queryResponse = mapper.readValue(
-					EntityUtils.toString(response.getEntity()), QueryResponse.class);
+			QueryResponse<?> queryResponse = getMetadata(clazz).getQueryResponseReader().readValue(getContent(elasticResponse));
 			return new ResponseEntity<QueryResponse<?>>(
 					queryResponse, HttpStatus.valueOf(statusCode));
 		} else if (requestMethod.equalsIgnoreCase(POST)) {
 			// POST Request routes to IndexResponse
-			IndexResponse<?> indexResponse = mapper.readValue(EntityUtils.toString(
-					response.getEntity()), IndexResponse.class);
+			IndexResponse<?> indexResponse = getMetadata(clazz).getIndexResponseReader().readValue(getContent(elasticResponse));
 			return new ResponseEntity<IndexResponse<?>>(
 					indexResponse, HttpStatus.valueOf(statusCode));
 		} else if (requestMethod.equalsIgnoreCase(DELETE)) {
 			// DELETE Request routes to DeleteResponse
-			DeleteResponse<?> deleteResponse = mapper.readValue(EntityUtils.toString(
-					response.getEntity()), DeleteResponse.class);
+			DeleteResponse<?> deleteResponse = getMetadata(clazz).getDeleteResponseReader().readValue(getContent(elasticResponse));
 			return new ResponseEntity<DeleteResponse<?>>(
 					deleteResponse, HttpStatus.valueOf(statusCode));
 		} else {
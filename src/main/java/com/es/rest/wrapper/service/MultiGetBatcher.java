@@ -0,0 +1,290 @@
+package com.es.rest.wrapper.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <p>Collects the documents requested by ID within a short window and fetches them with one
+ * _mget request per index instead of one GET per document.</p>
+ *
+ * <p>The first ID of a batch starts a timer of <i>elasticsearch.mget.window-millis</i>, the batch
+ * is sent when the timer fires or as soon as it holds <i>elasticsearch.mget.max-batch-size</i>
+ * IDs, whichever comes first. Each caller gets a future of its own document's _source bytes, so
+ * the caller binds them to its own class.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class MultiGetBatcher {
+	private static final Log logger = LogFactory.getLog(MultiGetBatcher.class);
+
+	private static final String POST = "POST";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+
+	private final RestClient restClient;
+	private final GzipCompression compression;
+	private final ObjectMapper mapper;
+	private final boolean enabled;
+	private final long windowMillis;
+	private final int maxBatchSize;
+	private final ScheduledExecutorService scheduler;
+
+	/* Gets waiting for the current batch to be sent, guarded by lock */
+	private final Object lock = new Object();
+	private List<PendingGet> pending = new ArrayList<>();
+	private long batchNumber;
+
+	@Autowired
+	public MultiGetBatcher(RestClient restClient, ElasticDocumentRegistry registry, GzipCompression compression,
+			@Value("${elasticsearch.mget.enabled:false}") boolean enabled,
+			@Value("${elasticsearch.mget.window-millis:2}") long windowMillis,
+			@Value("${elasticsearch.mget.max-batch-size:100}") int maxBatchSize) {
+		this.restClient = restClient;
+		this.compression = compression;
+		this.mapper = registry.getMapper();
+		this.enabled = enabled;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-mget-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds a document to the current batch.
+	 *
+	 * @param metadata - metadata of the document class
+	 * @param id - Elasticsearch document ID
+	 * @return CompletableFuture completed with the _source bytes, or null if the document does not exist
+	 */
+	public CompletableFuture<byte[]> load(ElasticDocumentMetadata metadata, String id) {
+		return load(metadata, id, null);
+	}
+
+	/**
+	 * Adds a routed document to the current batch.
+	 *
+	 * @param metadata - metadata of the document class
+	 * @param id - Elasticsearch document ID
+	 * @param routing - routing value the document was indexed with, null for none
+	 * @return CompletableFuture completed with the _source bytes, or null if the document does not exist
+	 */
+	public CompletableFuture<byte[]> load(ElasticDocumentMetadata metadata, String id, String routing) {
+		PendingGet get = new PendingGet(metadata, id, routing);
+		List<PendingGet> full = null;
+		synchronized (lock) {
+			pending.add(get);
+			if (pending.size() >= maxBatchSize) {
+				full = drain();
+			} else if (pending.size() == 1) {
+				final long scheduledBatch = batchNumber;
+				try {
+					scheduler.schedule(() -> flush(scheduledBatch), windowMillis, TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					// Closed, send right away rather than leave the get waiting
+					full = drain();
+				}
+			}
+		}
+		if (!Objects.isNull(full))
+			send(full);
+		return get.future;
+	}
+
+	/**
+	 * Stops the window timer. Batches already waiting are still sent when their window ends.
+	 */
+	@PreDestroy
+	public void close() {
+		scheduler.shutdown();
+	}
+
+	private void flush(long scheduledBatch) {
+		List<PendingGet> batch;
+		synchronized (lock) {
+			// The batch this timer was started for already went out because it was full
+			if (scheduledBatch != batchNumber || pending.isEmpty())
+				return;
+			batch = drain();
+		}
+		send(batch);
+	}
+
+	private List<PendingGet> drain() {
+		List<PendingGet> batch = pending;
+		pending = new ArrayList<>();
+		batchNumber++;
+		return batch;
+	}
+
+	private void send(List<PendingGet> batch) {
+		Map<String, List<PendingGet>> byIndex = new LinkedHashMap<>();
+		for (PendingGet get : batch) {
+			byIndex.computeIfAbsent(get.metadata.getIndexName(), indexName -> new ArrayList<>()).add(get);
+		}
+		byIndex.forEach(this::send);
+	}
+
+	private void send(String indexName, List<PendingGet> gets) {
+		byte[] body;
+		try {
+			body = buildBody(gets);
+		} catch (IOException e) {
+			gets.forEach(get -> get.future.completeExceptionally(e));
+			return;
+		}
+
+		restClient.performRequestAsync(
+				POST,
+				SLASH + UrlComponentEnum.encode(indexName) + SLASH + UrlComponentEnum.MGET.getValue(),
+				Collections.<String, String>emptyMap(),
+				compression.createEntity(body, ContentType.APPLICATION_JSON),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						try {
+							parseResponse(response, gets);
+						} catch (Exception e) {
+							logger.error("ERROR: Could not read _mget response: " + e.getMessage());
+							gets.forEach(get -> get.future.completeExceptionally(e));
+						}
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						gets.forEach(get -> get.future.completeExceptionally(exception));
+					}
+				},
+				compression.getRequestHeaders());
+	}
+
+	private byte[] buildBody(List<PendingGet> gets) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(32 * gets.size());
+		try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("docs");
+			for (PendingGet get : gets) {
+				generator.writeStartObject();
+				if (!StringUtils.isEmpty(get.metadata.getType())) {
+					generator.writeStringField("_type", get.metadata.getType());
+				}
+				generator.writeStringField("_id", get.id);
+				if (!StringUtils.isEmpty(get.routing)) {
+					generator.writeStringField("_routing", get.routing);
+				}
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads docs[*] in request order, copying each _source into its own byte array.
+	 */
+	private void parseResponse(Response response, List<PendingGet> gets) throws IOException {
+		int index = 0;
+		try (JsonParser parser = mapper.getFactory().createParser(compression.getContent(response))) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Expected _mget response to start with an object");
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("docs".equals(field) && value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT && index < gets.size()) {
+						readDoc(parser, gets.get(index++));
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+
+		for (; index < gets.size(); index++) {
+			gets.get(index).future.completeExceptionally(
+					new IOException("_mget response has no entry for document " + gets.get(index).id));
+		}
+	}
+
+	private void readDoc(JsonParser parser, PendingGet get) throws IOException {
+		byte[] source = null;
+		String error = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("_source".equals(field)) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+					generator.copyCurrentStructure(parser);
+				}
+				source = out.toByteArray();
+			} else if ("error".equals(field)) {
+				error = value == JsonToken.START_OBJECT ? mapper.readTree(parser).toString() : parser.getText();
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (!Objects.isNull(error)) {
+			get.future.completeExceptionally(new IOException("_mget of document " + get.id + " failed: " + error));
+		} else {
+			get.future.complete(source);
+		}
+	}
+
+	private static final class PendingGet {
+		private final ElasticDocumentMetadata metadata;
+		private final String id;
+		private final String routing;
+		private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+		private PendingGet(ElasticDocumentMetadata metadata, String id, String routing) {
+			this.metadata = metadata;
+			this.id = id;
+			this.routing = routing;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.es.rest.wrapper.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.client.ResponseException;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.DeleteResponse;
+import com.es.rest.wrapper.model.generic.ElasticHit;
+import com.es.rest.wrapper.model.generic.IndexResponse;
+import com.es.rest.wrapper.model.generic.QueryResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>Reactive variant of {@link ElasticsearchService} returning {@link Mono} and {@link Flux}.</p>
+ *
+ * <p>Every operation is built on the asynchronous methods of {@link ElasticsearchService}, so
+ * the document cache, query cache, _mget batching, compression and metrics apply unchanged.
+ * Nothing is sent until the returned publisher is subscribed to, and no thread is blocked
+ * while Elasticsearch answers: responses are parsed on the RestClient I/O threads and handed
+ * to the subscriber from there. Concurrency is bounded by the connection pool rather than by
+ * threads, requests beyond <i>elasticsearch.connection.max-per-route</i> wait up to
+ * <i>elasticsearch.timeout.connection-request-millis</i> for a connection.</p>
+ *
+ * @author Jack Phillips
+ */
+public abstract class ReactiveElasticsearchService extends ElasticsearchService {
+
+	/**
+	 * Returns a {@link Mono} of the document with the specified ID, empty if it does not exist.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Document ID
+	 * @return Mono of a new instance of Class parameter
+	 */
+	public <T> Mono<T> findOneMono(Class<T> clazz, String id) {
+		return Mono.defer(() -> Mono.fromFuture(findOneAsync(clazz, id)))
+				.onErrorResume(ReactiveElasticsearchService::isNotFound, e -> Mono.empty());
+	}
+
+	/**
+	 * Returns a {@link Mono} of the {@link QueryResponse} retrieved from the specified query.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - String that contains the query to send to Elasticsearch (ex. _search?q=barVal:test)
+	 * @return Mono of the QueryResponse
+	 */
+	public <T> Mono<QueryResponse<T>> searchMono(Class<T> clazz, String query) {
+		return Mono.defer(() -> Mono.fromFuture(searchAsync(clazz, query)));
+	}
+
+	/**
+	 * Returns a {@link Flux} of the _source of every hit of a single search request, use
+	 * {@link #scrollFlux(Class, String)} to read more documents than one page holds.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - String that contains the query to send to Elasticsearch (ex. _search?q=barVal:test)
+	 * @return Flux of documents
+	 */
+	public <T> Flux<T> searchFlux(Class<T> clazz, String query) {
+		return searchMono(clazz, query).flatMapIterable(ReactiveElasticsearchService::getSources);
+	}
+
+	/**
+	 * Returns a {@link Flux} of the first page of documents of the passed in Class.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @return Flux of documents
+	 */
+	public <T> Flux<T> getAllFlux(Class<T> clazz) {
+		return searchFlux(clazz, UrlComponentEnum.SEARCH.getValue());
+	}
+
+	/**
+	 * Returns a {@link Flux} of every document matched by query, read page by page through the
+	 * scroll API with <i>elasticsearch.scroll.size</i> documents per page.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body (ex. {"query":{"match_all":{}}}), empty to match all documents
+	 * @return Flux of documents
+	 */
+	public <T> Flux<T> scrollFlux(Class<T> clazz, String query) {
+		return scrollFlux(clazz, query, getScrollSize());
+	}
+
+	/**
+	 * Same as {@link #scrollFlux(Class, String)} with an explicit number of documents per page.
+	 *
+	 * <p>Pages are requested as the subscriber asks for documents, at most one page is fetched
+	 * ahead of it, so a slow consumer never makes the documents pile up in memory. The scroll
+	 * context is cleared once the Flux completes, fails or is cancelled.</p>
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per scroll page
+	 * @return Flux of documents, failing with an IllegalArgumentException if pageSize is not positive
+	 */
+	public <T> Flux<T> scrollFlux(Class<T> clazz, String query, int pageSize) {
+		return Flux.defer(() -> {
+			AtomicReference<String> scrollId = new AtomicReference<>();
+			return Mono.fromFuture(openScrollAsync(clazz, query, pageSize))
+					// A short or empty page is the last one, no need for another round trip to find out
+					.expand(page -> page.getHitCount() == 0 || page.getHitCount() < pageSize || Objects.isNull(page.getScrollId())
+							? Mono.empty()
+							: Mono.defer(() -> Mono.fromFuture(scrollAsync(clazz, page.getScrollId()))))
+					.doOnNext(page -> scrollId.set(page.getScrollId()))
+					.concatMapIterable(SearchPage::getDocuments, 1)
+					.doFinally(signal -> clearScrollAsync(scrollId.getAndSet(null)));
+		});
+	}
+
+	/**
+	 * Returns a {@link Mono} of the {@link IndexResponse} of a POST request.
+	 *
+	 * @param obj - Java object that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID, can be NULL if no ID is specified
+	 * @return Mono of the IndexResponse, fails with an IOException if obj cannot be serialized
+	 */
+	public <T> Mono<IndexResponse<T>> indexMono(T obj, String id) {
+		return Mono.defer(() -> {
+			try {
+				return Mono.fromFuture(indexAsync(obj, id));
+			} catch (IOException e) {
+				return Mono.error(e);
+			}
+		});
+	}
+
+	/**
+	 * Returns a {@link Mono} of the {@link DeleteResponse} of a DELETE request, empty when no ID is given.
+	 *
+	 * @param clazz - Java class that is annotated with {@link ElasticDocument}
+	 * @param id - Elasticsearch document ID
+	 * @return Mono of the DeleteResponse
+	 */
+	public <T> Mono<DeleteResponse<T>> deleteMono(Class<T> clazz, String id) {
+		return Mono.defer(() -> Mono.fromFuture(deleteAsync(clazz, id)));
+	}
+
+	/**
+	 * @param queryResponse - search response
+	 * @return _source of every hit, empty if there are none
+	 */
+	private static <T> List<T> getSources(QueryResponse<T> queryResponse) {
+		if (Objects.isNull(queryResponse.getHits()) || Objects.isNull(queryResponse.getHits().getElasticHits()))
+			return Collections.emptyList();
+		return queryResponse.getHits().getElasticHits().stream()
+				.map(ElasticHit::getSource)
+				.filter(source -> !Objects.isNull(source))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param error - failure of a request
+	 * @return true if Elasticsearch answered 404
+	 */
+	private static boolean isNotFound(Throwable error) {
+		if (error instanceof CompletionException && !Objects.isNull(error.getCause()))
+			error = error.getCause();
+		return error instanceof ResponseException
+				&& ((ResponseException) error).getResponse().getStatusLine().getStatusCode() == 404;
+	}
+}
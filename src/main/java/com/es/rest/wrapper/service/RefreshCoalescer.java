@@ -0,0 +1,127 @@
+package com.es.rest.wrapper.service;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+
+/**
+ * <p>Makes concurrent {@link RefreshEnum#WAIT} writes to an index share a single refresh.</p>
+ *
+ * <p>When enabled, such writes are sent without the refresh parameter and then wait here. The
+ * first write of an index starts a timer of <i>elasticsearch.refresh.coalesce.window-millis</i>,
+ * when it fires one POST /{index}/_refresh is sent and every write that joined the window
+ * completes once it returns. An index is refreshed at most once per window however many writes
+ * wait for it, instead of each write holding a refresh listener or forcing a refresh of its own.</p>
+ *
+ * <p>Only writes that already returned join a window, so the refresh that completes them is
+ * always sent after their documents were indexed.</p>
+ *
+ * <p>The window defaults to 1000 ms, the default index.refresh_interval. A shorter window
+ * refreshes a busy index more often than Elasticsearch would on its own and every refresh
+ * writes a new segment, so keep it at or above the refresh interval of the indices written.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class RefreshCoalescer {
+	private static final Log logger = LogFactory.getLog(RefreshCoalescer.class);
+
+	private static final String POST = "POST";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+
+	private final RestClient restClient;
+	private final boolean enabled;
+	private final long windowMillis;
+	private final ScheduledExecutorService scheduler;
+
+	/* Refresh each index's waiting writes share, removed from the map when it is sent */
+	private final ConcurrentMap<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+	@Autowired
+	public RefreshCoalescer(RestClient restClient,
+			@Value("${elasticsearch.refresh.coalesce.enabled:false}") boolean enabled,
+			@Value("${elasticsearch.refresh.coalesce.window-millis:1000}") long windowMillis) {
+		this.restClient = restClient;
+		this.enabled = enabled;
+		this.windowMillis = Math.max(0, windowMillis);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-refresh-coalescer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Joins the next refresh of an index, starting its window if none is open.
+	 *
+	 * @param indexName - index the write went to
+	 * @return CompletableFuture completed once the index was refreshed
+	 */
+	public CompletableFuture<Void> refresh(String indexName) {
+		CompletableFuture<Void> refresh = new CompletableFuture<>();
+		CompletableFuture<Void> joined = pending.putIfAbsent(indexName, refresh);
+		if (!Objects.isNull(joined))
+			return joined;
+
+		try {
+			scheduler.schedule(() -> send(indexName, refresh), windowMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// Closed, refresh right away rather than leave the write waiting
+			send(indexName, refresh);
+		}
+		return refresh;
+	}
+
+	/**
+	 * Stops the window timer. Windows already open are still refreshed when they end.
+	 */
+	@PreDestroy
+	public void close() {
+		scheduler.shutdown();
+	}
+
+	private void send(String indexName, CompletableFuture<Void> refresh) {
+		// Writes arriving from now on wait for the next window
+		pending.remove(indexName, refresh);
+		restClient.performRequestAsync(POST, SLASH + UrlComponentEnum.encode(indexName) + SLASH + UrlComponentEnum.REFRESH_ENDPOINT.getValue(),
+				Collections.<String, String>emptyMap(),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						refresh.complete(null);
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						logger.error("ERROR: Could not refresh " + indexName + ": " + exception.getMessage());
+						refresh.completeExceptionally(exception);
+					}
+				});
+	}
+}
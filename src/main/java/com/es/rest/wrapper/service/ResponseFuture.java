@@ -0,0 +1,111 @@
+package com.es.rest.wrapper.service;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+
+/**
+ * {@link CompletableFuture} that is completed by the {@link ResponseListener} callbacks of
+ * {@link org.elasticsearch.client.RestClient#performRequestAsync}.
+ *
+ * <p>A successful response is converted with the supplied {@link ResponseParser}, a failed
+ * request or a parse error completes the future exceptionally. Cancelling the future or letting
+ * it time out does not abort the HTTP request (the 5.x RestClient has no handle for that),
+ * the late response is simply discarded.</p>
+ *
+ * @author Jack Phillips
+ * @param <T> type the response body is converted to
+ */
+public class ResponseFuture<T> extends CompletableFuture<T> implements ResponseListener {
+	/* Shared timer used to expire futures, daemon so it never holds the JVM open */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "es-response-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ResponseParser<T> parser;
+
+	public ResponseFuture(ResponseParser<T> parser) {
+		this.parser = parser;
+	}
+
+	@Override
+	public void onSuccess(Response response) {
+		// Already cancelled or timed out, skip parsing the body
+		if (isDone())
+			return;
+
+		try {
+			complete(parser.parse(response));
+		} catch (Exception e) {
+			completeExceptionally(e);
+		}
+	}
+
+	@Override
+	public void onFailure(Exception exception) {
+		completeExceptionally(exception);
+	}
+
+	/**
+	 * Completes this future with a {@link TimeoutException} if it has not completed
+	 * before the given timeout elapses.
+	 *
+	 * @param timeout - how long to wait before giving up
+	 * @param unit - TimeUnit of the timeout parameter
+	 * @return this ResponseFuture
+	 */
+	public ResponseFuture<T> orTimeout(long timeout, TimeUnit unit) {
+		if (!isDone()) {
+			ScheduledFuture<?> timer = TIMER.schedule(
+					() -> completeExceptionally(new TimeoutException(
+							"Elasticsearch request did not complete within " + timeout + " " + unit)),
+					timeout,
+					unit);
+			// Stop the timer as soon as the response arrives
+			whenComplete((result, error) -> timer.cancel(false));
+		}
+		return this;
+	}
+
+	/**
+	 * Returns a ResponseFuture completed with the outcome of stage, for results that take more
+	 * than the response of a single request.
+	 *
+	 * @param stage - stage producing the result
+	 * @return ResponseFuture completed when stage completes
+	 */
+	static <T> ResponseFuture<T> of(CompletionStage<T> stage) {
+		ResponseFuture<T> future = new ResponseFuture<>(response -> {
+			throw new IllegalStateException("ResponseFuture is completed by a CompletionStage, not by a response");
+		});
+		stage.whenComplete((result, error) -> {
+			if (Objects.isNull(error)) {
+				future.complete(result);
+			} else {
+				future.completeExceptionally(error);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Converts a successful Elasticsearch {@link Response} into the result of a {@link ResponseFuture}.
+	 *
+	 * @param <T> type the response body is converted to
+	 */
+	@FunctionalInterface
+	public interface ResponseParser<T> {
+		T parse(Response response) throws IOException;
+	}
+}
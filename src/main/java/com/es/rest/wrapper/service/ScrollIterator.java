@@ -0,0 +1,289 @@
+package com.es.rest.wrapper.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.registry.Projection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * <p>Lazy {@link Iterator} over every document matched by a search, backed by the Elasticsearch
+ * scroll API.</p>
+ *
+ * <p>While the documents of the current page are consumed the next page is already being
+ * fetched asynchronously, so at most two pages are held in memory at any time. The scroll
+ * context is cleared on the server once the last page has been read or when the iterator is
+ * {@link #close() closed}, whichever happens first.</p>
+ *
+ * <p>Instances are meant to be consumed by a single thread.</p>
+ *
+ * @author Jack Phillips
+ * @param <T> type the _source of each hit is bound to
+ */
+public class ScrollIterator<T> implements Iterator<T>, Closeable {
+	private static final Log logger = LogFactory.getLog(ScrollIterator.class);
+
+	private static final String POST = "POST";
+	private static final String DELETE = "DELETE";
+	private static final String SCROLL_ENDPOINT = UrlComponentEnum.FWD_SLASH.getValue() + UrlComponentEnum.SCROLL_ENDPOINT.getValue();
+	/* Pages only need the hits' _source and the scroll id, the rest of each response is dropped by Elasticsearch */
+	private static final String SCROLL_PAGE_ENDPOINT = SCROLL_ENDPOINT + "?" + UrlComponentEnum.FILTER_PATH.getValue() + SearchPage.FILTER_PATH;
+
+	private final RestClient restClient;
+	private final GzipCompression compression;
+	private final ObjectMapper mapper;
+	private final ObjectReader documentReader;
+	private final String keepAlive;
+	private final int pageSize;
+
+	private Iterator<T> current = Collections.emptyIterator();
+	private CompletableFuture<SearchPage<T>> nextPage;
+	private String scrollId;
+	private boolean exhausted;
+	private boolean closed;
+
+	private ScrollIterator(RestClient restClient, GzipCompression compression, ObjectMapper mapper, ObjectReader documentReader, 
+			String keepAlive, int pageSize) {
+		this.restClient = restClient;
+		this.compression = compression;
+		this.mapper = mapper;
+		this.documentReader = documentReader;
+		this.keepAlive = keepAlive;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Opens a scroll by running the search synchronously and returns an iterator positioned
+	 * before its first document.
+	 *
+	 * @param restClient - client used for all scroll requests
+	 * @param compression - asks for compressed pages and decompresses them when enabled
+	 * @param mapper - mapper used to read responses and build request bodies
+	 * @param documentReader - reader bound to the document class
+	 * @param searchEndpoint - index and type search endpoint (ex. /foo/bar/_search)
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per page
+	 * @param keepAlive - how long Elasticsearch keeps the scroll context between pages (ex. 1m)
+	 * @return ScrollIterator
+	 * @throws IOException if the initial search fails
+	 */
+	public static <T> ScrollIterator<T> open(RestClient restClient, GzipCompression compression, ObjectMapper mapper, 
+			ObjectReader documentReader, String searchEndpoint, String query, int pageSize, String keepAlive) throws IOException {
+		return open(restClient, compression, mapper, documentReader, searchEndpoint, Projection.none(), query, pageSize, keepAlive);
+	}
+
+	/**
+	 * Same as {@link #open(RestClient, GzipCompression, ObjectMapper, ObjectReader, String, String, int, String)},
+	 * only the _source fields of projection are returned.
+	 *
+	 * @param restClient - client used for all scroll requests
+	 * @param compression - asks for compressed pages and decompresses them when enabled
+	 * @param mapper - mapper used to read responses and build request bodies
+	 * @param documentReader - reader bound to the document or projection class
+	 * @param searchEndpoint - index and type search endpoint (ex. /foo/bar/_search)
+	 * @param projection - _source fields returned for every page
+	 * @param query - JSON search body, empty to match all documents
+	 * @param pageSize - number of documents fetched per page
+	 * @param keepAlive - how long Elasticsearch keeps the scroll context between pages (ex. 1m)
+	 * @return ScrollIterator
+	 * @throws IOException if the initial search fails
+	 */
+	public static <T> ScrollIterator<T> open(RestClient restClient, GzipCompression compression, ObjectMapper mapper, 
+			ObjectReader documentReader, String searchEndpoint, Projection projection, String query, int pageSize, 
+			String keepAlive) throws IOException {
+		ScrollIterator<T> iterator = new ScrollIterator<>(restClient, compression, mapper, documentReader, keepAlive, pageSize);
+		Response response = restClient.performRequest(
+				POST,
+				openEndpoint(searchEndpoint, projection, pageSize, keepAlive),
+				Collections.<String, String>emptyMap(),
+				openBody(query),
+				compression.getRequestHeaders());
+
+		iterator.accept(iterator.parsePage(response));
+		return iterator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (exhausted || closed)
+				return false;
+			accept(awaitNextPage());
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	/**
+	 * Stops iterating and clears the scroll context, safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		current = Collections.emptyIterator();
+
+		if (!Objects.isNull(nextPage) && !nextPage.isDone()) {
+			// The prefetch may still carry a newer scroll id, clear once it arrives
+			final String knownScrollId = scrollId;
+			nextPage.whenComplete((page, error) -> clearScroll(Objects.isNull(page) ? knownScrollId : page.getScrollId()));
+		} else if (!Objects.isNull(nextPage) && !nextPage.isCompletedExceptionally()) {
+			clearScroll(nextPage.join().getScrollId());
+		} else {
+			clearScroll(scrollId);
+		}
+		scrollId = null;
+		nextPage = null;
+	}
+
+	private void accept(SearchPage<T> page) {
+		scrollId = page.getScrollId();
+		nextPage = null;
+		current = page.getDocuments().iterator();
+
+		// A short or empty page is the last one, no need for another round trip to find out. Hits
+		// without a _source bind no document, so only the hit count tells a short page apart.
+		if (page.getHitCount() == 0 || page.getHitCount() < pageSize) {
+			exhausted = true;
+			clearScroll(scrollId);
+			scrollId = null;
+		} else {
+			nextPage = fetchPage(scrollId);
+		}
+	}
+
+	private SearchPage<T> awaitNextPage() {
+		try {
+			return nextPage.join();
+		} catch (CompletionException e) {
+			close();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw new UncheckedIOException((IOException) cause);
+			throw e;
+		}
+	}
+
+	private CompletableFuture<SearchPage<T>> fetchPage(String id) {
+		return fetchPage(restClient, compression, mapper, documentReader, keepAlive, id);
+	}
+
+	private void clearScroll(String id) {
+		clearScroll(restClient, mapper, id);
+	}
+
+	private SearchPage<T> parsePage(Response response) throws IOException {
+		return StreamingSearchParser.parse(compression.getContent(response), documentReader);
+	}
+
+	/**
+	 * @param searchEndpoint - index and type search endpoint (ex. /foo/bar/_search)
+	 * @param projection - _source fields returned for every page
+	 * @param pageSize - number of documents fetched per page
+	 * @param keepAlive - how long Elasticsearch keeps the scroll context between pages (ex. 1m)
+	 * @return endpoint of the search opening a scroll
+	 */
+	static String openEndpoint(String searchEndpoint, Projection projection, int pageSize, String keepAlive) {
+		return projection.applyTo(searchEndpoint
+				+ "?" + UrlComponentEnum.SCROLL.getValue() + keepAlive
+				+ "&" + UrlComponentEnum.SIZE.getValue() + pageSize
+				+ "&" + UrlComponentEnum.FILTER_PATH.getValue() + SearchPage.FILTER_PATH);
+	}
+
+	/**
+	 * @param query - JSON search body, empty to match all documents
+	 * @return body of the search opening a scroll
+	 */
+	static HttpEntity openBody(String query) {
+		// Sorting on _doc is the cheapest order when every document is read anyway
+		String body = Objects.isNull(query) || query.trim().isEmpty() ? "{\"sort\":[\"_doc\"]}" : query;
+		return new NStringEntity(body, ContentType.APPLICATION_JSON);
+	}
+
+	/**
+	 * Fetches the page following scrollId asynchronously.
+	 *
+	 * @param restClient - client used for the request
+	 * @param compression - asks for a compressed page and decompresses it when enabled
+	 * @param mapper - mapper used to build the request body
+	 * @param documentReader - reader bound to the document class
+	 * @param keepAlive - new time to live of the scroll context
+	 * @param scrollId - _scroll_id of the previous page
+	 * @return ResponseFuture completed with the next page, empty once the scroll is exhausted
+	 */
+	static <T> ResponseFuture<SearchPage<T>> fetchPage(RestClient restClient, GzipCompression compression, ObjectMapper mapper, 
+			ObjectReader documentReader, String keepAlive, String scrollId) {
+		ResponseFuture<SearchPage<T>> future = new ResponseFuture<>(
+				response -> StreamingSearchParser.parse(compression.getContent(response), documentReader));
+		ObjectNode body = mapper.createObjectNode()
+				.put("scroll", keepAlive)
+				.put("scroll_id", scrollId);
+		restClient.performRequestAsync(
+				POST,
+				SCROLL_PAGE_ENDPOINT,
+				Collections.<String, String>emptyMap(),
+				new NStringEntity(body.toString(), ContentType.APPLICATION_JSON),
+				future,
+				compression.getRequestHeaders());
+		return future;
+	}
+
+	/**
+	 * Clears a scroll context asynchronously, failures are only logged since the context
+	 * expires on its own.
+	 *
+	 * @param restClient - client used for the request
+	 * @param mapper - mapper used to build the request body
+	 * @param scrollId - _scroll_id to clear, ignored when null
+	 */
+	static void clearScroll(RestClient restClient, ObjectMapper mapper, String scrollId) {
+		if (Objects.isNull(scrollId))
+			return;
+
+		ObjectNode body = mapper.createObjectNode();
+		body.putArray("scroll_id").add(scrollId);
+		restClient.performRequestAsync(
+				DELETE,
+				SCROLL_ENDPOINT,
+				Collections.<String, String>emptyMap(),
+				new NStringEntity(body.toString(), ContentType.APPLICATION_JSON),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						// The context expires on its own after keepAlive, nothing else to do
+						logger.error("ERROR: Could not clear scroll context: " + exception.getMessage());
+					}
+				});
+	}
+}
@@ -0,0 +1,60 @@
+package com.es.rest.wrapper.service;
+
+import java.util.List;
+
+/**
+ * One page of a search response as read by {@link StreamingSearchParser}: the documents bound
+ * from hits.hits[*]._source plus the few top level values needed to continue reading. Hits 
+ * without a _source are counted by {@link #getHitCount()} but have no document.
+ * 
+ * @author Jack Phillips
+ * @param <T> type the _source of each hit is bound to
+ */
+public class SearchPage<T> {
+	/**
+	 * filter_path keeping only the parts of a search response {@link StreamingSearchParser} reads,
+	 * hits.hits._id keeps hits without a _source in the response so they are still counted
+	 */
+	public static final String FILTER_PATH = "_scroll_id,took,hits.total,hits.hits._id,hits.hits._source";
+
+	private final String scrollId;
+	private final Long took;
+	private final Long total;
+	private final int hitCount;
+	private final List<T> documents;
+
+	public SearchPage(String scrollId, Long took, Long total, int hitCount, List<T> documents) {
+		this.scrollId = scrollId;
+		this.took = took;
+		this.total = total;
+		this.hitCount = hitCount;
+		this.documents = documents;
+	}
+
+	/**
+	 * @return _scroll_id of the response, null if the search did not open a scroll
+	 */
+	public String getScrollId() {
+		return scrollId;
+	}
+
+	public Long getTook() {
+		return took;
+	}
+
+	public Long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return number of hits in the response, a page of a scroll is the last one when it holds 
+	 * fewer hits than the page size. Can be more than the number of documents.
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	public List<T> getDocuments() {
+		return documents;
+	}
+}
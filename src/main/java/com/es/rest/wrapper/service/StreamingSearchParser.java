@@ -0,0 +1,113 @@
+package com.es.rest.wrapper.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * <p>Reads Elasticsearch search responses token by token straight from the response 
+ * {@link InputStream}.</p>
+ * 
+ * <p>Only hits.hits[*]._source is bound, directly to the target class, everything else apart 
+ * from _scroll_id, took and hits.total is skipped without being materialized. No intermediate 
+ * String or JsonNode tree of the response is ever built, and a field named _source nested 
+ * inside a document is never mistaken for a hit. Every hit is counted, including those without
+ * a _source that bind no document.</p>
+ * 
+ * @author Jack Phillips
+ */
+public final class StreamingSearchParser {
+	private static final String SCROLL_ID = "_scroll_id";
+	private static final String TOOK = "took";
+	private static final String HITS = "hits";
+	private static final String TOTAL = "total";
+	private static final String SOURCE = "_source";
+
+	private StreamingSearchParser() {}
+
+	/**
+	 * Parses a search (or scroll) response, the stream is closed once read.
+	 * 
+	 * @param content - response body
+	 * @param sourceReader - reader bound to the class each _source is converted to
+	 * @return SearchPage holding the bound documents
+	 * @throws IOException if the body cannot be read or is not a search response
+	 */
+	public static <T> SearchPage<T> parse(InputStream content, ObjectReader sourceReader) throws IOException {
+		String scrollId = null;
+		Long took = null;
+		Hits hits = new Hits();
+		List<T> documents = new ArrayList<>();
+
+		try (JsonParser parser = sourceReader.getFactory().createParser(content)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new JsonParseException(parser, "Expected search response to be a JSON object");
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if (SCROLL_ID.equals(field)) {
+					scrollId = parser.getValueAsString();
+				} else if (TOOK.equals(field)) {
+					took = parser.getValueAsLong();
+				} else if (HITS.equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+					parseHits(parser, sourceReader, hits, documents);
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return new SearchPage<>(scrollId, took, hits.total, hits.count, documents);
+	}
+
+	/**
+	 * Reads the outer hits object, parser is positioned on its START_OBJECT.
+	 */
+	private static <T> void parseHits(JsonParser parser, ObjectReader sourceReader, Hits hits, List<T> documents) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (TOTAL.equals(field)) {
+				hits.total = parser.getValueAsLong();
+			} else if (HITS.equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					hits.count++;
+					parseHit(parser, sourceReader, documents);
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * Reads a single hit, parser is positioned on its START_OBJECT.
+	 */
+	private static <T> void parseHit(JsonParser parser, ObjectReader sourceReader, List<T> documents) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (SOURCE.equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+				T document = sourceReader.readValue(parser);
+				if (!Objects.isNull(document)) {
+					documents.add(document);
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/* hits.total, null if absent, and the number of entries in hits.hits */
+	private static final class Hits {
+		private Long total;
+		private int count;
+	}
+}
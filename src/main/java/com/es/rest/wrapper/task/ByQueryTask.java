@@ -0,0 +1,156 @@
+package com.es.rest.wrapper.task;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.ByQueryStatus;
+import com.es.rest.wrapper.model.generic.TaskResponse;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * <p>A _delete_by_query or _update_by_query running in the background on Elasticsearch, tracked
+ * by the {@link ByQueryTaskManager}.</p>
+ *
+ * <p>The manager polls the task and keeps its latest {@link TaskResponse} here, so reading the
+ * progress never sends a request. {@link #getCompletion()} completes once Elasticsearch reports
+ * the task as completed, with the task itself whether it succeeded or failed.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+public class ByQueryTask {
+	private final String taskId;
+	private final UrlComponentEnum operation;
+	private final String indexName;
+	private final int slices;
+	private final long submittedAtMillis;
+	private final CompletableFuture<ByQueryTask> completion = new CompletableFuture<>();
+
+	private volatile TaskResponse lastResponse;
+	private volatile String pollError;
+	private volatile long completedAtMillis;
+
+	ByQueryTask(String taskId, UrlComponentEnum operation, String indexName, int slices) {
+		this.taskId = taskId;
+		this.operation = operation;
+		this.indexName = indexName;
+		this.slices = slices;
+		this.submittedAtMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return Elasticsearch task ID (ex. oTUltX4IQMOUUVeiohTt8A:12345)
+	 */
+	public String getTaskId() {
+		return taskId;
+	}
+
+	/**
+	 * @return _delete_by_query or _update_by_query
+	 */
+	public String getOperation() {
+		return operation.getValue();
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	/**
+	 * @return number of slices the task was split into
+	 */
+	public int getSlices() {
+		return slices;
+	}
+
+	public long getSubmittedAtMillis() {
+		return submittedAtMillis;
+	}
+
+	/**
+	 * @return time the task was seen completed, 0 while it runs
+	 */
+	public long getCompletedAtMillis() {
+		return completedAtMillis;
+	}
+
+	public boolean isCompleted() {
+		return completion.isDone();
+	}
+
+	/**
+	 * @return true if the task completed with an error, or failed documents, or could not be polled
+	 */
+	public boolean isFailed() {
+		if (!isCompleted())
+			return false;
+		TaskResponse response = lastResponse;
+		if (!Objects.isNull(pollError) || Objects.isNull(response) || !Objects.isNull(response.getError()))
+			return true;
+		ByQueryStatus status = response.getResponse();
+		return !Objects.isNull(status) && !Objects.isNull(status.getFailures()) && !status.getFailures().isEmpty();
+	}
+
+	/**
+	 * @return latest counters of the task, the final ones once it completed, null before the first poll
+	 */
+	public ByQueryStatus getStatus() {
+		TaskResponse response = lastResponse;
+		if (Objects.isNull(response))
+			return null;
+		if (!Objects.isNull(response.getResponse()))
+			return response.getResponse();
+		return Objects.isNull(response.getTask()) ? null : response.getTask().getStatus();
+	}
+
+	/**
+	 * @return error reported by Elasticsearch for a failed task, null otherwise
+	 */
+	public Map<String, Object> getError() {
+		TaskResponse response = lastResponse;
+		return Objects.isNull(response) ? null : response.getError();
+	}
+
+	/**
+	 * @return message of the failure that stopped the task from being polled, null otherwise
+	 */
+	public String getPollError() {
+		return pollError;
+	}
+
+	/**
+	 * @return latest raw response of GET _tasks/{task_id}
+	 */
+	@JsonIgnore
+	public TaskResponse getLastResponse() {
+		return lastResponse;
+	}
+
+	/**
+	 * @return future completed with this task once Elasticsearch reports it as completed
+	 */
+	@JsonIgnore
+	public CompletableFuture<ByQueryTask> getCompletion() {
+		return completion;
+	}
+
+	void update(TaskResponse response) {
+		lastResponse = response;
+		if (response.isCompleted())
+			complete();
+	}
+
+	void fail(String error) {
+		pollError = error;
+		complete();
+	}
+
+	private void complete() {
+		if (completedAtMillis == 0)
+			completedAtMillis = System.currentTimeMillis();
+		completion.complete(this);
+	}
+}
@@ -0,0 +1,305 @@
+package com.es.rest.wrapper.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.enumeration.UrlComponentEnum;
+import com.es.rest.wrapper.model.generic.TaskResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * <p>Runs _delete_by_query and _update_by_query requests as background tasks on Elasticsearch
+ * and tracks them until they complete.</p>
+ *
+ * <p>Requests are sent with wait_for_completion=false, so Elasticsearch answers with a task ID
+ * right away instead of holding the connection for the whole run. Each request is split into
+ * <i>elasticsearch.by-query.slices</i> slices processed in parallel, 0 (the default) uses one
+ * slice per primary shard of the index, which is the most parallelism Elasticsearch can use.
+ * Version conflicts are handled as configured by <i>elasticsearch.by-query.conflicts</i>.</p>
+ *
+ * <p>Running tasks are polled every <i>elasticsearch.by-query.poll-interval-millis</i> and their
+ * latest status kept in their {@link ByQueryTask}. Completed tasks are forgotten after
+ * <i>elasticsearch.by-query.retention-seconds</i>. Tasks can be rethrottled and cancelled while
+ * they run.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+@Component
+public class ByQueryTaskManager {
+	private static final Log logger = LogFactory.getLog(ByQueryTaskManager.class);
+
+	private static final String GET = "GET";
+	private static final String POST = "POST";
+	private static final String SLASH = UrlComponentEnum.FWD_SLASH.getValue();
+	private static final String MATCH_ALL = "{\"query\":{\"match_all\":{}}}";
+	private static final String NUMBER_OF_SHARDS = "number_of_shards";
+
+	private final RestClient restClient;
+	private final ObjectMapper mapper;
+	private final ObjectReader taskResponseReader;
+	private final int slices;
+	private final String conflicts;
+	private final long retentionMillis;
+	private final ScheduledExecutorService poller;
+
+	private final ConcurrentMap<String, ByQueryTask> tasks = new ConcurrentHashMap<>();
+	/* Tasks with a poll in flight, a slow answer must not stack up polls of the same task */
+	private final Set<String> polling = ConcurrentHashMap.newKeySet();
+	/* Primary shards of each index, looked up once to pick the number of slices */
+	private final ConcurrentMap<String, Integer> primaryShards = new ConcurrentHashMap<>();
+
+	@Autowired
+	public ByQueryTaskManager(RestClient restClient, ElasticDocumentRegistry registry,
+			@Value("${elasticsearch.by-query.slices:0}") int slices,
+			@Value("${elasticsearch.by-query.conflicts:proceed}") String conflicts,
+			@Value("${elasticsearch.by-query.poll-interval-millis:1000}") long pollIntervalMillis,
+			@Value("${elasticsearch.by-query.retention-seconds:3600}") long retentionSeconds) {
+		this.restClient = restClient;
+		this.mapper = registry.getMapper();
+		this.taskResponseReader = registry.getResponseReader(TaskResponse.class);
+		this.slices = Math.max(0, slices);
+		this.conflicts = conflicts;
+		this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+		this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-task-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = Math.max(1, pollIntervalMillis);
+		poller.scheduleWithFixedDelay(this::pollRunning, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts a _delete_by_query or _update_by_query task over the documents of a class.
+	 *
+	 * @param operation - {@link UrlComponentEnum#DELETE_BY_QUERY} or {@link UrlComponentEnum#UPDATE_BY_QUERY}
+	 * @param metadata - metadata of the document class
+	 * @param query - JSON request body, with a script for updates, empty to match all documents
+	 * @param requestsPerSecond - throttle of the task, negative for no throttle
+	 * @return ByQueryTask tracking the started task
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public ByQueryTask submit(UrlComponentEnum operation, ElasticDocumentMetadata metadata, String query,
+			float requestsPerSecond) throws IOException {
+		if (operation != UrlComponentEnum.DELETE_BY_QUERY && operation != UrlComponentEnum.UPDATE_BY_QUERY)
+			throw new IllegalArgumentException(operation.getValue() + " is not a by-query operation");
+
+		int taskSlices = slices > 0 ? slices : getPrimaryShards(metadata.getIndexName());
+		String endpoint = metadata.getBasePath() + operation.getValue()
+				+ "?" + UrlComponentEnum.WAIT_FOR_COMPLETION.getValue() + "false"
+				+ "&" + UrlComponentEnum.CONFLICTS.getValue() + conflicts
+				+ "&" + UrlComponentEnum.SLICES.getValue() + taskSlices
+				+ "&" + UrlComponentEnum.RQST_PER_SEC.getValue() + formatRequestsPerSecond(requestsPerSecond);
+		String body = StringUtils.isEmpty(query) ? MATCH_ALL : query;
+		Response response = restClient.performRequest(POST, endpoint, Collections.<String, String>emptyMap(),
+				new NStringEntity(body, ContentType.APPLICATION_JSON));
+
+		String taskId;
+		try (InputStream content = response.getEntity().getContent()) {
+			taskId = mapper.readTree(content).path("task").asText(null);
+		}
+		if (StringUtils.isEmpty(taskId))
+			throw new IOException("Elasticsearch did not return a task for " + operation.getValue() + " on " + metadata.getIndexName());
+
+		ByQueryTask task = new ByQueryTask(taskId, operation, metadata.getIndexName(), taskSlices);
+		tasks.put(taskId, task);
+		return task;
+	}
+
+	/**
+	 * @param taskId - Elasticsearch task ID
+	 * @return tracked task, null if it is unknown or was forgotten
+	 */
+	public ByQueryTask get(String taskId) {
+		return tasks.get(taskId);
+	}
+
+	/**
+	 * @return every tracked task, running and recently completed
+	 */
+	public Collection<ByQueryTask> getAll() {
+		return Collections.unmodifiableCollection(new ArrayList<>(tasks.values()));
+	}
+
+	/**
+	 * Polls a tracked task right away instead of waiting for the next scheduled poll.
+	 *
+	 * @param taskId - Elasticsearch task ID
+	 * @return the task with its latest status, null if it is not tracked
+	 * @throws IOException if the task cannot be read
+	 */
+	public ByQueryTask refresh(String taskId) throws IOException {
+		ByQueryTask task = tasks.get(taskId);
+		if (Objects.isNull(task) || task.isCompleted())
+			return task;
+
+		try {
+			Response response = restClient.performRequest(GET, taskEndpoint(taskId), Collections.<String, String>emptyMap());
+			update(task, response);
+		} catch (ResponseException e) {
+			if (e.getResponse().getStatusLine().getStatusCode() != 404)
+				throw e;
+			task.fail("Task " + taskId + " no longer exists on Elasticsearch");
+		}
+		return task;
+	}
+
+	/**
+	 * Changes the throttle of a running task, a lower value takes effect after the current batch.
+	 *
+	 * @param taskId - Elasticsearch task ID
+	 * @param requestsPerSecond - new throttle, negative for no throttle
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public void rethrottle(String taskId, float requestsPerSecond) throws IOException {
+		ByQueryTask task = tasks.get(taskId);
+		// Every by-query endpoint rethrottles any by-query task, untracked ones included
+		String operation = Objects.isNull(task) ? UrlComponentEnum.DELETE_BY_QUERY.getValue() : task.getOperation();
+		String endpoint = SLASH + operation + SLASH + taskId + SLASH + UrlComponentEnum.RETHROTTLE.getValue()
+				+ "?" + UrlComponentEnum.RQST_PER_SEC.getValue() + formatRequestsPerSecond(requestsPerSecond);
+		restClient.performRequest(POST, endpoint, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Cancels a running task. Documents already deleted or updated stay that way, the task
+	 * completes with the counters reached when it stopped.
+	 *
+	 * @param taskId - Elasticsearch task ID
+	 * @throws IOException if Elasticsearch refuses the request
+	 */
+	public void cancel(String taskId) throws IOException {
+		restClient.performRequest(POST, taskEndpoint(taskId) + SLASH + UrlComponentEnum.CANCEL.getValue(),
+				Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Stops polling. Tasks keep running in Elasticsearch, their state here is no longer updated.
+	 */
+	@PreDestroy
+	public void close() {
+		poller.shutdownNow();
+	}
+
+	/**
+	 * Returns the number of primary shards of an index, 1 if it cannot be read.
+	 *
+	 * @param indexName - index or alias name
+	 * @return number of primary shards
+	 */
+	int getPrimaryShards(String indexName) {
+		Integer shards = primaryShards.get(indexName);
+		if (!Objects.isNull(shards))
+			return shards;
+
+		String endpoint = SLASH + UrlComponentEnum.encode(indexName) + SLASH + UrlComponentEnum.SETTINGS.getValue() + SLASH + "index." + NUMBER_OF_SHARDS;
+		try {
+			Response response = restClient.performRequest(GET, endpoint, Collections.<String, String>emptyMap());
+			JsonNode settings;
+			try (InputStream content = response.getEntity().getContent()) {
+				settings = mapper.readTree(content);
+			}
+			// An alias answers with the settings of each index it points to, slice for the largest
+			int found = 1;
+			for (JsonNode index : settings) {
+				found = Math.max(found, index.path("settings").path("index").path(NUMBER_OF_SHARDS).asInt(1));
+			}
+			primaryShards.put(indexName, found);
+			return found;
+		} catch (IOException e) {
+			logger.error("ERROR: Could not read the number of shards of " + indexName + ", using a single slice: " + e.getMessage());
+			return 1;
+		}
+	}
+
+	private void pollRunning() {
+		long now = System.currentTimeMillis();
+		Iterator<ByQueryTask> iterator = tasks.values().iterator();
+		while (iterator.hasNext()) {
+			ByQueryTask task = iterator.next();
+			if (!task.isCompleted()) {
+				poll(task);
+			} else if (now - task.getCompletedAtMillis() > retentionMillis) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private void poll(ByQueryTask task) {
+		String taskId = task.getTaskId();
+		if (!polling.add(taskId))
+			return;
+
+		restClient.performRequestAsync(GET, taskEndpoint(taskId), Collections.<String, String>emptyMap(),
+				new ResponseListener() {
+					@Override
+					public void onSuccess(Response response) {
+						try {
+							update(task, response);
+						} catch (IOException e) {
+							logger.error("ERROR: Could not read status of task " + taskId + ": " + e.getMessage());
+						} finally {
+							polling.remove(taskId);
+						}
+					}
+
+					@Override
+					public void onFailure(Exception exception) {
+						polling.remove(taskId);
+						if (exception instanceof ResponseException
+								&& ((ResponseException) exception).getResponse().getStatusLine().getStatusCode() == 404) {
+							task.fail("Task " + taskId + " no longer exists on Elasticsearch");
+							return;
+						}
+						// Try again on the next poll
+						logger.error("ERROR: Could not poll task " + taskId + ": " + exception.getMessage());
+					}
+				});
+	}
+
+	private void update(ByQueryTask task, Response response) throws IOException {
+		try (InputStream content = response.getEntity().getContent()) {
+			task.update(taskResponseReader.readValue(content));
+		}
+	}
+
+	private static String taskEndpoint(String taskId) {
+		return SLASH + UrlComponentEnum.TASKS.getValue() + SLASH + taskId;
+	}
+
+	private static String formatRequestsPerSecond(float requestsPerSecond) {
+		return requestsPerSecond < 0 || Float.isInfinite(requestsPerSecond) || Float.isNaN(requestsPerSecond)
+				? "-1" : Float.toString(requestsPerSecond);
+	}
+}
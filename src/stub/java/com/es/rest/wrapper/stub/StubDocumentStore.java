@@ -0,0 +1,337 @@
+package com.es.rest.wrapper.stub;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * <p>In memory documents and scroll contexts of the {@link StubElasticsearchServer}.</p>
+ *
+ * <p>Documents are kept per index ordered by ID, so searches and scrolls return them in a
+ * stable order. Every write is visible to the next search, as if each request refreshed the
+ * index. Indices are created on the first write to them.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Jack Phillips
+ */
+public class StubDocumentStore {
+
+	private final ObjectMapper mapper;
+	private final ConcurrentMap<String, ConcurrentSkipListMap<String, StoredDocument>> indices = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ScrollContext> scrolls = new ConcurrentHashMap<>();
+
+	public StubDocumentStore(ObjectMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Creates or replaces a document.
+	 *
+	 * @param index - index name
+	 * @param type - document type
+	 * @param id - document ID, null to generate one
+	 * @param source - JSON document
+	 * @return the stored document and whether it was created
+	 * @throws IllegalArgumentException if source is not a JSON object
+	 */
+	public WriteResult index(String index, String type, String id, byte[] source) {
+		JsonNode parsed = parse(source);
+		String documentId = StringUtils.isEmpty(id) ? UUID.randomUUID().toString().replace("-", "") : id;
+
+		boolean[] created = new boolean[1];
+		StoredDocument document = indices.computeIfAbsent(index, name -> new ConcurrentSkipListMap<>())
+				.compute(documentId, (key, previous) -> {
+					created[0] = Objects.isNull(previous);
+					long version = Objects.isNull(previous) ? 1 : previous.version + 1;
+					return new StoredDocument(index, type, documentId, version, source, parsed);
+				});
+		return new WriteResult(document, created[0]);
+	}
+
+	/**
+	 * @param index - index name
+	 * @param type - document type, null or _all for any type
+	 * @param id - document ID
+	 * @return the document, null if it does not exist
+	 */
+	public StoredDocument get(String index, String type, String id) {
+		Map<String, StoredDocument> documents = indices.get(index);
+		StoredDocument document = Objects.isNull(documents) ? null : documents.get(id);
+		return !Objects.isNull(document) && document.hasType(type) ? document : null;
+	}
+
+	/**
+	 * @param index - index name
+	 * @param type - document type, null or _all for any type
+	 * @param id - document ID
+	 * @return the deleted document, null if it did not exist
+	 */
+	public StoredDocument delete(String index, String type, String id) {
+		Map<String, StoredDocument> documents = indices.get(index);
+		StoredDocument document = Objects.isNull(documents) ? null : documents.get(id);
+		if (Objects.isNull(document) || !document.hasType(type))
+			return null;
+		return documents.remove(id, document) ? document : null;
+	}
+
+	/**
+	 * @param indexExpression - comma separated index names, may use * wildcards or _all
+	 * @param type - document type, null or _all for any type
+	 * @param query - documents to return
+	 * @return matching documents, ordered by index and ID
+	 */
+	public List<StoredDocument> search(String indexExpression, String type, Predicate<StoredDocument> query) {
+		List<StoredDocument> hits = new ArrayList<>();
+		for (Map<String, StoredDocument> documents : resolve(indexExpression)) {
+			for (StoredDocument document : documents.values()) {
+				if (document.hasType(type) && query.test(document))
+					hits.add(document);
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @param index - index name
+	 * @return number of documents in the index
+	 */
+	public int size(String index) {
+		Map<String, StoredDocument> documents = indices.get(index);
+		return Objects.isNull(documents) ? 0 : documents.size();
+	}
+
+	/**
+	 * @return names of the indices holding documents, sorted
+	 */
+	public List<String> getIndexNames() {
+		List<String> names = new ArrayList<>(indices.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Removes every document and scroll context.
+	 */
+	public void clear() {
+		indices.clear();
+		scrolls.clear();
+	}
+
+	/**
+	 * Keeps the hits of a search to be read page by page.
+	 *
+	 * @param hits - every hit of the search
+	 * @param pageSize - number of hits returned per page
+	 * @param keepAliveMillis - how long the context lives without being read
+	 * @return scroll ID
+	 */
+	public String openScroll(List<StoredDocument> hits, int pageSize, long keepAliveMillis) {
+		expireScrolls();
+		String scrollId = UUID.randomUUID().toString();
+		scrolls.put(scrollId, new ScrollContext(hits, pageSize, keepAliveMillis));
+		return scrollId;
+	}
+
+	/**
+	 * @param scrollId - ID returned by {@link #openScroll(List, int, long)}
+	 * @param keepAliveMillis - new time to live of the context
+	 * @return next page of hits, null if the scroll does not exist or expired
+	 */
+	public List<StoredDocument> nextScrollPage(String scrollId, long keepAliveMillis) {
+		expireScrolls();
+		ScrollContext context = scrolls.get(scrollId);
+		return Objects.isNull(context) ? null : context.next(keepAliveMillis);
+	}
+
+	/**
+	 * @param scrollId - ID returned by {@link #openScroll(List, int, long)}
+	 * @return total number of hits of the scroll, -1 if it does not exist
+	 */
+	public int scrollTotal(String scrollId) {
+		ScrollContext context = scrolls.get(scrollId);
+		return Objects.isNull(context) ? -1 : context.hits.size();
+	}
+
+	/**
+	 * @param scrollId - ID to clear, _all for every scroll
+	 * @return number of contexts freed
+	 */
+	public int clearScroll(String scrollId) {
+		if ("_all".equals(scrollId)) {
+			int freed = scrolls.size();
+			scrolls.clear();
+			return freed;
+		}
+		return Objects.isNull(scrolls.remove(scrollId)) ? 0 : 1;
+	}
+
+	/**
+	 * @return number of open scroll contexts
+	 */
+	public int getOpenScrolls() {
+		expireScrolls();
+		return scrolls.size();
+	}
+
+	private List<Map<String, StoredDocument>> resolve(String indexExpression) {
+		if (StringUtils.isEmpty(indexExpression) || "_all".equals(indexExpression))
+			return new ArrayList<>(indices.values());
+
+		List<Map<String, StoredDocument>> resolved = new ArrayList<>();
+		for (String name : StringUtils.commaDelimitedListToStringArray(indexExpression)) {
+			if (name.contains("*")) {
+				Pattern pattern = Pattern.compile(Pattern.quote(name).replace("*", "\\E.*\\Q"));
+				indices.forEach((index, documents) -> {
+					if (pattern.matcher(index).matches())
+						resolved.add(documents);
+				});
+			} else if (indices.containsKey(name)) {
+				resolved.add(indices.get(name));
+			}
+		}
+		return resolved;
+	}
+
+	private JsonNode parse(byte[] source) {
+		try {
+			JsonNode parsed = mapper.readTree(source);
+			if (Objects.isNull(parsed) || !parsed.isObject())
+				throw new IllegalArgumentException("document must be a JSON object");
+			return parsed;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("failed to parse document: " + e.getMessage(), e);
+		}
+	}
+
+	private void expireScrolls() {
+		long now = System.currentTimeMillis();
+		scrolls.values().removeIf(context -> context.expiresAt < now);
+	}
+
+	/**
+	 * Result of {@link StubDocumentStore#index(String, String, String, byte[])}.
+	 */
+	public static final class WriteResult {
+		private final StoredDocument document;
+		private final boolean created;
+
+		private WriteResult(StoredDocument document, boolean created) {
+			this.document = document;
+			this.created = created;
+		}
+
+		public StoredDocument getDocument() {
+			return document;
+		}
+
+		public boolean isCreated() {
+			return created;
+		}
+	}
+
+	/**
+	 * An immutable version of a document.
+	 */
+	public static final class StoredDocument {
+		private final String index;
+		private final String type;
+		private final String id;
+		private final long version;
+		private final byte[] sourceBytes;
+		private final JsonNode source;
+
+		private StoredDocument(String index, String type, String id, long version, byte[] sourceBytes, JsonNode source) {
+			this.index = index;
+			this.type = type;
+			this.id = id;
+			this.version = version;
+			this.sourceBytes = sourceBytes;
+			this.source = source;
+		}
+
+		public String getIndex() {
+			return index;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return the document exactly as it was sent, do not modify
+		 */
+		public byte[] getSourceBytes() {
+			return sourceBytes;
+		}
+
+		public String getSourceString() {
+			return new String(sourceBytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return parsed document, do not modify
+		 */
+		public JsonNode getSource() {
+			return source;
+		}
+
+		/**
+		 * @param path - field name, dots reach into objects (ex. address.city)
+		 * @return the field's value, a missing node if the document does not have it
+		 */
+		JsonNode field(String path) {
+			return source.at(JsonPointer.compile("/" + path.replace(".", "/")));
+		}
+
+		private boolean hasType(String expected) {
+			return StringUtils.isEmpty(expected) || "_all".equals(expected) || expected.equals(type);
+		}
+	}
+
+	private static final class ScrollContext {
+		private final List<StoredDocument> hits;
+		private final int pageSize;
+		private int position;
+		private volatile long expiresAt;
+
+		private ScrollContext(List<StoredDocument> hits, int pageSize, long keepAliveMillis) {
+			this.hits = hits;
+			this.pageSize = Math.max(1, pageSize);
+			this.expiresAt = System.currentTimeMillis() + keepAliveMillis;
+		}
+
+		private synchronized List<StoredDocument> next(long keepAliveMillis) {
+			expiresAt = System.currentTimeMillis() + keepAliveMillis;
+			if (position >= hits.size())
+				return Collections.emptyList();
+			List<StoredDocument> page = hits.subList(position, Math.min(hits.size(), position + pageSize));
+			position += page.size();
+			return page;
+		}
+	}
+}
@@ -0,0 +1,986 @@
+package com.es.rest.wrapper.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import com.es.rest.wrapper.stub.StubDocumentStore.StoredDocument;
+import com.es.rest.wrapper.stub.StubDocumentStore.WriteResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>In process stand-in for an Elasticsearch 5.x node, meant as the backend of load and
+ * regression tests where no cluster is available. It speaks HTTP on the loopback interface,
+ * so the RestClient, the Sniffer and everything built on them run unchanged against it.</p>
+ *
+ * <p>Supported endpoints, all backed by a {@link StubDocumentStore}:</p>
+ * <ul>
+ * <li>GET / and GET /_nodes/http (used by the Sniffer)</li>
+ * <li>POST /{index}/{type}/ and POST|PUT /{index}/{type}/{id}</li>
+ * <li>GET|HEAD|DELETE /{index}/{type}/{id} and GET /{index}/{type}/{id}/_source</li>
+ * <li>GET|POST [/{index}[/{type}]]/_search with q, size, from, scroll and slice, and the query DSL
+ * subset of {@link StubQueries}</li>
+ * <li>GET|POST [/{index}[/{type}]]/_count</li>
+ * <li>POST [/{index}[/{type}]]/_bulk and [/{index}[/{type}]]/_mget</li>
+ * <li>POST /{index}/{type}/{id}/_update with doc, doc_as_upsert, upsert and detect_noop,
+ * scripts are ignored and updated documents only get a new version</li>
+ * <li>POST|DELETE /_search/scroll</li>
+ * <li>POST [/{index}[/{type}]]/_delete_by_query and _update_by_query, run at once, scripts
+ * are ignored and matched documents only get a new version</li>
+ * <li>GET /_tasks/{task_id}, POST /_tasks/{task_id}/_cancel and
+ * POST /_delete_by_query|_update_by_query/{task_id}/_rethrottle</li>
+ * <li>GET /{index}/_settings, answering a single primary shard</li>
+ * <li>POST [/{index}]/_refresh, a no-op since every write is visible at once</li>
+ * <li>GET /_cat/count[/{index}], answering JSON whatever the format parameter</li>
+ * <li>GET [/{index}]/_stats[/docs], answering only the document counts</li>
+ * </ul>
+ *
+ * <p>Like Elasticsearch with http.compression enabled, gzip request bodies are accepted and
+ * responses are gzip compressed for requests that send Accept-Encoding: gzip.</p>
+ *
+ * <p>Before being served every request passes the {@link StubFaults}, which may delay or fail
+ * it. Responses registered with {@link #record(String, String, int, String)} or loaded with
+ * {@link #loadRecordings(Path)} are replayed instead of being computed, which allows testing
+ * against captured responses of a real cluster.</p>
+ *
+ * @author Jack Phillips
+ */
+public class StubElasticsearchServer implements Closeable {
+	private static final Log logger = LogFactory.getLog(StubElasticsearchServer.class);
+
+	private static final String VERSION = "5.2.2";
+	private static final String CLUSTER_NAME = "stub";
+	private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+	private static final int DEFAULT_SIZE = 10;
+	private static final int BACKLOG = 1024;
+	private static final String GZIP = "gzip";
+	private static final String NODE_ID = CLUSTER_NAME + "-node";
+
+	private final ObjectMapper mapper;
+	private final StubDocumentStore store;
+	private final StubFaults faults = new StubFaults();
+	private final ConcurrentMap<String, Reply> recordings = new ConcurrentHashMap<>();
+	private final AtomicLong requestCount = new AtomicLong();
+	/* Results of the by-query requests sent with wait_for_completion=false, keyed by task ID */
+	private final ConcurrentMap<String, byte[]> tasks = new ConcurrentHashMap<>();
+	private final AtomicLong taskCount = new AtomicLong();
+	private final int requestedPort;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param port - port to listen on, 0 for any free port
+	 */
+	public StubElasticsearchServer(int port) {
+		this(new ObjectMapper(), port);
+	}
+
+	/**
+	 * @param mapper - mapper used to read requests and write responses
+	 * @param port - port to listen on, 0 for any free port
+	 */
+	public StubElasticsearchServer(ObjectMapper mapper, int port) {
+		this.mapper = mapper;
+		this.store = new StubDocumentStore(mapper);
+		this.requestedPort = port;
+	}
+
+	/**
+	 * Starts listening, calling it on a running server has no effect.
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (!Objects.isNull(server))
+			return;
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "es-stub-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort), BACKLOG);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+		logger.info("Elasticsearch stub listening on " + getHttpHost());
+	}
+
+	/**
+	 * Stops listening and drops in-flight requests.
+	 */
+	@Override
+	public synchronized void close() {
+		if (Objects.isNull(server))
+			return;
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+		executor = null;
+	}
+
+	/**
+	 * @return port the server listens on
+	 * @throws IllegalStateException if the server is not running
+	 */
+	public synchronized int getPort() {
+		if (Objects.isNull(server))
+			throw new IllegalStateException("Elasticsearch stub is not running");
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return address to use as elasticsearch.hosts (ex. http://127.0.0.1:9299)
+	 */
+	public String getHttpHost() {
+		return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+	}
+
+	public StubDocumentStore getStore() {
+		return store;
+	}
+
+	public StubFaults getFaults() {
+		return faults;
+	}
+
+	/**
+	 * @return number of requests received since the server was created
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Replays a fixed response for every request with the given method and path. A path with a
+	 * query string only matches requests with exactly that query string, a path without one
+	 * matches the path with any parameters.
+	 *
+	 * @param method - HTTP method (ex. GET)
+	 * @param path - request path (ex. /foo/bar/_search)
+	 * @param status - HTTP status to answer with
+	 * @param body - JSON response body
+	 */
+	public void record(String method, String path, int status, String body) {
+		recordings.put(recordingKey(method, path), new Reply(status, body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Loads recorded responses from a JSON file holding an array of
+	 * <i>{"method":"GET","path":"/foo/bar/_search","status":200,"body":{...}}</i> entries, see
+	 * {@link #record(String, String, int, String)}. The body may be an object or a string.
+	 *
+	 * @param file - recording file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void loadRecordings(Path file) throws IOException {
+		JsonNode entries = mapper.readTree(Files.readAllBytes(file));
+		if (Objects.isNull(entries) || !entries.isArray())
+			throw new IOException("Recording file " + file + " must hold a JSON array");
+
+		for (JsonNode entry : entries) {
+			JsonNode body = entry.path("body");
+			record(entry.path("method").asText("GET"),
+					entry.path("path").asText(),
+					entry.path("status").asInt(200),
+					body.isTextual() ? body.asText() : body.toString());
+		}
+		logger.info("Loaded " + entries.size() + " recorded response(s) from " + file);
+	}
+
+	public void clearRecordings() {
+		recordings.clear();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		Reply reply;
+		try {
+			byte[] body = StreamUtils.copyToByteArray(isGzip(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+					? new GZIPInputStream(exchange.getRequestBody())
+					: exchange.getRequestBody());
+			faults.delay();
+			reply = serve(exchange.getRequestMethod(), exchange.getRequestURI(), body);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reply = error(503, "node_closed_exception", "Elasticsearch stub is shutting down");
+		} catch (IllegalArgumentException e) {
+			reply = error(400, "illegal_argument_exception", e.getMessage());
+		} catch (Exception e) {
+			logger.error("ERROR: Elasticsearch stub failed to serve " + exchange.getRequestURI() + ": " + e.getMessage());
+			reply = error(500, "exception", String.valueOf(e.getMessage()));
+		}
+
+		try {
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			byte[] responseBody = reply.body;
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (responseBody.length > 0 && !Objects.isNull(acceptEncoding) && acceptEncoding.contains(GZIP)) {
+				responseBody = gzip(responseBody);
+				exchange.getResponseHeaders().set("Content-Encoding", GZIP);
+			}
+			boolean noBody = "HEAD".equals(exchange.getRequestMethod()) || responseBody.length == 0;
+			exchange.sendResponseHeaders(reply.status, noBody ? -1 : responseBody.length);
+			if (!noBody) {
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(responseBody);
+				}
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private Reply serve(String method, URI uri, byte[] body) throws IOException {
+		int failure = faults.nextFailureStatus();
+		if (failure == 429)
+			return error(429, "es_rejected_execution_exception", "rejected execution by the Elasticsearch stub");
+		if (failure != 0)
+			return error(failure, "stub_injected_exception", "failure injected by the Elasticsearch stub");
+
+		Reply recorded = recordings.get(recordingKey(method, uri.getRawPath() + (Objects.isNull(uri.getRawQuery()) ? "" : "?" + uri.getRawQuery())));
+		if (Objects.isNull(recorded))
+			recorded = recordings.get(recordingKey(method, uri.getRawPath()));
+		if (!Objects.isNull(recorded))
+			return recorded;
+
+		List<String> parts = new ArrayList<>();
+		for (String part : StringUtils.delimitedListToStringArray(uri.getRawPath(), "/")) {
+			if (!part.isEmpty())
+				parts.add(decode(part));
+		}
+		Map<String, String> params = parseParams(uri.getRawQuery());
+		String last = parts.isEmpty() ? "" : parts.get(parts.size() - 1);
+		String index = parts.size() > 1 ? parts.get(0) : null;
+		String type = parts.size() > 2 ? parts.get(1) : null;
+
+		if (parts.isEmpty())
+			return info();
+		if ("_nodes".equals(parts.get(0)))
+			return nodes();
+		if (parts.size() >= 2 && "_search".equals(parts.get(0)) && "scroll".equals(parts.get(1)))
+			return "DELETE".equals(method) ? clearScroll(parts, params, body) : scroll(parts, params, body);
+		if (parts.size() >= 2 && "_tasks".equals(parts.get(0)))
+			return task(parts.get(1), "_cancel".equals(last));
+		if (parts.size() == 3 && "_rethrottle".equals(last))
+			return task(parts.get(1), true);
+		if (parts.size() >= 2 && "_settings".equals(parts.get(1)))
+			return settings(parts.get(0));
+		if (parts.size() >= 2 && "_cat".equals(parts.get(0)) && "count".equals(parts.get(1)))
+			return catCount(parts.size() > 2 ? parts.get(2) : null);
+		if ("_stats".equals(parts.get(0)))
+			return stats(null);
+		if (parts.size() >= 2 && "_stats".equals(parts.get(1)))
+			return stats(parts.get(0));
+		switch (last) {
+		case "_search":
+			return search(index, type, params, body);
+		case "_count":
+			return count(index, type, params, body);
+		case "_bulk":
+			return bulk(index, type, body);
+		case "_mget":
+			return multiGet(index, type, body);
+		case "_refresh":
+			return json(200, StubElasticsearchServer::writeShards);
+		case "_delete_by_query":
+		case "_update_by_query":
+			return byQuery(last, index, type, params, body);
+		default:
+			break;
+		}
+		if (last.startsWith("_") && !(parts.size() == 4 && ("_source".equals(last) || "_update".equals(last))))
+			return error(400, "illegal_argument_exception", "endpoint " + uri.getRawPath() + " is not supported by the Elasticsearch stub");
+
+		if (parts.size() == 2 && "POST".equals(method))
+			return indexDocument(parts.get(0), parts.get(1), null, body);
+		if (parts.size() == 3) {
+			switch (method) {
+			case "GET":
+			case "HEAD":
+				return getDocument(parts.get(0), parts.get(1), parts.get(2));
+			case "POST":
+			case "PUT":
+				return indexDocument(parts.get(0), parts.get(1), parts.get(2), body);
+			case "DELETE":
+				return deleteDocument(parts.get(0), parts.get(1), parts.get(2));
+			default:
+				break;
+			}
+		}
+		if (parts.size() == 4 && "_update".equals(last) && "POST".equals(method))
+			return updateDocument(parts.get(0), parts.get(1), parts.get(2), body);
+		if (parts.size() == 4 && ("GET".equals(method) || "HEAD".equals(method)))
+			return getSource(parts.get(0), parts.get(1), parts.get(2));
+
+		return error(405, "illegal_argument_exception", "method " + method + " is not allowed for " + uri.getRawPath());
+	}
+
+	private Reply info() throws IOException {
+		return json(200, generator -> {
+			generator.writeStringField("name", CLUSTER_NAME);
+			generator.writeStringField("cluster_name", CLUSTER_NAME);
+			generator.writeObjectFieldStart("version");
+			generator.writeStringField("number", VERSION);
+			generator.writeEndObject();
+			generator.writeStringField("tagline", "You Know, for Search");
+		});
+	}
+
+	private Reply nodes() throws IOException {
+		String address = InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+		return json(200, generator -> {
+			generator.writeObjectFieldStart("_nodes");
+			generator.writeNumberField("total", 1);
+			generator.writeNumberField("successful", 1);
+			generator.writeNumberField("failed", 0);
+			generator.writeEndObject();
+			generator.writeStringField("cluster_name", CLUSTER_NAME);
+			generator.writeObjectFieldStart("nodes");
+			generator.writeObjectFieldStart(NODE_ID);
+			generator.writeStringField("name", CLUSTER_NAME);
+			generator.writeStringField("version", VERSION);
+			generator.writeObjectFieldStart("http");
+			generator.writeArrayFieldStart("bound_address");
+			generator.writeString(address);
+			generator.writeEndArray();
+			generator.writeStringField("publish_address", address);
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndObject();
+		});
+	}
+
+	private Reply indexDocument(String index, String type, String id, byte[] body) throws IOException {
+		WriteResult result = store.index(index, type, id, body);
+		return json(result.isCreated() ? 201 : 200, generator -> {
+			writeDocumentHeader(generator, result.getDocument());
+			generator.writeStringField("result", result.isCreated() ? "created" : "updated");
+			writeShards(generator);
+			generator.writeBooleanField("created", result.isCreated());
+		});
+	}
+
+	private Reply updateDocument(String index, String type, String id, byte[] body) throws IOException {
+		BulkItem item = update(new BulkItem("update", index, type, id), parseBody(body));
+		if (!Objects.isNull(item.errorType))
+			return error(item.status, item.errorType, item.reason);
+		return json(item.status, generator -> {
+			generator.writeStringField("_index", index);
+			generator.writeStringField("_type", type);
+			generator.writeStringField("_id", item.id);
+			generator.writeNumberField("_version", item.version);
+			generator.writeStringField("result", item.result);
+			writeShards(generator);
+		});
+	}
+
+	private Reply getDocument(String index, String type, String id) throws IOException {
+		StoredDocument document = store.get(index, type, id);
+		return json(Objects.isNull(document) ? 404 : 200, generator -> writeGetResult(generator, index, type, id, document));
+	}
+
+	private Reply getSource(String index, String type, String id) throws IOException {
+		StoredDocument document = store.get(index, type, id);
+		if (Objects.isNull(document))
+			return error(404, "resource_not_found_exception", "Document not found [" + index + "]/[" + type + "]/[" + id + "]");
+		return new Reply(200, document.getSourceBytes());
+	}
+
+	private Reply deleteDocument(String index, String type, String id) throws IOException {
+		StoredDocument deleted = store.delete(index, type, id);
+		return json(Objects.isNull(deleted) ? 404 : 200, generator -> {
+			generator.writeBooleanField("found", !Objects.isNull(deleted));
+			generator.writeStringField("_index", index);
+			generator.writeStringField("_type", type);
+			generator.writeStringField("_id", id);
+			generator.writeNumberField("_version", Objects.isNull(deleted) ? 1 : deleted.getVersion() + 1);
+			generator.writeStringField("result", Objects.isNull(deleted) ? "not_found" : "deleted");
+			writeShards(generator);
+		});
+	}
+
+	private Reply search(String index, String type, Map<String, String> params, byte[] body) throws IOException {
+		JsonNode request = parseBody(body);
+		Predicate<StoredDocument> query = params.containsKey("q")
+				? StubQueries.fromQueryString(params.get("q"))
+				: StubQueries.fromQuery(request.get("query"));
+		int size = intParam(params, "size", request.path("size").asInt(DEFAULT_SIZE));
+		int from = intParam(params, "from", request.path("from").asInt(0));
+		List<StoredDocument> hits = store.search(index, type, query);
+		JsonNode slice = request.get("slice");
+		if (!Objects.isNull(slice)) {
+			// Like Elasticsearch, slices split the documents by a hash of their ID
+			int id = slice.path("id").asInt();
+			int max = slice.path("max").asInt(1);
+			hits.removeIf(hit -> Math.floorMod(hit.getId().hashCode(), max) != id);
+		}
+
+		if (params.containsKey("scroll")) {
+			long keepAlive = parseTimeMillis(params.get("scroll"));
+			String scrollId = store.openScroll(hits, size, keepAlive);
+			return searchResponse(scrollId, hits.size(), store.nextScrollPage(scrollId, keepAlive));
+		}
+		int start = Math.min(from, hits.size());
+		return searchResponse(null, hits.size(), hits.subList(start, Math.min(hits.size(), start + size)));
+	}
+
+	private Reply scroll(List<String> parts, Map<String, String> params, byte[] body) throws IOException {
+		JsonNode request = parseBody(body);
+		String scrollId = parts.size() > 2 ? parts.get(2) : params.getOrDefault("scroll_id", request.path("scroll_id").asText(null));
+		if (Objects.isNull(scrollId))
+			throw new IllegalArgumentException("scroll_id is missing");
+		long keepAlive = parseTimeMillis(params.getOrDefault("scroll", request.path("scroll").asText("1m")));
+
+		int total = store.scrollTotal(scrollId);
+		List<StoredDocument> page = store.nextScrollPage(scrollId, keepAlive);
+		if (Objects.isNull(page))
+			return error(404, "search_context_missing_exception", "No search context found for id [" + scrollId + "]");
+		return searchResponse(scrollId, total, page);
+	}
+
+	private Reply clearScroll(List<String> parts, Map<String, String> params, byte[] body) throws IOException {
+		List<String> scrollIds = new ArrayList<>();
+		if (parts.size() > 2)
+			scrollIds.addAll(Arrays.asList(StringUtils.commaDelimitedListToStringArray(parts.get(2))));
+		if (params.containsKey("scroll_id"))
+			scrollIds.addAll(Arrays.asList(StringUtils.commaDelimitedListToStringArray(params.get("scroll_id"))));
+		JsonNode ids = parseBody(body).path("scroll_id");
+		if (ids.isArray()) {
+			ids.forEach(id -> scrollIds.add(id.asText()));
+		} else if (ids.isTextual()) {
+			scrollIds.add(ids.asText());
+		}
+
+		int freed = 0;
+		for (String scrollId : scrollIds) {
+			freed += store.clearScroll(scrollId);
+		}
+		final int numFreed = freed;
+		return json(numFreed > 0 || scrollIds.isEmpty() ? 200 : 404, generator -> {
+			generator.writeBooleanField("succeeded", true);
+			generator.writeNumberField("num_freed", numFreed);
+		});
+	}
+
+	private Reply count(String index, String type, Map<String, String> params, byte[] body) throws IOException {
+		Predicate<StoredDocument> query = params.containsKey("q")
+				? StubQueries.fromQueryString(params.get("q"))
+				: StubQueries.fromQuery(parseBody(body).get("query"));
+		int count = store.search(index, type, query).size();
+		return json(200, generator -> {
+			generator.writeNumberField("count", count);
+			writeShards(generator);
+		});
+	}
+
+	private Reply byQuery(String operation, String index, String type, Map<String, String> params, byte[] body) throws IOException {
+		JsonNode request = parseBody(body);
+		List<StoredDocument> hits = store.search(index, type, StubQueries.fromQuery(request.get("query")));
+		boolean delete = "_delete_by_query".equals(operation);
+		for (StoredDocument hit : hits) {
+			if (delete) {
+				store.delete(hit.getIndex(), hit.getType(), hit.getId());
+			} else {
+				store.index(hit.getIndex(), hit.getType(), hit.getId(), hit.getSourceBytes());
+			}
+		}
+		int total = hits.size();
+		float requestsPerSecond = Float.parseFloat(params.getOrDefault("requests_per_second", "-1"));
+		BodyWriter status = generator -> {
+			generator.writeNumberField("took", 0);
+			generator.writeBooleanField("timed_out", false);
+			generator.writeNumberField("total", total);
+			generator.writeNumberField("updated", delete ? 0 : total);
+			generator.writeNumberField("created", 0);
+			generator.writeNumberField("deleted", delete ? total : 0);
+			generator.writeNumberField("batches", total == 0 ? 0 : 1);
+			generator.writeNumberField("version_conflicts", 0);
+			generator.writeNumberField("noops", 0);
+			generator.writeNumberField("throttled_millis", 0);
+			generator.writeNumberField("requests_per_second", requestsPerSecond < 0 ? -1.0f : requestsPerSecond);
+			generator.writeNumberField("throttled_until_millis", 0);
+			generator.writeArrayFieldStart("failures");
+			generator.writeEndArray();
+		};
+		if (!"false".equals(params.get("wait_for_completion")))
+			return json(200, status);
+
+		long id = taskCount.incrementAndGet();
+		String taskId = NODE_ID + ":" + id;
+		String action = delete ? "indices:data/write/delete/byquery" : "indices:data/write/update/byquery";
+		long now = System.currentTimeMillis();
+		tasks.put(taskId, json(200, generator -> {
+			generator.writeBooleanField("completed", true);
+			generator.writeObjectFieldStart("task");
+			generator.writeStringField("node", NODE_ID);
+			generator.writeNumberField("id", id);
+			generator.writeStringField("type", "transport");
+			generator.writeStringField("action", action);
+			generator.writeObjectFieldStart("status");
+			status.write(generator);
+			generator.writeEndObject();
+			generator.writeStringField("description", operation.substring(1) + " [" + index + "]");
+			generator.writeNumberField("start_time_in_millis", now);
+			generator.writeNumberField("running_time_in_nanos", 0);
+			generator.writeBooleanField("cancellable", true);
+			generator.writeEndObject();
+			generator.writeObjectFieldStart("response");
+			status.write(generator);
+			generator.writeEndObject();
+		}).body);
+		return json(200, generator -> generator.writeStringField("task", taskId));
+	}
+
+	/* Tasks complete as soon as they are submitted, cancelling or rethrottling them changes nothing */
+	private Reply task(String taskId, boolean change) throws IOException {
+		byte[] result = tasks.get(taskId);
+		if (Objects.isNull(result))
+			return error(404, "resource_not_found_exception", "task [" + taskId + "] isn't running and hasn't stored its results");
+		if (!change)
+			return new Reply(200, result);
+		return json(200, generator -> {
+			generator.writeObjectFieldStart("nodes");
+			generator.writeEndObject();
+		});
+	}
+
+	private Reply settings(String index) throws IOException {
+		return json(200, generator -> {
+			generator.writeObjectFieldStart(index);
+			generator.writeObjectFieldStart("settings");
+			generator.writeObjectFieldStart("index");
+			generator.writeStringField("number_of_shards", "1");
+			generator.writeStringField("number_of_replicas", "0");
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndObject();
+		});
+	}
+
+	private Reply catCount(String index) throws IOException {
+		long now = System.currentTimeMillis();
+		ObjectNode row = mapper.createObjectNode()
+				.put("epoch", String.valueOf(now / 1000))
+				.put("timestamp", String.format("%tT", now))
+				.put("count", String.valueOf(store.search(index, null, document -> true).size()));
+		return new Reply(200, mapper.writeValueAsBytes(mapper.createArrayNode().add(row)));
+	}
+
+	private Reply stats(String index) throws IOException {
+		List<String> indexNames = Objects.isNull(index)
+				? store.getIndexNames()
+				: Arrays.asList(StringUtils.commaDelimitedListToStringArray(index));
+		return json(200, generator -> {
+			generator.writeObjectFieldStart("indices");
+			for (String indexName : indexNames) {
+				generator.writeObjectFieldStart(indexName);
+				for (String group : new String[] { "primaries", "total" }) {
+					generator.writeObjectFieldStart(group);
+					generator.writeObjectFieldStart("docs");
+					generator.writeNumberField("count", store.size(indexName));
+					generator.writeNumberField("deleted", 0);
+					generator.writeEndObject();
+					generator.writeEndObject();
+				}
+				generator.writeEndObject();
+			}
+			generator.writeEndObject();
+		});
+	}
+
+	private Reply multiGet(String defaultIndex, String defaultType, byte[] body) throws IOException {
+		JsonNode request = parseBody(body);
+		List<String[]> keys = new ArrayList<>();
+		for (JsonNode doc : request.path("docs")) {
+			keys.add(new String[] { doc.path("_index").asText(defaultIndex), doc.path("_type").asText(defaultType), doc.path("_id").asText() });
+		}
+		for (JsonNode id : request.path("ids")) {
+			keys.add(new String[] { defaultIndex, defaultType, id.asText() });
+		}
+
+		return json(200, generator -> {
+			generator.writeArrayFieldStart("docs");
+			for (String[] key : keys) {
+				generator.writeStartObject();
+				writeGetResult(generator, key[0], key[1], key[2], store.get(key[0], key[1], key[2]));
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		});
+	}
+
+	private Reply bulk(String defaultIndex, String defaultType, byte[] body) throws IOException {
+		List<BulkItem> items = new ArrayList<>();
+		Iterator<byte[]> lines = splitLines(body).iterator();
+		while (lines.hasNext()) {
+			JsonNode action = mapper.readTree(lines.next());
+			if (Objects.isNull(action) || action.size() != 1)
+				throw new IllegalArgumentException("Malformed action/metadata line, expected a single operation");
+			Map.Entry<String, JsonNode> entry = action.fields().next();
+			String operation = entry.getKey();
+			JsonNode metadata = entry.getValue();
+			String index = metadata.path("_index").asText(defaultIndex);
+			String type = metadata.path("_type").asText(defaultType);
+			String id = metadata.path("_id").asText(null);
+			byte[] source = "delete".equals(operation) || !lines.hasNext() ? null : lines.next();
+			items.add(executeBulkItem(operation, index, type, id, source));
+		}
+
+		boolean errors = items.stream().anyMatch(item -> !Objects.isNull(item.errorType));
+		return json(200, generator -> {
+			generator.writeNumberField("took", 0);
+			generator.writeBooleanField("errors", errors);
+			generator.writeArrayFieldStart("items");
+			for (BulkItem item : items) {
+				generator.writeStartObject();
+				generator.writeObjectFieldStart(item.operation);
+				generator.writeStringField("_index", item.index);
+				generator.writeStringField("_type", item.type);
+				generator.writeStringField("_id", item.id);
+				generator.writeNumberField("status", item.status);
+				if (Objects.isNull(item.errorType)) {
+					generator.writeNumberField("_version", item.version);
+					generator.writeStringField("result", item.result);
+					writeShards(generator);
+				} else {
+					generator.writeObjectFieldStart("error");
+					generator.writeStringField("type", item.errorType);
+					generator.writeStringField("reason", item.reason);
+					generator.writeEndObject();
+				}
+				generator.writeEndObject();
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		});
+	}
+
+	private BulkItem executeBulkItem(String operation, String index, String type, String id, byte[] source) throws IOException {
+		BulkItem item = new BulkItem(operation, index, type, id);
+		if (faults.rejectBulkItem())
+			return item.fail(429, "es_rejected_execution_exception", "rejected execution of bulk item by the Elasticsearch stub");
+		if (!"delete".equals(operation) && Objects.isNull(source))
+			return item.fail(400, "illegal_argument_exception", "Bulk operation [" + operation + "] is missing its source line");
+
+		switch (operation) {
+		case "index":
+		case "create":
+			if ("create".equals(operation) && !Objects.isNull(id) && !Objects.isNull(store.get(index, type, id)))
+				return item.fail(409, "version_conflict_engine_exception", "[" + type + "][" + id + "]: document already exists");
+			return item.succeed(store.index(index, type, id, source));
+		case "delete":
+			StoredDocument deleted = store.delete(index, type, id);
+			if (Objects.isNull(deleted))
+				return item.done(404, 1, "not_found");
+			return item.done(200, deleted.getVersion() + 1, "deleted");
+		case "update":
+			return update(item, mapper.readTree(source));
+		default:
+			return item.fail(400, "illegal_argument_exception", "Unknown bulk operation [" + operation + "]");
+		}
+	}
+
+	private BulkItem update(BulkItem item, JsonNode request) throws IOException {
+		StoredDocument existing = store.get(item.index, item.type, item.id);
+		JsonNode doc = request.get("doc");
+		ObjectNode updated;
+		if (!Objects.isNull(existing) && request.has("script")) {
+			updated = existing.getSource().deepCopy();
+		} else if (!Objects.isNull(existing)) {
+			if (Objects.isNull(doc))
+				return item.fail(400, "illegal_argument_exception", "the Elasticsearch stub only supports partial updates with doc or script");
+			updated = existing.getSource().deepCopy();
+			merge(updated, doc);
+			if (request.path("detect_noop").asBoolean(true) && updated.equals(existing.getSource()))
+				return item.done(200, existing.getVersion(), "noop");
+		} else if (request.path("doc_as_upsert").asBoolean(false) && !Objects.isNull(doc)) {
+			updated = doc.deepCopy();
+		} else if (request.has("upsert")) {
+			updated = request.get("upsert").deepCopy();
+		} else {
+			return item.fail(404, "document_missing_exception", "[" + item.type + "][" + item.id + "]: document missing");
+		}
+		return item.succeed(store.index(item.index, item.type, item.id, mapper.writeValueAsBytes(updated)));
+	}
+
+	private static void merge(ObjectNode target, JsonNode changes) {
+		changes.fields().forEachRemaining(change -> {
+			JsonNode current = target.get(change.getKey());
+			if (!Objects.isNull(current) && current.isObject() && change.getValue().isObject()) {
+				merge((ObjectNode) current, change.getValue());
+			} else {
+				target.set(change.getKey(), change.getValue());
+			}
+		});
+	}
+
+	private Reply searchResponse(String scrollId, int total, List<StoredDocument> hits) throws IOException {
+		return json(200, generator -> {
+			if (!Objects.isNull(scrollId))
+				generator.writeStringField("_scroll_id", scrollId);
+			generator.writeNumberField("took", 0);
+			generator.writeBooleanField("timed_out", false);
+			writeShards(generator);
+			generator.writeObjectFieldStart("hits");
+			generator.writeNumberField("total", total);
+			generator.writeNumberField("max_score", 1.0);
+			generator.writeArrayFieldStart("hits");
+			for (StoredDocument hit : hits) {
+				generator.writeStartObject();
+				generator.writeStringField("_index", hit.getIndex());
+				generator.writeStringField("_type", hit.getType());
+				generator.writeStringField("_id", hit.getId());
+				generator.writeNumberField("_score", 1.0);
+				generator.writeFieldName("_source");
+				generator.writeRawValue(hit.getSourceString());
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		});
+	}
+
+	private static void writeGetResult(JsonGenerator generator, String index, String type, String id, StoredDocument document) throws IOException {
+		generator.writeStringField("_index", index);
+		generator.writeStringField("_type", Objects.isNull(document) ? type : document.getType());
+		generator.writeStringField("_id", id);
+		generator.writeBooleanField("found", !Objects.isNull(document));
+		if (!Objects.isNull(document)) {
+			generator.writeNumberField("_version", document.getVersion());
+			generator.writeFieldName("_source");
+			generator.writeRawValue(document.getSourceString());
+		}
+	}
+
+	private static void writeDocumentHeader(JsonGenerator generator, StoredDocument document) throws IOException {
+		generator.writeStringField("_index", document.getIndex());
+		generator.writeStringField("_type", document.getType());
+		generator.writeStringField("_id", document.getId());
+		generator.writeNumberField("_version", document.getVersion());
+	}
+
+	private static void writeShards(JsonGenerator generator) throws IOException {
+		generator.writeObjectFieldStart("_shards");
+		generator.writeNumberField("total", 1);
+		generator.writeNumberField("successful", 1);
+		generator.writeNumberField("failed", 0);
+		generator.writeEndObject();
+	}
+
+	private Reply error(int status, String type, String reason) {
+		try {
+			return json(status, generator -> {
+				generator.writeObjectFieldStart("error");
+				generator.writeArrayFieldStart("root_cause");
+				generator.writeStartObject();
+				generator.writeStringField("type", type);
+				generator.writeStringField("reason", reason);
+				generator.writeEndObject();
+				generator.writeEndArray();
+				generator.writeStringField("type", type);
+				generator.writeStringField("reason", reason);
+				generator.writeEndObject();
+				generator.writeNumberField("status", status);
+			});
+		} catch (IOException e) {
+			// Writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Reply json(int status, BodyWriter writer) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			generator.writeStartObject();
+			writer.write(generator);
+			generator.writeEndObject();
+		}
+		return new Reply(status, out.toByteArray());
+	}
+
+	private JsonNode parseBody(byte[] body) throws IOException {
+		if (body.length == 0)
+			return mapper.createObjectNode();
+		JsonNode request = mapper.readTree(body);
+		return Objects.isNull(request) ? mapper.createObjectNode() : request;
+	}
+
+	private static boolean isGzip(String contentEncoding) {
+		return !Objects.isNull(contentEncoding) && GZIP.equalsIgnoreCase(contentEncoding.trim());
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		}
+		return out.toByteArray();
+	}
+
+	private static List<byte[]> splitLines(byte[] body) {
+		List<byte[]> lines = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i <= body.length; i++) {
+			if (i == body.length || body[i] == '\n') {
+				if (i > start)
+					lines.add(Arrays.copyOfRange(body, start, i));
+				start = i + 1;
+			}
+		}
+		return lines;
+	}
+
+	private static Map<String, String> parseParams(String rawQuery) {
+		Map<String, String> params = new HashMap<>();
+		if (StringUtils.isEmpty(rawQuery))
+			return params;
+		for (String param : StringUtils.delimitedListToStringArray(rawQuery, "&")) {
+			int equals = param.indexOf('=');
+			if (equals < 0) {
+				params.put(decode(param), "");
+			} else {
+				params.put(decode(param.substring(0, equals)), decode(param.substring(equals + 1)));
+			}
+		}
+		return params;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int intParam(Map<String, String> params, String name, int defaultValue) {
+		String value = params.get(name);
+		return StringUtils.isEmpty(value) ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * @param value - Elasticsearch time value (ex. 500ms, 30s, 1m, 2h)
+	 * @return value in milliseconds
+	 */
+	static long parseTimeMillis(String value) {
+		String trimmed = value.trim();
+		int unitStart = 0;
+		while (unitStart < trimmed.length() && Character.isDigit(trimmed.charAt(unitStart)))
+			unitStart++;
+		if (unitStart == 0)
+			throw new IllegalArgumentException("failed to parse time value [" + value + "]");
+
+		long amount = Long.parseLong(trimmed.substring(0, unitStart));
+		switch (trimmed.substring(unitStart)) {
+		case "ms":
+			return amount;
+		case "":
+		case "s":
+			return TimeUnit.SECONDS.toMillis(amount);
+		case "m":
+			return TimeUnit.MINUTES.toMillis(amount);
+		case "h":
+			return TimeUnit.HOURS.toMillis(amount);
+		case "d":
+			return TimeUnit.DAYS.toMillis(amount);
+		default:
+			throw new IllegalArgumentException("failed to parse time value [" + value + "]");
+		}
+	}
+
+	private static String recordingKey(String method, String path) {
+		return method.toUpperCase() + " " + path;
+	}
+
+	@FunctionalInterface
+	private interface BodyWriter {
+		void write(JsonGenerator generator) throws IOException;
+	}
+
+	private static final class Reply {
+		private final int status;
+		private final byte[] body;
+
+		private Reply(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	private static final class BulkItem {
+		private final String operation;
+		private final String index;
+		private final String type;
+		private String id;
+		private int status;
+		private long version;
+		private String result;
+		private String errorType;
+		private String reason;
+
+		private BulkItem(String operation, String index, String type, String id) {
+			this.operation = operation;
+			this.index = index;
+			this.type = type;
+			this.id = id;
+		}
+
+		private BulkItem succeed(WriteResult write) {
+			id = write.getDocument().getId();
+			return done(write.isCreated() ? 201 : 200, write.getDocument().getVersion(), write.isCreated() ? "created" : "updated");
+		}
+
+		private BulkItem done(int status, long version, String result) {
+			this.status = status;
+			this.version = version;
+			this.result = result;
+			return this;
+		}
+
+		private BulkItem fail(int status, String errorType, String reason) {
+			this.status = status;
+			this.errorType = errorType;
+			this.reason = reason;
+			return this;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.es.rest.wrapper.stub;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Latency and failure injection of the {@link StubElasticsearchServer}. Every setting can be
+ * changed while the server runs, ex. to raise the rejection rate in the middle of a load test.</p>
+ *
+ * <p>Each request first waits <i>latencyMillis</i> plus a random jitter of up to
+ * <i>jitterMillis</i>, then is rejected with a 429 with probability <i>rejectionRate</i>, or
+ * fails with a 500 with probability <i>errorRate</i>.</p>
+ *
+ * @author Jack Phillips
+ */
+public class StubFaults {
+
+	private volatile long latencyMillis;
+	private volatile long jitterMillis;
+	private volatile double errorRate;
+	private volatile double rejectionRate;
+	private volatile double bulkItemRejectionRate;
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = Math.max(0, latencyMillis);
+	}
+
+	public long getJitterMillis() {
+		return jitterMillis;
+	}
+
+	public void setJitterMillis(long jitterMillis) {
+		this.jitterMillis = Math.max(0, jitterMillis);
+	}
+
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * @param errorRate - share of requests answered with a 500, between 0 and 1
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = clamp(errorRate);
+	}
+
+	public double getRejectionRate() {
+		return rejectionRate;
+	}
+
+	/**
+	 * @param rejectionRate - share of requests answered with a 429, between 0 and 1
+	 */
+	public void setRejectionRate(double rejectionRate) {
+		this.rejectionRate = clamp(rejectionRate);
+	}
+
+	public double getBulkItemRejectionRate() {
+		return bulkItemRejectionRate;
+	}
+
+	/**
+	 * Elasticsearch rejects single items of a bulk request when its write queue is full, the
+	 * request itself succeeds with a 429 status on the rejected items.
+	 *
+	 * @param bulkItemRejectionRate - share of bulk items rejected with a 429, between 0 and 1
+	 */
+	public void setBulkItemRejectionRate(double bulkItemRejectionRate) {
+		this.bulkItemRejectionRate = clamp(bulkItemRejectionRate);
+	}
+
+	/**
+	 * Resets every setting, requests are answered immediately and never fail.
+	 */
+	public void clear() {
+		latencyMillis = 0;
+		jitterMillis = 0;
+		errorRate = 0;
+		rejectionRate = 0;
+		bulkItemRejectionRate = 0;
+	}
+
+	/**
+	 * Sleeps for the configured latency.
+	 *
+	 * @throws InterruptedException if the server is shutting down
+	 */
+	void delay() throws InterruptedException {
+		long jitter = jitterMillis;
+		long delay = latencyMillis + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+		if (delay > 0)
+			TimeUnit.MILLISECONDS.sleep(delay);
+	}
+
+	/**
+	 * @return HTTP status of an injected failure, 0 if the request should be served
+	 */
+	int nextFailureStatus() {
+		double roll = ThreadLocalRandom.current().nextDouble();
+		double rejection = rejectionRate;
+		if (roll < rejection)
+			return 429;
+		if (roll < rejection + errorRate)
+			return 500;
+		return 0;
+	}
+
+	/**
+	 * @return true if the next bulk item should be rejected
+	 */
+	boolean rejectBulkItem() {
+		double rate = bulkItemRejectionRate;
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	private static double clamp(double rate) {
+		return Math.max(0, Math.min(1, rate));
+	}
+}
@@ -0,0 +1,183 @@
+package com.es.rest.wrapper.stub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * <p>Translates the small subset of the query DSL the stub understands into predicates over
+ * stored documents: match_all, match, term, terms, ids and bool (must, filter, should, must_not),
+ * plus URI searches of the form <i>q=field:value</i>.</p>
+ *
+ * <p>Matching is deliberately simple: term compares the field's text exactly, match and
+ * <i>q=</i> lower case both sides, split them on non alphanumeric characters and match when
+ * any token is shared. Fields may use dots to reach into objects (ex. address.city).</p>
+ *
+ * @author Jack Phillips
+ */
+final class StubQueries {
+
+	private StubQueries() {
+	}
+
+	/**
+	 * @param query - value of the query field of a search body, null to match all documents
+	 * @return Predicate
+	 * @throws IllegalArgumentException if the query uses an unsupported clause
+	 */
+	static Predicate<StubDocumentStore.StoredDocument> fromQuery(JsonNode query) {
+		if (Objects.isNull(query) || query.isNull() || query.size() == 0)
+			return document -> true;
+		if (query.size() != 1)
+			throw new IllegalArgumentException("query must hold exactly one clause");
+
+		Map.Entry<String, JsonNode> clause = query.fields().next();
+		JsonNode body = clause.getValue();
+		switch (clause.getKey()) {
+		case "match_all":
+			return document -> true;
+		case "match":
+			return fieldClause(body, (field, value) -> document -> matches(document.field(field), value.asText()));
+		case "term":
+			return fieldClause(body, (field, value) -> {
+				String expected = value.isObject() ? value.path("value").asText() : value.asText();
+				return document -> equals(document.field(field), expected);
+			});
+		case "terms":
+			return fieldClause(body, (field, values) -> {
+				Set<String> expected = new HashSet<>();
+				values.forEach(value -> expected.add(value.asText()));
+				return document -> expected.stream().anyMatch(value -> equals(document.field(field), value));
+			});
+		case "ids":
+			Set<String> ids = new HashSet<>();
+			body.path("values").forEach(id -> ids.add(id.asText()));
+			return document -> ids.contains(document.getId());
+		case "bool":
+			return bool(body);
+		default:
+			throw new IllegalArgumentException("query [" + clause.getKey() + "] is not supported by the stub");
+		}
+	}
+
+	/**
+	 * @param q - value of the q parameter (ex. barVal:test), empty or * to match all documents
+	 * @return Predicate
+	 */
+	static Predicate<StubDocumentStore.StoredDocument> fromQueryString(String q) {
+		if (StringUtils.isEmpty(q) || "*".equals(q) || "*:*".equals(q))
+			return document -> true;
+
+		int colon = q.indexOf(':');
+		if (colon < 0)
+			return document -> matchesAnyField(document.getSource(), q);
+		String field = q.substring(0, colon);
+		String value = q.substring(colon + 1);
+		return document -> matches(document.field(field), value);
+	}
+
+	private static Predicate<StubDocumentStore.StoredDocument> bool(JsonNode body) {
+		List<Predicate<StubDocumentStore.StoredDocument>> required = new ArrayList<>();
+		clauses(body.get("must")).forEach(clause -> required.add(fromQuery(clause)));
+		clauses(body.get("filter")).forEach(clause -> required.add(fromQuery(clause)));
+		List<Predicate<StubDocumentStore.StoredDocument>> excluded = new ArrayList<>();
+		clauses(body.get("must_not")).forEach(clause -> excluded.add(fromQuery(clause)));
+		List<Predicate<StubDocumentStore.StoredDocument>> optional = new ArrayList<>();
+		clauses(body.get("should")).forEach(clause -> optional.add(fromQuery(clause)));
+
+		// Like Elasticsearch, should clauses are only required when nothing else is
+		boolean shouldRequired = required.isEmpty() && !optional.isEmpty();
+		return document -> required.stream().allMatch(predicate -> predicate.test(document))
+				&& excluded.stream().noneMatch(predicate -> predicate.test(document))
+				&& (!shouldRequired || optional.stream().anyMatch(predicate -> predicate.test(document)));
+	}
+
+	private static List<JsonNode> clauses(JsonNode node) {
+		if (Objects.isNull(node))
+			return new ArrayList<>();
+		if (!node.isArray())
+			return Arrays.asList(node);
+		List<JsonNode> clauses = new ArrayList<>();
+		node.forEach(clauses::add);
+		return clauses;
+	}
+
+	private static Predicate<StubDocumentStore.StoredDocument> fieldClause(JsonNode body, FieldClause clause) {
+		if (Objects.isNull(body) || body.size() != 1)
+			throw new IllegalArgumentException("query clause must name exactly one field");
+		Map.Entry<String, JsonNode> field = body.fields().next();
+		JsonNode value = field.getValue();
+		// Long form, ex. {"match":{"barVal":{"query":"test"}}}
+		if (value.isObject() && value.has("query"))
+			value = value.get("query");
+		return clause.create(field.getKey(), value);
+	}
+
+	private static boolean equals(JsonNode field, String expected) {
+		if (field.isArray()) {
+			for (JsonNode element : field) {
+				if (element.asText().equals(expected))
+					return true;
+			}
+			return false;
+		}
+		return !field.isMissingNode() && field.asText().equals(expected);
+	}
+
+	private static boolean matches(JsonNode field, String text) {
+		if (field.isMissingNode() || field.isNull())
+			return false;
+		Set<String> expected = tokens(text);
+		if (field.isArray()) {
+			for (JsonNode element : field) {
+				if (shareToken(tokens(element.asText()), expected))
+					return true;
+			}
+			return false;
+		}
+		return shareToken(tokens(field.asText()), expected);
+	}
+
+	private static boolean matchesAnyField(JsonNode source, String text) {
+		Iterator<JsonNode> values = source.elements();
+		while (values.hasNext()) {
+			JsonNode value = values.next();
+			if (value.isContainerNode() ? matchesAnyField(value, text) : matches(value, text))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean shareToken(Set<String> tokens, Set<String> expected) {
+		for (String token : expected) {
+			if (tokens.contains(token))
+				return true;
+		}
+		return false;
+	}
+
+	private static Set<String> tokens(String text) {
+		Set<String> tokens = new HashSet<>();
+		for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+			if (!token.isEmpty())
+				tokens.add(token);
+		}
+		return tokens;
+	}
+
+	@FunctionalInterface
+	private interface FieldClause {
+		Predicate<StubDocumentStore.StoredDocument> create(String field, JsonNode value);
+	}
+}
@@ -0,0 +1,63 @@
+package com.es.rest.wrapper.stub;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.util.StringUtils;
+
+/**
+ * Runs a {@link StubElasticsearchServer} inside the application when the <i>es-stub</i> profile
+ * is active, ex. for throughput tests of the FooController without a cluster. The profile's
+ * properties point elasticsearch.hosts at the stub. The stub lives in the <i>stub</i> source set,
+ * not the application jar, start it with <code>gradle bootRunStub</code>.
+ * 
+ * @author Jack Phillips
+ */
+@Configuration
+@Profile("es-stub")
+public class StubServerConfiguration {
+	@Value("${elasticsearch.stub.port:9299}")
+	private int port;
+	
+	@Value("${elasticsearch.stub.latency-millis:0}")
+	private long latencyMillis;
+	
+	@Value("${elasticsearch.stub.jitter-millis:0}")
+	private long jitterMillis;
+	
+	/* Share of requests answered with a 500, between 0 and 1 */
+	@Value("${elasticsearch.stub.error-rate:0}")
+	private double errorRate;
+	
+	/* Share of requests answered with a 429, between 0 and 1 */
+	@Value("${elasticsearch.stub.rejection-rate:0}")
+	private double rejectionRate;
+	
+	/* Share of bulk items rejected with a 429, between 0 and 1 */
+	@Value("${elasticsearch.stub.bulk-item-rejection-rate:0}")
+	private double bulkItemRejectionRate;
+	
+	/* JSON file of recorded responses to replay, see StubElasticsearchServer.loadRecordings */
+	@Value("${elasticsearch.stub.recordings:}")
+	private String recordings;
+	
+	@Bean(initMethod = "start", destroyMethod = "close")
+	public StubElasticsearchServer stubElasticsearchServer() throws IOException {
+		StubElasticsearchServer server = new StubElasticsearchServer(port);
+		StubFaults faults = server.getFaults();
+		faults.setLatencyMillis(latencyMillis);
+		faults.setJitterMillis(jitterMillis);
+		faults.setErrorRate(errorRate);
+		faults.setRejectionRate(rejectionRate);
+		faults.setBulkItemRejectionRate(bulkItemRejectionRate);
+		
+		if (!StringUtils.isEmpty(recordings)) {
+			server.loadRecordings(Paths.get(recordings));
+		}
+		return server;
+	}
+}
@@ -0,0 +1,92 @@
+package com.es.rest.wrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+
+import com.es.rest.wrapper.bulk.NdjsonImporter;
+import com.es.rest.wrapper.cache.DocumentCacheManager;
+import com.es.rest.wrapper.cache.IndexCountCache;
+import com.es.rest.wrapper.cache.QueryCache;
+import com.es.rest.wrapper.client.GzipCompression;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.export.IndexExporter;
+import com.es.rest.wrapper.metrics.ElasticsearchMetrics;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.es.rest.wrapper.service.MultiGetBatcher;
+import com.es.rest.wrapper.service.RefreshCoalescer;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+import com.es.rest.wrapper.task.ByQueryTaskManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Spring context of the service components wired to a {@link StubElasticsearchServer} on a free
+ * port, for tests that need the real request path without a cluster. Properties are passed
+ * as key=value pairs and override the defaults of the components.
+ *
+ * @author Jack Phillips
+ */
+public class StubElasticsearchContext implements Closeable {
+	private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+	public StubElasticsearchContext(String... properties) {
+		Map<String, Object> values = new HashMap<>();
+		for (String property : properties) {
+			int separator = property.indexOf('=');
+			values.put(property.substring(0, separator), property.substring(separator + 1));
+		}
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", values));
+		context.register(StubConfiguration.class);
+		context.refresh();
+	}
+
+	public StubElasticsearchServer getServer() {
+		return context.getBean(StubElasticsearchServer.class);
+	}
+
+	public FooService getFooService() {
+		return context.getBean(FooService.class);
+	}
+
+	public <T> T getBean(Class<T> clazz) {
+		return context.getBean(clazz);
+	}
+
+	@Override
+	public void close() {
+		context.close();
+	}
+
+	@Configuration
+	@Import({ ElasticDocumentRegistry.class, DocumentCacheManager.class, QueryCache.class, IndexCountCache.class,
+			MultiGetBatcher.class, ElasticsearchMetrics.class, GzipCompression.class, RefreshCoalescer.class,
+			IndexExporter.class, NdjsonImporter.class, ByQueryTaskManager.class, FooService.class })
+	static class StubConfiguration {
+
+		@Bean(initMethod = "start", destroyMethod = "close")
+		public StubElasticsearchServer stubElasticsearchServer() throws IOException {
+			return new StubElasticsearchServer(0);
+		}
+
+		@Bean(destroyMethod = "close")
+		public RestClient restClient(StubElasticsearchServer server) {
+			return RestClient.builder(HttpHost.create(server.getHttpHost())).build();
+		}
+
+		@Bean
+		public MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
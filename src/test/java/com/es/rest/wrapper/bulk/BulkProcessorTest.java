@@ -0,0 +1,139 @@
+package com.es.rest.wrapper.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.model.generic.BulkItemResponse;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BulkProcessorTest {
+	private static final int DOCUMENTS = 500;
+
+	private StubElasticsearchServer server;
+	private RestClient restClient;
+	private ElasticDocumentRegistry registry;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubElasticsearchServer(0);
+		server.start();
+		restClient = RestClient.builder(HttpHost.create(server.getHttpHost())).build();
+		registry = new ElasticDocumentRegistry(new ObjectMapper(), "com.es.rest.wrapper.example");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		restClient.close();
+		server.close();
+	}
+
+	@Test
+	public void rejectedBulksAndItemsAreRetriedUntilIndexed() throws Exception {
+		server.getFaults().setRejectionRate(0.2);
+		server.getFaults().setBulkItemRejectionRate(0.3);
+
+		BulkProcessor processor = BulkProcessor.builder(restClient, registry)
+				.setBulkActions(50)
+				.setConcurrentRequests(4)
+				.setBackoff(1, TimeUnit.MILLISECONDS, 20)
+				.build();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			processor.index(new Foo("v" + i), "id-" + i);
+		}
+		assertTrue(processor.awaitClose(30, TimeUnit.SECONDS));
+
+		assertEquals(DOCUMENTS, processor.getSucceeded());
+		assertEquals(0, processor.getFailed());
+		assertTrue(processor.getRetried() > 0);
+		assertEquals(DOCUMENTS, server.getStore().size("foo"));
+	}
+
+	@Test
+	public void itemsStillRejectedAfterTheLastRetryAreReportedAsFailed() throws Exception {
+		server.getFaults().setBulkItemRejectionRate(1);
+		AtomicInteger reported = new AtomicInteger();
+
+		BulkProcessor processor = BulkProcessor.builder(restClient, registry)
+				.setBackoff(1, TimeUnit.MILLISECONDS, 2)
+				.setListener(new BulkListener() {
+					@Override
+					public void onItemFailure(BulkItemResponse item) {
+						reported.incrementAndGet();
+					}
+				})
+				.build();
+		for (int i = 0; i < 10; i++) {
+			processor.index(new Foo("v" + i), "id-" + i);
+		}
+		assertTrue(processor.awaitClose(30, TimeUnit.SECONDS));
+
+		assertEquals(0, processor.getSucceeded());
+		assertEquals(10, processor.getFailed());
+		assertEquals(10, reported.get());
+		assertEquals(0, server.getStore().size("foo"));
+	}
+
+	@Test
+	public void retriesWaitingForASlotDoNotBlockTheSchedulerThread() throws Exception {
+		server.getFaults().setLatencyMillis(20);
+		server.getFaults().setRejectionRate(0.5);
+
+		BulkProcessor processor = BulkProcessor.builder(restClient, registry)
+				.setBulkActions(10)
+				.setConcurrentRequests(1)
+				.setFlushInterval(5, TimeUnit.MILLISECONDS)
+				.setBackoff(1, TimeUnit.MILLISECONDS, 100)
+				.build();
+		Thread adder = new Thread(() -> {
+			try {
+				for (int i = 0; i < 200; i++) {
+					processor.index(new Foo("v" + i), "id-" + i);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		adder.start();
+
+		// Interval flushes and the other retries share the scheduler thread, it must never wait for a slot
+		boolean blocked = false;
+		while (adder.isAlive() && !blocked) {
+			blocked = isWaitingForAPermit("es-bulk-processor");
+			Thread.sleep(1);
+		}
+		adder.join();
+		assertTrue(processor.awaitClose(30, TimeUnit.SECONDS));
+
+		assertFalse("The scheduler thread blocked on an in-flight permit", blocked);
+		assertEquals(200, processor.getSucceeded());
+		assertEquals(200, server.getStore().size("foo"));
+	}
+
+	private static boolean isWaitingForAPermit(String threadName) {
+		for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+			if (!thread.getKey().getName().equals(threadName))
+				continue;
+			for (StackTraceElement frame : thread.getValue()) {
+				if (frame.getClassName().startsWith(Semaphore.class.getName()))
+					return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,115 @@
+package com.es.rest.wrapper.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class NdjsonImporterTest {
+	private static final int DOCUMENTS = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StubElasticsearchContext context;
+	private StubElasticsearchServer server;
+	private FooService service;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext("elasticsearch.import.bulk-size-bytes=1024",
+				"elasticsearch.import.backoff-millis=1", "elasticsearch.import.max-retries=20");
+		server = context.getServer();
+		service = context.getFooService();
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void rejectedItemsAreResentUntilImported() throws IOException {
+		server.getFaults().setBulkItemRejectionRate(0.3);
+
+		ImportResult result = service.importNdjson("foo", "bar", sourceFile(), NdjsonImporter.Format.SOURCE);
+
+		assertTrue(result.isComplete());
+		assertEquals(DOCUMENTS, result.getDocuments());
+		assertEquals(DOCUMENTS, result.getSucceeded());
+		assertEquals(0, result.getFailed());
+		assertTrue(result.getRetried() > 0);
+		assertEquals(DOCUMENTS, server.getStore().size("foo"));
+	}
+
+	@Test
+	public void bulkFileItemsAreResentWithoutTheRestOfTheirChunk() throws IOException {
+		server.getFaults().setBulkItemRejectionRate(0.3);
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			lines.append("{\"index\":{\"_id\":\"id-").append(i).append("\"}}\n{\"barVal\":\"v").append(i).append("\"}\n");
+		}
+
+		ImportResult result = service.importNdjson("foo", "bar", write(lines.toString()), NdjsonImporter.Format.BULK);
+
+		assertEquals(DOCUMENTS, result.getSucceeded());
+		assertEquals(DOCUMENTS, server.getStore().size("foo"));
+		for (int i = 0; i < DOCUMENTS; i++) {
+			assertEquals(1, server.getStore().get("foo", "bar", "id-" + i).getVersion());
+		}
+	}
+
+	@Test
+	public void itemsStillRejectedAfterTheLastRetryAreCountedAsFailed() throws IOException {
+		context.close();
+		context = new StubElasticsearchContext("elasticsearch.import.backoff-millis=1", "elasticsearch.import.max-retries=2");
+		server = context.getServer();
+		server.getFaults().setBulkItemRejectionRate(1);
+
+		ImportResult result = context.getFooService().importNdjson("foo", "bar", sourceFile(), NdjsonImporter.Format.SOURCE);
+
+		assertTrue(result.isComplete());
+		assertEquals(0, result.getSucceeded());
+		assertEquals(DOCUMENTS, result.getFailed());
+		assertEquals(2 * DOCUMENTS, result.getRetried());
+		assertEquals(0, server.getStore().size("foo"));
+	}
+
+	@Test
+	public void importsByIndexNameInvalidateTheCachedDocumentsOfTheIndex() throws IOException {
+		server.getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+		assertEquals("one", service.findOne(Foo.class, "1").getBarVal());
+
+		service.importNdjson("foo", "bar", write("{\"index\":{\"_id\":\"1\"}}\n{\"barVal\":\"two\"}\n"), NdjsonImporter.Format.BULK);
+
+		assertEquals("two", service.findOne(Foo.class, "1").getBarVal());
+	}
+
+	private Path sourceFile() throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			lines.append("{\"barVal\":\"v").append(i).append("\"}\n");
+		}
+		return write(lines.toString());
+	}
+
+	private Path write(String lines) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, lines.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,127 @@
+package com.es.rest.wrapper.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.service.ResponseFuture;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+import com.github.benmanes.caffeine.cache.Cache;
+
+public class DocumentCacheTest {
+	private StubElasticsearchContext context;
+	private StubElasticsearchServer server;
+	private FooService service;
+	private DocumentCacheManager documentCacheManager;
+	private Cache<String, byte[]> cache;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext();
+		server = context.getServer();
+		service = context.getFooService();
+		documentCacheManager = context.getBean(DocumentCacheManager.class);
+		cache = documentCacheManager.getCache(Foo.class);
+		server.getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void findOneIsServedFromTheCacheAfterTheFirstRead() throws Exception {
+		assertEquals("one", service.findOne(Foo.class, "1").getBarVal());
+		long requests = server.getRequestCount();
+
+		assertEquals("one", service.findOne(Foo.class, "1").getBarVal());
+		assertEquals("one", service.findOneAsync(Foo.class, "1").get(10, TimeUnit.SECONDS).getBarVal());
+		assertEquals(requests, server.getRequestCount());
+	}
+
+	@Test
+	public void writesReplaceAndDeletesRemoveCachedDocuments() throws Exception {
+		service.findOne(Foo.class, "1");
+
+		service.postSync(new Foo("two"), "1");
+		long requests = server.getRequestCount();
+		assertEquals("two", service.findOne(Foo.class, "1").getBarVal());
+		assertEquals(requests, server.getRequestCount());
+
+		service.deleteSyncById("1", Foo.class);
+		assertNull(cache.getIfPresent("1"));
+	}
+
+	@Test
+	public void asyncReadInvalidatedWhileInFlightIsNotCached() throws Exception {
+		server.getFaults().setLatencyMillis(300);
+		ResponseFuture<Foo> read = service.findOneAsync(Foo.class, "1", false);
+		documentCacheManager.invalidate(Foo.class, "1");
+
+		assertEquals("one", read.get(10, TimeUnit.SECONDS).getBarVal());
+		assertNull(cache.getIfPresent("1"));
+
+		assertEquals("one", service.findOneAsync(Foo.class, "1", false).get(10, TimeUnit.SECONDS).getBarVal());
+		assertNotNull(cache.getIfPresent("1"));
+	}
+
+	@Test
+	public void batchedAsyncReadInvalidatedWhileInFlightIsNotCached() throws Exception {
+		try (StubElasticsearchContext batching = new StubElasticsearchContext("elasticsearch.mget.enabled=true")) {
+			StubElasticsearchServer batchingServer = batching.getServer();
+			DocumentCacheManager batchingCaches = batching.getBean(DocumentCacheManager.class);
+			batchingServer.getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+			batchingServer.getFaults().setLatencyMillis(300);
+
+			ResponseFuture<Foo> read = batching.getFooService().findOneAsync(Foo.class, "1");
+			batchingCaches.invalidateAll(Foo.class);
+
+			assertEquals("one", read.get(10, TimeUnit.SECONDS).getBarVal());
+			assertNull(batchingCaches.getCache(Foo.class).getIfPresent("1"));
+		}
+	}
+
+	@Test
+	public void writesDoNotWaitForASlowMissOfTheSameId() throws Exception {
+		server.getFaults().setLatencyMillis(500);
+		long requests = server.getRequestCount();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Foo>> reads = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				reads.add(executor.submit(() -> service.findOne(Foo.class, "1")));
+			}
+			Thread.sleep(100);
+
+			long start = System.nanoTime();
+			documentCacheManager.put(Foo.class, "1", "{\"barVal\":\"two\"}".getBytes(StandardCharsets.UTF_8));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+
+			for (Future<Foo> read : reads) {
+				assertEquals("one", read.get(10, TimeUnit.SECONDS).getBarVal());
+			}
+			// Concurrent misses shared one GET, and its stale answer did not replace the write
+			assertEquals(1, server.getRequestCount() - requests);
+			assertEquals("{\"barVal\":\"two\"}", new String(cache.getIfPresent("1"), StandardCharsets.UTF_8));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
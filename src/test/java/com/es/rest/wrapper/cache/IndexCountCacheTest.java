@@ -0,0 +1,103 @@
+package com.es.rest.wrapper.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class IndexCountCacheTest {
+	private StubElasticsearchContext context;
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void countsAreCachedUntilAWriteThroughTheService() throws Exception {
+		for (String source : new String[] { "count", "cat", "stats" }) {
+			open("elasticsearch.count-cache.source=" + source, "elasticsearch.count-cache.staleness-millis=60000");
+			StubElasticsearchServer server = context.getServer();
+			FooService service = context.getFooService();
+
+			server.getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+			assertEquals(source, 1, service.getIndexCount(Foo.class));
+
+			// Not written through the service, the cached count is served
+			server.getStore().index("foo", "bar", "2", "{\"barVal\":\"two\"}".getBytes(StandardCharsets.UTF_8));
+			long requests = server.getRequestCount();
+			assertEquals(source, 1, service.getIndexCount(Foo.class));
+			assertEquals(source, requests, server.getRequestCount());
+
+			service.postSync(new Foo("three"), "3", RefreshEnum.FALSE);
+			assertEquals(source, 3, service.getIndexCount(Foo.class));
+
+			service.deleteSyncById("3", Foo.class, RefreshEnum.FALSE);
+			assertEquals(source, 2, service.getIndexCount(Foo.class));
+		}
+	}
+
+	@Test
+	public void indexNamesAreEncoded() throws Exception {
+		for (String source : new String[] { "count", "cat" }) {
+			open("elasticsearch.count-cache.source=" + source);
+			context.getServer().getStore().index("foo#1", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+
+			assertEquals(source, 1, context.getFooService().getIndexCount("foo#1"));
+		}
+	}
+
+	@Test
+	public void concurrentCountsShareOneRequestWithTheCacheDisabled() throws Exception {
+		context = new StubElasticsearchContext("elasticsearch.count-cache.enabled=false");
+		StubElasticsearchServer server = context.getServer();
+		FooService service = context.getFooService();
+		server.getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+		server.getFaults().setLatencyMillis(300);
+		long requests = server.getRequestCount();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Long>> counts = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				counts.add(executor.submit(() -> service.getIndexCount(Foo.class)));
+			}
+			for (Future<Long> count : counts) {
+				assertEquals(1, count.get(10, TimeUnit.SECONDS).longValue());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, server.getRequestCount() - requests);
+
+		// Nothing is cached, the next read fetches a new count
+		server.getFaults().clear();
+		service.getIndexCount(Foo.class);
+		assertEquals(2, server.getRequestCount() - requests);
+	}
+
+	/* Replaces the context of the previous source with one caching counts */
+	private void open(String... properties) {
+		if (!Objects.isNull(context))
+			context.close();
+		String[] enabled = Arrays.copyOf(properties, properties.length + 1);
+		enabled[properties.length] = "elasticsearch.count-cache.enabled=true";
+		context = new StubElasticsearchContext(enabled);
+	}
+}
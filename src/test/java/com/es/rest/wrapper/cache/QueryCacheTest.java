@@ -0,0 +1,174 @@
+package com.es.rest.wrapper.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class QueryCacheTest {
+	private static final String ENDPOINT = "/foo/bar/_search?q=barVal:a&size=10";
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void disabledCacheLoadsEveryTime() throws IOException {
+		QueryCache cache = new QueryCache(false, 5, 1024 * 1024);
+
+		cache.get("foo", ENDPOINT, this::load);
+		cache.get("foo", ENDPOINT, this::load);
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void equivalentQueriesShareTheCachedResult() throws IOException {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+
+		byte[] first = cache.get("foo", ENDPOINT, this::load);
+		byte[] second = cache.get("foo", " /foo/bar/_search?size=10&q=barVal:a ", this::load);
+		byte[] async = cache.getAsync("foo", ENDPOINT, () -> CompletableFuture.completedFuture(body())).join();
+		assertSame(first, second);
+		assertSame(first, async);
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void invalidateDropsTheResultsOfTheIndexOnly() throws IOException {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+		cache.get("foo", ENDPOINT, this::load);
+		cache.get("other", "/other/_search", this::load);
+
+		cache.invalidate("foo");
+		cache.get("foo", ENDPOINT, this::load);
+		cache.get("other", "/other/_search", this::load);
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void failedLoadsAreNotCached() throws IOException {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+		try {
+			cache.get("foo", ENDPOINT, () -> {
+				throw new IOException("down");
+			});
+			fail("Expected the load to fail");
+		} catch (IOException e) {
+			assertEquals("down", e.getMessage());
+		}
+		cache.get("foo", ENDPOINT, this::load);
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void concurrentIdenticalQueriesShareOneLoad() throws Exception {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Future<byte[]> leader = executor.submit(() -> cache.get("foo", ENDPOINT, () -> {
+				loading.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return load();
+			}));
+			loading.await(10, TimeUnit.SECONDS);
+
+			List<Future<byte[]>> followers = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				followers.add(executor.submit(() -> cache.get("foo", ENDPOINT, this::load)));
+			}
+			Thread.sleep(100);
+			release.countDown();
+
+			byte[] body = leader.get(10, TimeUnit.SECONDS);
+			for (Future<byte[]> follower : followers) {
+				assertArrayEquals(body, follower.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void callersWaitingForALoadThatThrowsAnErrorAreReleased() throws Exception {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<byte[]> leader = executor.submit(() -> cache.get("foo", ENDPOINT, () -> {
+				loading.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				throw new OutOfMemoryError("body too large");
+			}));
+			loading.await(10, TimeUnit.SECONDS);
+
+			Future<byte[]> follower = executor.submit(() -> cache.get("foo", ENDPOINT, this::load));
+			Thread.sleep(100);
+			release.countDown();
+
+			for (Future<byte[]> caller : Arrays.asList(leader, follower)) {
+				try {
+					caller.get(10, TimeUnit.SECONDS);
+					fail("Expected the load to fail");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof OutOfMemoryError);
+				}
+			}
+			assertEquals(0, loads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void asyncLoadersThatThrowDoNotStayInFlight() throws Exception {
+		QueryCache cache = new QueryCache(true, 5, 1024 * 1024);
+		assertTrue(cache.getAsync("foo", ENDPOINT, () -> {
+			throw new IllegalStateException("no connection");
+		}).isCompletedExceptionally());
+
+		assertArrayEquals(load(), cache.getAsync("foo", ENDPOINT, () -> CompletableFuture.completedFuture(load()))
+				.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void normalizeSortsParametersAndTrims() {
+		assertEquals("/foo/_search?a=1&b=2", QueryCache.normalize("  /foo/_search?b=2&&a=1 "));
+		assertEquals("/foo/_search", QueryCache.normalize("/foo/_search"));
+	}
+
+	private byte[] load() {
+		loads.incrementAndGet();
+		return body();
+	}
+
+	private static byte[] body() {
+		return "{\"hits\":{\"total\":0,\"hits\":[]}}".getBytes(StandardCharsets.UTF_8);
+	}
+}
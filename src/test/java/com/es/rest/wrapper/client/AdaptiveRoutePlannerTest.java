@@ -0,0 +1,108 @@
+package com.es.rest.wrapper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class AdaptiveRoutePlannerTest {
+	private static final int SOCKET_TIMEOUT_MILLIS = 200;
+
+	private StubElasticsearchServer server;
+	private AdaptiveRoutePlanner routePlanner;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubElasticsearchServer(0);
+		server.start();
+		// Far longer than the socket timeout, in-flight requests must not wait for the sweep
+		routePlanner = new AdaptiveRoutePlanner(TimeUnit.MINUTES.toMillis(10));
+	}
+
+	@After
+	public void tearDown() {
+		routePlanner.close();
+		server.close();
+	}
+
+	@Test
+	public void answeredRequestsLeaveTheInFlightCount() throws IOException {
+		HttpHost host = HttpHost.create(server.getHttpHost());
+		try (RestClient restClient = restClient(host)) {
+			for (int i = 0; i < 10; i++) {
+				restClient.performRequest("GET", "/");
+			}
+			assertEquals(0, routePlanner.getInFlightCount(host));
+		}
+	}
+
+	@Test
+	public void timedOutRequestsLeaveTheInFlightCount() throws Exception {
+		HttpHost host = HttpHost.create(server.getHttpHost());
+		server.getFaults().setLatencyMillis(5 * SOCKET_TIMEOUT_MILLIS);
+		try (RestClient restClient = restClient(host)) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					restClient.performRequest("GET", "/");
+					fail("Expected the request to time out");
+				} catch (IOException e) {
+					// Expected, the node answers after the socket timeout
+				}
+			}
+			awaitNoneInFlight(host);
+		}
+	}
+
+	@Test
+	public void unreachableNodesLeaveTheInFlightCount() throws Exception {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			closedPort = socket.getLocalPort();
+		}
+		HttpHost host = new HttpHost(InetAddress.getLoopbackAddress().getHostAddress(), closedPort);
+		try (RestClient restClient = restClient(host)) {
+			try {
+				restClient.performRequest("GET", "/");
+				fail("Expected the connection to be refused");
+			} catch (IOException e) {
+				// Expected, nothing listens on the port
+			}
+			awaitNoneInFlight(host);
+		}
+	}
+
+	private void awaitNoneInFlight(HttpHost host) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (routePlanner.getInFlightCount(host) > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, routePlanner.getInFlightCount(host));
+	}
+
+	private RestClient restClient(HttpHost host) throws IOException {
+		InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(new DefaultConnectingIOReactor(
+				IOReactorConfig.custom().setIoThreadCount(1).setSelectInterval(50).setSoTimeout(SOCKET_TIMEOUT_MILLIS).build()));
+		connectionManager.setLeaseListener(routePlanner);
+		return RestClient.builder(host)
+				.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+						.setConnectionManager(connectionManager)
+						.setRoutePlanner(routePlanner)
+						.addInterceptorLast(routePlanner))
+				.setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder.setSocketTimeout(SOCKET_TIMEOUT_MILLIS))
+				.setMaxRetryTimeoutMillis(10 * SOCKET_TIMEOUT_MILLIS)
+				.build();
+	}
+}
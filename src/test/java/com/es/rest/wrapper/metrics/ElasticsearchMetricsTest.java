@@ -0,0 +1,55 @@
+package com.es.rest.wrapper.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ElasticsearchMetricsTest {
+
+	@Test
+	public void onlyRegisteredIndicesAreTaggedByName() {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ElasticsearchMetrics metrics = new ElasticsearchMetrics(meterRegistry,
+				new ElasticDocumentRegistry(new ObjectMapper(), "com.es.rest.wrapper.example"));
+
+		metrics.start("search", "foo").stop(null);
+		metrics.start("search", "logs-2026.10.17").stop(null);
+		metrics.start("search", "logs-2026.10.18").stop(null);
+		metrics.start("search", null).stop(null);
+
+		assertEquals(1, meterRegistry.find("elasticsearch.operation").tags("index", "foo").timer().count());
+		assertEquals(3, meterRegistry.find("elasticsearch.operation").tags("index", "other").timer().count());
+		assertNull(meterRegistry.find("elasticsearch.operation").tags("index", "logs-2026.10.17").timer());
+	}
+
+	@Test
+	public void coalescedRefreshWaitIsNotTimedAsPartOfTheWrite() throws Exception {
+		try (StubElasticsearchContext context = new StubElasticsearchContext(
+				"elasticsearch.refresh.coalesce.enabled=true", "elasticsearch.refresh.coalesce.window-millis=1000")) {
+			long start = System.nanoTime();
+			context.getFooService().postSync(new Foo("one"), "1", RefreshEnum.WAIT);
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			Timer timer = context.getBean(MeterRegistry.class).find("elasticsearch.operation")
+					.tags("operation", "index", "index", "foo").timer();
+			assertNotNull(timer);
+			assertTrue("Expected the write to wait for the refresh window", elapsedMillis >= 900);
+			assertTrue("Expected the operation time to leave out the refresh window", timer.max(TimeUnit.MILLISECONDS) < 900);
+		}
+	}
+}
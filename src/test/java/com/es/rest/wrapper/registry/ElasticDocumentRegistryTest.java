@@ -0,0 +1,89 @@
+package com.es.rest.wrapper.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.es.rest.wrapper.annotation.ElasticDocument;
+import com.es.rest.wrapper.example.Foo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ElasticDocumentRegistryTest {
+	private final ElasticDocumentRegistry registry = new ElasticDocumentRegistry(new ObjectMapper(), "com.es.rest.wrapper.example");
+
+	@Test
+	public void scanRegistersAnnotatedClassesWithPrecomputedEndpoints() {
+		assertEquals(1, registry.getAll().size());
+
+		ElasticDocumentMetadata metadata = registry.getAll().iterator().next();
+		assertSame(Foo.class, metadata.getDocumentClass());
+		assertSame(metadata, registry.get(Foo.class));
+		assertEquals("foo", metadata.getIndexName());
+		assertEquals("/foo/bar/", metadata.getBasePath());
+		assertEquals("/foo/bar/_search", metadata.getSearchEndpoint());
+		assertEquals("/foo/_count", metadata.getCountEndpoint());
+		assertEquals("/foo/bar/_bulk", metadata.getBulkEndpoint());
+		assertEquals("/foo/bar/1", metadata.getDocumentEndpoint("1"));
+		assertEquals("/foo/bar/1/_source", metadata.getSourceEndpoint("1"));
+		assertEquals("/foo/bar/a%2Fb%20c%3F%23%26%2B", metadata.getDocumentEndpoint("a/b c?#&+"));
+		assertTrue(metadata.getDefaultProjection().isEmpty());
+	}
+
+	@Test
+	public void classesOutsideTheScanAreRegisteredOnFirstUse() {
+		ElasticDocumentMetadata metadata = registry.get(Untyped.class);
+
+		assertEquals("/untyped/", metadata.getBasePath());
+		assertEquals("/untyped/_search?_source_include=a", metadata.getDefaultProjection().applyTo(metadata.getSearchEndpoint()));
+		assertSame(metadata, registry.find(Untyped.class));
+		assertEquals(2, registry.getAll().size());
+	}
+
+	@Test
+	public void findReturnsNullForClassesWithoutAnnotation() {
+		assertNull(registry.find(String.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void getRejectsClassesWithoutAnnotation() {
+		registry.get(String.class);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void getRejectsInvalidIndexNames() {
+		registry.get(InvalidIndex.class);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void getRejectsClassesWithoutNoArgConstructor() {
+		registry.get(NoDefaultConstructor.class);
+	}
+
+	@Test
+	public void projectionsIncludeTheBoundProperties() {
+		Projection projection = registry.getProjection(Foo.class);
+
+		assertEquals(Arrays.asList("barVal"), projection.getIncludes());
+		assertSame(projection, registry.getProjection(Foo.class));
+	}
+
+	@ElasticDocument(indexName = "untyped", sourceIncludes = "a")
+	public static class Untyped {
+		public String a;
+	}
+
+	/* Abstract, so the class path scan of other tests never picks it up */
+	@ElasticDocument(indexName = "_invalid")
+	public abstract static class InvalidIndex {
+	}
+
+	/* Inner class, its only constructor takes the enclosing instance */
+	@ElasticDocument(indexName = "inner")
+	public class NoDefaultConstructor {
+	}
+}
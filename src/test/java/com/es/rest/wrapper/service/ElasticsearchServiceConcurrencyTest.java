@@ -0,0 +1,84 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.model.generic.ElasticHit;
+import com.es.rest.wrapper.model.generic.QueryResponse;
+import com.es.rest.wrapper.stub.StubDocumentStore;
+
+/**
+ * Many threads reading distinct documents at once must each get their own document back,
+ * with the shared caches, coalescing and _mget batching both off and on.
+ */
+public class ElasticsearchServiceConcurrencyTest {
+	private static final int DOCUMENTS = 200;
+	private static final int THREADS = 32;
+	private static final int CALLS = 4000;
+
+	@Test
+	public void concurrentReadsReturnTheirOwnDocument() throws Exception {
+		try (StubElasticsearchContext context = new StubElasticsearchContext()) {
+			runConcurrentReads(context);
+		}
+	}
+
+	@Test
+	public void concurrentReadsReturnTheirOwnDocumentWithCachesAndBatching() throws Exception {
+		try (StubElasticsearchContext context = new StubElasticsearchContext(
+				"elasticsearch.query-cache.enabled=true", "elasticsearch.mget.enabled=true")) {
+			runConcurrentReads(context);
+		}
+	}
+
+	private static void runConcurrentReads(StubElasticsearchContext context) throws Exception {
+		StubDocumentStore store = context.getServer().getStore();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			store.index("foo", "bar", "id-" + i, ("{\"barVal\":\"v" + i + "\"}").getBytes(StandardCharsets.UTF_8));
+		}
+		FooService service = context.getFooService();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int call = 0; call < CALLS; call++) {
+				boolean search = call % 2 == 1;
+				results.add(executor.submit((Callable<Void>) () -> {
+					int i = ThreadLocalRandom.current().nextInt(DOCUMENTS);
+					if (search) {
+						QueryResponse<Foo> response = service.getSync(Foo.class, "_search?q=barVal:v" + i);
+						List<ElasticHit<Foo>> hits = response.getHits().getElasticHits();
+						assertEquals(1, hits.size());
+						assertEquals("id-" + i, hits.get(0).getId());
+						assertEquals("v" + i, hits.get(0).getSource().getBarVal());
+					} else {
+						Foo foo = service.findOne(Foo.class, "id-" + i);
+						assertNotNull(foo);
+						assertEquals("v" + i, foo.getBarVal());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.registry.ElasticDocumentMetadata;
+import com.es.rest.wrapper.registry.ElasticDocumentRegistry;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class MultiGetBatcherTest {
+	private static final int DOCUMENTS = 50;
+
+	private StubElasticsearchContext context;
+	private StubElasticsearchServer server;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext("elasticsearch.mget.enabled=true", "elasticsearch.mget.window-millis=50",
+				"elasticsearch.mget.max-batch-size=20");
+		server = context.getServer();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			server.getStore().index("foo", "bar", "id-" + i, ("{\"barVal\":\"v" + i + "\"}").getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void concurrentLookupsShareMultiGetRequests() throws Exception {
+		FooService service = context.getFooService();
+		long requests = server.getRequestCount();
+
+		List<ResponseFuture<Foo>> lookups = new ArrayList<>();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			lookups.add(service.findOneAsync(Foo.class, "id-" + i));
+		}
+		ResponseFuture<Foo> missing = service.findOneAsync(Foo.class, "missing");
+
+		for (int i = 0; i < DOCUMENTS; i++) {
+			assertEquals("v" + i, lookups.get(i).get(10, TimeUnit.SECONDS).getBarVal());
+		}
+		assertNull(missing.get(10, TimeUnit.SECONDS));
+		// Batches of at most 20 IDs
+		long sent = server.getRequestCount() - requests;
+		assertTrue("Expected at most 3 _mget requests but got " + sent, sent <= 3);
+	}
+
+	@Test
+	public void eachCallerGetsTheSourceOfItsOwnId() throws Exception {
+		MultiGetBatcher batcher = context.getBean(MultiGetBatcher.class);
+		ElasticDocumentMetadata metadata = context.getBean(ElasticDocumentRegistry.class).get(Foo.class);
+
+		byte[] first = batcher.load(metadata, "id-1").get(10, TimeUnit.SECONDS);
+		byte[] duplicate = batcher.load(metadata, "id-1").get(10, TimeUnit.SECONDS);
+		assertEquals("{\"barVal\":\"v1\"}", new String(first, StandardCharsets.UTF_8));
+		assertEquals("{\"barVal\":\"v1\"}", new String(duplicate, StandardCharsets.UTF_8));
+		assertNull(batcher.load(metadata, "missing").get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void disabledBatcherLeavesFindOneToSendItsOwnGet() throws Exception {
+		try (StubElasticsearchContext unbatched = new StubElasticsearchContext()) {
+			unbatched.getServer().getStore().index("foo", "bar", "1", "{\"barVal\":\"one\"}".getBytes(StandardCharsets.UTF_8));
+
+			assertEquals(false, unbatched.getBean(MultiGetBatcher.class).isEnabled());
+			assertEquals("one", unbatched.getFooService().findOneAsync(Foo.class, "1").get(10, TimeUnit.SECONDS).getBarVal());
+		}
+	}
+}
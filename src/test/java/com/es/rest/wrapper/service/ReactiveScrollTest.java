@@ -0,0 +1,99 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class ReactiveScrollTest {
+	private static final int DOCUMENTS = 100;
+	private static final int PAGE_SIZE = 10;
+
+	private StubElasticsearchContext context;
+	private StubElasticsearchServer server;
+	private FooService service;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext();
+		server = context.getServer();
+		service = context.getFooService();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			server.getStore().index("foo", "bar", "id-" + i, ("{\"barVal\":\"v" + i + "\"}").getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void scrollFluxReadsEveryDocumentAndClearsTheScroll() throws InterruptedException {
+		List<Foo> documents = service.scrollFlux(Foo.class, "", PAGE_SIZE).collectList().block(Duration.ofSeconds(30));
+
+		assertEquals(DOCUMENTS, documents.size());
+		awaitNoOpenScrolls();
+	}
+
+	@Test
+	public void cancelledScrollFluxClearsTheScrollAndStopsFetching() throws InterruptedException {
+		long requests = server.getRequestCount();
+
+		List<Foo> documents = service.scrollFlux(Foo.class, "", PAGE_SIZE)
+				.take(PAGE_SIZE + PAGE_SIZE / 2)
+				.collectList()
+				.block(Duration.ofSeconds(30));
+
+		assertEquals(PAGE_SIZE + PAGE_SIZE / 2, documents.size());
+		awaitNoOpenScrolls();
+		// Search, second page, at most one page ahead and the clear scroll, not all 10 pages
+		long sent = server.getRequestCount() - requests;
+		assertTrue("Expected at most 4 requests but got " + sent, sent <= 4);
+	}
+
+	@Test
+	public void pagesOfNoDocumentsAreRejected() throws Exception {
+		long requests = server.getRequestCount();
+		try {
+			service.iterator(Foo.class, "", 0);
+			fail("Expected the page size to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected, a scroll of empty pages would never end
+		}
+		try {
+			service.openScrollAsync(Foo.class, "", -1);
+			fail("Expected the page size to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			service.scrollFlux(Foo.class, "", 0).blockLast(Duration.ofSeconds(30));
+			fail("Expected the page size to be rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(requests, server.getRequestCount());
+	}
+
+	private void awaitNoOpenScrolls() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (server.getStore().getOpenScrolls() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, server.getStore().getOpenScrolls());
+	}
+}
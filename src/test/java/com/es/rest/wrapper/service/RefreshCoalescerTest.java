@@ -0,0 +1,54 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+
+public class RefreshCoalescerTest {
+	private StubElasticsearchContext context;
+	private RefreshCoalescer coalescer;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext("elasticsearch.refresh.coalesce.enabled=true",
+				"elasticsearch.refresh.coalesce.window-millis=200");
+		coalescer = context.getBean(RefreshCoalescer.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void writesWithinAWindowShareOneRefresh() throws Exception {
+		long requests = context.getServer().getRequestCount();
+
+		CompletableFuture<Void> first = coalescer.refresh("foo");
+		assertSame(first, coalescer.refresh("foo"));
+		first.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, context.getServer().getRequestCount() - requests);
+	}
+
+	@Test
+	public void openWindowsAreRefreshedAfterClose() throws Exception {
+		CompletableFuture<Void> open = coalescer.refresh("foo");
+		coalescer.close();
+
+		open.get(5, TimeUnit.SECONDS);
+		// Nothing times the window any more, the refresh is sent at once
+		long start = System.nanoTime();
+		coalescer.refresh("foo").get(5, TimeUnit.SECONDS);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+	}
+}
@@ -0,0 +1,55 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.es.rest.wrapper.StubElasticsearchContext;
+import com.es.rest.wrapper.enumeration.RefreshEnum;
+import com.es.rest.wrapper.example.Foo;
+import com.es.rest.wrapper.example.FooService;
+import com.es.rest.wrapper.stub.StubElasticsearchServer;
+
+public class ReservedCharactersTest {
+	private static final String ID = "a/b c?d#e&f+g%h";
+	private static final String ROUTING = "tenant 1&x=y";
+
+	private StubElasticsearchContext context;
+	private StubElasticsearchServer server;
+	private FooService service;
+
+	@Before
+	public void setUp() {
+		context = new StubElasticsearchContext();
+		server = context.getServer();
+		service = context.getFooService();
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void documentIdsReachElasticsearchUnchanged() throws Exception {
+		service.postSync(new Foo("one"), ID, RefreshEnum.FALSE);
+
+		assertNotNull(server.getStore().get("foo", "bar", ID));
+		assertEquals("one", service.findOne(Foo.class, ID).getBarVal());
+
+		service.deleteSyncById(ID, Foo.class, RefreshEnum.FALSE);
+		assertNull(server.getStore().get("foo", "bar", ID));
+	}
+
+	@Test
+	public void routingValuesDoNotBreakTheQueryString() throws Exception {
+		server.getStore().index("foo", "bar", ID, "{\"barVal\":\"one\"}".getBytes("UTF-8"));
+
+		assertEquals("one", service.findOne(Foo.class, ID, ROUTING).getBarVal());
+		assertEquals("one", service.findOneAsync(Foo.class, ID, ROUTING).get().getBarVal());
+	}
+}
@@ -0,0 +1,48 @@
+package com.es.rest.wrapper.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.es.rest.wrapper.example.Foo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public class StreamingSearchParserTest {
+	private final ObjectReader reader = new ObjectMapper().readerFor(Foo.class);
+
+	@Test
+	public void hitsWithoutSourceAreCountedButNotBound() throws IOException {
+		String body = "{\"_scroll_id\":\"s1\",\"took\":3,\"hits\":{\"total\":10,\"hits\":["
+				+ "{\"_id\":\"1\",\"_source\":{\"barVal\":\"a\"}},"
+				+ "{\"_id\":\"2\"},"
+				+ "{\"_id\":\"3\",\"_source\":null},"
+				+ "{\"_id\":\"4\",\"_source\":{\"barVal\":\"b\"}}]}}";
+
+		SearchPage<Foo> page = parse(body);
+
+		assertEquals("s1", page.getScrollId());
+		assertEquals(Long.valueOf(3), page.getTook());
+		assertEquals(Long.valueOf(10), page.getTotal());
+		assertEquals(4, page.getHitCount());
+		assertEquals(2, page.getDocuments().size());
+		assertEquals("a", page.getDocuments().get(0).getBarVal());
+		assertEquals("b", page.getDocuments().get(1).getBarVal());
+	}
+
+	@Test
+	public void emptyResponseHasNoHits() throws IOException {
+		SearchPage<Foo> page = parse("{\"_scroll_id\":\"s2\",\"hits\":{\"total\":0,\"hits\":[]}}");
+
+		assertEquals(0, page.getHitCount());
+		assertEquals(0, page.getDocuments().size());
+	}
+
+	private SearchPage<Foo> parse(String body) throws IOException {
+		return StreamingSearchParser.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), reader);
+	}
+}
@@ -0,0 +1,141 @@
+package com.es.rest.wrapper.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.http.HttpHost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StubElasticsearchServerTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private StubElasticsearchServer server;
+	private RestClient restClient;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new StubElasticsearchServer(0);
+		server.start();
+		restClient = RestClient.builder(HttpHost.create(server.getHttpHost())).build();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		restClient.close();
+		server.close();
+	}
+
+	@Test
+	public void documentsCanBeIndexedReadAndDeleted() throws IOException {
+		JsonNode created = request("PUT", "/foo/bar/1", "{\"barVal\":\"one\"}");
+		assertEquals("created", created.path("result").asText());
+		assertEquals(1, server.getStore().size("foo"));
+
+		JsonNode document = request("GET", "/foo/bar/1", null);
+		assertTrue(document.path("found").asBoolean());
+		assertEquals("one", document.path("_source").path("barVal").asText());
+		assertEquals("one", request("GET", "/foo/bar/1/_source", null).path("barVal").asText());
+
+		JsonNode updated = request("PUT", "/foo/bar/1", "{\"barVal\":\"two\"}");
+		assertEquals("updated", updated.path("result").asText());
+		assertEquals(2, updated.path("_version").asLong());
+
+		assertEquals("deleted", request("DELETE", "/foo/bar/1", null).path("result").asText());
+		assertStatus(404, "GET", "/foo/bar/1", null);
+	}
+
+	@Test
+	public void searchesMatchUriQueries() throws IOException {
+		request("PUT", "/foo/bar/1", "{\"barVal\":\"apple pie\"}");
+		request("PUT", "/foo/bar/2", "{\"barVal\":\"cherry\"}");
+
+		JsonNode hits = request("GET", "/foo/bar/_search?q=barVal:apple", null).path("hits");
+		assertEquals(1, hits.path("total").asLong());
+		assertEquals("1", hits.path("hits").path(0).path("_id").asText());
+		assertEquals(2, request("GET", "/foo/_count", null).path("count").asLong());
+	}
+
+	@Test
+	public void scrollsPageThroughHitsUntilCleared() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			request("PUT", "/foo/bar/" + i, "{\"barVal\":\"v" + i + "\"}");
+		}
+
+		JsonNode first = request("POST", "/foo/bar/_search?scroll=1m&size=2", "{\"query\":{\"match_all\":{}}}");
+		assertEquals(2, first.path("hits").path("hits").size());
+		assertEquals(1, server.getStore().getOpenScrolls());
+
+		String scrollId = first.path("_scroll_id").asText();
+		JsonNode second = request("POST", "/_search/scroll", "{\"scroll\":\"1m\",\"scroll_id\":\"" + scrollId + "\"}");
+		assertEquals(2, second.path("hits").path("hits").size());
+
+		request("DELETE", "/_search/scroll", "{\"scroll_id\":[\"" + scrollId + "\"]}");
+		assertEquals(0, server.getStore().getOpenScrolls());
+	}
+
+	@Test
+	public void recordedResponsesAreReplayed() throws IOException {
+		server.record("GET", "/_cluster/health", 200, "{\"status\":\"green\"}");
+
+		assertEquals("green", request("GET", "/_cluster/health", null).path("status").asText());
+	}
+
+	@Test
+	public void faultsFailRequests() throws IOException {
+		server.getFaults().setRejectionRate(1);
+		assertStatus(429, "GET", "/", null);
+
+		server.getFaults().clear();
+		server.getFaults().setErrorRate(1);
+		assertStatus(500, "GET", "/", null);
+
+		server.getFaults().clear();
+		assertEquals("stub", request("GET", "/", null).path("cluster_name").asText());
+	}
+
+	@Test
+	public void bulkItemsCanBeRejected() throws IOException {
+		String bulk = "{\"index\":{\"_index\":\"foo\",\"_type\":\"bar\",\"_id\":\"1\"}}\n{\"barVal\":\"one\"}\n";
+
+		server.getFaults().setBulkItemRejectionRate(1);
+		JsonNode rejected = request("POST", "/_bulk", bulk);
+		assertTrue(rejected.path("errors").asBoolean());
+		assertEquals(429, rejected.path("items").path(0).path("index").path("status").asInt());
+		assertEquals(0, server.getStore().size("foo"));
+
+		server.getFaults().clear();
+		JsonNode accepted = request("POST", "/_bulk", bulk);
+		assertFalse(accepted.path("errors").asBoolean());
+		assertEquals(1, server.getStore().size("foo"));
+	}
+
+	private JsonNode request(String method, String endpoint, String body) throws IOException {
+		Response response = restClient.performRequest(method, endpoint, Collections.<String, String>emptyMap(),
+				body == null ? null : new StringEntity(body, ContentType.APPLICATION_JSON));
+		return mapper.readTree(response.getEntity().getContent());
+	}
+
+	private void assertStatus(int status, String method, String endpoint, String body) throws IOException {
+		try {
+			request(method, endpoint, body);
+			fail("Expected HTTP " + status);
+		} catch (ResponseException e) {
+			assertEquals(status, e.getResponse().getStatusLine().getStatusCode());
+		}
+	}
+}